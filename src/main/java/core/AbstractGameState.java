@@ -10,6 +10,7 @@ import core.interfaces.IGamePhase;
 import core.turnorders.TurnOrder;
 import games.GameType;
 import utilities.ElapsedCpuChessTimer;
+import utilities.Pair;
 import utilities.Utils;
 
 import java.util.*;
@@ -49,7 +50,7 @@ public abstract class AbstractGameState {
     protected final GameType gameType;
 
     // A record of all actions taken to reach this game state
-    private List<AbstractAction> history = new ArrayList<>();
+    private List<Pair<Integer, AbstractAction>> history = new ArrayList<>(); // (player, action)
     private List<String> historyText = new ArrayList<>();
 
     // Status of the game, and status for each player (in cooperative games, the game status is also each player's status)
@@ -436,7 +437,7 @@ public abstract class AbstractGameState {
      * @param action The action that has just been applied (or is about to be applied) to the game state
      */
     protected void recordAction(AbstractAction action) {
-        history.add(action);
+        history.add(new Pair<>(this.getCurrentPlayer(), action));
         historyText.add("Player " + this.getCurrentPlayer() + " : " + action.getString(this));
     }
 
@@ -444,7 +445,21 @@ public abstract class AbstractGameState {
      * @return All actions that have been executed on this state since reset()/initialisation
      */
     public List<AbstractAction> getHistory() {
-        return new ArrayList<>(history);
+        return history.stream().map(p -> p.b).collect(toList());
+    }
+
+    /**
+     * @param fromIndex The number of earlier actions to skip (e.g. the history size at some previous point)
+     * @return The actions executed on this state since that point, each with the id of the player who took it
+     */
+    public List<Pair<Integer, AbstractAction>> getHistory(int fromIndex) {
+        if (fromIndex >= history.size())
+            return new ArrayList<>();
+        return new ArrayList<>(history.subList(fromIndex, history.size()));
+    }
+
+    public int getHistorySize() {
+        return history.size();
     }
     public List<String> getHistoryAsText() {
         return new ArrayList<>(historyText);
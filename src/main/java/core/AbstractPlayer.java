@@ -81,6 +81,26 @@ public abstract class AbstractPlayer {
      */
     public void registerUpdatedObservation(AbstractGameState gameState) {}
 
+    /**
+     * Whether this player wants to be told (with opponentToAct()) each time another player is about to decide.
+     * This is off by default, as each call needs a copy of the game state.
+     */
+    public boolean ponders() {return false;}
+
+    /**
+     * Called (if ponders() is true) just before another player is asked for an action, so that this player can think
+     * during the other players' turns. This must return promptly, with any such work done on another thread.
+     * @param gameState observation of the current game state, in which another player is to act
+     */
+    public void opponentToAct(AbstractGameState gameState) {}
+
+    /**
+     * Whether one instance of this player can decide for several threads at once (for example as the opponent model
+     * of each thread of a search), so that they can share it rather than each needing a copy(). This is off by
+     * default; a player that is thread-safe must not rely on the forward model set on it.
+     */
+    public boolean isThreadSafe() {return false;}
+
     public final void setName(String name) {this.name = name;}
 
     @Override
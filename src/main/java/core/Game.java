@@ -19,6 +19,7 @@ import players.simple.OSLAPlayer;
 import players.simple.RandomPlayer;
 import players.simple.TMRuleBasedPlayer;
 import players.mcts.MCTSPlayer;
+import utilities.DecisionLatencyStats;
 import utilities.Pair;
 import utilities.TAGStatSummary;
 import utilities.Utils;
@@ -57,6 +58,8 @@ public class Game {
     private int tick;
     // Number of times an agent is asked for decisions
     private int nDecisions;
+    // Distribution of decision times for each player, by game phase and action chosen
+    private DecisionLatencyStats[] decisionLatency;
     // Number of actions taken in a turn by a player
     private int nActionsPerTurn, nActionsPerTurnSum, nActionsPerTurnCount;
 
@@ -399,6 +402,9 @@ public class Game {
         actionComputeTime = 0;
         tick = 0;
         nDecisions = 0;
+        decisionLatency = new DecisionLatencyStats[gameState.getNPlayers()];
+        for (int p = 0; p < decisionLatency.length; p++)
+            decisionLatency[p] = new DecisionLatencyStats();
         actionSpaceSize = new ArrayList<>();
         nActionsPerTurnSum = 0;
         nActionsPerTurn = 1;
@@ -532,6 +538,12 @@ public class Game {
             ((IPrintable) observation).printToConsole();
         }
 
+        // Let any other players that think during their opponents' turns know who is deciding now
+        for (AbstractPlayer player : players) {
+            if (player != currentPlayer && player.ponders())
+                player.opponentToAct(gameState.copy(player.getPlayerID()));
+        }
+
         // Start the timer for this decision
         gameState.playerTimer[activePlayer].resume();
 
@@ -544,11 +556,13 @@ public class Game {
                 currentPlayer.registerUpdatedObservation(observation);
             } else {
                 // Get action from player, and time it
-                s = System.nanoTime();
+                long decisionStart = System.nanoTime();
                 if (debug) System.out.printf("About to get action for player %d%n", gameState.getCurrentPlayer());
                 action = currentPlayer.getAction(observation, observedActions);
-                agentTime += (System.nanoTime() - s);
+                long decisionTime = System.nanoTime() - decisionStart;
+                agentTime += decisionTime;
                 nDecisions++;
+                decisionLatency[activePlayer].record(observation.getGamePhase(), action, decisionTime);
             }
             if (gameState.coreGameParameters.competitionMode && action != null && !observedActions.contains(action)) {
                 System.out.printf("Action played that was not in the list of available actions: %s%n", action.getString(gameState));
@@ -705,6 +719,17 @@ public class Game {
         return nDecisions;
     }
 
+    /**
+     * Retrieves the distribution of decision times for one player in this game, overall and by game phase
+     * and class of action chosen. Decisions with only one available action are not included.
+     *
+     * @param playerId - id of the player
+     * @return - decision latency histograms
+     */
+    public DecisionLatencyStats getDecisionLatency(int playerId) {
+        return decisionLatency[playerId];
+    }
+
     /**
      * Number of actions taken in a turn by a player, before turn moves to another.
      *
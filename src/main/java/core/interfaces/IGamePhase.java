@@ -1,3 +1,12 @@
 package core.interfaces;
 
-public interface IGamePhase {}
+public interface IGamePhase {
+
+    /**
+     * @return How long, relative to other phases, an agent that manages its own time should think about a decision
+     * in this phase (see players.TimeManager)
+     */
+    default double thinkingTimeWeight() {
+        return 1.0;
+    }
+}
@@ -8,4 +8,36 @@ public interface IStateFeatureVector {
 
     String[] names();
 
+    /**
+     * Writes the feature vectors of a batch of states (each for the player at the same index of playerIDs)
+     * into buffer, one row of names().length values after another. The default writes each row with
+     * featureVector(state, playerID, buffer, offset).
+     */
+    default void featureVectors(AbstractGameState[] states, int[] playerIDs, int n, double[] buffer) {
+        int width = names().length;
+        for (int i = 0; i < n; i++)
+            featureVector(states[i], playerIDs[i], buffer, i * width);
+    }
+
+    /**
+     * Writes the feature vector of the state for the player into buffer, from offset onwards, so that the caller can
+     * reuse the buffer. The default copies in the result of featureVector(); implementations can override this to
+     * write directly into the buffer.
+     */
+    default void featureVector(AbstractGameState state, int playerID, double[] buffer, int offset) {
+        double[] phi = featureVector(state, playerID);
+        System.arraycopy(phi, 0, buffer, offset, phi.length);
+    }
+
+    /**
+     * Writes the feature vector of the state for every player into buffer, one row of names().length values for
+     * each player in turn. The default writes each row separately; implementations can override this to compute
+     * the features that do not depend on the player just once.
+     */
+    default void featureVectorsForAllPlayers(AbstractGameState state, double[] buffer) {
+        int width = names().length;
+        for (int p = 0; p < state.getNPlayers(); p++)
+            featureVector(state, p, buffer, p * width);
+    }
+
 }
@@ -0,0 +1,12 @@
+package core.interfaces;
+
+public interface IStateHash {
+
+    /**
+     * Returns a 64-bit hash of the game state, such that states reached by different sequences of actions that
+     * are otherwise identical have the same hash (so, unlike hashCode(), it ignores the history of actions taken).
+     * This is used by search algorithms to find transpositions.
+     * @return - hash of the current state.
+     */
+    long getStateHash();
+}
@@ -1,4 +1,3 @@
-
 package core.interfaces;
 
 import core.AbstractGameState;
@@ -13,4 +12,29 @@ public interface IStateHeuristic {
      * @return - value of given state.
      */
     double evaluateState(AbstractGameState gs, int playerId);
-}
\ No newline at end of file
+
+    /**
+     * Scores a batch of states at once, each for the player at the same index of playerIds. The results are
+     * written into the array given, so that the caller can reuse it. The default scores each in turn with
+     * evaluateState(); learned heuristics override this to share the work across the batch.
+     * @param states - game states to evaluate (the same state may appear more than once, for different players).
+     * @param playerIds - id of the player to evaluate each state for.
+     * @param n - the number of states in the batch (the arrays may be longer).
+     * @param results - the value of each state.
+     */
+    default void evaluateStates(AbstractGameState[] states, int[] playerIds, int n, double[] results) {
+        for (int i = 0; i < n; i++)
+            results[i] = evaluateState(states[i], playerIds[i]);
+    }
+
+    /**
+     * Scores the state for every player at once. The default scores each in turn with evaluateState(); learned
+     * heuristics override this to share the work that does not depend on the player.
+     * @param gs - game state to evaluate.
+     * @param results - the value of the state for each player, by player id (the array may be longer).
+     */
+    default void evaluateAllPlayers(AbstractGameState gs, double[] results) {
+        for (int p = 0; p < gs.getNPlayers(); p++)
+            results[p] = evaluateState(gs, p);
+    }
+}
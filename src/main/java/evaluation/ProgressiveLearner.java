@@ -17,6 +17,7 @@ import utilities.Utils;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.LongFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -25,13 +26,17 @@ import static utilities.Utils.getArg;
 public class ProgressiveLearner {
 
     GameType gameToPlay;
-    String dataDir, player, defaultHeuristic, heuristic;
+    String dataDir, player, dataPlayer, defaultHeuristic, heuristic;
     AbstractParameters params;
     List<AbstractPlayer> agents;
     ILearner learner;
-    int nPlayers, matchups, iterations, iter, finalMatchups;
+    int nPlayers, matchups, iterations, iter, finalMatchups, workers;
     AbstractPlayer basePlayer;
     AbstractPlayer[] agentsPerGeneration;
+    // factories for new (seeded) players like each of the agents, for a SelfPlayGenerator
+    List<LongFunction<AbstractPlayer>> agentFactories;
+    LongFunction<AbstractPlayer> baseFactory;
+    List<LongFunction<AbstractPlayer>> factoriesPerGeneration = new ArrayList<>();
     String[] dataFilesByIteration;
     String[] learnedFilesByIteration;
     IStateFeatureVector phi;
@@ -55,6 +60,7 @@ public class ProgressiveLearner {
         finalMatchups = getArg(args, "finalMatchups", 1000);
         iterations = getArg(args, "iterations", 100);
         useOnlyLast = getArg(args, "useOnlyLast", false);
+        workers = getArg(args, "workers", 1);
         agentsPerGeneration = new AbstractPlayer[iterations];
         dataFilesByIteration = new String[iterations];
         String learnerClass = getArg(args, "learner", "");
@@ -68,6 +74,7 @@ public class ProgressiveLearner {
 
         learnedFilesByIteration = new String[iterations];
         player = getArg(args, "player", "");
+        dataPlayer = getArg(args, "dataPlayer", "");
         String gameParams = getArg(args, "gameParams", "");
         dataDir = getArg(args, "dir", "");
 
@@ -99,6 +106,9 @@ public class ProgressiveLearner {
                             "\t               in which case the value specifies in the statePhi argument will be injected.\n" +
                             "\t               A default heuristic can be specified for the initial iteration with '*DEFAULT*'\n" +
                             "\t               in which case the defaultHeuristic argument will be used.\n" +
+                            "\tdataPlayer=    (Optional) The agent (JSON file or key, e.g. tmrulebasedplayer) to play the games in the\n" +
+                            "\t               first iteration, and to be the default agent in the final tournament, in place of 'player'.\n" +
+                            "\t               This allows a value function to be learned from the play of a rule-based agent.\n" +
                             "\tfileName=      The prefix to use on the files generate on each learning iteration.\n" +
                             "\t               The default will use the name of the learner and the system date.\n" +
                             "\tlearner=       The full class name of an ILearner implementation.\n" +
@@ -109,6 +119,8 @@ public class ProgressiveLearner {
                             "\tdir=           The directory containing agent JSON files for learned heuristics and raw data\n" +
                             "\tgameParams=    (Optional) A JSON file from which the game parameters will be initialised.\n" +
                             "\tmatchups=      Defaults to 1. The number of games to play before the learning process is called.\n" +
+                            "\tworkers=       Defaults to 1. With more, the games are played on this many threads, and the data\n" +
+                            "\t               is written in binary (see SelfPlayGenerator) rather than as text.\n" +
                             "\tstatePhi=      The full class name of an IStateFeatureVector implementation that defines the inputs \n" +
                             "\t               to the heuristic used in the player files.\n" +
                             "\tstateFreq=     How frequently to record a value to regress against (ROUND_OVER, TURN_OVER, ACTION_CHOSEN, ACTION_TAKEN)\n" +
@@ -169,24 +181,43 @@ public class ProgressiveLearner {
 
     private void loadAgents() {
         agents = new LinkedList<>();
+        agentFactories = new ArrayList<>();
         File playerLoc = new File(player);
         if (playerLoc.isDirectory()) {
             throw new IllegalArgumentException("Not yet implemented for a directory of players");
         }
         if (iter == 0 || useOnlyLast) {
-            agents.add(PlayerFactory.createPlayer(player, this::injectAgentAttributes));
+            String descriptor = iter == 0 && !dataPlayer.isEmpty() ? dataPlayer : player;
+            agents.add(PlayerFactory.createPlayer(descriptor, this::injectAgentAttributes));
+            agentFactories.add(playerFactory(descriptor));
             if (iter == 0) {
                 basePlayer = agents.get(0);
                 basePlayer.setName("Default Agent");
+                baseFactory = agentFactories.get(0);
             }
         } else {
             agents.add(basePlayer);
             agents.addAll(Arrays.asList(agentsPerGeneration).subList(0, iter));
+            agentFactories.add(baseFactory);
+            agentFactories.addAll(factoriesPerGeneration.subList(0, iter));
         }
     }
 
+    /**
+     * Makes new players from the descriptor (with what has been learned as of the current iteration), each with the
+     * seed given (if it is a player key; one from a JSON file takes any seed from the file)
+     */
+    private LongFunction<AbstractPlayer> playerFactory(String descriptor) {
+        int iteration = iter;
+        return seed -> PlayerFactory.createPlayer(descriptor, raw -> injectAgentAttributes(raw, iteration), seed);
+    }
+
     private String injectAgentAttributes(String raw) {
-        String fileName = learnedFilesByIteration[iter] == null ? "" : learnedFilesByIteration[iter] ;
+        return injectAgentAttributes(raw, iter);
+    }
+
+    private String injectAgentAttributes(String raw, int iteration) {
+        String fileName = learnedFilesByIteration[iteration] == null ? "" : learnedFilesByIteration[iteration];
         return raw.replaceAll(Pattern.quote("*FILE*"), fileName)
                 .replaceAll(Pattern.quote("*PHI*"), phiClass)
                 .replaceAll(Pattern.quote("*HEURISTIC*"), heuristic)
@@ -194,6 +225,15 @@ public class ProgressiveLearner {
     }
 
     private void runGamesWithAgents() {
+        if (workers > 1) {
+            SelfPlayGenerator generator = new SelfPlayGenerator(gameToPlay, params, agentFactories, nPlayers,
+                    () -> Utils.loadClassFromString(phiClass), frequency, currentPlayerOnly);
+            generator.workers = workers;
+            String fileName = String.format("%s_%d.bin", prefix, iter);
+            dataFilesByIteration[iter] = fileName;
+            generator.run(matchups, fileName);
+            return;
+        }
         // Run!
         RoundRobinTournament tournament = new RandomRRTournament(agents, gameToPlay, nPlayers,  true, matchups,
                 System.currentTimeMillis(), params);
@@ -216,6 +256,7 @@ public class ProgressiveLearner {
 
         // if we only have one agent type, then we can create one agent as the result of this round
         agentsPerGeneration[iter] = PlayerFactory.createPlayer(player, this::injectAgentAttributes);
+        factoriesPerGeneration.add(playerFactory(player));
         agentsPerGeneration[iter].setName(String.format("Iteration %2d", iter + 1));
 
     }
@@ -0,0 +1,134 @@
+package evaluation;
+
+import core.AbstractParameters;
+import core.AbstractPlayer;
+import core.CoreConstants;
+import core.Game;
+import core.interfaces.IStateFeatureVector;
+import games.GameType;
+import utilities.BinaryStatsLogger;
+import utilities.StateFeatureListener;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Plays games between a set of agents to generate training data, on several threads at once. Each worker thread has
+ * its own game, feature vector and StateFeatureListener, and writes its rows to its own binary shard (with a
+ * BinaryStatsLogger); nothing is shared between them apart from the count of games still to play.
+ * <p>
+ * The players of each game are new ones, made for that game by the agents' factories with seeds from seed and the
+ * game's number (and the seats they take are chosen the same way). Once all the games are over the shards are merged
+ * into the one training file, in the order of the games and with the number of each game as its GameID, so that the
+ * file depends only on the seed and not on the number of workers or which of them played each game.
+ */
+public class SelfPlayGenerator {
+
+    final GameType gameToPlay;
+    final AbstractParameters params;
+    final List<LongFunction<AbstractPlayer>> agents;
+    final int nPlayers;
+    final Supplier<IStateFeatureVector> phi;
+    final CoreConstants.GameEvents frequency;
+    final boolean currentPlayerOnly;
+    public int workers = Runtime.getRuntime().availableProcessors();
+    public long seed = System.currentTimeMillis();
+
+    /**
+     * @param gameToPlay        The game to play
+     * @param params            The parameters of the game (or null for the defaults); each worker has a copy
+     * @param agents            Factories for the agents to play, each of which makes a new player from a seed (and
+     *                          is called by the worker threads); each seat in each game is taken by one of these at
+     *                          random
+     * @param nPlayers          The number of players in each game
+     * @param phi               Provides a feature vector for each worker, to record the states with
+     * @param frequency         How frequently to record a state (as for StateFeatureListener)
+     * @param currentPlayerOnly Whether to only record states for the current player
+     */
+    public SelfPlayGenerator(GameType gameToPlay, AbstractParameters params, List<LongFunction<AbstractPlayer>> agents,
+                             int nPlayers, Supplier<IStateFeatureVector> phi, CoreConstants.GameEvents frequency,
+                             boolean currentPlayerOnly) {
+        if (agents.isEmpty())
+            throw new IllegalArgumentException("At least one agent is needed");
+        this.gameToPlay = gameToPlay;
+        this.params = params;
+        this.agents = agents;
+        this.nPlayers = nPlayers;
+        this.phi = phi;
+        this.frequency = frequency;
+        this.currentPlayerOnly = currentPlayerOnly;
+    }
+
+    /**
+     * Plays the games, and merges the data from them into fileName (which is replaced if it exists)
+     *
+     * @return The number of rows of data written
+     */
+    public long run(int nGames, String fileName) {
+        int nWorkers = Math.max(1, Math.min(workers, nGames));
+        AtomicInteger nextGame = new AtomicInteger();
+        List<String> shards = new ArrayList<>();
+        for (int w = 0; w < nWorkers; w++)
+            shards.add(String.format("%s.shard%d", fileName, w));
+        // the shard each game's rows are in, and how many there are
+        int[] gameShards = new int[nGames];
+        long[] gameRows = new long[nGames];
+
+        ExecutorService executor = Executors.newFixedThreadPool(nWorkers, r -> {
+            Thread t = new Thread(r, "Self-play worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < nWorkers; w++) {
+                int worker = w;
+                futures.add(executor.submit(() -> playGames(nextGame, shards, worker, gameShards, gameRows)));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AssertionError("Self-play worker failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long rows = BinaryStatsLogger.mergeGames(shards, gameShards, gameRows, "GameID", fileName);
+        for (String shard : shards)
+            if (!new File(shard).delete())
+                System.out.println("Unable to delete " + shard);
+        return rows;
+    }
+
+    /**
+     * The work of one thread: plays games (until all of them have been started by the workers) and writes the data
+     * from them to its shard, noting which games these are and how many rows each has
+     */
+    private void playGames(AtomicInteger nextGame, List<String> shards, int worker, int[] gameShards, long[] gameRows) {
+        Game game = gameToPlay.createGameInstance(nPlayers, seed, params == null ? null : params.copy());
+        if (game == null)
+            throw new AssertionError("Unable to create " + gameToPlay + " for " + nPlayers + " players");
+        BinaryStatsLogger logger = new BinaryStatsLogger(shards.get(worker), false);
+        StateFeatureListener listener = new StateFeatureListener(logger, phi.get(), frequency, currentPlayerOnly);
+        game.addListener(listener);
+
+        for (int g = nextGame.getAndIncrement(); g < gameRows.length; g = nextGame.getAndIncrement()) {
+            // new players for each game (as the same agent may play more than one seat in it), which depend only on
+            // the game's number, and not on which worker plays it or what it played before
+            Random rnd = new Random(seed + g);
+            List<AbstractPlayer> players = new ArrayList<>();
+            for (int p = 0; p < nPlayers; p++)
+                players.add(agents.get(rnd.nextInt(agents.size())).apply(rnd.nextLong()));
+            long rowsBefore = logger.rowsRecorded();
+            game.reset(players, seed + g + 1);
+            game.run();
+            gameShards[g] = worker;
+            gameRows[g] = logger.rowsRecorded() - rowsBefore;
+        }
+        listener.allGamesFinished();
+    }
+}
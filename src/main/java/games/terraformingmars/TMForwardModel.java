@@ -37,6 +37,7 @@ public class TMForwardModel extends AbstractForwardModel {
         TMGameState gs = (TMGameState) firstState;
         TMGameParameters params = (TMGameParameters) firstState.getGameParameters();
         Random rnd = new Random(params.getRandomSeed());
+        gs.stateHashValid = false;
 
         gs.playerResources = new HashMap[gs.getNPlayers()];
         gs.playerProduction = new HashMap[gs.getNPlayers()];
@@ -61,7 +62,7 @@ public class TMForwardModel extends AbstractForwardModel {
                 }
                 gs.playerResourceIncreaseGen[i].put(res, false);
             }
-            gs.playerResourceMap[i] = new HashSet<>();
+            gs.playerResourceMap[i] = new LinkedHashSet<>();
             // By default, players can exchange steel for X MC and titanium for X MC. More may be added
             gs.playerResourceMap[i].add(new TMGameState.ResourceMapping(TMTypes.Resource.Steel, TMTypes.Resource.MegaCredit, params.nSteelMC, new TagOnCardRequirement(new TMTypes.Tag[]{TMTypes.Tag.Building})));
             gs.playerResourceMap[i].add(new TMGameState.ResourceMapping(TMTypes.Resource.Titanium, TMTypes.Resource.MegaCredit, params.nTitaniumMC, new TagOnCardRequirement(new TMTypes.Tag[]{TMTypes.Tag.Space})));
@@ -76,10 +77,10 @@ public class TMForwardModel extends AbstractForwardModel {
 
         // Load info from expansions (includes base)
         gs.board = new GridBoard<>(params.boardSize, params.boardSize);
-        gs.extraTiles = new HashSet<>();
-        gs.bonuses = new HashSet<>();
-        gs.milestones = new HashSet<>();
-        gs.awards = new HashSet<>();
+        gs.extraTiles = new LinkedHashSet<>();
+        gs.bonuses = new LinkedHashSet<>();
+        gs.milestones = new LinkedHashSet<>();
+        gs.awards = new LinkedHashSet<>();
         gs.globalParameters = new HashMap<>();
 
         // Load base
@@ -134,8 +135,8 @@ public class TMForwardModel extends AbstractForwardModel {
 
         if (gs.getNPlayers() == 1) {
             // Disable milestones and awards for solo play
-            gs.milestones = new HashSet<>();
-            gs.awards = new HashSet<>();
+            gs.milestones = new LinkedHashSet<>();
+            gs.awards = new LinkedHashSet<>();
         }
 
         // Shuffle dekcs
@@ -180,8 +181,8 @@ public class TMForwardModel extends AbstractForwardModel {
             for (TMTypes.Tag t: TMTypes.Tag.values()) {
                 gs.playerCardsPlayedTags[i].put(t, new Counter(0, 0, params.maxPoints, t.name() + " cards played player " + i));
             }
-            gs.playerExtraActions[i] = new HashSet<>();
-            gs.playerPersistingEffects[i] = new HashSet<>();
+            gs.playerExtraActions[i] = new LinkedHashSet<>();
+            gs.playerPersistingEffects[i] = new LinkedHashSet<>();
         }
 
         gs.nAwardsFunded = new Counter(0,0, params.nCostAwards.length,"Awards funded");
@@ -236,6 +237,7 @@ public class TMForwardModel extends AbstractForwardModel {
         TMGameState gs = (TMGameState)currentState;
         TMGameParameters params = (TMGameParameters) gs.getGameParameters();
         int player = gs.getCurrentPlayer();
+        gs.stateHashValid = false;
 
         // Execute action
         action.execute(currentState);
@@ -3,7 +3,9 @@ package games.terraformingmars;
 import core.AbstractGameState;
 import core.AbstractParameters;
 import core.components.*;
+import core.interfaces.IExtendedSequence;
 import core.interfaces.IGamePhase;
+import core.interfaces.IStateHash;
 import games.GameType;
 import games.terraformingmars.actions.PlaceTile;
 import games.terraformingmars.actions.TMAction;
@@ -22,13 +24,24 @@ import java.util.*;
 
 import static games.terraformingmars.TMGameState.TMPhase.CorporationSelect;
 
-public class TMGameState extends AbstractGameState {
+public class TMGameState extends AbstractGameState implements IStateHash {
 
     public enum TMPhase implements IGamePhase {
-        CorporationSelect,
-        Research,
-        Actions,
-        Production
+        CorporationSelect(2.0),  // a single choice that shapes the whole game
+        Research(1.0),
+        Actions(1.0),
+        Production(0.5);
+
+        private final double thinkingTimeWeight;
+
+        TMPhase(double thinkingTimeWeight) {
+            this.thinkingTimeWeight = thinkingTimeWeight;
+        }
+
+        @Override
+        public double thinkingTimeWeight() {
+            return thinkingTimeWeight;
+        }
     }
 
     // General state info
@@ -67,6 +80,10 @@ public class TMGameState extends AbstractGameState {
     Counter nMilestonesClaimed;
     Counter nAwardsFunded;
 
+    // Hash of the state for transpositions, calculated when first needed and cleared by the forward model
+    long stateHash;
+    boolean stateHashValid;
+
     /**
      * Constructor. Initialises some generic game state variables.
      *
@@ -124,7 +141,7 @@ public class TMGameState extends AbstractGameState {
                 }
             }
         }
-        copy.extraTiles = new HashSet<>();
+        copy.extraTiles = new LinkedHashSet<>();
         for (TMMapTile mt : extraTiles) {
             copy.extraTiles.add(mt.copy());
         }
@@ -132,15 +149,15 @@ public class TMGameState extends AbstractGameState {
         for (TMTypes.GlobalParameter p : globalParameters.keySet()) {
             copy.globalParameters.put(p, globalParameters.get(p).copy());
         }
-        copy.bonuses = new HashSet<>();
+        copy.bonuses = new LinkedHashSet<>();
         for (Bonus b : bonuses) {
             copy.bonuses.add(b.copy());
         }
-        copy.milestones = new HashSet<>();
+        copy.milestones = new LinkedHashSet<>();
         for (Milestone m : milestones) {
             copy.milestones.add(m.copy());
         }
-        copy.awards = new HashSet<>();
+        copy.awards = new LinkedHashSet<>();
         for (Award a : awards) {
             copy.awards.add(a.copy());
         }
@@ -168,9 +185,9 @@ public class TMGameState extends AbstractGameState {
         copy.playedCards = new Deck[getNPlayers()];
         copy.playerCorporations = new TMCard[getNPlayers()];
         for (int i = 0; i < getNPlayers(); i++) {
-            copy.playerExtraActions[i] = new HashSet<>();
-            copy.playerResourceMap[i] = new HashSet<>();
-            copy.playerPersistingEffects[i] = new HashSet<>();
+            copy.playerExtraActions[i] = new LinkedHashSet<>();
+            copy.playerResourceMap[i] = new LinkedHashSet<>();
+            copy.playerPersistingEffects[i] = new LinkedHashSet<>();
             copy.playerDiscountEffects[i] = new HashMap<>();
             copy.playerResources[i] = new HashMap<>();
             copy.playerResourceIncreaseGen[i] = new HashMap<>();
@@ -338,6 +355,139 @@ public class TMGameState extends AbstractGameState {
         return result;
     }
 
+    /**
+     * A Zobrist-style hash: every feature of the state (each counter, board tile, card location, and so on)
+     * together with its value is mapped to a pseudo-random 64-bit key, and the keys are XORed together. The order
+     * in which collections are iterated therefore does not matter, and neither does the order of the actions that led
+     * here. The order of the draw pile is not included, as this is hidden information (only its size is).
+     * Hashes are only comparable within one run, as some features are hashed by their hashCode().
+     */
+    @Override
+    public long getStateHash() {
+        if (!stateHashValid) {
+            stateHash = computeStateHash();
+            stateHashValid = true;
+        }
+        return stateHash;
+    }
+
+    private long computeStateHash() {
+        long h = key(feature(0, 0, 0), generation)
+                ^ key(feature(0, 0, 1), Objects.hashCode(gamePhase))
+                ^ key(feature(0, 0, 2), turnOrder.hashCode())
+                ^ key(feature(0, 0, 3), getCurrentPlayer())
+                ^ key(feature(0, 0, 4), gameStatus.ordinal())
+                ^ key(feature(0, 0, 5), nMilestonesClaimed.getValue())
+                ^ key(feature(0, 0, 6), nAwardsFunded.getValue())
+                ^ key(feature(0, 0, 7), projectCards.getSize())
+                ^ key(feature(0, 0, 8), corpCards.getSize());
+        int depth = 0;
+        for (IExtendedSequence action : actionsInProgress)
+            h ^= key(feature(1, 0, depth++), action.hashCode());
+        for (int i = 0; i < board.getHeight(); i++) {
+            for (int j = 0; j < board.getWidth(); j++) {
+                TMMapTile tile = board.getElement(j, i);
+                if (tile != null)
+                    h ^= key(feature(2, 0, tile.getComponentID()), tileHash(tile));
+            }
+        }
+        for (TMMapTile tile : extraTiles)
+            h ^= key(feature(2, 0, tile.getComponentID()), tileHash(tile));
+        for (Map.Entry<TMTypes.GlobalParameter, GlobalParameter> e : globalParameters.entrySet())
+            h ^= key(feature(3, 0, Objects.hashCode(e.getKey())), e.getValue().getValueIdx());
+        for (Bonus b : bonuses)
+            h ^= key(feature(4, 0, Objects.hash(b.param, b.threshold, b.effect)), b.claimed);
+        for (Milestone m : milestones)
+            h ^= key(feature(5, 0, m.getComponentName().hashCode()), m.claimed);
+        for (Award a : awards)
+            h ^= key(feature(6, 0, a.getComponentName().hashCode()), a.claimed);
+        h ^= cardsHash(discardCards, feature(7, 0, 0));
+
+        for (int i = 0; i < getNPlayers(); i++) {
+            for (Map.Entry<TMTypes.Resource, Counter> e : playerResources[i].entrySet())
+                h ^= key(feature(10, i, e.getKey().ordinal()), e.getValue().getValue());
+            for (Map.Entry<TMTypes.Resource, Boolean> e : playerResourceIncreaseGen[i].entrySet())
+                h ^= key(feature(11, i, e.getKey().ordinal()), e.getValue() ? 1 : 0);
+            for (Map.Entry<TMTypes.Resource, Counter> e : playerProduction[i].entrySet())
+                h ^= key(feature(12, i, e.getKey().ordinal()), e.getValue().getValue());
+            for (Map.Entry<TMTypes.Tag, Counter> e : playerCardsPlayedTags[i].entrySet())
+                h ^= key(feature(13, i, e.getKey().ordinal()), e.getValue().getValue());
+            for (Map.Entry<TMTypes.CardType, Counter> e : playerCardsPlayedTypes[i].entrySet())
+                h ^= key(feature(14, i, e.getKey().ordinal()), e.getValue().getValue());
+            for (Map.Entry<TMTypes.Tile, Counter> e : playerTilesPlaced[i].entrySet())
+                h ^= key(feature(15, i, e.getKey().ordinal()), e.getValue().getValue());
+            h ^= key(feature(16, i, 0), playerCardPoints[i].getValue());
+            h ^= cardsHash(playerHands[i], feature(17, i, 0));
+            h ^= orderedCardsHash(playerCardChoice[i], feature(18, i, 0));
+            h ^= cardsHash(playedCards[i], feature(19, i, 0));
+            h ^= cardsHash(playerComplicatedPointCards[i], feature(20, i, 0));
+            if (playerCorporations[i] != null)
+                h ^= key(feature(21, i, playerCorporations[i].getComponentID()), cardHash(playerCorporations[i]));
+            // the keys of the entries of each set are summed rather than XORed, so that entries with the same hash
+            // code do not cancel out (and the order the set is iterated in, which differs between copies, still
+            // does not matter)
+            long extraActions = 0, resourceMappings = 0, persistingEffects = 0;
+            for (TMAction a : playerExtraActions[i])
+                extraActions += key(feature(22, i, 0), a.hashCode());
+            for (ResourceMapping rm : playerResourceMap[i])
+                resourceMappings += key(feature(23, i, rm.hashCode()), Double.hashCode(rm.rate));
+            for (Effect e : playerPersistingEffects[i])
+                persistingEffects += key(feature(25, i, 0), e.hashCode());
+            h ^= key(feature(22, i, 1), extraActions)
+                    ^ key(feature(23, i, 1), resourceMappings)
+                    ^ key(feature(25, i, 1), persistingEffects);
+            for (Map.Entry<Requirement, Integer> e : playerDiscountEffects[i].entrySet())
+                h ^= key(feature(24, i, e.getKey().hashCode()), e.getValue());
+        }
+        return h;
+    }
+
+    private static long tileHash(TMMapTile tile) {
+        return Objects.hash(tile.getTilePlaced(), tile.getOwnerId(), tile.getReserved());
+    }
+
+    private static long cardHash(TMCard card) {
+        return Objects.hash(card.nResourcesOnCard, card.actionPlayed, card.firstActionExecuted);
+    }
+
+    private static long cardsHash(Deck<TMCard> deck, long location) {
+        long h = 0;
+        for (TMCard card : deck.getComponents())
+            h ^= key(location + card.getComponentID(), cardHash(card));
+        return h;
+    }
+
+    /**
+     * As cardsHash(), but for a deck in which the order of the cards matters (the research hand is decided card by
+     * card from the top), so each card is keyed by its position as well
+     */
+    private static long orderedCardsHash(Deck<TMCard> deck, long location) {
+        long h = 0;
+        List<TMCard> cards = deck.getComponents();
+        for (int position = 0; position < cards.size(); position++) {
+            TMCard card = cards.get(position);
+            h ^= key(location + position, mix(card.getComponentID()) ^ cardHash(card));
+        }
+        return h;
+    }
+
+    private static long feature(int category, int player, int index) {
+        return ((long) category << 40) | ((long) player << 32) | (index & 0xffffffffL);
+    }
+
+    /**
+     * The pseudo-random key for a feature and its value (from the splitmix64 finaliser)
+     */
+    private static long key(long feature, long value) {
+        return mix(mix(feature) ^ value);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
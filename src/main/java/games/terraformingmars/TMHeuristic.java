@@ -72,9 +72,9 @@ public class TMHeuristic extends TunableParameters implements IStateHeuristic {
         addTunableParameter("unnecessaryEventCardWeight", 0.5);
         addTunableParameter("unnecessaryAutomatedCardWeight", 0.5);
         addTunableParameter("expensiveCardThreshold", 20);
-        addTunableParameter("nActiveCardsDiffForTerraform", 0.5);
-        addTunableParameter("maxProduction", 0.5);
-        addTunableParameter("maxAwardScore", 0.5);
+        addTunableParameter("nActiveCardsDiffForTerraform", 5);
+        addTunableParameter("maxProduction", 100);
+        addTunableParameter("maxAwardScore", 100);
         addTunableParameter("percGPEarly", 0.5);
         addTunableParameter("percGPMid", 0.5);
         addTunableParameter("percGPLate", 0.5);
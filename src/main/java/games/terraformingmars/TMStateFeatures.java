@@ -0,0 +1,193 @@
+package games.terraformingmars;
+
+import core.AbstractGameState;
+import core.components.Counter;
+import core.components.Deck;
+import games.terraformingmars.components.Award;
+import games.terraformingmars.components.GlobalParameter;
+import games.terraformingmars.components.Milestone;
+import games.terraformingmars.components.TMCard;
+import players.heuristics.AbstractStateFeature;
+import utilities.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * State features for Terraforming Mars, to learn a value function from (with StateFeatureListener and one of the
+ * learners) and to evaluate states with (as the feature vector of a LinearStateHeuristic or LogisticStateHeuristic).
+ * <p>
+ * The core SCORE is the player's TR. On top of that are their production and resources, tags played, cards played
+ * of each type, tiles placed, the progress of each global parameter (and the player's share of the increases),
+ * their standing in the milestones and funded awards, and the quality of their hand.
+ * <p>
+ * The game-specific features are read straight from the state's counters into the buffer given, without building
+ * any arrays or collections, so that they are cheap enough to be used in place of rollouts at every leaf of a search
+ * (a few microseconds for all the players of a mid-game state).
+ */
+public class TMStateFeatures extends AbstractStateFeature {
+
+    static final TMTypes.Resource[] resources = Arrays.stream(TMTypes.Resource.values())
+            .filter(TMTypes.Resource::isPlayerBoardRes).toArray(TMTypes.Resource[]::new);
+    static final TMTypes.Tag[] tags = TMTypes.Tag.values();
+    static final TMTypes.CardType[] cardTypes = {TMTypes.CardType.Automated, TMTypes.CardType.Active, TMTypes.CardType.Event};
+    static final TMTypes.Tile[] tiles = {TMTypes.Tile.Ocean, TMTypes.Tile.Greenery, TMTypes.Tile.City};
+    static final TMTypes.GlobalParameter[] globalParameters = TMTypes.GlobalParameter.values();
+
+    final String[] localNames;
+
+    public TMStateFeatures() {
+        List<String> names = new ArrayList<>();
+        for (TMTypes.Resource r : resources)
+            names.add("PROD_" + r.name().toUpperCase());
+        for (TMTypes.Resource r : resources)
+            names.add("RES_" + r.name().toUpperCase());
+        for (TMTypes.Tag t : tags)
+            names.add("TAG_" + t.name().toUpperCase());
+        for (TMTypes.CardType t : cardTypes)
+            names.add("PLAYED_" + t.name().toUpperCase());
+        names.add("CARD_POINTS");
+        for (TMTypes.Tile t : tiles)
+            names.add("TILE_" + t.name().toUpperCase());
+        for (TMTypes.GlobalParameter gp : globalParameters)
+            names.add("GP_" + gp.name().toUpperCase());
+        names.add("GP_SHARE");
+        names.addAll(Arrays.asList("MS_OURS", "MS_THEIRS", "MS_PROGRESS", "MS_CLAIMABLE",
+                "AW_FUNDED", "AW_FIRST", "AW_SECOND", "AW_MARGIN",
+                "HAND_SIZE", "HAND_AFFORDABLE", "HAND_UNCONDITIONAL", "HAND_POINTS", "HAND_COST"));
+        localNames = names.toArray(new String[0]);
+    }
+
+    @Override
+    protected double[] localFeatureVector(AbstractGameState gs, int playerID) {
+        double[] retValue = new double[localNames.length];
+        localFeatureVector(gs, playerID, retValue, 0);
+        return retValue;
+    }
+
+    @Override
+    protected void localFeatureVector(AbstractGameState gameState, int playerID, double[] buffer, int offset) {
+        TMGameState gs = (TMGameState) gameState;
+        int i = offset;
+
+        for (TMTypes.Resource r : resources) {
+            Counter production = gs.playerProduction[playerID].get(r);
+            buffer[i++] = production == null ? 0.0 : production.getValue() / 10.0;
+        }
+        for (TMTypes.Resource r : resources)
+            buffer[i++] = gs.playerResources[playerID].get(r).getValue() / 20.0;
+        for (TMTypes.Tag t : tags)
+            buffer[i++] = gs.playerCardsPlayedTags[playerID].get(t).getValue() / 10.0;
+        for (TMTypes.CardType t : cardTypes)
+            buffer[i++] = gs.playerCardsPlayedTypes[playerID].get(t).getValue() / 20.0;
+        buffer[i++] = gs.playerCardPoints[playerID].getValue() / 20.0;
+        for (TMTypes.Tile t : tiles)
+            buffer[i++] = gs.playerTilesPlaced[playerID].get(t).getValue() / 10.0;
+
+        // Global parameters: how far each has gone (0 if not in this game), and our share of all the increases
+        int increases = 0, ourIncreases = 0;
+        for (TMTypes.GlobalParameter type : globalParameters) {
+            GlobalParameter gp = gs.globalParameters.get(type);
+            if (gp == null) {
+                buffer[i++] = 0.0;
+                continue;
+            }
+            int range = gp.getMaximum() - gp.getMinimum();
+            buffer[i++] = range > 0 ? (gp.getValueIdx() - gp.getMinimum()) / (double) range : 0.0;
+            List<Pair<Integer, Integer>> gpIncreases = gp.getIncreases();
+            increases += gpIncreases.size();
+            for (int j = 0; j < gpIncreases.size(); j++)
+                if (gpIncreases.get(j).b == playerID)
+                    ourIncreases++;
+        }
+        buffer[i++] = increases > 0 ? ourIncreases / (double) increases : 0.0;
+
+        // Milestones: those claimed, and (while any can still be claimed) our best progress towards the others
+        int maxClaims = gs.nMilestonesClaimed.getMaximum();
+        boolean milestonesOpen = !gs.nMilestonesClaimed.isMaximum();
+        int ours = 0, theirs = 0, claimable = 0;
+        double progress = 0.0;
+        for (Milestone m : gs.milestones) {
+            if (m.isClaimed()) {
+                if (m.claimed == playerID) ours++;
+                else theirs++;
+            } else if (milestonesOpen) {
+                int count = m.checkProgress(gs, playerID);
+                if (count >= m.min) claimable++;
+                progress = Math.max(progress, Math.min(1.0, count / (double) m.min));
+            }
+        }
+        buffer[i++] = ours / (double) maxClaims;
+        buffer[i++] = theirs / (double) maxClaims;
+        buffer[i++] = progress;
+        buffer[i++] = claimable / (double) maxClaims;
+
+        // Funded awards: who funded them, and where we stand in each (as awardWinner() would score it)
+        int maxFunded = gs.nAwardsFunded.getMaximum();
+        int nPlayers = gs.getNPlayers();
+        int funded = 0, first = 0, second = 0, nAwards = 0;
+        double margin = 0.0;
+        for (Award a : gs.awards) {
+            if (!a.isClaimed()) continue;
+            nAwards++;
+            if (a.claimed == playerID) funded++;
+            int ourProgress = a.checkProgress(gs, playerID);
+            int bestOther = Integer.MIN_VALUE, ahead = 0;
+            for (int p = 0; p < nPlayers; p++) {
+                if (p == playerID) continue;
+                int otherProgress = a.checkProgress(gs, p);
+                bestOther = Math.max(bestOther, otherProgress);
+                if (otherProgress > ourProgress) ahead++;
+            }
+            if (ahead == 0) first++;
+            else if (ahead == 1 && nPlayers > 2) second++;
+            if (nPlayers > 1)
+                margin += Math.max(-1.0, Math.min(1.0, (ourProgress - bestOther) / 10.0));
+        }
+        buffer[i++] = funded / (double) maxFunded;
+        buffer[i++] = first / (double) maxFunded;
+        buffer[i++] = second / (double) maxFunded;
+        buffer[i++] = nAwards > 0 ? margin / nAwards : 0.0;
+
+        // Hand: its size, how much of it we can afford and what it is worth, and how much of it has no requirements
+        // (checking the requirements themselves is far too slow for a leaf evaluation, as a CounterRequirement
+        // rebuilds the list of all the components in the state to find its counter)
+        Deck<TMCard> hand = gs.playerHands[playerID];
+        int handSize = hand.getSize();
+        int megaCredits = gs.playerResources[playerID].get(TMTypes.Resource.MegaCredit).getValue();
+        int affordable = 0, unconditional = 0;
+        double points = 0.0, cost = 0.0;
+        for (int c = 0; c < handSize; c++) {
+            TMCard card = hand.get(c);
+            if (card.cost <= megaCredits) affordable++;
+            if (card.requirements.isEmpty()) unconditional++;
+            points += card.nPoints;
+            cost += card.cost;
+        }
+        buffer[i++] = handSize / 10.0;
+        buffer[i++] = handSize > 0 ? affordable / (double) handSize : 0.0;
+        buffer[i++] = handSize > 0 ? unconditional / (double) handSize : 0.0;
+        buffer[i++] = points / 10.0;
+        buffer[i++] = handSize > 0 ? cost / handSize / 30.0 : 0.0;
+
+        if (i != offset + localNames.length)
+            throw new AssertionError("Inconsistent Data in TMStateFeatures");
+    }
+
+    @Override
+    protected double maxScore() {
+        return 60.0;
+    }
+
+    @Override
+    protected double maxRounds() {
+        // (the round ends with each phase, so there are several rounds in a generation)
+        return 60.0;
+    }
+
+    @Override
+    public String[] localNames() {
+        return localNames;
+    }
+}
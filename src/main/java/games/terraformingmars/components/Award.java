@@ -6,7 +6,10 @@ import games.terraformingmars.TMTypes;
 import utilities.Utils;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Award extends Token {
     public final String counterID;
@@ -39,47 +42,77 @@ public class Award extends Token {
     public int checkProgress(TMGameState gs, int player) {
         if (player == -1) player = gs.getCurrentPlayer();
         int sum = 0;
-        String[] split = counterID.split("-");
-        for (String s : split) {
-            // Try tile
-            TMTypes.Tile t = Utils.searchEnum(TMTypes.Tile.class, s);
-            if (t != null) {
-                sum += gs.getPlayerTilesPlaced()[player].get(t).getValue();
+        for (Term term : terms.computeIfAbsent(counterID, Award::parseCounterID)) {
+            if (term.tile != null) {
+                sum += gs.getPlayerTilesPlaced()[player].get(term.tile).getValue();
                 // TODO  if (counterID.contains("adjacent")), then tiles adjacent to this type
-            } else {
-                // Try resource
-                TMTypes.Resource r = Utils.searchEnum(TMTypes.Resource.class, s.replace("prod", ""));
-                if (r != null) {
-                    if (r == TMTypes.Resource.Card) {
-                        sum += gs.getPlayerHands()[player].getSize();
-                    } else {
-                        if (s.contains("prod")) {
-                            sum += gs.getPlayerProduction()[player].get(r).getValue();
-                        } else {
-                            sum += gs.getPlayerResources()[player].get(r).getValue();
-                        }
-                    }
+            } else if (term.resource == TMTypes.Resource.Card) {
+                sum += gs.getPlayerHands()[player].getSize();
+            } else if (term.resource != null) {
+                if (term.production) {
+                    sum += gs.getPlayerProduction()[player].get(term.resource).getValue();
                 } else {
-                    // Try tag
-                    TMTypes.Tag tag = Utils.searchEnum(TMTypes.Tag.class, s);
-                    if (tag != null) {
-                        sum += gs.getPlayerCardsPlayedTags()[player].get(tag).getValue();
-                    } else {
-                        // todo:
-                        // - "x-prod" (X productions at minimum value given)
-                        // - card type (automated, active, event)
-                        // - "card-X" (cards played with minimum cost X)
-                        // - "bottom-X" (tiles placed in the bottom X rows of the map)
-                        // - "tag" (number of tag types with at least 1 played)
-                        // - "req" (number of cards played with requirements)
-                        // - "resource" (number of resources on cards)
-                    }
+                    sum += gs.getPlayerResources()[player].get(term.resource).getValue();
                 }
+            } else {
+                sum += gs.getPlayerCardsPlayedTags()[player].get(term.tag).getValue();
             }
         }
         return sum;
     }
 
+    /**
+     * The counters that make up the progress towards an award or milestone, found once for each counterID (rather
+     * than by splitting it and searching the enums every time progress is checked)
+     */
+    private static final Map<String, Term[]> terms = new ConcurrentHashMap<>();
+
+    private static final class Term {
+        final TMTypes.Tile tile;
+        final TMTypes.Resource resource;
+        final boolean production;
+        final TMTypes.Tag tag;
+
+        Term(TMTypes.Tile tile, TMTypes.Resource resource, boolean production, TMTypes.Tag tag) {
+            this.tile = tile;
+            this.resource = resource;
+            this.production = production;
+            this.tag = tag;
+        }
+    }
+
+    private static Term[] parseCounterID(String counterID) {
+        List<Term> retValue = new ArrayList<>();
+        for (String s : counterID.split("-")) {
+            // Try tile
+            TMTypes.Tile t = Utils.searchEnum(TMTypes.Tile.class, s);
+            if (t != null) {
+                retValue.add(new Term(t, null, false, null));
+                continue;
+            }
+            // Try resource
+            TMTypes.Resource r = Utils.searchEnum(TMTypes.Resource.class, s.replace("prod", ""));
+            if (r != null) {
+                retValue.add(new Term(null, r, s.contains("prod"), null));
+                continue;
+            }
+            // Try tag
+            TMTypes.Tag tag = Utils.searchEnum(TMTypes.Tag.class, s);
+            if (tag != null) {
+                retValue.add(new Term(null, null, false, tag));
+            }
+            // todo:
+            // - "x-prod" (X productions at minimum value given)
+            // - card type (automated, active, event)
+            // - "card-X" (cards played with minimum cost X)
+            // - "bottom-X" (tiles placed in the bottom X rows of the map)
+            // - "tag" (number of tag types with at least 1 played)
+            // - "req" (number of cards played with requirements)
+            // - "resource" (number of resources on cards)
+        }
+        return retValue.toArray(new Term[0]);
+    }
+
     public boolean claim(TMGameState gs, int player) {
         if (canClaim(gs, player)) {
             claimed = player;
@@ -10,9 +10,9 @@ import java.util.stream.IntStream;
 public class TicTacToeStateVector implements IStateFeatureVector {
 
     // assume the grid is 3x3 ... if not, write a new StateVector
-    private final String[] names = (String[]) IntStream.range(0, 3).boxed().flatMap(row ->
+    private final String[] names = IntStream.range(0, 3).boxed().flatMap(row ->
             IntStream.range(0, 3).mapToObj(col -> String.format("%d:%d", row, col))
-    ).toArray();
+    ).toArray(String[]::new);
 
     @Override
     public double[] featureVector(AbstractGameState gs, int playerID) {
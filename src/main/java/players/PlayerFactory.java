@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 import java.util.function.Function;
 
 /**
@@ -118,6 +119,16 @@ public class PlayerFactory {
      * @return
      */
     public static AbstractPlayer createPlayer(String data, Function<String, String> preprocessor) {
+        return createPlayer(data, preprocessor, new Random().nextLong());
+    }
+
+    /**
+     * As createPlayer(data, preprocessor), with the seed for a player made from one of the keys (a player made from a
+     * JSON file takes any seed it has from the file)
+     *
+     * @param seed - the seed for the player's random numbers
+     */
+    public static AbstractPlayer createPlayer(String data, Function<String, String> preprocessor, long seed) {
         // The idea here is that we first check to see if data is a filename.
         // If it is then we go the JSON route
         // If not then we now support a short-hand method for some simple defaults
@@ -138,18 +149,18 @@ public class PlayerFactory {
         String input = data.toLowerCase();
         switch (input) {
             case "random":
-                return new RandomPlayer();
+                return new RandomPlayer(new Random(seed));
             case "osla":
-                return new OSLAPlayer();
+                return new OSLAPlayer(new Random(seed));
             case "mcts":
-//                return new MCTSPlayer(new MCTSParams(System.currentTimeMillis()));
-                return new BasicMCTSPlayer();
+//                return new MCTSPlayer(new MCTSParams(seed));
+                return new BasicMCTSPlayer(seed);
             case "rmhc":
-                return new RMHCPlayer(new RMHCParams(System.currentTimeMillis()));
+                return new RMHCPlayer(new RMHCParams(seed));
             case "rhea":
-                return new RHEAPlayer(new RHEAParams(System.currentTimeMillis()));
+                return new RHEAPlayer(new RHEAParams(seed));
             case "tmrulebasedplayer":
-                return new TMRuleBasedPlayer();
+                return new TMRuleBasedPlayer(seed);
             default:
                 throw new AssertionError("Unknown file or player key : " + input);
         }
@@ -11,6 +11,10 @@ public abstract class PlayerParameters extends TunableParameters {
     public PlayerConstants budgetType = PlayerConstants.BUDGET_FM_CALLS;
     public int budget = 4000;
     public int breakMS = 10;
+    // Time management (for BUDGET_TIME only): see TimeManager
+    public boolean timeManager = false;
+    public double timeStretch = 2.0; // the most the time for a decision is stretched while the best move is unstable
+    public int movesToGo = 30; // the decisions that the time left on the game clock is expected to cover
 
     // Heuristic
     public IStateHeuristic gameHeuristic;
@@ -20,6 +24,9 @@ public abstract class PlayerParameters extends TunableParameters {
         addTunableParameter("budgetType", PlayerConstants.BUDGET_FM_CALLS, Arrays.asList(PlayerConstants.values()));
         addTunableParameter("budget", 4000, Arrays.asList(100, 300, 1000, 3000, 10000, 30000, 100000));
         addTunableParameter("breakMS", 10);
+        addTunableParameter("timeManager", false, Arrays.asList(false, true));
+        addTunableParameter("timeStretch", 2.0, Arrays.asList(1.0, 1.5, 2.0, 3.0));
+        addTunableParameter("movesToGo", 30, Arrays.asList(10, 20, 30, 50));
     }
 
     @Override
@@ -27,6 +34,9 @@ public abstract class PlayerParameters extends TunableParameters {
         budget = (int) getParameterValue("budget");
         breakMS = (int) getParameterValue("breakMS");
         budgetType = (PlayerConstants) getParameterValue("budgetType");
+        timeManager = (boolean) getParameterValue("timeManager");
+        timeStretch = (double) getParameterValue("timeStretch");
+        movesToGo = (int) getParameterValue("movesToGo");
     }
 
     protected boolean _equals(Object o) {
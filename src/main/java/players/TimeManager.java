@@ -0,0 +1,92 @@
+package players;
+
+import core.AbstractGameState;
+import core.interfaces.IGamePhase;
+import utilities.ElapsedCpuChessTimer;
+
+import java.util.Objects;
+
+/**
+ * Decides how long a search agent with a time budget (BUDGET_TIME) thinks about each decision, rather than spending
+ * the same params.budget on every one.
+ * <p>
+ * The time allocated to a decision starts from params.budget and is then scaled:
+ * - by the thinkingTimeWeight() of the game phase
+ * - down to SUB_DECISION_SHARE for the later choices of an action already in progress (such as how to pay for it)
+ * - by the size of the action space, from half the budget (2 or 3 actions) up to twice it (REFERENCE_ACTIONS squared)
+ * and is capped at an equal share of the time left on the player's game clock over params.movesToGo decisions.
+ * <p>
+ * While the search runs, stop() ends it early once the leading move cannot be overtaken in the time left, and lets it
+ * run on for up to params.timeStretch times the allocation while the leading move is still changing.
+ */
+public class TimeManager {
+
+    static final double SUB_DECISION_SHARE = 0.25;
+    static final int REFERENCE_ACTIONS = 10;
+
+    private final PlayerParameters params;
+    private long allocated, limit;
+    private Object best;
+    private long bestSince;
+
+    public TimeManager(PlayerParameters params) {
+        this.params = params;
+    }
+
+    /**
+     * Allocates the time for a new decision
+     *
+     * @param state    The state the decision is taken in (with the game clocks)
+     * @param player   The player deciding
+     * @param nActions The number of actions to choose between
+     * @return The time allocated, in milliseconds
+     */
+    public long startDecision(AbstractGameState state, int player, int nActions) {
+        double retValue = params.budget;
+        IGamePhase phase = state.getGamePhase();
+        if (phase != null)
+            retValue *= phase.thinkingTimeWeight();
+        if (state.isActionInProgress())
+            retValue *= SUB_DECISION_SHARE;
+        retValue *= Math.max(0.5, Math.min(2.0, Math.log(nActions) / Math.log(REFERENCE_ACTIONS)));
+
+        ElapsedCpuChessTimer[] clocks = state.getPlayerTimer();
+        if (clocks != null && clocks[player] != null) {
+            double clockShare = Math.max(0, clocks[player].remainingTimeMillis() - params.breakMS) / (double) params.movesToGo;
+            retValue = Math.min(retValue, clockShare);
+        }
+        allocated = (long) retValue;
+        limit = (long) (retValue * Math.max(1.0, params.timeStretch));
+        best = null;
+        bestSince = 0;
+        return allocated;
+    }
+
+    /**
+     * @param elapsed        Milliseconds since the decision started
+     * @param msPerIteration The mean time of an iteration of the search so far (0.0 if not yet known)
+     * @param currentBest    The move that would be played if the search stopped now
+     * @param lead           How many more iterations the leading move would need to lose before it is overtaken (as
+     *                       when the most visited action is played), or -1 if that is not how the move is chosen
+     * @return True if the search should stop
+     */
+    public boolean stop(long elapsed, double msPerIteration, Object currentBest, int lead) {
+        if (!Objects.equals(currentBest, best)) {
+            best = currentBest;
+            bestSince = elapsed;
+        }
+        // the leading move is unstable if it has changed in the second half of the search so far
+        long available = bestSince > elapsed / 2 ? limit : allocated;
+        double remaining = available - elapsed;
+        if (remaining <= 2 * msPerIteration || remaining <= params.breakMS)
+            return true;
+        return lead >= 0 && msPerIteration > 0.0 && lead > remaining / msPerIteration;
+    }
+
+    /**
+     * @return The time allocated to the current decision, in milliseconds
+     */
+    public long allocated() {
+        return allocated;
+    }
+}
@@ -13,18 +13,55 @@ public abstract class AbstractStateFeature implements IStateFeatureVector {
     protected abstract String[] localNames();
     protected abstract double[] localFeatureVector(AbstractGameState gs, int playerID);
 
+    /**
+     * Writes the game-specific features into buffer, from offset onwards. The default copies in the result of
+     * localFeatureVector(gs, playerID); a subclass can override this to write them directly.
+     */
+    protected void localFeatureVector(AbstractGameState gs, int playerID, double[] buffer, int offset) {
+        double[] localFeatures = localFeatureVector(gs, playerID);
+        System.arraycopy(localFeatures, 0, buffer, offset, localFeatures.length);
+    }
+
     @Override
     public double[] featureVector(AbstractGameState state, int playerID) {
-        double[] localFeatures = localFeatureVector(state, playerID);
-        double[] retValue = new double[coreNames.length + localFeatures.length];
+        double[] retValue = new double[coreNames.length + localNames().length];
+        featureVector(state, playerID, retValue, 0);
+        return retValue;
+    }
+
+    @Override
+    public void featureVector(AbstractGameState state, int playerID, double[] buffer, int offset) {
+        double[] scores = new double[state.getNPlayers()];
+        for (int p = 0; p < scores.length; p++)
+            scores[p] = state.getGameScore(p);
+        coreFeatureVector(state, playerID, scores, state.getTurnOrder().getRoundCounter() / maxRounds(), buffer, offset);
+        localFeatureVector(state, playerID, buffer, offset + coreNames.length);
+    }
+
+    /**
+     * The scores and the round are found once, and used for the core features of every player
+     */
+    @Override
+    public void featureVectorsForAllPlayers(AbstractGameState state, double[] buffer) {
+        int width = coreNames.length + localNames().length;
+        double[] scores = new double[state.getNPlayers()];
+        for (int p = 0; p < scores.length; p++)
+            scores[p] = state.getGameScore(p);
+        double round = state.getTurnOrder().getRoundCounter() / maxRounds();
+        for (int p = 0; p < scores.length; p++) {
+            coreFeatureVector(state, p, scores, round, buffer, p * width);
+            localFeatureVector(state, p, buffer, p * width + coreNames.length);
+        }
+    }
 
+    private void coreFeatureVector(AbstractGameState state, int playerID, double[] scores, double round, double[] buffer, int offset) {
         // POINT_ADVANTAGE
         int ordinal = 1;
         double maxOtherScore = -1;
-        double ourSc = state.getGameScore(playerID);
-        for (int p = 0; p < state.getNPlayers(); p++) {
+        double ourSc = scores[playerID];
+        for (int p = 0; p < scores.length; p++) {
             if (p == playerID) continue;
-            double sc = state.getGameScore(p);
+            double sc = scores[p];
             if (sc > maxOtherScore) {
                 maxOtherScore = sc;
                 if (sc > ourSc)
@@ -33,17 +70,14 @@ public abstract class AbstractStateFeature implements IStateFeatureVector {
         }
 
         // POINTS
-        retValue[0] = ourSc / maxScore();
+        buffer[offset] = ourSc / maxScore();
         // POINT_ADVANTAGE
-        retValue[1] = (ourSc - maxOtherScore) / maxScore() * 2.0;
-        retValue[2] = ordinal / (double) state.getNPlayers();
-        retValue[3] = state.getCurrentPlayer() == playerID ? 1 : 0;
-        retValue[4] = state.getPlayerResults()[playerID] == Utils.GameResult.WIN ? 1.0 : 0.0;
-        retValue[5] = state.isNotTerminal() ? 0.0 : state.getOrdinalPosition(playerID) / (double) state.getNPlayers();
-        retValue[6] = state.getTurnOrder().getRoundCounter() / maxRounds();
-
-        System.arraycopy(localFeatures, 0, retValue, coreNames.length, localFeatures.length);
-        return retValue;
+        buffer[offset + 1] = (ourSc - maxOtherScore) / maxScore() * 2.0;
+        buffer[offset + 2] = ordinal / (double) scores.length;
+        buffer[offset + 3] = state.getCurrentPlayer() == playerID ? 1 : 0;
+        buffer[offset + 4] = state.getPlayerResults()[playerID] == Utils.GameResult.WIN ? 1.0 : 0.0;
+        buffer[offset + 5] = state.isNotTerminal() ? 0.0 : state.getOrdinalPosition(playerID) / (double) scores.length;
+        buffer[offset + 6] = round;
     }
 
     @Override
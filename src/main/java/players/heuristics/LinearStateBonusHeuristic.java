@@ -18,19 +18,22 @@ public class LinearStateBonusHeuristic extends LinearStateHeuristic {
         super(featureVector, coefficientsFile, defaultHeuristic);
     }
 
+    /**
+     * The model's value of a state that is over for the player is scaled up for a win and down for a loss
+     */
     @Override
-    public double evaluateState(AbstractGameState state, int playerId) {
+    protected double stateValue(AbstractGameState state, int playerId, double modelValue) {
         if (state.isNotTerminalForPlayer(playerId)) {
-            return super.evaluateState(state, playerId);
+            return modelValue;
         }
 
         switch (state.getPlayerResults()[playerId]) {
             case WIN:
-                return 1.5 * super.evaluateState(state, playerId);
+                return 1.5 * modelValue;
             case LOSE:
-                return 0.75 * super.evaluateState(state, playerId);
+                return 0.75 * modelValue;
             case DRAW:
-                return super.evaluateState(state, playerId);
+                return modelValue;
             default:
                 throw new AssertionError("Not reachable for " + state.getPlayerResults()[playerId]);
         }
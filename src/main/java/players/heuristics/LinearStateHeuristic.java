@@ -1,6 +1,5 @@
 package players.heuristics;
 
-import core.AbstractGameState;
 import core.interfaces.IStateFeatureVector;
 import core.interfaces.IStateHeuristic;
 import utilities.Utils;
@@ -22,14 +21,7 @@ public class LinearStateHeuristic extends AbstractStateHeuristic {
     }
 
     @Override
-    public double evaluateState(AbstractGameState state, int playerId) {
-        if (coefficients == null)
-            return defaultHeuristic.evaluateState(state, playerId);
-        double[] phi = features.featureVector(state, playerId);
-        double retValue = coefficients[0]; // the bias term
-        for (int i = 0; i < phi.length; i++) {
-            retValue += phi[i] * coefficients[i+1];
-        }
-        return Utils.range(retValue, minValue, maxValue);
+    protected double valueOf(double linearCombination) {
+        return Utils.range(linearCombination, minValue, maxValue);
     }
 }
@@ -18,6 +18,10 @@ public class LinearStateOrdHeuristic extends LinearStateHeuristic {
         super(featureVector, coefficientsFile, defaultHeuristic);
     }
 
+    /**
+     * The range of the value depends on the number of players in the state, so this is evaluated a state at a time
+     * (batch evaluation is not used)
+     */
     @Override
     public double evaluateState(AbstractGameState state, int playerId) {
         minValue = -state.getNPlayers();
@@ -19,11 +19,18 @@ public class LinearStateWinHeuristic extends LinearStateHeuristic {
     }
 
     @Override
-    public double evaluateState(AbstractGameState state, int playerId) {
-        minValue = 0.0;
-        maxValue = 1.0;
+    protected double valueOf(double linearCombination) {
+        return Utils.range(linearCombination, 0.0, 1.0);
+    }
+
+    /**
+     * States that are over for the player are scored by their result (after the model, so batches of states are
+     * still evaluated together)
+     */
+    @Override
+    protected double stateValue(AbstractGameState state, int playerId, double modelValue) {
         if (state.isNotTerminalForPlayer(playerId)) {
-            return super.evaluateState(state, playerId);
+            return modelValue;
         }
 
         switch (state.getPlayerResults()[playerId]) {
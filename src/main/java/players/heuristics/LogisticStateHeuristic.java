@@ -1,6 +1,5 @@
 package players.heuristics;
 
-import core.AbstractGameState;
 import core.interfaces.IStateFeatureVector;
 import core.interfaces.IStateHeuristic;
 
@@ -18,14 +17,7 @@ public class LogisticStateHeuristic extends AbstractStateHeuristic {
     }
 
     @Override
-    public double evaluateState(AbstractGameState state, int playerId) {
-        if (coefficients == null)
-            return defaultHeuristic.evaluateState(state, playerId);
-        double[] phi = features.featureVector(state, playerId);
-        double retValue = coefficients[0];  // the bias term
-        for (int i = 0; i < phi.length; i++) {
-            retValue += phi[i] * coefficients[i+1];
-        }
-        return 1.0 / ( 1.0 + Math.exp(-retValue));
+    protected double valueOf(double linearCombination) {
+        return 1.0 / ( 1.0 + Math.exp(-linearCombination));
     }
 }
@@ -18,10 +18,14 @@ public class LogisticStateWinHeuristic extends LogisticStateHeuristic {
         super(featureVector, coefficientsFile, defaultHeuristic);
     }
 
+    /**
+     * States that are over for the player are scored by their result (after the model, so batches of states are
+     * still evaluated together)
+     */
     @Override
-    public double evaluateState(AbstractGameState state, int playerId) {
+    protected double stateValue(AbstractGameState state, int playerId, double modelValue) {
         if (state.isNotTerminalForPlayer(playerId)) {
-            return super.evaluateState(state, playerId);
+            return modelValue;
         }
 
         switch (state.getPlayerResults()[playerId]) {
@@ -0,0 +1,102 @@
+package players.heuristics;
+
+import libsvm.*;
+
+import java.util.Random;
+
+import static utilities.Utils.getArg;
+
+/**
+ * A microbenchmark of SVM inference: svm.svm_predict() with a new svm_node[] for each prediction (as
+ * SVMStateHeuristic used to), against SVMPredictor. Models are trained on random data for each kernel.
+ * <p>
+ * Arguments: width= (features, default 30), rows= (training data, default 2000),
+ * predictions= (timed for each, default 200000)
+ */
+public class SVMInferenceBenchmark {
+
+    public static void main(String[] args) {
+        int width = getArg(args, "width", 30);
+        int nRows = getArg(args, "rows", 2000);
+        int predictions = getArg(args, "predictions", 200000);
+        svm.svm_set_print_string_function(s -> {
+        });
+
+        Random rnd = new Random(42);
+        double[][] rows = new double[nRows][width];
+        for (double[] row : rows)
+            for (int i = 0; i < width; i++)
+                row[i] = rnd.nextGaussian();
+
+        String[] names = {"LINEAR", "POLY", "RBF", "SIGMOID"};
+        int[] kernels = {svm_parameter.LINEAR, svm_parameter.POLY, svm_parameter.RBF, svm_parameter.SIGMOID};
+        for (int k = 0; k < kernels.length; k++) {
+            svm_model model = train(rows, kernels[k]);
+            SVMPredictor predictor = new SVMPredictor(model, width);
+
+            double maxDifference = 0.0;
+            for (double[] row : rows)
+                maxDifference = Math.max(maxDifference, Math.abs(libsvm(model, row) - predictor.predict(row, 0)));
+
+            // (each is run twice, and the second timed, to let the JIT compile it first)
+            double checksum = 0.0;
+            long libsvmTime = 0, predictorTime = 0;
+            for (int repeat = 0; repeat < 2; repeat++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < predictions; i++)
+                    checksum += libsvm(model, rows[i % nRows]);
+                libsvmTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < predictions; i++)
+                    checksum -= predictor.predict(rows[i % nRows], 0);
+                predictorTime = System.nanoTime() - start;
+            }
+            System.out.printf("%-8s %5d SVs: libsvm %8.0f ns, SVMPredictor %8.0f ns, speed-up %5.1fx (max difference %.2g, checksum %.2g)%n",
+                    names[k], model.l, libsvmTime / (double) predictions, predictorTime / (double) predictions,
+                    libsvmTime / (double) predictorTime, maxDifference, checksum);
+        }
+    }
+
+    private static svm_model train(double[][] rows, int kernel) {
+        svm_problem problem = new svm_problem();
+        problem.l = rows.length;
+        problem.y = new double[rows.length];
+        problem.x = new svm_node[rows.length][];
+        for (int r = 0; r < rows.length; r++) {
+            problem.x[r] = nodes(rows[r]);
+            problem.y[r] = rows[r][0] - 0.5 * rows[r][1] * rows[r][2];
+        }
+        svm_parameter params = new svm_parameter();
+        params.svm_type = svm_parameter.EPSILON_SVR;
+        params.kernel_type = kernel;
+        params.gamma = 1.0 / rows[0].length;
+        params.coef0 = 0.0;
+        params.degree = 2;
+        params.C = 1.0;
+        params.p = 0.1;
+        params.eps = 0.01;
+        params.cache_size = 100;
+        params.shrinking = 1;
+        return svm.svm_train(problem, params);
+    }
+
+    private static double libsvm(svm_model model, double[] row) {
+        return svm.svm_predict(model, nodes(row));
+    }
+
+    /**
+     * As SVMStateHeuristic built them for each prediction, with the bias at index 0
+     */
+    private static svm_node[] nodes(double[] row) {
+        svm_node[] data = new svm_node[row.length + 1];
+        data[0] = new svm_node();
+        data[0].index = 0;
+        data[0].value = 1.0;
+        for (int i = 0; i < row.length; i++) {
+            data[i + 1] = new svm_node();
+            data[i + 1].index = i + 1;
+            data[i + 1].value = row[i];
+        }
+        return data;
+    }
+}
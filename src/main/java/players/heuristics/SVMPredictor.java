@@ -0,0 +1,190 @@
+package players.heuristics;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * Predictions from a libsvm model for dense feature vectors, without building an svm_node[] for each one.
+ * <p>
+ * For a regression (or one-class) model the support vectors are held as one dense matrix. With a linear kernel they
+ * are collapsed into a single weight vector; with an RBF kernel the squared norm of each is cached, so that
+ * |x - sv|^2 needs only the dot product of x with the support vector. Other models (classifiers, a precomputed kernel,
+ * or support vectors not in ascending index order) are passed to libsvm, with one svm_node[] reused by each thread.
+ * <p>
+ * The feature vector is given without the bias, which has index 0 (as SVMStateHeuristic has always set it), with
+ * feature i at index i + 1. A predictor does not change once built, so can be shared by threads searching in parallel.
+ */
+final class SVMPredictor {
+
+    private final svm_model model;
+    // the number of features (excluding the bias)
+    final int width;
+    private final boolean fast;
+    private final int kernel;
+    private final double gamma, coef0;
+    private final int degree;
+    private final double rho;
+    private final boolean oneClass;
+    // the support vectors, one row of dim values after another (where index dim - 1 is the highest in any of them)
+    private final int dim;
+    private final double[] supportVectors;
+    private final double[] coefficients;
+    private final double[] squaredNorms;
+    // for a linear kernel: the sum of the support vectors, each weighted by its coefficient
+    private final double[] linearWeights;
+    private final ThreadLocal<svm_node[]> nodes;
+
+    /**
+     * @param width The number of features (excluding the bias)
+     */
+    SVMPredictor(svm_model model, int width) {
+        this.model = model;
+        this.width = width;
+        svm_parameter param = model.param;
+        kernel = param.kernel_type;
+        gamma = param.gamma;
+        coef0 = param.coef0;
+        degree = param.degree;
+        int type = param.svm_type;
+        oneClass = type == svm_parameter.ONE_CLASS;
+        boolean supported = (oneClass || type == svm_parameter.EPSILON_SVR || type == svm_parameter.NU_SVR)
+                && kernel != svm_parameter.PRECOMPUTED;
+        int maxIndex = width;
+        for (int i = 0; supported && i < model.l; i++) {
+            int previous = -1;
+            for (svm_node node : model.SV[i]) {
+                if (node.index <= previous) {
+                    supported = false;
+                    break;
+                }
+                previous = node.index;
+            }
+            maxIndex = Math.max(maxIndex, previous);
+        }
+        fast = supported;
+        if (fast) {
+            dim = maxIndex + 1;
+            rho = model.rho[0];
+            coefficients = model.sv_coef[0].clone();
+            supportVectors = new double[model.l * dim];
+            squaredNorms = new double[model.l];
+            for (int i = 0; i < model.l; i++) {
+                for (svm_node node : model.SV[i]) {
+                    supportVectors[i * dim + node.index] = node.value;
+                    squaredNorms[i] += node.value * node.value;
+                }
+            }
+            if (kernel == svm_parameter.LINEAR) {
+                linearWeights = new double[dim];
+                for (int i = 0; i < model.l; i++)
+                    for (int j = 0; j < dim; j++)
+                        linearWeights[j] += coefficients[i] * supportVectors[i * dim + j];
+            } else {
+                linearWeights = null;
+            }
+            nodes = null;
+        } else {
+            dim = 0;
+            rho = 0.0;
+            coefficients = null;
+            supportVectors = null;
+            squaredNorms = null;
+            linearWeights = null;
+            nodes = ThreadLocal.withInitial(() -> {
+                svm_node[] retValue = new svm_node[width + 1];
+                for (int i = 0; i <= width; i++) {
+                    retValue[i] = new svm_node();
+                    retValue[i].index = i;
+                }
+                retValue[0].value = 1.0; // bias
+                return retValue;
+            });
+        }
+    }
+
+    /**
+     * @return true if predictions are made here, rather than by libsvm
+     */
+    boolean isFast() {
+        return fast;
+    }
+
+    /**
+     * @param phi    The features (without the bias)
+     * @param offset The position of the first feature in phi
+     * @return the prediction of the model, as svm.svm_predict() would make it
+     */
+    double predict(double[] phi, int offset) {
+        if (!fast) {
+            svm_node[] data = nodes.get();
+            for (int i = 0; i < width; i++)
+                data[i + 1].value = phi[offset + i];
+            return svm.svm_predict(model, data);
+        }
+        double sum;
+        if (kernel == svm_parameter.LINEAR) {
+            sum = dot(linearWeights, 0, phi, offset);
+        } else {
+            double squaredNorm = 1.0; // the bias
+            if (kernel == svm_parameter.RBF)
+                for (int j = 0; j < width; j++)
+                    squaredNorm += phi[offset + j] * phi[offset + j];
+            sum = 0.0;
+            for (int i = 0; i < coefficients.length; i++) {
+                double dot = dot(supportVectors, i * dim, phi, offset);
+                double k;
+                switch (kernel) {
+                    case svm_parameter.RBF:
+                        k = Math.exp(-gamma * Math.max(0.0, squaredNorm + squaredNorms[i] - 2.0 * dot));
+                        break;
+                    case svm_parameter.POLY:
+                        k = powi(gamma * dot + coef0, degree);
+                        break;
+                    case svm_parameter.SIGMOID:
+                        k = Math.tanh(gamma * dot + coef0);
+                        break;
+                    default:
+                        throw new AssertionError("Unexpected kernel " + kernel);
+                }
+                sum += coefficients[i] * k;
+            }
+        }
+        sum -= rho;
+        if (oneClass)
+            return sum > 0 ? 1 : -1;
+        return sum;
+    }
+
+    /**
+     * base^times by repeated squaring (as libsvm has it), which is much quicker than Math.pow() for a small integer
+     */
+    private static double powi(double base, int times) {
+        double tmp = base, retValue = 1.0;
+        for (int t = times; t > 0; t /= 2) {
+            if (t % 2 == 1)
+                retValue *= tmp;
+            tmp = tmp * tmp;
+        }
+        return retValue;
+    }
+
+    /**
+     * The dot product of the row of dim values in v (from start), with the bias and then the features in phi
+     */
+    private double dot(double[] v, int start, double[] phi, int offset) {
+        double s0 = v[start], s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int base = start + 1;
+        int j = 0;
+        for (; j + 3 < width; j += 4) {
+            s0 += v[base + j] * phi[offset + j];
+            s1 += v[base + j + 1] * phi[offset + j + 1];
+            s2 += v[base + j + 2] * phi[offset + j + 2];
+            s3 += v[base + j + 3] * phi[offset + j + 3];
+        }
+        for (; j < width; j++)
+            s0 += v[base + j] * phi[offset + j];
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -5,7 +5,6 @@ import core.interfaces.IStateFeatureVector;
 import core.interfaces.IStateHeuristic;
 import libsvm.svm;
 import libsvm.svm_model;
-import libsvm.svm_node;
 
 import java.io.IOException;
 
@@ -13,7 +12,10 @@ public class SVMStateHeuristic implements IStateHeuristic {
 
     IStateFeatureVector features;
     svm_model model;
+    SVMPredictor predictor;
     IStateHeuristic defaultHeuristic;
+    // the feature vectors being evaluated, reused between calls (with one per thread, as heuristics may be shared)
+    private final ThreadLocal<double[]> featureBuffer = ThreadLocal.withInitial(() -> new double[0]);
 
     public SVMStateHeuristic(String featureVectorClassName, String svmModelLocation, String defaultHeuristicClassName) {
         try {
@@ -47,6 +49,8 @@ public class SVMStateHeuristic implements IStateHeuristic {
         this.features = featureVector;
         this.defaultHeuristic = defaultHeuristic;
         this.model = model;
+        if (model != null)
+            predictor = new SVMPredictor(model, featureVector.names().length);
     }
 
     private void loadModel(String svmModelLocation) {
@@ -54,6 +58,7 @@ public class SVMStateHeuristic implements IStateHeuristic {
             return;
         try {
             model = svm.svm_load_model(svmModelLocation);
+            predictor = new SVMPredictor(model, features.names().length);
         } catch (IOException e) {
             e.printStackTrace();
             throw new AssertionError("Problem loading SVM model from file : " + svmModelLocation);
@@ -64,17 +69,46 @@ public class SVMStateHeuristic implements IStateHeuristic {
     public double evaluateState(AbstractGameState state, int playerId) {
         if (model == null)
             return defaultHeuristic.evaluateState(state, playerId);
-        double[] phi = features.featureVector(state, playerId);
-        svm_node[] data = new svm_node[phi.length + 1];
-        data[0] = new svm_node(); // bias
-        data[0].index = 0;
-        data[0].value = 1.0;
-        for (int i = 0; i < phi.length; i++) {
-            data[i + 1] = new svm_node();
-            data[i + 1].index = i + 1;
-            data[i + 1].value = phi[i];
+        double[] phi = featureBuffer(predictor.width);
+        features.featureVector(state, playerId, phi, 0);
+        return predictor.predict(phi, 0);
+    }
+
+    @Override
+    public void evaluateStates(AbstractGameState[] states, int[] playerIds, int n, double[] results) {
+        if (model == null) {
+            for (int i = 0; i < n; i++)
+                results[i] = defaultHeuristic.evaluateState(states[i], playerIds[i]);
+            return;
+        }
+        int width = predictor.width;
+        double[] buffer = featureBuffer(n * width);
+        features.featureVectors(states, playerIds, n, buffer);
+        for (int row = 0; row < n; row++)
+            results[row] = predictor.predict(buffer, row * width);
+    }
+
+    @Override
+    public void evaluateAllPlayers(AbstractGameState state, double[] results) {
+        int nPlayers = state.getNPlayers();
+        if (model == null) {
+            for (int p = 0; p < nPlayers; p++)
+                results[p] = defaultHeuristic.evaluateState(state, p);
+            return;
+        }
+        int width = predictor.width;
+        double[] buffer = featureBuffer(nPlayers * width);
+        features.featureVectorsForAllPlayers(state, buffer);
+        for (int p = 0; p < nPlayers; p++)
+            results[p] = predictor.predict(buffer, p * width);
+    }
+
+    private double[] featureBuffer(int size) {
+        double[] retValue = featureBuffer.get();
+        if (retValue.length < size) {
+            retValue = new double[size];
+            featureBuffer.set(retValue);
         }
-        double result = svm.svm_predict(model, data);
-        return result;
+        return retValue;
     }
 }
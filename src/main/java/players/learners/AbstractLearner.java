@@ -58,7 +58,16 @@ public abstract class AbstractLearner implements ILearner {
 
     protected void loadData(String... files) {
         List<double[]> data = new ArrayList<>();
+        // files written by a BinaryStatsLogger (such as the shards from a SelfPlayGenerator), with the same columns
+        String[] binaryFiles = Arrays.stream(files).filter(file -> file.endsWith(".bin")).toArray(String[]::new);
+        if (binaryFiles.length > 0) {
+            header = ShardInstances.readRows(data, binaryFiles);
+            descriptions = new String[header.length - 10];
+            System.arraycopy(header, 5, descriptions, 0, descriptions.length);
+        }
         for (String file : files) {
+            if (file.endsWith(".bin"))
+                continue;
             try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
                 header = reader.readLine().split("\\t");
                 descriptions = new String[header.length - 10];
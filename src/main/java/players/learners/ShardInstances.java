@@ -0,0 +1,64 @@
+package players.learners;
+
+import utilities.BinaryStatsLogger;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the files written by a BinaryStatsLogger (such as the shards from a SelfPlayGenerator) straight into Weka
+ * Instances, with a numeric attribute for each column, without writing or parsing any text on the way.
+ */
+public class ShardInstances {
+
+    /**
+     * @param files The files to read, which must all have the same columns
+     * @return The rows of all the files, with no class attribute set
+     */
+    public static Instances read(String... files) {
+        List<double[]> rows = new ArrayList<>();
+        String[] header = readRows(rows, files);
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (String column : header)
+            attributes.add(new Attribute(column));
+        Instances retValue = new Instances("data", attributes, rows.size());
+        for (double[] row : rows)
+            retValue.add(new DenseInstance(1.0, row));
+        return retValue;
+    }
+
+    /**
+     * Reads the rows of the files as they are, for the learners that work on the arrays directly
+     *
+     * @param rows  The list to add the rows of all the files to
+     * @param files The files to read, which must all have the same columns
+     * @return The names of the columns
+     */
+    static String[] readRows(List<double[]> rows, String... files) {
+        if (files.length == 0)
+            throw new IllegalArgumentException("No files to read");
+        String[] header = BinaryStatsLogger.readHeader(files[0]);
+        for (String file : files) {
+            if (!Arrays.equals(header, BinaryStatsLogger.readHeader(file)))
+                throw new AssertionError("The columns of " + file + " do not match those of " + files[0]);
+            rows.addAll(BinaryStatsLogger.readRows(file));
+        }
+        return header;
+    }
+
+    /**
+     * @param classColumn The column to use as the class attribute
+     */
+    public static Instances readWithClass(String classColumn, String... files) {
+        Instances retValue = read(files);
+        Attribute classAttribute = retValue.attribute(classColumn);
+        if (classAttribute == null)
+            throw new AssertionError("No column " + classColumn + " in " + files[0]);
+        retValue.setClass(classAttribute);
+        return retValue;
+    }
+}
@@ -0,0 +1,78 @@
+package players.mcts;
+
+import core.AbstractGameState;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Determinisations for an Information Set search, made ahead of time on background threads.
+ * <p>
+ * Redeterminising the root state (state.copy(player)) at the start of every iteration can cost as much as the rest
+ * of the iteration put together (in Terraforming Mars it reshuffles the decks and deals new hidden hands). The
+ * producers keep a bounded queue of fresh determinisations filled from spare cores, and the search threads take
+ * them from there. If the queue is empty a search thread makes its own copy rather than wait, so the search is
+ * never slower than without the pool.
+ * <p>
+ * The source state must not change while the pool is open (the root state of a search never does).
+ */
+class DeterminisationPool {
+
+    private final AbstractGameState source;
+    private final int player;
+    private final BlockingQueue<AbstractGameState> ready;
+    private final List<Future<?>> producers = new ArrayList<>();
+    private volatile boolean closed;
+    private int pooled;
+    private int copied;
+
+    DeterminisationPool(AbstractGameState source, int player, int capacity, ExecutorService executor, int nProducers) {
+        if (capacity < 1)
+            throw new AssertionError("The determinisation pool needs space for at least one state");
+        this.source = source;
+        this.player = player;
+        ready = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < nProducers; i++)
+            producers.add(executor.submit(this::produce));
+    }
+
+    private void produce() {
+        try {
+            while (!closed)
+                ready.put(source.copy(player));
+        } catch (InterruptedException e) {
+            // closed while waiting for space
+        }
+    }
+
+    /**
+     * @return A new determinisation of the source state, for the calling thread to use as it wishes
+     */
+    AbstractGameState take() {
+        AbstractGameState retValue = ready.poll();
+        synchronized (this) {
+            if (retValue == null)
+                copied++;
+            else
+                pooled++;
+        }
+        return retValue == null ? source.copy(player) : retValue;
+    }
+
+    /**
+     * Stops the producers, and discards any determinisations not taken
+     */
+    void close() {
+        closed = true;
+        for (Future<?> producer : producers)
+            producer.cancel(true);
+        ready.clear();
+    }
+
+    /**
+     * @return The proportion of the determinisations taken that came from the queue, rather than being made on demand
+     */
+    synchronized double pooledProportion() {
+        return pooled + copied == 0 ? 0.0 : pooled / (double) (pooled + copied);
+    }
+}
@@ -1,26 +1,39 @@
 package players.mcts;
 
-import core.AbstractForwardModel;
+import core.AbstractGameState;
 import core.actions.AbstractAction;
 import core.interfaces.IActionFeatureVector;
 import core.interfaces.IStateFeatureVector;
+import utilities.BinaryStatsLogger;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static java.util.stream.Collectors.toList;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the values found by a search, with the features of the states (V) and actions (Q) they were found for,
+ * as training data for Expert Iteration.
+ * <p>
+ * The player only copies the statistics it needs out of the tree; the feature vectors are computed and the rows
+ * written by a background thread, so that gathering the data does not add to the time taken by each decision.
+ * Rows are written with a BinaryStatsLogger, to fileStem_V.bin and fileStem_Q.bin (and so can be read back with
+ * BinaryStatsLogger.readRows() or ShardInstances, like the data from a SelfPlayGenerator).
+ */
 public class ExpertIterationDataGatherer {
 
     public int visitThreshold = 50;
     File logFileV, logFileQ;
-    //   List<IGameAttribute> features;
     IStateFeatureVector stateFeatures;
     IActionFeatureVector actionFeatures;
-    FileWriter writerV, writerQ;
+    String[] columnsV, columnsQ;
+    BinaryStatsLogger writerV, writerQ;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Expert Iteration writer");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Two sets of features are provided.
@@ -32,116 +45,134 @@ public class ExpertIterationDataGatherer {
     public ExpertIterationDataGatherer(String fileStem, IStateFeatureVector stateFeatures, IActionFeatureVector actionFeatures) {
         if (stateFeatures == null)
             throw new IllegalArgumentException("stateFeatures must be specified - actionFeatures are optional");
-        this.logFileV = new File(fileStem + "_V.txt");
+        this.logFileV = new File(fileStem + "_V.bin");
         if (actionFeatures != null)
-            this.logFileQ = new File(fileStem + "_Q.txt");
+            this.logFileQ = new File(fileStem + "_Q.bin");
         this.stateFeatures = stateFeatures;
         this.actionFeatures = actionFeatures;
-        try {
-            // if file does not already exist, add a header row
-            if (!logFileV.exists()) {
-                writerV = new FileWriter(logFileV, false);
-                StringBuilder header = new StringBuilder();
-                header.append("Value\tDepth\tVisits");
-                for (String feature : stateFeatures.names())
-                    header.append("\t").append(feature);
-                header.append(System.lineSeparator());
-                writerV.write(header.toString());
-            } else {
-                writerV = new FileWriter(logFileV, true);
-            }
 
-            if (actionFeatures != null)
-                if (!logFileQ.exists()) {
-                    writerQ = new FileWriter(logFileQ, false);
-                    StringBuilder header = new StringBuilder();
-                    header.append("Action\tActionHash\tValue\tAdvantage\tVisits\tN");
-                    for (String feature : stateFeatures.names())
-                        header.append("\t").append(feature);
-                    for (String feature : actionFeatures.names())
-                        header.append("\t").append(feature);
-                    header.append(System.lineSeparator());
-                    writerQ.write(header.toString());
-                } else {
-                    writerQ = new FileWriter(logFileQ, true);
-                }
-
-        } catch (IOException e) {
-            e.printStackTrace();
+        List<String> columns = new ArrayList<>(Arrays.asList("Value", "Depth", "Visits"));
+        columns.addAll(Arrays.asList(stateFeatures.names()));
+        columnsV = columns.toArray(new String[0]);
+        // rows are added to the files if they already exist
+        writerV = new BinaryStatsLogger(logFileV.getPath(), true);
+
+        if (actionFeatures != null) {
+            columns = new ArrayList<>(Arrays.asList("ActionHash", "Value", "Advantage", "Visits", "N"));
+            columns.addAll(Arrays.asList(stateFeatures.names()));
+            columns.addAll(Arrays.asList(actionFeatures.names()));
+            columnsQ = columns.toArray(new String[0]);
+            writerQ = new BinaryStatsLogger(logFileQ.getPath(), true);
         }
     }
 
-    public void recordData(SingleTreeNode root, AbstractForwardModel forwardModel) {
-
-        // Now do our stuff, and trawl through the root to record data
+    /**
+     * Takes the data from the tree below root (for every node with at least visitThreshold visits), and queues it
+     * to be written. Only the game states are kept from the tree, and these are not changed once the search is over.
+     */
+    public void recordData(SingleTreeNode root) {
+        List<NodeData> nodes = new ArrayList<>();
         Queue<SingleTreeNode> nodeQueue = new ArrayDeque<>();
         nodeQueue.add(root);
-
-        try {
-            while (!nodeQueue.isEmpty()) {
-                SingleTreeNode node = nodeQueue.poll();
-                // process this node
-                // we record its depth, value, visits, and the full feature list
-                StringBuilder output = new StringBuilder();
-                StringBuilder coreData = new StringBuilder();
-                int player = node.getActor();
-                double stateValue = node.getTotValue()[player] / node.getVisits();
-                List<AbstractAction> actionsFromState = forwardModel.computeAvailableActions(node.state);
-                output.append(String.format("%.3g\t%d\t%d", stateValue, node.depth, node.getVisits()));
-                double[] stateVector = stateFeatures.featureVector(node.state, player);
-                String stateVectorAsString = Arrays.stream(stateVector).mapToObj(d -> String.format("%.4g", d)).collect(Collectors.joining("\t"));
-                coreData.append("\t").append(stateVectorAsString);
-
-                output.append(coreData).append(System.lineSeparator());
-                writerV.write(output.toString());
-
-                // then write action data : the core feature data is the same, but we write one row per action, and the value we reach for that action
-                // plus any additional features that are action-specific
-                if (actionFeatures != null)
-                    for (AbstractAction action : actionsFromState) {
-                        output = new StringBuilder();
-                        if (node.children.get(action) == null || node.children.get(action)[player] == null)
-                            continue;
-                        SingleTreeNode childNode = node.children.get(action)[player];
-                        double actionValue = childNode.getTotValue()[player] / childNode.getVisits();
-                        output.append(String.format("%s\t%d\t%.3g\t%.3g\t%d\t%d", action.toString(), action.hashCode(),
-                                actionValue, actionValue - stateValue, childNode.getVisits(), node.getVisits()));
-                        output.append("\t").append(coreData); // the state features
-                        double[] actionVector = actionFeatures.featureVector(action, node.state, player);
-                        String actionVectorAsString = Arrays.stream(actionVector).mapToObj(d -> String.format("%.4g", d)).collect(Collectors.joining("\t"));
-                        coreData.append("\t").append(actionVectorAsString).append(System.lineSeparator());
-                        writerQ.write(output.toString());
-                    }
-
-
+        while (!nodeQueue.isEmpty()) {
+            SingleTreeNode node = nodeQueue.poll();
+            int player = node.getActor();
+            NodeData data = new NodeData(node.state, player, node.getTotValue()[player] / node.getVisits(),
+                    node.depth, node.getVisits());
+            for (Map.Entry<AbstractAction, SingleTreeNode[]> entry : node.children.entrySet()) {
+                if (entry.getValue() == null)
+                    continue;
+                SingleTreeNode childNode = entry.getValue()[player];
+                if (childNode != null && actionFeatures != null)
+                    data.actions.add(new ActionData(entry.getKey(), childNode.getTotValue()[player] / childNode.getVisits(),
+                            childNode.getVisits()));
                 // add children of current node to queue
-                for (SingleTreeNode child : node.children.values().stream()
-                        .filter(Objects::nonNull)
-                        .flatMap(Arrays::stream)
-                        .filter(Objects::nonNull)
-                        .filter(n -> n.getVisits() >= visitThreshold)
-                        .collect(toList())) {
-                    if (child != null)
+                for (SingleTreeNode child : entry.getValue())
+                    if (child != null && child.getVisits() >= visitThreshold)
                         nodeQueue.add(child);
-                }
             }
-            writerV.flush();
-            writerQ.flush();
-        } catch (IOException e) {
-            System.out.println("Error writing file in MCTSRecordingPlayer");
-            e.printStackTrace();
+            nodes.add(data);
         }
+        writer.execute(() -> write(nodes));
     }
 
+    private void write(List<NodeData> nodes) {
+        for (NodeData node : nodes) {
+            // we record its depth, value, visits, and the full feature list
+            double[] stateVector = stateFeatures.featureVector(node.state, node.player);
+            writerV.record(row(columnsV, stateVector, null, node.value, node.depth, node.visits));
+
+            // then write action data : the core feature data is the same, but we write one row per action, and the value we reach for that action
+            // plus any additional features that are action-specific
+            for (ActionData action : node.actions) {
+                double[] actionVector = actionFeatures.featureVector(action.action, node.state, node.player);
+                writerQ.record(row(columnsQ, stateVector, actionVector, action.action.hashCode(), action.value,
+                        action.value - node.value, action.visits, node.visits));
+            }
+        }
+        writerV.processDataAndNotFinish();
+        if (writerQ != null)
+            writerQ.processDataAndNotFinish();
+    }
+
+    /**
+     * @return The record for a row, with the values given first, then the state features, then any action features
+     */
+    private static Map<String, Double> row(String[] columns, double[] stateVector, double[] actionVector, double... values) {
+        Map<String, Double> retValue = new LinkedHashMap<>();
+        int i = 0;
+        for (double value : values)
+            retValue.put(columns[i++], value);
+        for (double d : stateVector)
+            retValue.put(columns[i++], d);
+        if (actionVector != null)
+            for (double d : actionVector)
+                retValue.put(columns[i++], d);
+        return retValue;
+    }
+
+    /**
+     * Waits for all the data recorded to be written, and then closes the files
+     */
     public void close() {
         try {
+            writer.shutdown();
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
             if (writerQ != null)
-                writerQ.close();
+                writerQ.processDataAndFinish();
             if (writerV != null)
-                writerV.close();
+                writerV.processDataAndFinish();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    private static class NodeData {
+        final AbstractGameState state;
+        final int player;
+        final double value;
+        final int depth;
+        final int visits;
+        final List<ActionData> actions = new ArrayList<>();
+
+        NodeData(AbstractGameState state, int player, double value, int depth, int visits) {
+            this.state = state;
+            this.player = player;
+            this.value = value;
+            this.depth = depth;
+            this.visits = visits;
+        }
+    }
+
+    private static class ActionData {
+        final AbstractAction action;
+        final double value;
+        final int visits;
+
+        ActionData(AbstractAction action, double value, int visits) {
+            this.action = action;
+            this.value = value;
+            this.visits = visits;
+        }
+    }
 }
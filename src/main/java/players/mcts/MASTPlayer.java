@@ -3,24 +3,22 @@ package players.mcts;
 import core.AbstractGameState;
 import core.AbstractPlayer;
 import core.actions.AbstractAction;
-import utilities.Pair;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 
 public class MASTPlayer extends AbstractPlayer {
 
     Random rnd;
-    List<Map<AbstractAction, Pair<Integer, Double>>> MASTStatistics;
+    MASTTable MASTStatistics;
     double temperature = 0.1;
 
     public MASTPlayer(Random rnd) {
         this.rnd = rnd;
     }
 
-    public void setStats(List<Map<AbstractAction, Pair<Integer, Double>>> MASTStatistics) {
+    public void setStats(MASTTable MASTStatistics) {
         this.MASTStatistics = MASTStatistics;
     }
 
@@ -31,9 +29,10 @@ public class MASTPlayer extends AbstractPlayer {
             AbstractAction a = possibleActions.get(i);
             double actionValue = 10.0; // arbitrary and non-zero
             int p = gameState.getCurrentPlayer();
-            if (MASTStatistics.get(p).containsKey(a)) {
-                Pair<Integer, Double> stats = MASTStatistics.get(p).get(a);
-                actionValue = stats.a > 0 ? stats.b / stats.a : 0.0;
+            int id = MASTStatistics.idOf(a);
+            if (MASTStatistics.seen(p, id)) {
+                int visits = MASTStatistics.visits(p, id);
+                actionValue = visits > 0 ? MASTStatistics.totalValue(p, id) / visits : 0.0;
             }
             pdf[i] = actionValue;
         }
@@ -0,0 +1,117 @@
+package players.mcts;
+
+import core.actions.AbstractAction;
+
+import java.util.*;
+
+/**
+ * Move-Average Sampling Technique (MAST) statistics: the number of times each action has been taken by each player,
+ * and the total value that followed.
+ * <p>
+ * Each distinct action is copied once, the first time it is seen, and given an id; the statistics are then held in
+ * primitive arrays indexed by id and player. So an update is one hash lookup and two array increments, rather than a
+ * copy of the action and a boxed Pair each time, and decay is done in place. This is used by MCTS (and MASTPlayer
+ * rollouts) and by RHEA.
+ * <p>
+ * This is not thread-safe.
+ */
+public class MASTTable {
+
+    private final int nPlayers;
+    private final Map<AbstractAction, Integer> ids;
+    private int nActions;
+    // all indexed by [id * nPlayers + player]
+    private int[] visits;
+    private double[] values;
+    private boolean[] seen;
+
+    public MASTTable(int nPlayers) {
+        this.nPlayers = nPlayers;
+        ids = new HashMap<>();
+        visits = new int[16 * nPlayers];
+        values = new double[16 * nPlayers];
+        seen = new boolean[16 * nPlayers];
+    }
+
+    private MASTTable(MASTTable other) {
+        nPlayers = other.nPlayers;
+        ids = new HashMap<>(other.ids);
+        nActions = other.nActions;
+        visits = other.visits.clone();
+        values = other.values.clone();
+        seen = other.seen.clone();
+    }
+
+    /**
+     * @return A copy with its own statistics (the actions themselves are shared, and are never changed)
+     */
+    public MASTTable copy() {
+        return new MASTTable(this);
+    }
+
+    /**
+     * @return The id of the action, or -1 if it has not been seen (by any player)
+     */
+    public int idOf(AbstractAction action) {
+        Integer id = ids.get(action);
+        return id == null ? -1 : id;
+    }
+
+    public void update(int player, AbstractAction action, double value) {
+        Integer id = ids.get(action);
+        if (id == null) {
+            id = nActions++;
+            ids.put(action.copy(), id);
+            if (nActions * nPlayers > visits.length) {
+                int capacity = visits.length * 2;
+                visits = Arrays.copyOf(visits, capacity);
+                values = Arrays.copyOf(values, capacity);
+                seen = Arrays.copyOf(seen, capacity);
+            }
+        }
+        int index = id * nPlayers + player;
+        seen[index] = true;
+        visits[index]++;
+        values[index] += value;
+    }
+
+    /**
+     * @return Whether the player has taken the action, even if decay has since taken its visits to zero
+     */
+    public boolean seen(int player, int id) {
+        return id >= 0 && seen[id * nPlayers + player];
+    }
+
+    public int visits(int player, int id) {
+        return id < 0 ? 0 : visits[id * nPlayers + player];
+    }
+
+    public double totalValue(int player, int id) {
+        return id < 0 ? 0.0 : values[id * nPlayers + player];
+    }
+
+    /**
+     * Decays all the statistics by gamma, as Utils.decay() does: visits are scaled down (and rounded down), and the
+     * total value scaled in proportion, so that the mean is unchanged. A gamma outside [0, 1) leaves them as they are.
+     */
+    public void decay(double gamma) {
+        if (gamma < 1.0 && gamma >= 0.0) {
+            for (int i = 0; i < nActions * nPlayers; i++) {
+                if (visits[i] == 0) {
+                    values[i] = 0.0;
+                } else {
+                    int newCount = (int) (visits[i] * gamma);
+                    values[i] = values[i] * newCount / visits[i];
+                    visits[i] = newCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of distinct actions seen
+     */
+    public int size() {
+        return nActions;
+    }
+}
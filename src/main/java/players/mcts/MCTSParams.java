@@ -55,8 +55,21 @@ public class MCTSParams extends PlayerParameters {
     public String expertIterationActionFeatures = "";
     public IActionFeatureVector EIActionFeatureVector;
     public IActionHeuristic advantageFunction;
+    public boolean cacheAdvantages = false; // score each action once per node, rather than on every visit
     public int biasVisits = 0;
     public int omaVisits = 0;
+    public int rootThreads = 1; // independent trees searched in parallel, with root statistics merged to decide
+    public int treeThreads = 1; // threads searching the same tree, with virtual loss to spread them across it
+    public double virtualLoss = 1.0; // losing visits added to a node for each thread currently searching below it
+    public boolean reuseTree = false; // start each search from the node the last tree reached, rather than from scratch
+    public int maxTreeNodes = 0; // no more nodes are expanded once the tree(s) hold this many (0 for no limit)
+    public boolean evictNodes = false; // at maxTreeNodes, prune the least-visited subtrees rather than stop expanding
+    public boolean transpositions = false; // share the node for a state reached by different orders of actions
+    public int leafBatchSize = 1; // leaf states evaluated together by the heuristic, with their back up deferred till then
+    public int determinisationThreads = 0; // background threads making Information_Set determinisations ahead of the search
+    public int determinisationQueue = 32; // the most determinisations made ahead (and held in memory) at any time
+    public boolean ponder = false; // search in the background while other players decide (up to maxTreeNodes), and start from that tree
+    public double ponderShare = 0.5; // the most of one CPU (as a proportion of wall time) that pondering may use
     public double progressiveWideningConstant = 0.0; //  Zero indicates switched off (well, less than 1.0)
     public double progressiveWideningExponent = 0.0;
     public boolean normaliseRewards = true;
@@ -107,7 +120,20 @@ public class MCTSParams extends PlayerParameters {
         addTunableParameter("nodesStoreScoreDelta", false);
         addTunableParameter("maintainMasterState", false);
         addTunableParameter("advantageFunction", IActionHeuristic.nullReturn);
+        addTunableParameter("cacheAdvantages", false);
         addTunableParameter("omaVisits", 0);
+        addTunableParameter("rootThreads", 1, Arrays.asList(1, 2, 4, 8, 16));
+        addTunableParameter("treeThreads", 1, Arrays.asList(1, 2, 4, 8, 16));
+        addTunableParameter("virtualLoss", 1.0, Arrays.asList(0.0, 0.5, 1.0, 3.0, 10.0));
+        addTunableParameter("reuseTree", false);
+        addTunableParameter("maxTreeNodes", 0);
+        addTunableParameter("evictNodes", false);
+        addTunableParameter("transpositions", false);
+        addTunableParameter("leafBatchSize", 1, Arrays.asList(1, 4, 8, 16, 32));
+        addTunableParameter("determinisationThreads", 0, Arrays.asList(0, 1, 2, 4));
+        addTunableParameter("determinisationQueue", 32);
+        addTunableParameter("ponder", false);
+        addTunableParameter("ponderShare", 0.5, Arrays.asList(0.1, 0.25, 0.5, 1.0));
     }
 
     @Override
@@ -149,8 +175,21 @@ public class MCTSParams extends PlayerParameters {
                 e.printStackTrace();
             }
         advantageFunction = (IActionHeuristic) getParameterValue("advantageFunction");
+        cacheAdvantages = (boolean) getParameterValue("cacheAdvantages");
         biasVisits = (int) getParameterValue("biasVisits");
         omaVisits = (int) getParameterValue("omaVisits");
+        rootThreads = (int) getParameterValue("rootThreads");
+        treeThreads = (int) getParameterValue("treeThreads");
+        virtualLoss = (double) getParameterValue("virtualLoss");
+        reuseTree = (boolean) getParameterValue("reuseTree");
+        maxTreeNodes = (int) getParameterValue("maxTreeNodes");
+        evictNodes = (boolean) getParameterValue("evictNodes");
+        transpositions = (boolean) getParameterValue("transpositions");
+        leafBatchSize = (int) getParameterValue("leafBatchSize");
+        determinisationThreads = (int) getParameterValue("determinisationThreads");
+        determinisationQueue = (int) getParameterValue("determinisationQueue");
+        ponder = (boolean) getParameterValue("ponder");
+        ponderShare = (double) getParameterValue("ponderShare");
         progressiveWideningConstant = (double) getParameterValue("progressiveWideningConstant");
         progressiveWideningExponent = (double) getParameterValue("progressiveWideningExponent");
         normaliseRewards = (boolean) getParameterValue("normaliseRewards");
@@ -209,6 +248,10 @@ public class MCTSParams extends PlayerParameters {
             case "opponentModelParams":
                 setParameterValue("opponentModelParams", child);
                 break;
+            case "advantageFunction":
+                advantageFunction = (IActionHeuristic) child;
+                setParameterValue("advantageFunction", child);
+                break;
             default:
                 throw new AssertionError("Unknown child in TunableParameters: " + nameSpace);
         }
@@ -247,8 +290,21 @@ public class MCTSParams extends PlayerParameters {
         retValue.expertIterationActionFeatures = expertIterationActionFeatures;
         retValue.EIActionFeatureVector = EIActionFeatureVector;
         retValue.advantageFunction = advantageFunction;
+        retValue.cacheAdvantages = cacheAdvantages;
         retValue.biasVisits = biasVisits;
         retValue.omaVisits = omaVisits;
+        retValue.rootThreads = rootThreads;
+        retValue.treeThreads = treeThreads;
+        retValue.virtualLoss = virtualLoss;
+        retValue.reuseTree = reuseTree;
+        retValue.maxTreeNodes = maxTreeNodes;
+        retValue.evictNodes = evictNodes;
+        retValue.transpositions = transpositions;
+        retValue.leafBatchSize = leafBatchSize;
+        retValue.determinisationThreads = determinisationThreads;
+        retValue.determinisationQueue = determinisationQueue;
+        retValue.ponder = ponder;
+        retValue.ponderShare = ponderShare;
         retValue.progressiveWideningConstant = progressiveWideningConstant;
         retValue.progressiveWideningExponent = progressiveWideningExponent;
         retValue.normaliseRewards = normaliseRewards;
@@ -9,13 +9,18 @@ import core.interfaces.IActionHeuristic;
 import core.interfaces.IGameListener;
 import core.interfaces.IStateHeuristic;
 import games.dicemonastery.DiceMonasteryStateAttributes;
+import players.PlayerConstants;
+import players.TimeManager;
 import utilities.Pair;
 import utilities.Utils;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.ToDoubleBiFunction;
 import java.util.stream.Collectors;
 
+import static players.mcts.MCTSEnums.Information.Closed_Loop;
 import static players.mcts.MCTSEnums.OpponentTreePolicy.*;
 import static players.mcts.MCTSEnums.OpponentTreePolicy.MultiTree;
 
@@ -31,9 +36,32 @@ public class MCTSPlayer extends AbstractPlayer {
     protected AbstractPlayer rolloutStrategy;
     protected boolean debug = false;
     protected SingleTreeNode root;
-    List<Map<AbstractAction, Pair<Integer, Double>>> MASTStats;
+    // the length of the game history when root was searched, to find the actions played since (for tree reuse)
+    private int historyAtRoot;
+    MASTTable MASTStats;
     private AbstractPlayer opponentModel;
     private IActionHeuristic advantageFunction;
+    // For root parallelisation: one extra player per additional tree, each with its own random number generator,
+    // forward model, rollout policy and MAST statistics, and the threads to run them on
+    private MCTSPlayer[] rootWorkers;
+    private ExecutorService rootExecutor;
+    // For a root worker: the player it searches for (which is sent GAME_OVER for anything the two share)
+    private MCTSPlayer owner;
+    // For tree parallelisation: the threads that search the tree alongside the calling thread
+    private ExecutorService treeExecutor;
+    // The threads that make determinisations ahead of an Information_Set search
+    private ExecutorService determinisationExecutor;
+    // The nodes of each tree are recycled once the next decision starts (so the tree is only valid until then)
+    NodePool nodePool = new NodePool();
+    // For pondering: the thread that searches while other players decide, the search it is running, and the flag
+    // that stops it
+    private ExecutorService ponderExecutor;
+    private Future<Integer> ponderSearch;
+    private final AtomicBoolean stopPonder = new AtomicBoolean();
+    // Allocates the time of each decision, if params.timeManager
+    private TimeManager timeManager;
+    // Writes the Expert Iteration data from each decision (in the background), if params.gatherExpertIterationData
+    private ExpertIterationDataGatherer expertIterationData;
 
     public MCTSPlayer() {
         this(System.currentTimeMillis());
@@ -64,33 +92,191 @@ public class MCTSPlayer extends AbstractPlayer {
         opponentModel.initializePlayer(state);
         if (advantageFunction instanceof AbstractPlayer)
             ((AbstractPlayer) advantageFunction).initializePlayer(state);
+        stopPondering();
         MASTStats = null;
+        root = null;
+        nodePool = new NodePool();
     }
 
     @Override
     public AbstractAction getAction(AbstractGameState gameState, List<AbstractAction> actions) {
+        // the tree from pondering is picked up by createRoot()
+        stopPondering();
+        if (managesTime() && actions.size() == 1)
+            return actions.get(0);
+        if (params.rootThreads > 1)
+            return rootParallelSearch(gameState, actions);
+
         // Search for best action from the root
-        if (params.opponentTreePolicy == MultiTree || params.opponentTreePolicy == MultiTreeParanoid)
-            root = new MultiTreeNode(this, gameState, rnd);
-        else
-            root = SingleTreeNode.createRootNode(this, gameState, rnd);
+        root = createRoot(gameState);
+        if (managesTime() && params.treeThreads == 1) {
+            if (timeManager == null)
+                timeManager = new TimeManager(params);
+            timeManager.startDecision(gameState, getPlayerID(), actions.size());
+            root.timeManager = timeManager;
+        }
+        root.mctsSearch(getStatsLogger());
+        processTree();
 
-        if (MASTStats != null)
-            root.MASTStatistics = MASTStats.stream()
-                    .map(m -> Utils.decay(m, params.MASTGamma))
-                    .collect(Collectors.toList());
+        MASTStats = root.MASTStatistics;
+        // Return best action
+        if (root.children.size() > 2 * actions.size())
+            throw new AssertionError(String.format("Unexpectedly large number of children: %d with action size of %d", root.children.size(), actions.size()) );
+        return root.bestAction();
+    }
+
+    private boolean managesTime() {
+        return params.timeManager && params.budgetType == PlayerConstants.BUDGET_TIME;
+    }
+
+    /**
+     * Creates the root of a new search tree for the given state, carrying over (decayed) MAST statistics
+     * from the previous decision
+     */
+    protected SingleTreeNode createRoot(AbstractGameState gameState) {
+        SingleTreeNode retValue = params.reuseTree || ponders() ? reusedRoot(gameState) : null;
+        releaseTree(retValue);
+        if (retValue == null) {
+            if (params.opponentTreePolicy == MultiTree || params.opponentTreePolicy == MultiTreeParanoid)
+                retValue = new MultiTreeNode(this, gameState, rnd);
+            else
+                retValue = SingleTreeNode.createRootNode(this, gameState, rnd);
+        }
+        historyAtRoot = gameState.getHistorySize();
+
+        if (MASTStats != null) {
+            // decayed in place, as the tree they came from is no longer used
+            MASTStats.decay(params.MASTGamma);
+            retValue.MASTStatistics = MASTStats;
+        }
 
         if (rolloutStrategy instanceof MASTPlayer) {
-            ((MASTPlayer) rolloutStrategy).setStats(root.MASTStatistics);
+            ((MASTPlayer) rolloutStrategy).setStats(retValue.MASTStatistics);
             ((MASTPlayer) rolloutStrategy).temperature = params.MASTBoltzmann;
         }
-        root.mctsSearch(getStatsLogger());
+        return retValue;
+    }
+
+    /**
+     * Returns the nodes of the last tree searched to the pool, apart from any subtrees re-rooted for tree reuse
+     */
+    private void releaseTree(SingleTreeNode newRoot) {
+        if (root == null)
+            return;
+        if (root instanceof MultiTreeNode) {
+            Set<SingleTreeNode> keep = newRoot == null ? Collections.emptySet() :
+                    Arrays.stream(((MultiTreeNode) newRoot).roots).filter(Objects::nonNull).collect(Collectors.toSet());
+            for (SingleTreeNode tree : ((MultiTreeNode) root).roots)
+                if (tree != null)
+                    nodePool.release(tree, keep);
+        } else {
+            nodePool.release(root, newRoot == null ? Collections.emptySet() : Collections.singleton(newRoot));
+        }
+        root = null;
+    }
+
+    /**
+     * Tree reuse: the node of the last tree searched that is reached by the actions played since becomes the new root,
+     * and the rest of that tree is discarded. This relies on the game history, so is not possible in competition mode.
+     * Closed Loop nodes hold the states seen in the search rather than the one actually reached, and OMA nodes refer
+     * back to their ancestors, so these start from scratch each time.
+     *
+     * @return The new root, or null if the last tree has no visited node for the current state
+     */
+    private SingleTreeNode reusedRoot(AbstractGameState gameState) {
+        if (root == null || params.information == Closed_Loop
+                || params.opponentTreePolicy == OMA || params.opponentTreePolicy == OMA_All)
+            return null;
+        List<Pair<Integer, AbstractAction>> played = gameState.getHistory(historyAtRoot);
+        if (played.isEmpty())
+            return null;
+        if (root instanceof MultiTreeNode)
+            return new MultiTreeNode(this, gameState, rnd, (MultiTreeNode) root, played);
+        SingleTreeNode node = root.nodeReachedBy(played, gameState.getCurrentPlayer());
+        if (node == null || node.nVisits == 0 || node.decisionPlayer != gameState.getCurrentPlayer())
+            return null;
+        node.reuseAsRoot(this, gameState, rnd);
+        return node;
+    }
+
+    /**
+     * Pondering carries the tree searched during other players' turns over to our next decision, through the same
+     * re-rooting as tree reuse, so needs a tree that can be reused and that holds nodes for our decisions below
+     * those of other players (which a SelfOnly tree rooted at another player's decision does not).
+     */
+    @Override
+    public boolean ponders() {
+        return params.ponder && params.information != Closed_Loop && !params.transpositions
+                && params.opponentTreePolicy != SelfOnly && params.opponentTreePolicy != OMA
+                && params.opponentTreePolicy != OMA_All;
+    }
+
+    /**
+     * Pondering: another player is about to decide, so we search from their decision on a background thread until
+     * the game next calls us. The tree carries on from the node for this state in the last tree where there is one
+     * (as in tree reuse), and if the actions then played are not in the tree it is simply discarded.
+     * MAST statistics gathered while pondering are not kept.
+     */
+    @Override
+    public void opponentToAct(AbstractGameState gameState) {
+        stopPondering();
+        if (params.maxTreeNodes <= 0)
+            throw new AssertionError("Pondering needs maxTreeNodes, as nothing else limits the size of the tree");
+        // the tree searched while pondering has its own copy of the MAST statistics, to leave ours as they are
+        MASTTable kept = MASTStats;
+        MASTStats = kept == null ? null : kept.copy();
+        root = createRoot(gameState);
+        MASTStats = kept;
+        SingleTreeNode ponderRoot = root;
+        stopPonder.set(false);
+        ponderSearch = getPonderExecutor().submit(() -> ponderRoot.ponder(stopPonder));
+    }
+
+    /**
+     * @return true while a search is running in the background (which ends by itself once the tree is full)
+     */
+    public boolean isPondering() {
+        return ponderSearch != null && !ponderSearch.isDone();
+    }
+
+    /**
+     * Stops any search running in the background, and waits for it to finish (after its current iteration)
+     */
+    private void stopPondering() {
+        if (ponderSearch == null)
+            return;
+        stopPonder.set(true);
+        try {
+            ponderSearch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted while stopping pondering", e);
+        } catch (ExecutionException e) {
+            throw new AssertionError("Error while pondering", e.getCause());
+        } finally {
+            ponderSearch = null;
+        }
+    }
+
+    private ExecutorService getPonderExecutor() {
+        if (ponderExecutor == null)
+            ponderExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "MCTS ponder worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return ponderExecutor;
+    }
+
+    /**
+     * Expert Iteration data, and any components that learn from the tree, are processed once the search is done
+     */
+    private void processTree() {
         if (params.gatherExpertIterationData) {
-            ExpertIterationDataGatherer eidg = new ExpertIterationDataGatherer(
-                    params.expertIterationFileStem,
-                    params.EIStateFeatureVector, params.EIActionFeatureVector);
-            eidg.recordData(root, getForwardModel());
-            eidg.close();
+            if (expertIterationData == null)
+                expertIterationData = new ExpertIterationDataGatherer(params.expertIterationFileStem,
+                        params.EIStateFeatureVector, params.EIActionFeatureVector);
+            expertIterationData.recordData(root);
         }
         if (advantageFunction instanceof ITreeProcessor)
             ((ITreeProcessor) advantageFunction).process(root);
@@ -103,14 +289,165 @@ public class MCTSPlayer extends AbstractPlayer {
 
         if (debug)
             System.out.println(root.toString());
+    }
+
+    /**
+     * Root parallelisation: rootThreads independent trees are searched at the same time, each on its own thread
+     * with the full budget, and the visits and values of the actions at their roots are then summed to pick the
+     * action under the usual selectionPolicy.
+     * <p>
+     * This tree runs on the calling thread, and is the one kept as root afterwards (so getDecisionStats(),
+     * tree statistics and Expert Iteration data come from it alone); the others run on worker players.
+     */
+    protected AbstractAction rootParallelSearch(AbstractGameState gameState, List<AbstractAction> actions) {
+        if (rootWorkers == null || rootWorkers.length != params.rootThreads - 1)
+            createRootWorkers(gameState);
 
+        // roots are built here, as this copies the game state, and only the searches then run concurrently
+        SingleTreeNode[] roots = new SingleTreeNode[params.rootThreads];
+        roots[0] = root = createRoot(gameState);
+        for (int i = 1; i < roots.length; i++)
+            roots[i] = rootWorkers[i - 1].root = rootWorkers[i - 1].createRoot(gameState);
+
+        List<Future<?>> searches = new ArrayList<>();
+        for (int i = 1; i < roots.length; i++) {
+            SingleTreeNode workerRoot = roots[i];
+            searches.add(rootExecutor.submit(() -> workerRoot.mctsSearch(null)));
+        }
+        root.mctsSearch(getStatsLogger());
+        try {
+            for (Future<?> search : searches)
+                search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted during root parallel search", e);
+        } catch (ExecutionException e) {
+            throw new AssertionError("Error in root parallel search", e.getCause());
+        }
+
+        processTree();
         MASTStats = root.MASTStatistics;
-        // Return best action
-        if (root.children.size() > 2 * actions.size())
-            throw new AssertionError(String.format("Unexpectedly large number of children: %d with action size of %d", root.children.size(), actions.size()) );
-        return root.bestAction();
+        for (int i = 1; i < roots.length; i++)
+            rootWorkers[i - 1].MASTStats = roots[i].MASTStatistics;
+        return mergedBestAction(roots);
     }
 
+    private void createRootWorkers(AbstractGameState gameState) {
+        shutdownRootWorkers();
+        rootWorkers = new MCTSPlayer[params.rootThreads - 1];
+        for (int i = 0; i < rootWorkers.length; i++) {
+            MCTSParams workerParams = (MCTSParams) params.copy();
+            // so that the default rollout and opponent policies are not seeded identically
+            workerParams.setRandomSeed(rnd.nextLong());
+            workerParams.advantageFunction = workerCopy(params.advantageFunction, "advantageFunction");
+            rootWorkers[i] = new MCTSPlayer(workerParams, toString());
+            rootWorkers[i].owner = this;
+            rootWorkers[i].rnd = new Random(rnd.nextLong());
+            rootWorkers[i].heuristic = workerCopy(heuristic, "heuristic");
+            rootWorkers[i].opponentHeuristic = workerCopy(opponentHeuristic, "opponentHeuristic");
+            rootWorkers[i].setForwardModel(getForwardModel().copy());
+            rootWorkers[i].initializePlayer(gameState);
+            // thread-safe policies are shared with the workers, as they are by the threads of a tree
+            if (rolloutStrategy.isThreadSafe())
+                rootWorkers[i].rolloutStrategy = rolloutStrategy;
+            if (opponentModel.isThreadSafe())
+                rootWorkers[i].opponentModel = opponentModel;
+        }
+        rootExecutor = Executors.newFixedThreadPool(rootWorkers.length, r -> {
+            Thread thread = new Thread(r, "MCTS root worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The heuristic (or advantage function) a root worker uses, which is called from the worker's own thread.
+     * One that is a player is copied (unless it is thread-safe), as players are for each worker. Other stateless
+     * functions are shared, as they are by tree threads; but one that listens for game events keeps state between
+     * calls, and cannot be copied here.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T workerCopy(T function, String name) {
+        if (function instanceof AbstractPlayer)
+            return ((AbstractPlayer) function).isThreadSafe() ? function : (T) ((AbstractPlayer) function).copy();
+        if (function instanceof IGameListener)
+            throw new AssertionError(name + " " + function + " listens for game events, so cannot be shared by " +
+                    "the threads of root parallel search: it must be an AbstractPlayer (to be copied) or rootThreads 1");
+        return function;
+    }
+
+    private void shutdownRootWorkers() {
+        if (rootExecutor != null)
+            rootExecutor.shutdownNow();
+        rootExecutor = null;
+        rootWorkers = null;
+    }
+
+    /**
+     * The threads used (with the calling thread) to search a single tree when params.treeThreads > 1
+     */
+    ExecutorService getTreeExecutor() {
+        if (treeExecutor == null)
+            treeExecutor = Executors.newFixedThreadPool(params.treeThreads - 1, r -> {
+                Thread thread = new Thread(r, "MCTS tree worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return treeExecutor;
+    }
+
+    /**
+     * The threads that fill the DeterminisationPool of each search when params.determinisationThreads > 0
+     */
+    ExecutorService getDeterminisationExecutor() {
+        if (determinisationExecutor == null)
+            determinisationExecutor = Executors.newFixedThreadPool(params.determinisationThreads, r -> {
+                Thread thread = new Thread(r, "MCTS determinisation worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return determinisationExecutor;
+    }
+
+    /**
+     * Picks the best action using the summed statistics of the root of each tree, as bestAction() does for one tree
+     */
+    AbstractAction mergedBestAction(SingleTreeNode[] roots) {
+        Map<AbstractAction, double[]> merged = new LinkedHashMap<>(); // action -> {visits, total value}
+        for (SingleTreeNode treeRoot : roots) {
+            SingleTreeNode decisionRoot = treeRoot instanceof MultiTreeNode ?
+                    ((MultiTreeNode) treeRoot).getRoot(treeRoot.decisionPlayer) : treeRoot;
+            for (AbstractAction action : decisionRoot.children.keySet()) {
+                if (decisionRoot.children.get(action) != null) {
+                    double[] stats = merged.computeIfAbsent(action, a -> new double[2]);
+                    stats[0] += decisionRoot.actionVisits(action);
+                    stats[1] += decisionRoot.actionTotValue(action, decisionRoot.decisionPlayer);
+                }
+            }
+        }
+        if (merged.isEmpty())
+            throw new AssertionError("Unexpected - no selection made.");
+
+        MCTSEnums.SelectionPolicy policy = params.selectionPolicy;
+        // as in bestAction(), if all actions have the same number of visits then we use average score instead
+        if (policy == MCTSEnums.SelectionPolicy.ROBUST &&
+                merged.values().stream().mapToDouble(stats -> stats[0]).distinct().count() == 1)
+            policy = MCTSEnums.SelectionPolicy.SIMPLE;
+
+        double bestValue = -Double.MAX_VALUE;
+        AbstractAction bestAction = null;
+        for (Map.Entry<AbstractAction, double[]> entry : merged.entrySet()) {
+            double[] stats = entry.getValue();
+            double childValue = policy == MCTSEnums.SelectionPolicy.SIMPLE ? stats[1] / (stats[0] + params.epsilon) : stats[0];
+            // Apply small noise to break ties randomly
+            childValue = Utils.noise(childValue, params.epsilon, rnd.nextDouble());
+            if (childValue > bestValue) {
+                bestValue = childValue;
+                bestAction = entry.getKey();
+            }
+        }
+        return bestAction;
+    }
 
     public AbstractPlayer getOpponentModel(int playerID) {
         return opponentModel;
@@ -118,15 +455,40 @@ public class MCTSPlayer extends AbstractPlayer {
 
     @Override
     public void finalizePlayer(AbstractGameState state) {
-        if (rolloutStrategy instanceof IGameListener)
-            ((IGameListener) rolloutStrategy).onEvent(CoreConstants.GameEvents.GAME_OVER, state, null);
-        if (opponentModel instanceof IGameListener)
-            ((IGameListener) opponentModel).onEvent(CoreConstants.GameEvents.GAME_OVER, state, null);
-        if (heuristic instanceof IGameListener)
-            ((IGameListener) heuristic).onEvent(CoreConstants.GameEvents.GAME_OVER, state, null);
-        if (advantageFunction instanceof IGameListener)
-            ((IGameListener) advantageFunction).onEvent(CoreConstants.GameEvents.GAME_OVER, state, null);
+        gameOver(rolloutStrategy, state);
+        gameOver(opponentModel, state);
+        gameOver(heuristic, state);
+        gameOver(advantageFunction, state);
+        stopPondering();
+        if (ponderExecutor != null)
+            ponderExecutor.shutdownNow();
+        ponderExecutor = null;
+        if (rootWorkers != null)
+            for (MCTSPlayer worker : rootWorkers)
+                worker.finalizePlayer(state);
+        shutdownRootWorkers();
+        if (treeExecutor != null)
+            treeExecutor.shutdownNow();
+        treeExecutor = null;
+        if (determinisationExecutor != null)
+            determinisationExecutor.shutdownNow();
+        determinisationExecutor = null;
+        if (expertIterationData != null)
+            expertIterationData.close();
+        expertIterationData = null;
+    }
 
+    /**
+     * Sends GAME_OVER to one of our policies or heuristics, if it listens for it (and, for a root worker, is not
+     * shared with the player it works for, which sends it once itself)
+     */
+    private void gameOver(Object listener, AbstractGameState state) {
+        if (!(listener instanceof IGameListener))
+            return;
+        if (owner != null && (listener == owner.rolloutStrategy || listener == owner.opponentModel
+                || listener == owner.heuristic || listener == owner.advantageFunction))
+            return;
+        ((IGameListener) listener).onEvent(CoreConstants.GameEvents.GAME_OVER, state, null);
     }
 
     @Override
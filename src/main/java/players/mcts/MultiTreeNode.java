@@ -10,7 +10,6 @@ import utilities.Utils;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static utilities.Utils.entropyOf;
 
@@ -53,15 +52,11 @@ public class MultiTreeNode extends SingleTreeNode {
                 opponentModels[p] = player.getOpponentModel(p);
         }
         // only root node maintains MAST statistics
-        MASTStatistics = new ArrayList<>();
-        for (int i = 0; i < state.getNPlayers(); i++)
-            MASTStatistics.add(new HashMap<>());
+        MASTStatistics = new MASTTable(state.getNPlayers());
         MASTFunction = (a, s) -> {
-            Map<AbstractAction, Pair<Integer, Double>> MAST = MASTStatistics.get(decisionPlayer);
-            if (MAST.containsKey(a)) {
-                Pair<Integer, Double> stats = MAST.get(a);
-                return stats.b / (stats.a + params.epsilon);
-            }
+            int id = MASTStatistics.idOf(a);
+            if (MASTStatistics.seen(decisionPlayer, id))
+                return MASTStatistics.totalValue(decisionPlayer, id) / (MASTStatistics.visits(decisionPlayer, id) + params.epsilon);
             return 0.0;
         };
         instantiate(null, null, state);
@@ -74,6 +69,26 @@ public class MultiTreeNode extends SingleTreeNode {
         currentLocation[this.decisionPlayer] = roots[decisionPlayer];
     }
 
+    /**
+     * Tree reuse: as above, but each player's tree continues from the node reached in their tree from the previous
+     * search by the actions they have played since (where there is one with any visits)
+     */
+    public MultiTreeNode(MCTSPlayer player, AbstractGameState state, Random rnd, MultiTreeNode previous, List<Pair<Integer, AbstractAction>> played) {
+        this(player, state, rnd);
+        for (int p = 0; p < roots.length; p++) {
+            if (previous.roots[p] == null)
+                continue;
+            SingleTreeNode node = previous.roots[p].nodeReachedBy(played, state.getCurrentPlayer());
+            if (node == null || node.nVisits == 0 || node.decisionPlayer != p)
+                continue;
+            if (roots[p] != null)  // the fresh root created above
+                player.nodePool.release(roots[p], Collections.emptySet());
+            node.reuseAsRoot(player, state, rnd);
+            roots[p] = node;
+            currentLocation[p] = node;
+        }
+    }
+
     /**
      * oneSearchIteration() implements the strategy for tree search (plus expansion, rollouts, backup and so on)
      * Its result is purely stored in the tree generated from root
@@ -86,8 +101,8 @@ public class MultiTreeNode extends SingleTreeNode {
         AbstractGameState currentState = this.openLoopState;  // this will have been set correctly before calling this method
         SingleTreeNode currentNode;
 
-        double[] startingValues = IntStream.range(0, openLoopState.getNPlayers())
-                .mapToDouble(i -> heuristic.evaluateState(currentState, i)).toArray();
+        double[] startingValues = new double[openLoopState.getNPlayers()];
+        heuristic.evaluateAllPlayers(currentState, startingValues);
 
         if (!currentState.isNotTerminal())
             return;
@@ -139,6 +154,11 @@ public class MultiTreeNode extends SingleTreeNode {
                 currentNode = currentLocation[currentActor];
                 currentNode.setActionsFromOpenLoopState(currentState);
                 List<AbstractAction> unexpanded = currentNode.unexpandedActions();
+                if (!unexpanded.isEmpty() && currentNode.treeFull()) {
+                    // there is no room for a new node, so this player continues with rollout actions
+                    maxDepthReached[currentActor] = true;
+                    continue;
+                }
                 AbstractAction chosen;
                 if (!unexpanded.isEmpty()) {
                     // We have an unexpanded action
@@ -174,10 +194,10 @@ public class MultiTreeNode extends SingleTreeNode {
 
         // Evaluate final state and return normalised score
         double[] finalValues = new double[state.getNPlayers()];
-
-        for (int i = 0; i < finalValues.length; i++) {
-            finalValues[i] = heuristic.evaluateState(currentState, i) - (params.nodesStoreScoreDelta ? startingValues[i] : 0);
-        }
+        heuristic.evaluateAllPlayers(currentState, finalValues);
+        if (params.nodesStoreScoreDelta)
+            for (int i = 0; i < finalValues.length; i++)
+                finalValues[i] -= startingValues[i];
         for (SingleTreeNode singleTreeNode : currentLocation) {
             if (singleTreeNode != null)
                 singleTreeNode.backUp(finalValues);
@@ -218,6 +238,11 @@ public class MultiTreeNode extends SingleTreeNode {
     }
 
 
+    @Override
+    protected SingleTreeNode decisionRoot() {
+        return roots[decisionPlayer];
+    }
+
     @Override
     protected void logTreeStatistics(IStatisticLogger statsLogger, int numIters, long timeTaken) {
         Map<String, Object> stats = new LinkedHashMap<>();
@@ -227,6 +252,8 @@ public class MultiTreeNode extends SingleTreeNode {
         stats.put("iterations", numIters);
         stats.put("rolloutActions", rolloutActionsTaken / numIters);
         stats.put("time", timeTaken);
+        if (timeManager != null)
+            stats.put("timeAllocated", timeManager.allocated());
         int validRoots = (int) Arrays.stream(roots).filter(Objects::nonNull).count();
         for (SingleTreeNode node : roots) {
             if (node == null) continue;
@@ -239,6 +266,7 @@ public class MultiTreeNode extends SingleTreeNode {
             String suffix = mainPlayer ? "-main" : "-other";
             BiFunction<Object, Object, Double> addFn = (v1, v2) -> ((double) v1 + ((double) v2));
 
+            stats.merge("reusedVisits" + suffix, node.reusedVisits * multiplier, addFn);
             stats.merge("copyCalls" + suffix, copy * multiplier, addFn);
             stats.merge("fmCalls" + suffix, fm * multiplier, addFn);
             stats.merge("totalNodes" + suffix, treeStats.totalNodes * multiplier, addFn);
@@ -248,9 +276,15 @@ public class MultiTreeNode extends SingleTreeNode {
             stats.merge("nActionsRoot" + suffix, node.children.size() * multiplier, addFn);
             stats.merge("nActionsTree" + suffix, treeStats.meanActionsAtNode * multiplier, addFn);
             stats.merge("maxActionsAtNode" + suffix, treeStats.maxActionsAtNode * multiplier, addFn);
+            stats.merge("bytesPerNode" + suffix, treeStats.bytesPerNode * multiplier, addFn);
+            stats.merge("estimatedBytes" + suffix, treeStats.estimatedBytes * multiplier, addFn);
+            if (mainPlayer) { // all the trees share one pool
+                stats.put("peakNodes", treeStats.peakNodes);
+                stats.put("nodesInUse", node.root.pool != null ? node.root.pool.inUse() : treeStats.totalNodes);
+            }
 
             OptionalInt maxVisits = Arrays.stream(node.actionVisits()).max();
-            stats.merge("maxVisitProportion" + suffix, (maxVisits.isPresent() ? maxVisits.getAsInt() : 0) / (double) numIters * multiplier, addFn);
+            stats.merge("maxVisitProportion" + suffix, (maxVisits.isPresent() ? maxVisits.getAsInt() : 0) / (double) node.getVisits() * multiplier, addFn);
             double[] visitProportions = Arrays.stream(node.actionVisits()).asDoubleStream().map(d -> d / node.getVisits()).toArray();
             stats.merge("visitEntropy" + suffix, entropyOf(visitProportions) * multiplier, addFn);
             AbstractAction bestAction = node.bestAction();
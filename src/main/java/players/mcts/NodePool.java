@@ -0,0 +1,69 @@
+package players.mcts;
+
+import java.util.*;
+
+/**
+ * An arena for the nodes of an MCTSPlayer's search trees.
+ * <p>
+ * When a tree is discarded at the start of the next decision its nodes are reset and handed out again, together with
+ * their arrays and maps (which keep their capacity), instead of leaving millions of short-lived objects per game
+ * to the garbage collector. The pool also counts the nodes currently in use, for the cap on tree size
+ * (MCTSParams.maxTreeNodes) and the peak reported in TreeStatistics.
+ * <p>
+ * OMA nodes carry extra statistics and are not recycled, but are still counted.
+ */
+public class NodePool {
+
+    private final Deque<SingleTreeNode> free = new ArrayDeque<>();
+    private int inUse;
+    private int peakInUse;
+
+    synchronized SingleTreeNode take() {
+        counted();
+        SingleTreeNode node = free.pollLast();
+        return node == null ? new SingleTreeNode() : node;
+    }
+
+    /**
+     * Records a node created outside the pool
+     */
+    synchronized void counted() {
+        inUse++;
+        if (inUse > peakInUse)
+            peakInUse = inUse;
+    }
+
+    /**
+     * Returns all the nodes in the tree below (and including) root to the pool, except for the subtrees
+     * below any node in keep (which have been re-rooted for tree reuse).
+     */
+    synchronized void release(SingleTreeNode root, Collection<SingleTreeNode> keep) {
+        Deque<SingleTreeNode> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            SingleTreeNode node = queue.poll();
+            // (a node already reset was reached from another parent, as a transposition)
+            if (keep.contains(node) || node.root == null)
+                continue;
+            for (SingleTreeNode[] nodeArray : node.children.values()) {
+                if (nodeArray != null)
+                    for (SingleTreeNode child : nodeArray)
+                        if (child != null)
+                            queue.add(child);
+            }
+            inUse--;
+            if (node.getClass() == SingleTreeNode.class) {
+                node.reset();
+                free.add(node);
+            }
+        }
+    }
+
+    public synchronized int inUse() {
+        return inUse;
+    }
+
+    public synchronized int peakInUse() {
+        return peakInUse;
+    }
+}
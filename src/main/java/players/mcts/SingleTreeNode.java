@@ -4,14 +4,22 @@ import core.AbstractForwardModel;
 import core.AbstractGameState;
 import core.AbstractPlayer;
 import core.actions.AbstractAction;
+import core.interfaces.IStateHash;
 import core.interfaces.IStateHeuristic;
 import core.interfaces.IStatisticLogger;
 import players.PlayerConstants;
+import players.TimeManager;
 import utilities.ElapsedCpuTimer;
 import utilities.Pair;
 import utilities.Utils;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.ToDoubleBiFunction;
@@ -20,6 +28,8 @@ import java.util.stream.IntStream;
 import static java.util.stream.Collectors.*;
 import static players.PlayerConstants.*;
 import static players.mcts.MCTSEnums.Information.Closed_Loop;
+import static players.mcts.MCTSEnums.Information.Open_Loop;
+import static players.mcts.MCTSEnums.Information.Information_Set;
 import static players.mcts.MCTSEnums.OpponentTreePolicy.*;
 import static players.mcts.MCTSEnums.RolloutTermination.DEFAULT;
 import static players.mcts.MCTSEnums.Strategies.MAST;
@@ -49,7 +59,19 @@ public class SingleTreeNode {
     int depth;
     // the id of the player who makes the decision at this node
     int decisionPlayer;
-    private final Map<AbstractAction, Integer> nValidVisits = new HashMap<>();
+    // Each distinct action seen at this node is given a slot, so that the statistics used in selection are held in
+    // arrays rather than looked up by action on every visit (hashing and comparing actions can be expensive, as in TM).
+    // The stats for a slot are those of all the children reached by that action, and are updated as we back up.
+    private final Map<AbstractAction, Integer> slots = new HashMap<>();
+    private int nSlots;
+    private SingleTreeNode[][] slotChildren = new SingleTreeNode[0][];
+    private int[] slotVisits = new int[0];
+    private double[] slotValues = new double[0]; // [slot * nPlayers + player]
+    private double[] slotSquares = new double[0];
+    private int[] slotValidVisits = new int[0]; // the number of visits to this node when the action was available
+    // the slots of actionsFromOpenLoopState (in the same order), and the slot of actionToReach at the parent
+    private int[] availableSlots = new int[0];
+    private int actionSlot = -1;
     // Action taken to reach this node
     // In vanilla MCTS this will likely be an action taken by some other player (not the decisionPlayer at this node)
     protected AbstractAction actionToReach;
@@ -58,6 +80,8 @@ public class SingleTreeNode {
     private double[] totSquares;
     // Number of visits to this node
     protected int nVisits;
+    // Visits already made when this node became the root (with tree reuse)
+    protected int reusedVisits;
     protected int rolloutActionsTaken;
     double highReward = Double.NEGATIVE_INFINITY;
     double lowReward = Double.POSITIVE_INFINITY;
@@ -69,9 +93,44 @@ public class SingleTreeNode {
     // could be by any player - each of which would transition to a different Node OpenLoop search. (Closed Loop will
     // only ever have one position in the array populated: and similarly if we are using a SelfOnly tree).
     Map<AbstractAction, SingleTreeNode[]> children = new HashMap<>();
-    List<Map<AbstractAction, Pair<Integer, Double>>> MASTStatistics; // a list of one Map per player. Action -> (visits, totValue)
+    MASTTable MASTStatistics; // (root only) the visits and total value of each action, for each player
     ToDoubleBiFunction<AbstractAction, AbstractGameState> advantageFunction = (a, s) -> advantagesOfActionsFromOLS.getOrDefault(a, 0.0);
     ToDoubleBiFunction<AbstractAction, AbstractGameState> MASTFunction;
+    // Tree parallelisation (root only): the threads to search with, and each thread's forward model, policies and
+    // counts while the search is running (null otherwise)
+    ExecutorService treeExecutor;
+    ThreadLocal<SearchThread> searchThreads;
+    // Information Set search (root only): the threads that make determinisations ahead of time, if any, and the pool
+    // they fill while the search is running
+    ExecutorService determinisationExecutor;
+    private DeterminisationPool determinisations;
+    // The pool that nodes in this tree are taken from (root only)
+    NodePool pool;
+    // Decides how long a serial search with a time budget runs for, if the player manages its time (root only)
+    TimeManager timeManager;
+    // The depth and branching counts of the tree, kept as it grows during the search (root only), or null if
+    // TreeStatistics has to walk the tree instead
+    StreamingTreeStatistics treeCounts;
+    // Transpositions (root only): the node for each state hash, so that a state reached by a different order of
+    // actions shares the node already there. A node can then have more than one parent, so each iteration records
+    // its path (each node, with the slot of the action taken to it from the node before) to back up along.
+    Map<Long, SingleTreeNode> transpositionTable;
+    private List<Pair<SingleTreeNode, Integer>> transpositionPath;
+    int transpositionsFound;
+    // Node eviction (root only): the nodes pruned from the tree in this search to keep within params.maxTreeNodes
+    int evictedNodes;
+    // Batched leaf evaluation (root only): the iterations waiting for their leaf states to be evaluated, and the
+    // buffers the heuristic is called with
+    private List<PendingLeaf> pendingLeaves;
+    private AbstractGameState[] batchStates;
+    private int[] batchPlayers;
+    private double[] batchValues;
+    // The number of threads currently part way through an iteration that passed through this node
+    private volatile int inFlight;
+    private static final AtomicIntegerFieldUpdater<SingleTreeNode> IN_FLIGHT =
+            AtomicIntegerFieldUpdater.newUpdater(SingleTreeNode.class, "inFlight");
+    // the proportion of params.maxTreeNodes freed each time nodes are evicted
+    private static final double EVICTION_FRACTION = 0.1;
     // Total value of this node
 
 
@@ -81,40 +140,184 @@ public class SingleTreeNode {
 
     // Called in tree expansion
     public static SingleTreeNode createRootNode(MCTSPlayer player, AbstractGameState state, Random rnd) {
-        SingleTreeNode retValue = (player.params.opponentTreePolicy == OMA || player.params.opponentTreePolicy == OMA_All)
-                ? new OMATreeNode() : new SingleTreeNode();
+        SingleTreeNode retValue;
+        if (player.params.opponentTreePolicy == OMA || player.params.opponentTreePolicy == OMA_All) {
+            retValue = new OMATreeNode();
+            player.nodePool.counted();
+        } else {
+            retValue = player.nodePool.take();
+        }
         retValue.decisionPlayer = state.getCurrentPlayer();
-        retValue.params = player.params;
-        retValue.forwardModel = player.getForwardModel();
-        retValue.heuristic = player.heuristic;
-        retValue.opponentHeuristic = player.opponentHeuristic;
-        retValue.rnd = rnd;
-        retValue.opponentModels = new AbstractPlayer[state.getNPlayers()];
-        for (int p = 0; p < retValue.opponentModels.length; p++) {
-            if (p == retValue.decisionPlayer)
-                retValue.opponentModels[p] = player.rolloutStrategy;
+        retValue.initialiseRoot(player, state, rnd);
+        retValue.instantiate(null, null, state);
+        if (retValue.treeCounts != null)
+            retValue.treeCounts.nodeAdded(retValue, false);
+        return retValue;
+    }
+
+    private void initialiseRoot(MCTSPlayer player, AbstractGameState state, Random rnd) {
+        params = player.params;
+        forwardModel = player.getForwardModel();
+        heuristic = player.heuristic;
+        opponentHeuristic = player.opponentHeuristic;
+        this.rnd = rnd;
+        opponentModels = new AbstractPlayer[state.getNPlayers()];
+        for (int p = 0; p < opponentModels.length; p++) {
+            if (p == state.getCurrentPlayer())
+                opponentModels[p] = player.rolloutStrategy;
             else
-                retValue.opponentModels[p] = player.getOpponentModel(p);
+                opponentModels[p] = player.getOpponentModel(p);
         }
         // only root node maintains MAST statistics
-        retValue.MASTStatistics = new ArrayList<>();
-        for (int i = 0; i < state.getNPlayers(); i++)
-            retValue.MASTStatistics.add(new HashMap<>());
-        retValue.MASTFunction = (a, s) -> {
-            Map<AbstractAction, Pair<Integer, Double>> MAST = retValue.MASTStatistics.get(retValue.decisionPlayer);
-            if (MAST.containsKey(a)) {
-                Pair<Integer, Double> stats = MAST.get(a);
-                return stats.b / (stats.a + retValue.params.epsilon);
-            }
+        MASTStatistics = new MASTTable(state.getNPlayers());
+        MASTFunction = (a, s) -> {
+            int id = MASTStatistics.idOf(a);
+            if (MASTStatistics.seen(decisionPlayer, id))
+                return MASTStatistics.totalValue(decisionPlayer, id) / (MASTStatistics.visits(decisionPlayer, id) + params.epsilon);
             return 0.0;
         };
-        retValue.instantiate(null, null, state);
-        return retValue;
+        if (params.treeThreads > 1)
+            treeExecutor = player.getTreeExecutor();
+        if (params.determinisationThreads > 0 && params.information == Information_Set)
+            determinisationExecutor = player.getDeterminisationExecutor();
+        pool = player.nodePool;
+        if (params.transpositions) {
+            if (!(state instanceof IStateHash))
+                throw new AssertionError("Transpositions need a game state that implements IStateHash");
+            if (params.treeThreads > 1 || params.reuseTree || !(params.opponentTreePolicy == SelfOnly
+                    || params.opponentTreePolicy == Paranoid || params.opponentTreePolicy == MaxN))
+                throw new AssertionError("Transpositions need a single-threaded SelfOnly, Paranoid or MaxN tree, without tree reuse");
+            transpositionTable = new HashMap<>();
+            transpositionPath = new ArrayList<>();
+        }
+        // the counts only hold for a tree that just grows, from empty, with one thread expanding it
+        treeCounts = params.treeThreads == 1 && !params.reuseTree && !params.evictNodes && !params.transpositions
+                ? new StreamingTreeStatistics() : null;
+    }
+
+    /**
+     * Tree reuse: follows the actions played since the state at this root was searched, to find the node at which
+     * the tree continues from the current state. In a SelfOnly (or MultiTree) tree only the actions of the player
+     * whose tree this is are edges; otherwise every action must be by the player deciding at the node.
+     *
+     * @param played    The actions played since this root, each with the player who took it
+     * @param nextActor The player now to act
+     * @return The node reached, or null if the tree does not contain these actions
+     */
+    SingleTreeNode nodeReachedBy(List<Pair<Integer, AbstractAction>> played, int nextActor) {
+        boolean selfOnly = params.opponentTreePolicy.selfOnlyTree;
+        SingleTreeNode node = this;
+        for (int i = 0; i < played.size(); i++) {
+            int actor = played.get(i).a;
+            if (selfOnly && actor != decisionPlayer)
+                continue;
+            if (actor != node.decisionPlayer)
+                return null;
+            SingleTreeNode[] nodeArray = node.children.get(played.get(i).b);
+            if (nodeArray == null)
+                return null;
+            int nextPlayer = selfOnly ? decisionPlayer : (i + 1 < played.size() ? played.get(i + 1).a : nextActor);
+            node = nodeArray[nextPlayer];
+            if (node == null)
+                return null;
+        }
+        return node;
+    }
+
+    /**
+     * Tree reuse: makes this node (from the tree of a previous search) the root of a new search from the given state.
+     * The rest of the old tree is no longer referenced, and the statistics below this node are kept.
+     */
+    void reuseAsRoot(MCTSPlayer player, AbstractGameState state, Random rnd) {
+        SingleTreeNode oldRoot = root;
+        int depthOffset = depth;
+        for (SingleTreeNode node : allNodesInTree()) {
+            node.root = this;
+            node.depth -= depthOffset;
+        }
+        parent = null;
+        actionToReach = null;
+        // the decision player is kept, as in a MultiTree search this may be a tree for a player not now acting
+        initialiseRoot(player, state, rnd);
+        paranoidPlayer = oldRoot.paranoidPlayer;
+        lowReward = oldRoot.lowReward;
+        highReward = oldRoot.highReward;
+        reusedVisits = nVisits;
+        fmCallsCount = 0;
+        evictedNodes = 0;
+        copyCount = 1;
+        this.state = state.copy();
+        setActionsFromOpenLoopState(state);
+        // in open loop a node can have children for actions that are not available in the state actually reached
+        // (and a root's children are expected to be just those available)
+        if (state.getCurrentPlayer() == decisionPlayer)
+            retainActions(actionsFromOpenLoopState);
+    }
+
+    /**
+     * Removes the children (and their statistics) for all actions not in the list given
+     */
+    private void retainActions(List<AbstractAction> actions) {
+        Set<AbstractAction> toKeep = new HashSet<>(actions);
+        Iterator<Map.Entry<AbstractAction, Integer>> iterator = slots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<AbstractAction, Integer> entry = iterator.next();
+            if (!toKeep.contains(entry.getKey())) {
+                // the slot itself is left unused
+                int slot = entry.getValue();
+                if (slotChildren[slot] != null)
+                    for (SingleTreeNode child : slotChildren[slot])
+                        if (child != null)
+                            discard(child);
+                slotChildren[slot] = null;
+                slotVisits[slot] = 0;
+                slotValidVisits[slot] = 0;
+                Arrays.fill(slotValues, slot * totValue.length, (slot + 1) * totValue.length, 0.0);
+                Arrays.fill(slotSquares, slot * totValue.length, (slot + 1) * totValue.length, 0.0);
+                children.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    private int slotFor(AbstractAction action) {
+        Integer slot = slots.get(action);
+        if (slot != null)
+            return slot;
+        if (nSlots == slotVisits.length) {
+            int capacity = Math.max(4, nSlots * 2);
+            int nPlayers = totValue.length;
+            slotChildren = Arrays.copyOf(slotChildren, capacity);
+            slotVisits = Arrays.copyOf(slotVisits, capacity);
+            slotValues = Arrays.copyOf(slotValues, capacity * nPlayers);
+            slotSquares = Arrays.copyOf(slotSquares, capacity * nPlayers);
+            slotValidVisits = Arrays.copyOf(slotValidVisits, capacity);
+        }
+        slots.put(action, nSlots);
+        if (root != null && root.treeCounts != null)
+            root.treeCounts.actionAdded(nSlots + 1);
+        return nSlots++;
+    }
+
+    private int slotOf(AbstractAction action) {
+        Integer slot = slots.get(action);
+        return slot == null ? -1 : slot;
     }
 
     public static SingleTreeNode createChildNode(SingleTreeNode parent, AbstractAction actionToReach, AbstractGameState state) {
-        SingleTreeNode retValue = (parent instanceof OMATreeNode) ? new OMATreeNode() : new SingleTreeNode();
+        NodePool pool = parent.root.pool;
+        SingleTreeNode retValue;
+        if (parent instanceof OMATreeNode || pool == null) {
+            retValue = parent instanceof OMATreeNode ? new OMATreeNode() : new SingleTreeNode();
+            if (pool != null)
+                pool.counted();
+        } else {
+            retValue = pool.take();
+        }
+        boolean parentWasLeaf = parent.root.treeCounts != null && !parent.hasChildren();
         retValue.instantiate(parent, actionToReach, state);
+        if (parent.root.treeCounts != null)
+            parent.root.treeCounts.nodeAdded(retValue, parentWasLeaf);
         return retValue;
     }
 
@@ -130,6 +333,8 @@ public class SingleTreeNode {
 
         decisionPlayer = terminalStateInSelfOnlyTree(state) ? parent.decisionPlayer : state.getCurrentPlayer();
         this.actionToReach = actionToReach;
+        if (parent != null)
+            actionSlot = parent.slotFor(actionToReach);
 
         if (parent != null) {
             depth = parent.depth + 1;
@@ -137,14 +342,28 @@ public class SingleTreeNode {
             depth = 0;
         }
 
-        totValue = new double[state.getNPlayers()];
-        totSquares = new double[state.getNPlayers()];
+        if (totValue == null || totValue.length != state.getNPlayers()) {
+            totValue = new double[state.getNPlayers()];
+            totSquares = new double[state.getNPlayers()];
+            // the slot statistics are indexed by player too
+            nSlots = 0;
+            slotChildren = new SingleTreeNode[0][];
+            slotVisits = new int[0];
+            slotValues = new double[0];
+            slotSquares = new double[0];
+            slotValidVisits = new int[0];
+            availableSlots = new int[0];
+        } else {
+            // a node from the NodePool, which will otherwise have been reset()
+            Arrays.fill(totValue, 0.0);
+            Arrays.fill(totSquares, 0.0);
+        }
         if (params.information != Closed_Loop && (params.maintainMasterState || depth == 0)) {
             // if we're using open loop, then we need to make sure the reference state is never changed
             // however this is only used at the root - and we can switch the copy off for other nodes for performance
             // these master copies *are* required if we want to do something funky with the final tree, and gather
             // features from the nodes - if we are gathering Expert Iteration data or Learning an Advantage function
-            root.copyCount++;
+            countCopy();
             this.state = state.copy();
         } else {
             this.state = state;
@@ -154,6 +373,159 @@ public class SingleTreeNode {
 
     }
 
+    /**
+     * Clears this node so that the NodePool can hand it out again, keeping the capacity of its arrays and maps
+     */
+    void reset() {
+        state = null;
+        openLoopState = null;
+        actionsFromOpenLoopState = Collections.emptyList();
+        advantagesOfActionsFromOLS.clear();
+        params = null;
+        forwardModel = null;
+        opponentModels = null;
+        rnd = null;
+        heuristic = null;
+        opponentHeuristic = null;
+        fmCallsCount = 0;
+        copyCount = 0;
+        paranoidPlayer = -1;
+        depth = 0;
+        decisionPlayer = 0;
+        slots.clear();
+        Arrays.fill(slotChildren, 0, nSlots, null);
+        Arrays.fill(slotVisits, 0, nSlots, 0);
+        Arrays.fill(slotValidVisits, 0, nSlots, 0);
+        Arrays.fill(slotValues, 0, nSlots * totValue.length, 0.0);
+        Arrays.fill(slotSquares, 0, nSlots * totValue.length, 0.0);
+        nSlots = 0;
+        // a node only sets these when it is its actor's turn, so they must not be left over from its last use
+        availableSlots = new int[0];
+        actionSlot = -1;
+        actionToReach = null;
+        nVisits = 0;
+        reusedVisits = 0;
+        rolloutActionsTaken = 0;
+        highReward = Double.NEGATIVE_INFINITY;
+        lowReward = Double.POSITIVE_INFINITY;
+        root = null;
+        parent = null;
+        children.clear();
+        MASTStatistics = null;
+        MASTFunction = null;
+        treeExecutor = null;
+        searchThreads = null;
+        determinisationExecutor = null;
+        determinisations = null;
+        inFlight = 0;
+        pool = null;
+        treeCounts = null;
+        transpositionTable = null;
+        transpositionPath = null;
+        transpositionsFound = 0;
+        evictedNodes = 0;
+        pendingLeaves = null;
+        batchStates = null;
+        batchPlayers = null;
+        batchValues = null;
+    }
+
+    /**
+     * @return true if the tree has reached params.maxTreeNodes, after which it is not expanded any further
+     */
+    boolean treeFull() {
+        return params.maxTreeNodes > 0 && root.pool != null && root.pool.inUse() >= params.maxTreeNodes;
+    }
+
+    /**
+     * With node eviction, makes room in a full tree before the next iteration (unless iterations are part way through,
+     * waiting for their leaves to be evaluated)
+     */
+    private void keepWithinNodeBudget() {
+        if (params.evictNodes && treeFull() && (pendingLeaves == null || pendingLeaves.isEmpty()))
+            evictLeastVisited();
+    }
+
+    /**
+     * Node eviction (params.evictNodes): once the tree holds params.maxTreeNodes, the subtrees below the least-visited
+     * nodes are pruned until EVICTION_FRACTION of that budget is free again. A pruned node keeps its own statistics,
+     * and its parent those of the action to it, so it is simply a leaf again (and is expanded afresh if the search
+     * comes back to it).
+     */
+    private void evictLeastVisited() {
+        int target = (int) (params.maxTreeNodes * (1.0 - EVICTION_FRACTION));
+        List<SingleTreeNode> candidates = new ArrayList<>();
+        for (SingleTreeNode node : allNodesInTree())
+            if (node != this && node.hasChildren())
+                candidates.add(node);
+        candidates.sort(Comparator.comparingInt(n -> n.nVisits));
+        for (SingleTreeNode node : candidates) {
+            if (pool.inUse() <= target)
+                break;
+            // (a node below one already pruned will have been reset)
+            if (node.root != null)
+                evictedNodes += node.pruneChildren();
+        }
+    }
+
+    private boolean hasChildren() {
+        for (int slot = 0; slot < nSlots; slot++)
+            if (slotChildren[slot] != null)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns all the nodes below this one to the pool, and marks the actions to them as unexpanded
+     *
+     * @return The number of nodes removed
+     */
+    private int pruneChildren() {
+        int before = root.pool.inUse();
+        for (int slot = 0; slot < nSlots; slot++) {
+            if (slotChildren[slot] != null) {
+                for (SingleTreeNode child : slotChildren[slot])
+                    if (child != null)
+                        root.pool.release(child, Collections.emptySet());
+                slotChildren[slot] = null;
+            }
+        }
+        children.replaceAll((action, nodes) -> null);
+        return before - root.pool.inUse();
+    }
+
+    /**
+     * Removes a node that has been replaced in the tree (unless other threads, or other parents, may still be using it)
+     */
+    private void discard(SingleTreeNode node) {
+        // (the counts kept as the tree grew no longer hold once part of it is taken away)
+        root.treeCounts = null;
+        if (root.pool != null && root.searchThreads == null && root.transpositionTable == null)
+            root.pool.release(node, Collections.emptySet());
+    }
+
+    /**
+     * An estimate of the memory used by this node, its arrays and maps (assuming compressed references), excluding
+     * the game state and actions
+     */
+    long estimatedBytes() {
+        long bytes = 176; // object header and fields
+        bytes += 2 * (16 + 8L * totValue.length);
+        bytes += 16 + 4L * slotChildren.length;
+        for (int slot = 0; slot < nSlots; slot++)
+            if (slotChildren[slot] != null)
+                bytes += 16 + 4L * slotChildren[slot].length;
+        bytes += 2 * (16 + 4L * slotVisits.length) + 2 * (16 + 8L * slotValues.length) + 16 + 4L * availableSlots.length;
+        bytes += mapBytes(children.size()) + mapBytes(slots.size()) + mapBytes(advantagesOfActionsFromOLS.size());
+        return bytes;
+    }
+
+    private static long mapBytes(int entries) {
+        // a HashMap, with 32 bytes per entry and a table of at least 16 entries at load factor 0.75
+        int table = Math.max(16, Integer.highestOneBit(Math.max(1, (int) (entries / 0.75))) << 1);
+        return 48 + 16 + 4L * table + 32L * entries;
+    }
+
     public AbstractGameState getState() {
         return state;
     }
@@ -171,19 +543,32 @@ public class SingleTreeNode {
         // so check the MCTSParams as well
         openLoopState = actionState;
         if (actionState.getCurrentPlayer() == this.decisionPlayer) {
-            actionsFromOpenLoopState = forwardModel.computeAvailableActions(actionState);
+            actionsFromOpenLoopState = searchForwardModel().computeAvailableActions(actionState);
             //      System.out.printf("Setting OLS actions for P%d (%d)%n%s%n", decisionPlayer, actionState.getCurrentPlayer(),
 //                actionsFromOpenLoopState.stream().map(a -> "\t" + a.toString() + "\n").collect(joining()));
             if (params.expansionPolicy == MAST) {
                 advantagesOfActionsFromOLS = actionsFromOpenLoopState.stream()
                         .collect(toMap(a -> a, a -> root.MASTFunction.applyAsDouble(a, actionState)));
-            } else {
-                if (params.advantageFunction != null)
+            } else if (params.advantageFunction != null) {
+                if (params.cacheAdvantages) {
+                    // only score actions we have not seen before at this node; an expensive advantage function
+                    // (such as a rule-based evaluator) would otherwise be re-run for every action on every visit
+                    for (AbstractAction action : actionsFromOpenLoopState) {
+                        if (!advantagesOfActionsFromOLS.containsKey(action))
+                            advantagesOfActionsFromOLS.put(action, params.advantageFunction.evaluateAction(action, actionState));
+                    }
+                } else {
                     advantagesOfActionsFromOLS = actionsFromOpenLoopState.stream()
                             .collect(toMap(a -> a, a -> params.advantageFunction.evaluateAction(a, actionState)));
+                }
             }
-            for (AbstractAction action : actionsFromOpenLoopState) {
-                if (!children.containsKey(action)) {
+            if (availableSlots.length != actionsFromOpenLoopState.size())
+                availableSlots = new int[actionsFromOpenLoopState.size()];
+            for (int i = 0; i < availableSlots.length; i++) {
+                AbstractAction action = actionsFromOpenLoopState.get(i);
+                int slotsBefore = nSlots;
+                availableSlots[i] = slotFor(action);
+                if (nSlots > slotsBefore) {
                     children.put(action, null); // mark a new node to be expanded
                     // This *does* rely on a good equals method being implemented for Actions
                 }
@@ -195,6 +580,34 @@ public class SingleTreeNode {
      * Performs full MCTS search, using the defined budget limits.
      */
     public void mctsSearch(IStatisticLogger statsLogger) {
+        if (params.leafBatchSize > 1 && (params.treeThreads > 1 || this instanceof MultiTreeNode))
+            throw new AssertionError("Batched leaf evaluation is not supported with tree parallel or MultiTree search");
+        if (params.evictNodes && (params.maxTreeNodes <= 0 || params.treeThreads > 1 || params.transpositions
+                || this instanceof MultiTreeNode || this instanceof OMATreeNode))
+            throw new AssertionError("Node eviction needs maxTreeNodes, and a single-threaded search of one tree without OMA or transpositions");
+        if (determinisationExecutor != null)
+            determinisations = new DeterminisationPool(state, decisionPlayer, params.determinisationQueue,
+                    determinisationExecutor, params.determinisationThreads);
+        try {
+            if (params.treeThreads > 1)
+                treeParallelSearch(statsLogger);
+            else
+                serialSearch(statsLogger);
+        } finally {
+            if (determinisations != null)
+                determinisations.close();
+            determinisations = null;
+        }
+    }
+
+    private void serialSearch(IStatisticLogger statsLogger) {
+        if (params.leafBatchSize > 1) {
+            int batch = params.leafBatchSize * state.getNPlayers();
+            pendingLeaves = new ArrayList<>();
+            batchStates = new AbstractGameState[batch];
+            batchPlayers = new int[batch];
+            batchValues = new double[batch];
+        }
 
         // Variables for tracking time budget
         double avgTimeTaken;
@@ -211,25 +624,17 @@ public class SingleTreeNode {
         rolloutActionsTaken = 0;
         boolean stop = false;
         while (!stop) {
-            switch (params.information) {
-                case Closed_Loop:
-                    openLoopState = state;
-                    break;
-                case Open_Loop:
-                    openLoopState = state.copy();
-                    copyCount++;
-                    break;
-                case Information_Set:
-                    openLoopState = state.copy(decisionPlayer);
-                    copyCount++;
-                    break;
-            }
+            keepWithinNodeBudget();
+            resetOpenLoopState();
 
             // New timer for this iteration
             ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
 
             // Selection + expansion: navigate tree until a node not fully expanded is found, add a new node to the tree
-            oneSearchIteration();
+            if (pendingLeaves != null)
+                batchedSearchIteration();
+            else
+                oneSearchIteration();
 
             // Finished iteration
             numIters++;
@@ -240,8 +645,14 @@ public class SingleTreeNode {
                 // Time budget
                 acumTimeTaken += (elapsedTimerIteration.elapsedMillis());
                 avgTimeTaken = acumTimeTaken / numIters;
-                remaining = elapsedTimer.remainingTimeMillis();
-                stop = remaining <= 2 * avgTimeTaken || remaining <= remainingLimit;
+                if (timeManager != null) {
+                    int[] leader = leadingSlot();
+                    stop = timeManager.stop(elapsedTimer.elapsedMillis(), avgTimeTaken, leader[0],
+                            params.selectionPolicy == MCTSEnums.SelectionPolicy.ROBUST ? leader[1] : -1);
+                } else {
+                    remaining = elapsedTimer.remainingTimeMillis();
+                    stop = remaining <= 2 * avgTimeTaken || remaining <= remainingLimit;
+                }
             } else if (budgetType == BUDGET_ITERATIONS) {
                 // Iteration budget
                 stop = numIters >= params.budget;
@@ -254,19 +665,100 @@ public class SingleTreeNode {
                 stop = (copyCount + fmCallsCount) > params.budget || numIters > params.budget;
             }
         }
+        if (pendingLeaves != null) {
+            evaluatePendingLeaves();
+            pendingLeaves = null;
+        }
 
         if (statsLogger != null) {
             logTreeStatistics(statsLogger, numIters, elapsedTimer.elapsedMillis());
         }
     }
 
+    /**
+     * @return The most visited action slot of the decision being searched, and its lead in visits over the next
+     */
+    private int[] leadingSlot() {
+        SingleTreeNode node = decisionRoot();
+        int best = -1, bestVisits = 0, secondVisits = 0;
+        for (int slot = 0; slot < node.nSlots; slot++) {
+            int visits = node.slotVisits[slot];
+            if (visits > bestVisits) {
+                secondVisits = bestVisits;
+                bestVisits = visits;
+                best = slot;
+            } else if (visits > secondVisits) {
+                secondVisits = visits;
+            }
+        }
+        return new int[]{best, bestVisits - secondVisits};
+    }
+
+    /**
+     * @return The node whose actions are the decision being searched: this one, apart from in a MultiTree search
+     */
+    protected SingleTreeNode decisionRoot() {
+        return this;
+    }
+
+    /**
+     * Sets the state each iteration starts from: the root state itself in Closed Loop, otherwise a copy of it
+     * (redeterminised in an Information Set search)
+     */
+    private void resetOpenLoopState() {
+        switch (params.information) {
+            case Closed_Loop:
+                openLoopState = state;
+                break;
+            case Open_Loop:
+                openLoopState = state.copy();
+                copyCount++;
+                break;
+            case Information_Set:
+                openLoopState = determinisations != null ? determinisations.take() : state.copy(decisionPlayer);
+                copyCount++;
+                break;
+        }
+    }
+
+    /**
+     * Pondering: searches from this root on the calling thread until stop is set, sleeping between iterations so
+     * that no more than params.ponderShare of the elapsed time is spent searching. There is no budget, so
+     * params.maxTreeNodes (which pondering needs) limits the size of the tree: the search stops once the tree is full,
+     * unless nodes are evicted to keep it within that size.
+     *
+     * @return The number of iterations run
+     */
+    int ponder(AtomicBoolean stop) {
+        long start = System.nanoTime();
+        long busy = 0;
+        int iterations = 0;
+        while (!stop.get() && (params.evictNodes || !treeFull())) {
+            long iterationStart = System.nanoTime();
+            keepWithinNodeBudget();
+            resetOpenLoopState();
+            oneSearchIteration();
+            iterations++;
+            busy += System.nanoTime() - iterationStart;
+            // sleep off any time over our share, a millisecond at a time so that we stop promptly when asked
+            while (!stop.get() && busy > params.ponderShare * (System.nanoTime() - start)) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return iterations;
+                }
+            }
+        }
+        return iterations;
+    }
+
     /**
      * oneSearchIteration() implements the strategy for tree search (plus expansion, rollouts, backup and so on)
      * Its result is purely stored in the tree generated from root
      */
     protected void oneSearchIteration() {
-        double[] startingValues = IntStream.range(0, openLoopState.getNPlayers())
-                .mapToDouble(i -> heuristic.evaluateState(openLoopState, i)).toArray();
+        double[] startingValues = evaluateForAllPlayers(openLoopState);
 
         List<Pair<Integer, AbstractAction>> treeActions = new ArrayList<>();
         SingleTreeNode selected = treePolicy(treeActions);
@@ -280,6 +772,351 @@ public class SingleTreeNode {
         updateMASTStatistics(treeActions, rolloutActions, delta);
     }
 
+    /**
+     * Batched leaf evaluation (params.leafBatchSize > 1): selection, expansion and rollout are as in
+     * oneSearchIteration(), but the state reached is queued rather than evaluated. Once leafBatchSize are waiting
+     * the heuristic scores them all (for every player) in one call, and they are then backed up. Meanwhile the
+     * nodes on each waiting path count as virtual losses in ucb(), as in tree-parallel search, so that the
+     * iterations of a batch spread across the tree.
+     */
+    private void batchedSearchIteration() {
+        double[] startingValues = evaluateForAllPlayers(openLoopState);
+
+        List<Pair<Integer, AbstractAction>> treeActions = new ArrayList<>();
+        SingleTreeNode selected = treePolicy(treeActions);
+        List<Pair<Integer, AbstractAction>> rolloutActions = new ArrayList<>();
+        int lastActorInTree = treeActions.isEmpty() ? decisionPlayer : treeActions.get(treeActions.size() - 1).a;
+        AbstractGameState leafState = selected.rollOutFrom(rolloutActions, decisionPlayer, lastActorInTree, selected.openLoopState);
+        rolloutActionsTaken += rolloutActions.size();
+
+        PendingLeaf leaf = new PendingLeaf(selected, leafState, startingValues, treeActions, rolloutActions, transpositionPath);
+        if (transpositionPath != null) {
+            for (Pair<SingleTreeNode, Integer> step : transpositionPath)
+                if (step.a != this)
+                    step.a.inFlight++;
+            transpositionPath = new ArrayList<>();  // as the leaf keeps this one for its back up
+        } else {
+            for (SingleTreeNode n = selected; n != this; n = n.parent)
+                n.inFlight++;
+        }
+        pendingLeaves.add(leaf);
+        // the first iteration is backed up straight away, as ucb() needs the range of rewards seen so far
+        if (pendingLeaves.size() >= params.leafBatchSize || nVisits == 0)
+            evaluatePendingLeaves();
+    }
+
+    private void evaluatePendingLeaves() {
+        int nPlayers = state.getNPlayers();
+        int n = 0;
+        for (PendingLeaf leaf : pendingLeaves) {
+            for (int p = 0; p < nPlayers; p++) {
+                batchStates[n] = leaf.state;
+                batchPlayers[n] = p;
+                n++;
+            }
+        }
+        heuristic.evaluateStates(batchStates, batchPlayers, n, batchValues);
+        for (int i = 0; i < pendingLeaves.size(); i++) {
+            PendingLeaf leaf = pendingLeaves.get(i);
+            double[] delta = new double[nPlayers];
+            for (int p = 0; p < nPlayers; p++)
+                delta[p] = batchValues[i * nPlayers + p] - leaf.startingValues[p];
+            List<Pair<SingleTreeNode, Integer>> currentPath = transpositionPath;
+            transpositionPath = leaf.path;
+            leaf.node.backUp(delta);
+            transpositionPath = currentPath;
+            updateMASTStatistics(leaf.treeActions, leaf.rolloutActions, delta);
+        }
+        Arrays.fill(batchStates, 0, n, null);
+        pendingLeaves.clear();
+    }
+
+    /**
+     * An iteration waiting for its leaf state to be evaluated in a batch
+     */
+    private static final class PendingLeaf {
+        final SingleTreeNode node;
+        final AbstractGameState state;
+        final double[] startingValues;
+        final List<Pair<Integer, AbstractAction>> treeActions, rolloutActions;
+        final List<Pair<SingleTreeNode, Integer>> path;  // only with transpositions
+
+        PendingLeaf(SingleTreeNode node, AbstractGameState state, double[] startingValues, List<Pair<Integer, AbstractAction>> treeActions,
+                    List<Pair<Integer, AbstractAction>> rolloutActions, List<Pair<SingleTreeNode, Integer>> path) {
+            this.node = node;
+            this.state = state;
+            this.startingValues = startingValues;
+            this.treeActions = treeActions;
+            this.rolloutActions = rolloutActions;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Scores the state for every player with a single call to the heuristic (which can then share work between them)
+     */
+    private double[] evaluateForAllPlayers(AbstractGameState gs) {
+        double[] retValue = new double[gs.getNPlayers()];
+        heuristic.evaluateAllPlayers(gs, retValue);
+        return retValue;
+    }
+
+    /**
+     * Tree parallelisation: params.treeThreads threads run search iterations on this one tree at the same time.
+     * <p>
+     * A thread holds the lock on a node while it selects (or expands) from it, and while it backs up through it,
+     * but never holds two locks at once. Each node passed through on the way down is marked as in flight until the
+     * thread backs up, and ucb() counts these as virtual losses so that other threads are steered away from the
+     * path being explored. Every thread has its own forward model, rollout and opponent policies, and random numbers.
+     * <p>
+     * The iteration budget is shared across all threads; time budgets apply to each thread (so the decision takes
+     * the same elapsed time as a single-threaded search), and forward model and copy budgets are split between them.
+     * Only Open_Loop and Information_Set searches with a single tree (SelfOnly, Paranoid or MaxN) and without MAST
+     * are supported.
+     */
+    protected void treeParallelSearch(IStatisticLogger statsLogger) {
+        if (params.information == Closed_Loop || !(params.opponentTreePolicy == SelfOnly
+                || params.opponentTreePolicy == Paranoid || params.opponentTreePolicy == MaxN))
+            throw new AssertionError("Tree parallel MCTS needs Open_Loop or Information_Set, and a SelfOnly, Paranoid or MaxN tree");
+        if (params.useMAST)
+            throw new AssertionError("Tree parallel MCTS does not support MAST");
+        if (treeExecutor == null)
+            throw new AssertionError("No threads provided for tree parallel MCTS");
+
+        ElapsedCpuTimer elapsedTimer = new ElapsedCpuTimer();
+        // the threads are set up here, as this copies the game state and policies, and only the searches run concurrently
+        SearchThread[] threads = new SearchThread[params.treeThreads];
+        threads[0] = new SearchThread(state, forwardModel, opponentModels, rnd);
+        for (int i = 1; i < threads.length; i++) {
+            AbstractForwardModel threadModel = forwardModel.copy();
+            AbstractPlayer[] threadPolicies = new AbstractPlayer[opponentModels.length];
+            for (int p = 0; p < threadPolicies.length; p++) {
+                // a thread-safe policy is shared by all the threads, rather than copied for each
+                if (opponentModels[p].isThreadSafe()) {
+                    threadPolicies[p] = opponentModels[p];
+                    continue;
+                }
+                threadPolicies[p] = opponentModels[p].copy();
+                threadPolicies[p].setForwardModel(threadModel);
+            }
+            threads[i] = new SearchThread(state.copy(), threadModel, threadPolicies, new Random(rnd.nextLong()));
+            copyCount++;
+        }
+        searchThreads = new ThreadLocal<>();
+        AtomicInteger iterationsStarted = new AtomicInteger();
+        try {
+            List<Future<?>> searches = new ArrayList<>();
+            for (int i = 1; i < threads.length; i++) {
+                SearchThread thread = threads[i];
+                searches.add(treeExecutor.submit(() -> runSearchThread(thread, iterationsStarted)));
+            }
+            runSearchThread(threads[0], iterationsStarted);
+            for (Future<?> search : searches)
+                search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted during tree parallel search", e);
+        } catch (ExecutionException e) {
+            throw new AssertionError("Error in tree parallel search", e.getCause());
+        } finally {
+            searchThreads = null;
+        }
+
+        int numIters = 0;
+        rolloutActionsTaken = 0;
+        for (SearchThread thread : threads) {
+            numIters += thread.iterations;
+            fmCallsCount += thread.fmCalls;
+            copyCount += thread.copies;
+            rolloutActionsTaken += thread.rolloutActions;
+        }
+        if (statsLogger != null) {
+            logTreeStatistics(statsLogger, numIters, elapsedTimer.elapsedMillis());
+        }
+    }
+
+    private void runSearchThread(SearchThread thread, AtomicInteger iterationsStarted) {
+        ThreadLocal<SearchThread> threads = searchThreads;
+        threads.set(thread);
+        double acumTimeTaken = 0;
+        ElapsedCpuTimer elapsedTimer = new ElapsedCpuTimer();
+        if (params.budgetType == BUDGET_TIME) {
+            elapsedTimer.setMaxTimeMillis(params.budget);
+        }
+        int budgetShare = params.budget / params.treeThreads;
+
+        try {
+            boolean stop = false;
+            while (!stop) {
+                if (params.budgetType == BUDGET_ITERATIONS && iterationsStarted.getAndIncrement() >= params.budget)
+                    break;
+                ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
+                AbstractGameState iterationState = params.information == Open_Loop ? thread.rootState.copy()
+                        : determinisations != null ? determinisations.take() : thread.rootState.copy(decisionPlayer);
+                thread.copies++;
+                parallelSearchIteration(iterationState);
+                thread.iterations++;
+
+                PlayerConstants budgetType = params.budgetType;
+                if (budgetType == BUDGET_TIME) {
+                    acumTimeTaken += (elapsedTimerIteration.elapsedMillis());
+                    double avgTimeTaken = acumTimeTaken / thread.iterations;
+                    long remaining = elapsedTimer.remainingTimeMillis();
+                    stop = remaining <= 2 * avgTimeTaken || remaining <= params.breakMS;
+                } else if (budgetType == BUDGET_FM_CALLS) {
+                    stop = thread.fmCalls > budgetShare || thread.iterations > budgetShare;
+                } else if (budgetType == BUDGET_COPY_CALLS) {
+                    stop = thread.copies > budgetShare || thread.iterations > budgetShare;
+                } else if (budgetType == BUDGET_FMANDCOPY_CALLS) {
+                    stop = (thread.copies + thread.fmCalls) > budgetShare || thread.iterations > budgetShare;
+                }
+            }
+        } finally {
+            threads.remove();
+        }
+    }
+
+    /**
+     * One iteration of tree-parallel search, from this root with the thread's own copy of the state. This follows
+     * oneSearchIteration(), but the selection and expansion of treePolicy() are done under the lock of each node in
+     * turn, and the state is carried down (and into the rollout) by this thread rather than left on the nodes.
+     */
+    private void parallelSearchIteration(AbstractGameState iterationState) {
+        double[] startingValues = evaluateForAllPlayers(iterationState);
+
+        SingleTreeNode cur = this;
+        int actingPlayer = decisionPlayer;
+        int lastActorInTree = decisionPlayer;
+        while (true) {
+            AbstractAction chosen;
+            boolean expanding;
+            synchronized (cur) {
+                if (cur.openLoopState != iterationState) {
+                    // as in mctsSearch(), the actions at the root are those from the start of the search
+                    if (cur == this)
+                        cur.openLoopState = iterationState;
+                    else
+                        cur.setActionsFromOpenLoopState(iterationState);
+                }
+                if (!iterationState.isNotTerminalForPlayer(actingPlayer) || cur.depth >= params.maxTreeDepth || cur.actionsFromOpenLoopState.isEmpty())
+                    break;
+                List<AbstractAction> unexpanded = cur.unexpandedActions();
+                expanding = !unexpanded.isEmpty();
+                if (expanding && cur.treeFull())
+                    break;
+                chosen = expanding ? cur.expand(unexpanded) : cur.treePolicyAction();
+            }
+            // other threads can select from cur while we move the state on
+            cur.advance(iterationState, chosen);
+            SingleTreeNode next;
+            synchronized (cur) {
+                next = cur.childInTree(chosen, iterationState);
+                IN_FLIGHT.incrementAndGet(next);
+            }
+            cur = next;
+            if (expanding)
+                break;
+            lastActorInTree = actingPlayer;
+        }
+
+        List<Pair<Integer, AbstractAction>> rolloutActions = new ArrayList<>();
+        double[] delta = cur.rollOut(rolloutActions, startingValues, decisionPlayer, lastActorInTree, iterationState);
+        searchThread().rolloutActions += rolloutActions.size();
+        cur.backUp(delta);
+    }
+
+    /**
+     * Used in tree-parallel search, under the lock on this node, to find the child reached by the chosen action
+     * (as nextNodeInTree() does), or to create it if this is an expansion or no thread has reached it yet
+     */
+    private SingleTreeNode childInTree(AbstractAction chosen, AbstractGameState nextState) {
+        SingleTreeNode[] nodeArray = children.get(chosen);
+        if (nodeArray == null)
+            return expandNode(chosen, nextState);
+        int nextPlayer = params.opponentTreePolicy.selfOnlyTree ? decisionPlayer : nextState.getCurrentPlayer();
+        SingleTreeNode nextNode = nodeArray[nextPlayer];
+        if (nextNode == null || (params.opponentTreePolicy.selfOnlyTree && nextNode.decisionPlayer != decisionPlayer)) {
+            // (a replaced node is not discarded, as other threads may be below it)
+            nodeArray[nextPlayer] = SingleTreeNode.createChildNode(this, chosen.copy(), nextState);
+            nextNode = nodeArray[nextPlayer];
+        }
+        return nextNode;
+    }
+
+    private int slotInFlight(int slot) {
+        int retValue = 0;
+        SingleTreeNode[] nodes = slotChildren[slot];
+        if (nodes != null) {
+            for (SingleTreeNode node : nodes) {
+                if (node != null)
+                    retValue += node.inFlight;
+            }
+        }
+        return retValue;
+    }
+
+    /**
+     * The forward model, policies and random numbers are those of the searching thread in tree-parallel search
+     */
+    private SearchThread searchThread() {
+        ThreadLocal<SearchThread> threads = root.searchThreads;
+        return threads == null ? null : threads.get();
+    }
+
+    protected AbstractForwardModel searchForwardModel() {
+        SearchThread thread = searchThread();
+        return thread == null ? forwardModel : thread.forwardModel;
+    }
+
+    protected AbstractPlayer searchPolicy(int player) {
+        SearchThread thread = searchThread();
+        return thread == null ? opponentModels[player] : thread.opponentModels[player];
+    }
+
+    protected Random searchRnd() {
+        SearchThread thread = searchThread();
+        return thread == null ? rnd : thread.rnd;
+    }
+
+    protected void countFMCall() {
+        SearchThread thread = searchThread();
+        if (thread == null)
+            root.fmCallsCount++;
+        else
+            thread.fmCalls++;
+    }
+
+    protected void countCopy() {
+        SearchThread thread = searchThread();
+        if (thread == null)
+            root.copyCount++;
+        else
+            thread.copies++;
+    }
+
+    private int fmCallsSoFar() {
+        SearchThread thread = searchThread();
+        return thread == null ? root.fmCallsCount : thread.fmCalls;
+    }
+
+    /**
+     * What each thread needs of its own in tree-parallel search, and its counts (added to the root's at the end)
+     */
+    static final class SearchThread {
+        final AbstractGameState rootState;
+        final AbstractForwardModel forwardModel;
+        final AbstractPlayer[] opponentModels;
+        final Random rnd;
+        int iterations, fmCalls, copies, rolloutActions;
+
+        SearchThread(AbstractGameState rootState, AbstractForwardModel forwardModel, AbstractPlayer[] opponentModels, Random rnd) {
+            this.rootState = rootState;
+            this.forwardModel = forwardModel;
+            this.opponentModels = opponentModels;
+            this.rnd = rnd;
+        }
+    }
+
     protected void updateMASTStatistics(List<Pair<Integer, AbstractAction>> tree, List<Pair<Integer, AbstractAction>> rollout, double[] value) {
         if (params.useMAST) {
             List<Pair<Integer, AbstractAction>> MASTActions = new ArrayList<>();
@@ -308,6 +1145,7 @@ public class SingleTreeNode {
         double[] visitProportions = Arrays.stream(actionVisits()).asDoubleStream().map(d -> d / nVisits).toArray();
         stats.put("visitEntropy", entropyOf(visitProportions));
         stats.put("iterations", numIters);
+        stats.put("reusedVisits", reusedVisits);
         stats.put("fmCalls", fmCallsCount);
         stats.put("copyCalls", copyCount);
         stats.put("time", timeTaken);
@@ -318,8 +1156,17 @@ public class SingleTreeNode {
         stats.put("nActionsRoot", children.size());
         stats.put("nActionsTree", treeStats.meanActionsAtNode);
         stats.put("maxActionsAtNode", treeStats.maxActionsAtNode);
+        stats.put("peakNodes", treeStats.peakNodes);
+        stats.put("transpositions", transpositionsFound);
+        stats.put("pooledDeterminisations", determinisations == null ? 0.0 : determinisations.pooledProportion());
+        stats.put("bytesPerNode", treeStats.bytesPerNode);
+        stats.put("estimatedBytes", treeStats.estimatedBytes);
+        stats.put("nodesInUse", pool != null ? pool.inUse() : treeStats.totalNodes);
+        stats.put("evictedNodes", evictedNodes);
+        if (timeManager != null)
+            stats.put("timeAllocated", timeManager.allocated());
         OptionalInt maxVisits = Arrays.stream(actionVisits()).max();
-        stats.put("maxVisitProportion", (maxVisits.isPresent() ? maxVisits.getAsInt() : 0) / (double) numIters);
+        stats.put("maxVisitProportion", (maxVisits.isPresent() ? maxVisits.getAsInt() : 0) / (double) nVisits);
         AbstractAction bestAction = bestAction();
         stats.put("bestAction", bestAction);
         stats.put("bestValue", this.actionTotValue(bestAction, decisionPlayer) / this.actionVisits(bestAction));
@@ -334,50 +1181,38 @@ public class SingleTreeNode {
      * Uses plain java loop instead of streams for performance
      * (this is called often enough it can make a measurable difference)
      */
-    protected int actionVisits(AbstractAction action) {
-        int retValue = 0;
-        SingleTreeNode[] nodes = children.get(action);
-        if (nodes != null) {
-            for (SingleTreeNode node : nodes) {
-                if (node != null)
-                    retValue += node.nVisits;
-            }
-        }
-        return retValue;
+    public int actionVisits(AbstractAction action) {
+        int slot = slotOf(action);
+        return slot < 0 ? 0 : slotVisits[slot];
+    }
+
+    /**
+     * @return The number of visits to this node in which the action was available (all of them in Closed Loop)
+     */
+    public int actionValidVisits(AbstractAction action) {
+        if (params.information == Closed_Loop)
+            return nVisits;
+        int slot = slotOf(action);
+        return slot < 0 ? 0 : slotValidVisits[slot];
     }
 
     private int validVisitsFor(AbstractAction action) {
+        return validVisitsFor(slotOf(action));
+    }
+
+    private int validVisitsFor(int slot) {
         if (params.information == Closed_Loop)
             return nVisits;
-        return nValidVisits.getOrDefault(action, 1);
+        return slot < 0 ? 1 : Math.max(1, slotValidVisits[slot]);
     }
 
     /**
      * Uses plain java loop instead of streams for performance
      * (this is called often enough it can make a measurable difference)
      */
-    protected double actionTotValue(AbstractAction action, int playerId) {
-        double retValue = 0.0;
-        SingleTreeNode[] nodes = children.get(action);
-        if (nodes != null) {
-            for (SingleTreeNode node : nodes) {
-                if (node != null)
-                    retValue += node.totValue[playerId];
-            }
-        }
-        return retValue;
-    }
-
-    private double actionSquaredValue(AbstractAction action, int playerId) {
-        double retValue = 0.0;
-        SingleTreeNode[] nodes = children.get(action);
-        if (nodes != null) {
-            for (SingleTreeNode node : nodes) {
-                if (node != null)
-                    retValue += node.totSquares[playerId];
-            }
-        }
-        return retValue;
+    public double actionTotValue(AbstractAction action, int playerId) {
+        int slot = slotOf(action);
+        return slot < 0 ? 0.0 : slotValues[slot * totValue.length + playerId];
     }
 
     /**
@@ -385,9 +1220,9 @@ public class SingleTreeNode {
      * For this reason not converted to old-style java loop as there would be no performance gain
      */
     int[] actionVisits() {
-        return children.values().stream()
-                .filter(Objects::nonNull)
-                .mapToInt(arr -> Arrays.stream(arr).filter(Objects::nonNull).mapToInt(n -> n.nVisits).sum())
+        return children.keySet().stream()
+                .filter(a -> children.get(a) != null)
+                .mapToInt(this::actionVisits)
                 .toArray();
     }
 
@@ -402,11 +1237,18 @@ public class SingleTreeNode {
 
         SingleTreeNode cur = this;
         int actingPlayer = cur.decisionPlayer;
+        if (transpositionTable != null) {
+            transpositionPath.clear();
+            transpositionPath.add(new Pair<>(this, -1));
+        }
 
         // Keep iterating while the state reached is not terminal and the depth of the tree is not exceeded
         while (cur.openLoopState.isNotTerminalForPlayer(actingPlayer) && cur.depth < params.maxTreeDepth && cur.actionsFromOpenLoopState.size() > 0) {
             List<AbstractAction> unexpanded = cur.unexpandedActions();
             if (!unexpanded.isEmpty()) {
+                // there is no room for a new node, so we roll out from here
+                if (cur.treeFull())
+                    return cur;
                 // We have an unexpanded action
                 AbstractAction chosen = cur.expand(unexpanded);
                 AbstractGameState nextState = cur.openLoopState;
@@ -419,7 +1261,10 @@ public class SingleTreeNode {
                 }
                 cur.advance(nextState, chosen);
                 // then create the new node
-                return cur.expandNode(chosen, nextState);
+                SingleTreeNode expanded = cur.expandNode(chosen, nextState);
+                if (transpositionTable != null)
+                    transpositionPath.add(new Pair<>(expanded, cur.slotOf(chosen)));
+                return expanded;
             } else {
                 // Move to next child given by UCT function
                 AbstractAction chosen = cur.treePolicyAction();
@@ -429,7 +1274,10 @@ public class SingleTreeNode {
                     // to pick it up in the next uct() call as we descend the tree
                     cur.advance(cur.openLoopState, chosen);
                 }
-                cur = cur.nextNodeInTree(chosen);
+                SingleTreeNode next = cur.nextNodeInTree(chosen);
+                if (transpositionTable != null)
+                    transpositionPath.add(new Pair<>(next, cur.slotOf(chosen)));
+                cur = next;
                 // else we keep cur, but will exit immediately
                 treeActions.add(new Pair<>(actingPlayer, chosen));
             }
@@ -460,7 +1308,16 @@ public class SingleTreeNode {
         List<AbstractAction> topActions = params.progressiveWideningConstant >= 1.0
                 ? actionsToConsider(actionsFromOpenLoopState, 0)
                 : actionsFromOpenLoopState;
-        List<AbstractAction> allUnexpanded = topActions.stream().filter(a -> children.get(a) == null).collect(toList());
+        List<AbstractAction> allUnexpanded;
+        if (topActions == actionsFromOpenLoopState) {
+            allUnexpanded = new ArrayList<>();
+            for (int i = 0; i < availableSlots.length; i++) {
+                if (slotChildren[availableSlots[i]] == null)
+                    allUnexpanded.add(actionsFromOpenLoopState.get(i));
+            }
+        } else {
+            allUnexpanded = topActions.stream().filter(a -> children.get(a) == null).collect(toList());
+        }
         return actionsToConsider(allUnexpanded, topActions.size() - allUnexpanded.size());
     }
 
@@ -497,12 +1354,29 @@ public class SingleTreeNode {
     }
 
     protected SingleTreeNode expandNode(AbstractAction actionCopy, AbstractGameState nextState) {
-        // then instantiate a new node
         int nextPlayer = params.opponentTreePolicy.selfOnlyTree ? decisionPlayer : nextState.getCurrentPlayer();
-        SingleTreeNode tn = SingleTreeNode.createChildNode(this, actionCopy, nextState);
         SingleTreeNode[] nodeArray = new SingleTreeNode[nextState.getNPlayers()];
+        Map<Long, SingleTreeNode> table = root.transpositionTable;
+        long hash = table == null ? 0L : ((IStateHash) nextState).getStateHash();
+        SingleTreeNode transposition = table == null ? null : table.get(hash);
+        // the same number of actions must have been taken to reach it, so that the tree stays acyclic
+        if (transposition != null && transposition.depth == depth + 1 && transposition.decisionPlayer == nextPlayer) {
+            root.transpositionsFound++;
+            nodeArray[nextPlayer] = transposition;
+            children.put(actionCopy, nodeArray);
+            int slot = slotFor(actionCopy);  // (which may grow slotChildren)
+            slotChildren[slot] = nodeArray;
+            if (params.information != Closed_Loop)
+                transposition.setActionsFromOpenLoopState(nextState);
+            return transposition;
+        }
+        // then instantiate a new node
+        SingleTreeNode tn = SingleTreeNode.createChildNode(this, actionCopy, nextState);
         nodeArray[nextPlayer] = tn; // we store this by id of the player who will take their turn next
         children.put(actionCopy, nodeArray);
+        slotChildren[tn.actionSlot] = nodeArray;
+        if (table != null)
+            table.put(hash, tn);
         return tn;
     }
 
@@ -518,8 +1392,8 @@ public class SingleTreeNode {
      */
     protected void advance(AbstractGameState gs, AbstractAction act) {
         // we execute a copy(), because this can change the action, so we then don't find the node later!
-        forwardModel.next(gs, act.copy());
-        root.fmCallsCount++;
+        searchForwardModel().next(gs, act.copy());
+        countFMCall();
         if (params.opponentTreePolicy == SelfOnly && gs.getCurrentPlayer() != decisionPlayer)
             advanceToTurnOfPlayer(gs, decisionPlayer);
     }
@@ -534,13 +1408,14 @@ public class SingleTreeNode {
         // For the moment we only have one opponent model - that of a random player
         while (gs.getCurrentPlayer() != id && gs.isNotTerminalForPlayer(id)) {
             //       AbstractGameState preGS = gs.copy();
-            AbstractPlayer oppModel = opponentModels[gs.getCurrentPlayer()];
-            List<AbstractAction> availableActions = forwardModel.computeAvailableActions(gs);
+            AbstractPlayer oppModel = searchPolicy(gs.getCurrentPlayer());
+            AbstractForwardModel fm = searchForwardModel();
+            List<AbstractAction> availableActions = fm.computeAvailableActions(gs);
             if (availableActions.isEmpty())
                 throw new AssertionError("Should always have at least one action possible...");
             AbstractAction action = oppModel.getAction(gs, availableActions);
-            forwardModel.next(gs, action);
-            root.fmCallsCount++;
+            fm.next(gs, action);
+            countFMCall();
         }
     }
 
@@ -602,6 +1477,7 @@ public class SingleTreeNode {
                 nodeArray[nextPlayer] = SingleTreeNode.createChildNode(this, actionChosen.copy(), openLoopState);
                 nextNode = nodeArray[nextPlayer];
             } else if (params.opponentTreePolicy.selfOnlyTree && nextNode.decisionPlayer != decisionPlayer) {
+                discard(nextNode);
                 nodeArray[nextPlayer] = SingleTreeNode.createChildNode(this, actionChosen.copy(), openLoopState);
                 nextNode = nodeArray[nextPlayer];
             } else {
@@ -621,15 +1497,26 @@ public class SingleTreeNode {
         double nodeValue = totValue[decisionPlayer] / nVisits;
         // nodeValue is the value of the state, V(s), and is used as a baseline when we use an Advantage function later
 
-        for (AbstractAction action : availableActions) {
-            SingleTreeNode[] childArray = children.get(action);
-            if (childArray == null)
+        // the slots of the actions are already known, unless progressive widening has given us a subset
+        boolean slotsKnown = availableActions == actionsFromOpenLoopState;
+        int nPlayers = totValue.length;
+        for (int i = 0; i < availableActions.size(); i++) {
+            AbstractAction action = availableActions.get(i);
+            int slot = slotsKnown ? availableSlots[i] : slotOf(action);
+            if (slot < 0 || slotChildren[slot] == null)
                 throw new AssertionError("Should not be here");
 
             // Find child value
-            double hvVal = actionTotValue(action, decisionPlayer);
-
-            int actionVisits = actionVisits(action);
+            double hvVal = slotValues[slot * nPlayers + decisionPlayer];
+
+            double actionVisits = slotVisits[slot];
+            if (root.searchThreads != null || root.pendingLeaves != null) {
+                // virtual loss: each thread (or batched iteration) still searching below this action counts as visits
+                // with the lowest reward seen, to steer others elsewhere until it backs up its real result
+                double virtualVisits = params.virtualLoss * slotInFlight(slot);
+                hvVal += virtualVisits * (root.lowReward == Double.POSITIVE_INFINITY ? 0.0 : root.lowReward);
+                actionVisits += virtualVisits;
+            }
             double childValue = hvVal / (actionVisits + params.epsilon);
 
             // consider OMA term
@@ -665,7 +1552,7 @@ public class SingleTreeNode {
             }
 
             // default to standard UCB
-            int effectiveTotalVisits = validVisitsFor(action) + 1;
+            int effectiveTotalVisits = validVisitsFor(slot) + 1;
             double explorationTerm = params.K * Math.sqrt(Math.log(effectiveTotalVisits) / (actionVisits + params.epsilon));
             // unless we are using a variant
             switch (params.treePolicy) {
@@ -675,13 +1562,13 @@ public class SingleTreeNode {
                 case UCB_Tuned:
                     double range = root.highReward - root.lowReward;
                     if (range < 1e-6) range = 1e-6;
-                    double meanSq = actionSquaredValue(action, decisionPlayer) / (actionVisits + params.epsilon);
+                    double meanSq = slotSquares[slot * nPlayers + decisionPlayer] / (actionVisits + params.epsilon);
                     double standardVar = 0.25;
                     if (params.normaliseRewards) {
                         // we also need to standardise the sum of squares to calculate the variance
                         meanSq = (meanSq
                                 + root.lowReward * root.lowReward
-                                - 2 * root.lowReward * actionTotValue(action, decisionPlayer) / (actionVisits + params.epsilon)
+                                - 2 * root.lowReward * hvVal / (actionVisits + params.epsilon)
                         ) / (range * range);
                     } else {
                         // we need to modify the standard variance as it is not on a 0..1 basis (which is where 0.25 comes from)
@@ -702,7 +1589,7 @@ public class SingleTreeNode {
             uctValue = childValue + explorationTerm;
 
             // Apply small noise to break ties randomly
-            uctValue = noise(uctValue, params.epsilon, rnd.nextDouble());
+            uctValue = noise(uctValue, params.epsilon, searchRnd().nextDouble());
             if (Double.isNaN(uctValue))
                 throw new AssertionError("Numeric error calculating uctValue");
 
@@ -773,7 +1660,7 @@ public class SingleTreeNode {
                 toMap(Map.Entry::getKey, e -> e.getValue() * (1.0 - params.exploreEpsilon) + exploreBonus));
 
         // then we sample a uniform variable in [0, 1] and ascend the cdf to find the selection
-        double cdfSample = rnd.nextDouble();
+        double cdfSample = searchRnd().nextDouble();
         double cdf = 0.0;
         for (AbstractAction action : probabilityOfSelection.keySet()) {
             cdf += probabilityOfSelection.get(action);
@@ -789,12 +1676,39 @@ public class SingleTreeNode {
      * @return - value of rollout.
      */
     protected double[] rollOut(List<Pair<Integer, AbstractAction>> rolloutActions, double[] startingValues, int decisionPlayer, int lastActor) {
+        return rollOut(rolloutActions, startingValues, decisionPlayer, lastActor, openLoopState);
+    }
+
+    /**
+     * Perform a Monte Carlo rollout from the given (open loop) state reached at this node. This is used by
+     * tree-parallel search, where openLoopState may have been overwritten by another thread.
+     *
+     * @return - value of rollout.
+     */
+    protected double[] rollOut(List<Pair<Integer, AbstractAction>> rolloutActions, double[] startingValues, int decisionPlayer, int lastActor,
+                               AbstractGameState fromState) {
+        AbstractGameState rolloutState = rollOutFrom(rolloutActions, decisionPlayer, lastActor, fromState);
+        // Evaluate final state and return normalised score
+        double[] retValue = evaluateForAllPlayers(rolloutState);
+        for (int i = 0; i < retValue.length; i++) {
+            retValue[i] -= startingValues[i];
+        }
+        return retValue;
+    }
+
+    /**
+     * The rollout itself, without the evaluation at the end
+     *
+     * @return - the state the rollout finishes in.
+     */
+    private AbstractGameState rollOutFrom(List<Pair<Integer, AbstractAction>> rolloutActions, int decisionPlayer, int lastActor,
+                                          AbstractGameState fromState) {
         int rolloutDepth = 0; // counting from end of tree
 
-        int roundAtStartOfRollout = openLoopState.getTurnOrder().getRoundCounter();
+        int roundAtStartOfRollout = fromState.getTurnOrder().getRoundCounter();
 
         // If rollouts are enabled, select actions for the rollout in line with the rollout policy
-        AbstractGameState rolloutState = openLoopState;
+        AbstractGameState rolloutState = fromState;
         if (params.rolloutLength > 0 || params.rolloutTermination != DEFAULT) {
             // even if rollout length is zero, we may rollout a few actions to reach the end of our turn, or the start of our next turn
             if (params.information == Closed_Loop) {
@@ -802,30 +1716,24 @@ public class SingleTreeNode {
                 // model at each action. Hence the current state on the node is the one we have been using up to now.
                 /// Hence we do not need to copy it.
                 rolloutState = state.copy();
-                root.copyCount++;
+                countCopy();
             }
 
             while (!finishRollout(rolloutState, rolloutDepth, decisionPlayer, lastActor, roundAtStartOfRollout)) {
-                List<AbstractAction> availableActions = forwardModel.computeAvailableActions(rolloutState);
+                List<AbstractAction> availableActions = searchForwardModel().computeAvailableActions(rolloutState);
                 if (availableActions.isEmpty())
                     break;
-                AbstractAction next = opponentModels[rolloutState.getCurrentPlayer()].getAction(rolloutState, availableActions);
+                AbstractAction next = searchPolicy(rolloutState.getCurrentPlayer()).getAction(rolloutState, availableActions);
                 lastActor = rolloutState.getCurrentPlayer();
                 rolloutActions.add(new Pair<>(lastActor, next));
-                int startingFMCalls = root.fmCallsCount;
+                int startingFMCalls = fmCallsSoFar();
                 advance(rolloutState, next);
                 // rollout moves can be tracked by total forward model calls
                 // as these may occur for opponent moves, which should count against our budget
-                rolloutDepth += (root.fmCallsCount - startingFMCalls);
+                rolloutDepth += (fmCallsSoFar() - startingFMCalls);
             }
         }
-        // Evaluate final state and return normalised score
-        double[] retValue = new double[rolloutState.getNPlayers()];
-
-        for (int i = 0; i < retValue.length; i++) {
-            retValue[i] = heuristic.evaluateState(rolloutState, i) - startingValues[i];
-        }
-        return retValue;
+        return rolloutState;
     }
 
     /**
@@ -865,68 +1773,111 @@ public class SingleTreeNode {
         for (int i = 0; i < result.length; i++)
             squaredResults[i] = result[i] * result[i];
 
+        boolean treeParallel = root.searchThreads != null;
         if (params.normaliseRewards || params.treePolicy == MCTSEnums.TreePolicy.UCB_Tuned) {
             DoubleSummaryStatistics stats = Arrays.stream(result).summaryStatistics();
-            if (n.root.lowReward > stats.getMin())
-                n.root.lowReward = stats.getMin();
-            if (n.root.highReward < stats.getMax())
-                n.root.highReward = stats.getMax();
+            if (treeParallel) {
+                synchronized (root) {
+                    root.updateRewardRange(stats);
+                }
+            } else {
+                root.updateRewardRange(stats);
+            }
         }
+
+        // the amounts added to the value (and squares) for each player are the same at every node
+        double[] values = new double[result.length];
+        double[] squares = new double[result.length];
+        switch (params.opponentTreePolicy) {
+            case SelfOnly:
+                Arrays.fill(values, result[root.decisionPlayer]);
+                Arrays.fill(squares, squaredResults[root.decisionPlayer]);
+                break;
+            case Paranoid:
+            case MultiTreeParanoid:
+                int paranoid = root.paranoidPlayer == -1 ? root.decisionPlayer : root.paranoidPlayer;
+                for (int j = 0; j < result.length; j++) {
+                    values[j] = j == paranoid ? result[paranoid] : -result[paranoid];
+                    squares[j] = squaredResults[paranoid];
+                }
+                break;
+            case MaxN:
+            case MultiTree:
+            case OMA_All:
+            case OMA:
+                values = result;
+                squares = squaredResults;
+                break;
+        }
+
+        if (root.transpositionTable != null) {
+            // a node may be reached from more than one parent, so we back up along the path taken
+            List<Pair<SingleTreeNode, Integer>> path = root.transpositionPath;
+            int slot = -1;
+            for (int i = path.size() - 1; i >= 0; i--) {
+                SingleTreeNode node = path.get(i).a;
+                node.updateStatistics(slot, values, squares);
+                if (root.pendingLeaves != null && node != root)
+                    node.inFlight--;
+                slot = path.get(i).b;
+            }
+            return;
+        }
+
+        SingleTreeNode child = null;
         while (n != null) {
-            n.nVisits++;
-            // Here we look at actionsFromOpenLoopState to see which ones were valid
-            // when we passed through, and keep track of valid visits
-            if (params.information != Closed_Loop)
-                for (AbstractAction action : n.actionsFromOpenLoopState) {
-                    if (!n.nValidVisits.containsKey(action))
-                        n.nValidVisits.put(action, 1);
-                    else
-                        n.nValidVisits.put(action, n.nValidVisits.get(action) + 1);
+            if (treeParallel) {
+                // each node is updated under its own lock, which is also held while a thread selects from it
+                synchronized (n) {
+                    n.updateStatistics(child == null ? -1 : child.actionSlot, values, squares);
                 }
-            switch (params.opponentTreePolicy) {
-                case SelfOnly:
-                    for (int j = 0; j < result.length; j++) {
-                        n.totValue[j] += result[root.decisionPlayer];
-                        n.totSquares[j] += squaredResults[root.decisionPlayer];
-                    }
-                    break;
-                case Paranoid:
-                case MultiTreeParanoid:
-                    int paranoid = root.paranoidPlayer == -1 ? root.decisionPlayer : root.paranoidPlayer;
-                    for (int j = 0; j < result.length; j++) {
-                        if (j == paranoid) {
-                            n.totValue[j] += result[paranoid];
-                            n.totSquares[j] += squaredResults[paranoid];
-                        } else {
-                            n.totValue[j] -= result[paranoid];
-                            n.totSquares[j] += squaredResults[paranoid];
-                        }
-                    }
-                    break;
-                case MaxN:
-                case MultiTree:
-                case OMA_All:
-                case OMA:
-                    for (int j = 0; j < result.length; j++) {
-                        n.totValue[j] += result[j];
-                        n.totSquares[j] += squaredResults[j];
-                    }
-                    break;
+                if (n != root)
+                    IN_FLIGHT.decrementAndGet(n);
+            } else {
+                n.updateStatistics(child == null ? -1 : child.actionSlot, values, squares);
+                if (root.pendingLeaves != null && n != root)
+                    n.inFlight--;
             }
+            child = n;
             n = n.parent;
         }
     }
 
+    private void updateRewardRange(DoubleSummaryStatistics stats) {
+        if (lowReward > stats.getMin())
+            lowReward = stats.getMin();
+        if (highReward < stats.getMax())
+            highReward = stats.getMax();
+    }
 
-    protected void MASTBackup(List<Pair<Integer, AbstractAction>> rolloutActions, double[] delta) {
-        for (Pair<Integer, AbstractAction> pair : rolloutActions) {
-            AbstractAction action = pair.b;
-            int player = pair.a;
-            Pair<Integer, Double> stats = MASTStatistics.get(player).getOrDefault(action, new Pair<>(0, 0.0));
-            stats.a++;  // visits
-            stats.b += delta[player];   // value
-            MASTStatistics.get(player).put(action.copy(), stats);
+    /**
+     * @param childSlot The slot of the action to the child we have backed up from (-1 at the node the back up started from)
+     */
+    private void updateStatistics(int childSlot, double[] values, double[] squares) {
+        nVisits++;
+        // Here we look at actionsFromOpenLoopState to see which ones were valid
+        // when we passed through, and keep track of valid visits
+        if (params.information != Closed_Loop)
+            for (int slot : availableSlots)
+                slotValidVisits[slot]++;
+        for (int j = 0; j < values.length; j++) {
+            totValue[j] += values[j];
+            totSquares[j] += squares[j];
         }
+        if (childSlot != -1) {
+            int base = childSlot * values.length;
+            slotVisits[childSlot]++;
+            for (int j = 0; j < values.length; j++) {
+                slotValues[base + j] += values[j];
+                slotSquares[base + j] += squares[j];
+            }
+        }
+    }
+
+
+    protected void MASTBackup(List<Pair<Integer, AbstractAction>> rolloutActions, double[] delta) {
+        for (Pair<Integer, AbstractAction> pair : rolloutActions)
+            MASTStatistics.update(pair.a, pair.b, delta[pair.a]);
     }
 
 
@@ -977,6 +1928,10 @@ public class SingleTreeNode {
         return nVisits;
     }
 
+    public int getReusedVisits() {
+        return reusedVisits;
+    }
+
     public int getDepth() {
         return depth;
     }
@@ -1038,10 +1993,13 @@ public class SingleTreeNode {
 
     public List<SingleTreeNode> allNodesInTree() {
         List<SingleTreeNode> retValue = new ArrayList<>();
+        Set<SingleTreeNode> seen = new HashSet<>();
         Queue<SingleTreeNode> nodeQueue = new ArrayDeque<>();
         nodeQueue.add(this);
         while (!nodeQueue.isEmpty()) {
             SingleTreeNode node = nodeQueue.poll();
+            if (!seen.add(node))
+                continue;  // a transposition, reached from more than one parent
             retValue.add(node);
             nodeQueue.addAll(node.getChildren().values().stream()
                     .filter(Objects::nonNull)
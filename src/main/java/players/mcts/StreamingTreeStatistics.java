@@ -0,0 +1,89 @@
+package players.mcts;
+
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The depth and branching counts of a tree, from which TreeStatistics is built. The root of a tree that only grows
+ * during the search keeps one up to date as nodes and actions are added, so that the statistics logged after each
+ * decision do not need a walk over the whole tree; otherwise walk() counts the tree as it stands.
+ */
+class StreamingTreeStatistics {
+
+    final int[] nodesAtDepth = new int[TreeStatistics.MAX_DEPTH];
+    final int[] leavesAtDepth = new int[TreeStatistics.MAX_DEPTH];
+    final int[] gameTerminalNodesAtDepth = new int[TreeStatistics.MAX_DEPTH];
+    int greatestDepth;
+    int maxActions;
+    long totalActions;
+    // an estimate, from the size of each node when it was added (so arrays grown later are not included)
+    long totalBytes;
+
+    /**
+     * Counts a node just added to the tree, which is a leaf until it has children of its own
+     *
+     * @param parentWasLeaf true if the node is the first child of its parent
+     */
+    void nodeAdded(SingleTreeNode node, boolean parentWasLeaf) {
+        int depth = node.depth;
+        if (depth < TreeStatistics.MAX_DEPTH) {
+            totalBytes += node.estimatedBytes();
+            nodesAtDepth[depth]++;
+            leavesAtDepth[depth]++;
+            if (!node.getState().isNotTerminal())
+                gameTerminalNodesAtDepth[depth]++;
+        }
+        if (parentWasLeaf && depth - 1 < TreeStatistics.MAX_DEPTH)
+            leavesAtDepth[depth - 1]--;
+        if (depth > greatestDepth)
+            greatestDepth = depth;
+    }
+
+    /**
+     * Counts a new action seen at a node
+     *
+     * @param actionsAtNode The number of distinct actions now seen at the node
+     */
+    void actionAdded(int actionsAtNode) {
+        totalActions++;
+        if (actionsAtNode > maxActions)
+            maxActions = actionsAtNode;
+    }
+
+    /**
+     * @return the counts for the tree below root, found by visiting each node in it
+     */
+    static StreamingTreeStatistics walk(SingleTreeNode root) {
+        StreamingTreeStatistics counts = new StreamingTreeStatistics();
+        Queue<SingleTreeNode> nodeQueue = new ArrayDeque<>();
+        nodeQueue.add(root);
+        Set<SingleTreeNode> seen = new HashSet<>();
+        while (!nodeQueue.isEmpty()) {
+            SingleTreeNode node = nodeQueue.poll();
+            if (!seen.add(node))
+                continue;  // a transposition, reached from more than one parent
+            if (node.depth < TreeStatistics.MAX_DEPTH) {
+                counts.totalBytes += node.estimatedBytes();
+                counts.nodesAtDepth[node.depth]++;
+                if (!node.getState().isNotTerminal())
+                    counts.gameTerminalNodesAtDepth[node.depth]++;
+                counts.totalActions += node.children.size();
+                if (node.children.size() > counts.maxActions)
+                    counts.maxActions = node.children.size();
+                for (SingleTreeNode child : node.children.values().stream()
+                        .filter(Objects::nonNull)
+                        .flatMap(Arrays::stream)
+                        .filter(Objects::nonNull)
+                        .collect(toList())) {
+                    nodeQueue.add(child);
+                }
+                if (node.children.values().stream().allMatch(Objects::isNull))
+                    counts.leavesAtDepth[node.depth]++;
+            }
+            if (node.depth > counts.greatestDepth)
+                counts.greatestDepth = node.depth;
+        }
+        return counts;
+    }
+}
@@ -6,11 +6,13 @@ import static java.util.stream.Collectors.toList;
 
 public class TreeStatistics {
 
-    final public int maxDepth = 100;
+    static final int MAX_DEPTH = 100;
+
+    final public int maxDepth = MAX_DEPTH;
     final public int depthReached;
-    final public int[] nodesAtDepth = new int[maxDepth];
-    final public int[] leavesAtDepth = new int[maxDepth];
-    final public int[] gameTerminalNodesAtDepth = new int[maxDepth];
+    final public int[] nodesAtDepth;
+    final public int[] leavesAtDepth;
+    final public int[] gameTerminalNodesAtDepth;
     final public int totalNodes;
     final public int totalLeaves;
     final public int totalTerminalNodes;
@@ -18,48 +20,41 @@ public class TreeStatistics {
     final public double[] leafDistribution;
     final public int maxActionsAtNode;
     final public double meanActionsAtNode;
+    // the most nodes held at once during the search (by all the trees of the player, from its NodePool)
+    final public int peakNodes;
+    final public long bytesPerNode;
+    // an estimate of the memory held by the nodes of the tree (excluding game states and actions)
+    final public long estimatedBytes;
 
     public TreeStatistics(SingleTreeNode root) {
-        Queue<SingleTreeNode> nodeQueue = new ArrayDeque<>();
-        if (root instanceof MultiTreeNode) {
-            throw new AssertionError("Not expected");
-   //         for (SingleTreeNode node : ((MultiTreeNode) root).roots)
-   //             if (node != null) nodeQueue.add(node);
-        } else {
-            nodeQueue.add(root);
-        }
+        // the counts kept by the root as the tree grew, if it has them
+        this(root, root.treeCounts != null ? root.treeCounts : walk(root));
+    }
 
-        int greatestDepth = 0;
-        int maxActions = 0;
-        int totalActions = 0;
-        while (!nodeQueue.isEmpty()) {
-            SingleTreeNode node = nodeQueue.poll();
-            if (node.depth < maxDepth) {
-                nodesAtDepth[node.depth]++;
-                if (!node.getState().isNotTerminal())
-                    gameTerminalNodesAtDepth[node.depth]++;
-                totalActions += node.children.size();
-                if (node.children.size() > maxActions)
-                    maxActions = node.children.size();
-                for (SingleTreeNode child : node.children.values().stream()
-                        .filter(Objects::nonNull)
-                        .flatMap(Arrays::stream)
-                        .filter(Objects::nonNull)
-                        .collect(toList())) {
-                    if (child != null)
-                        nodeQueue.add(child);
-                }
-                if (node.children.values().stream().allMatch(Objects::isNull))
-                    leavesAtDepth[node.depth]++;
-            }
-            if (node.depth > greatestDepth)
-                greatestDepth = node.depth;
-        }
+    /**
+     * @return the statistics of the tree as it stands, from a walk over it (ignoring any counts kept as it grew)
+     */
+    public static TreeStatistics fromWalk(SingleTreeNode root) {
+        return new TreeStatistics(root, walk(root));
+    }
+
+    private static StreamingTreeStatistics walk(SingleTreeNode root) {
+        if (root instanceof MultiTreeNode)
+            throw new AssertionError("Not expected");
+        return StreamingTreeStatistics.walk(root);
+    }
 
-        maxActionsAtNode = maxActions;
-        depthReached = greatestDepth;
+    private TreeStatistics(SingleTreeNode root, StreamingTreeStatistics counts) {
+        nodesAtDepth = counts.nodesAtDepth.clone();
+        leavesAtDepth = counts.leavesAtDepth.clone();
+        gameTerminalNodesAtDepth = counts.gameTerminalNodesAtDepth.clone();
+        maxActionsAtNode = counts.maxActions;
+        depthReached = counts.greatestDepth;
         totalNodes = Arrays.stream(nodesAtDepth).sum();
-        meanActionsAtNode = (double) totalActions / totalNodes;
+        peakNodes = root.pool != null ? root.pool.peakInUse() : totalNodes;
+        bytesPerNode = totalNodes > 0 ? counts.totalBytes / totalNodes : 0;
+        estimatedBytes = counts.totalBytes;
+        meanActionsAtNode = (double) counts.totalActions / totalNodes;
         totalLeaves = Arrays.stream(leavesAtDepth).sum();
         totalTerminalNodes = Arrays.stream(gameTerminalNodesAtDepth).sum();
         nodeDistribution = Arrays.stream(nodesAtDepth, 0, Math.min(depthReached + 1, maxDepth)).asDoubleStream().map(i -> i / totalNodes).toArray();
@@ -71,6 +66,7 @@ public class TreeStatistics {
     public String toString() {
         StringBuilder retValue = new StringBuilder();
         retValue.append(String.format("%d nodes and %d leaves, with maximum depth %d\n", totalNodes, totalLeaves, depthReached));
+        retValue.append(String.format("\tPeak of %d nodes, of about %d bytes each\n", peakNodes, bytesPerNode));
         List<String> nodeDist = Arrays.stream(nodeDistribution).mapToObj(n -> String.format("%2.0f%%", n * 100.0)).collect(toList());
         List<String> leafDist = Arrays.stream(leafDistribution).mapToObj(n -> String.format("%2.0f%%", n * 100.0)).collect(toList());
         retValue.append(String.format("\tNodes  by depth: %s\n", String.join(", ", nodeDist)));
@@ -0,0 +1,103 @@
+package players.rhea;
+
+import core.AbstractGameState;
+import core.actions.AbstractAction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The states reached by the action sequences of a RHEA population, held as a trie so that individuals that start with
+ * the same actions share the states (and heuristic values) of that prefix.
+ * <p>
+ * The root is the state the decision is taken in, and the child of a node for an action is the state after that
+ * action (and the opponent moves that follow it). The states are never changed once they are in the trie, so an
+ * individual is re-evaluated by walking down it along its actions, and only simulating from the first action that
+ * has no child yet. Which outcome of a stochastic action is kept is decided by the first individual to take it.
+ * <p>
+ * The actions are used as keys as they are (they are only ever executed as copies, so they do not change). Children
+ * can be added from several threads at once.
+ */
+class ActionTrie {
+
+    static class Node {
+        final AbstractGameState state;
+        final double score;  // the heuristic value of the state (0.0 at the root, as the value of an individual is the sum of changes)
+        final List<AbstractAction> available;  // the actions available in the state (empty if it is terminal)
+        private final Map<AbstractAction, Node> children = new ConcurrentHashMap<>();
+
+        private Node(AbstractGameState state, double score, List<AbstractAction> available) {
+            this.state = state;
+            this.score = score;
+            this.available = new ArrayList<>(available);
+        }
+
+        private Node(Node other) {
+            state = other.state;
+            score = other.score;
+            available = other.available;
+        }
+
+        Node child(AbstractAction action) {
+            return children.get(action);
+        }
+
+        /**
+         * @return The new child, or the one already added for the action by another thread
+         */
+        Node addChild(AbstractAction action, AbstractGameState state, double score, List<AbstractAction> available) {
+            Node child = new Node(state, score, available);
+            Node existing = children.putIfAbsent(action, child);
+            return existing == null ? child : existing;
+        }
+    }
+
+    private Node root;
+
+    ActionTrie(AbstractGameState state, List<AbstractAction> available) {
+        root = new Node(state, 0.0, available);
+    }
+
+    Node root() {
+        return root;
+    }
+
+    /**
+     * Discards every node that is not on the path of one of the individuals, so that the trie holds no more states
+     * than the population does
+     */
+    void retain(Collection<RHEAIndividual> individuals) {
+        Node newRoot = new Node(root);
+        for (RHEAIndividual individual : individuals) {
+            Node oldNode = root, newNode = newRoot;
+            for (int i = 0; i < individual.length && individual.actions[i] != null; i++) {
+                Node oldChild = oldNode.child(individual.actions[i]);
+                if (oldChild == null)
+                    break;
+                Node newChild = newNode.child(individual.actions[i]);
+                if (newChild == null) {
+                    newChild = new Node(oldChild);
+                    newNode.children.put(individual.actions[i], newChild);
+                }
+                oldNode = oldChild;
+                newNode = newChild;
+            }
+        }
+        root = newRoot;
+    }
+
+    /**
+     * @return The number of nodes, including the root
+     */
+    int size() {
+        int retValue = 0;
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            retValue++;
+            queue.addAll(node.children.values());
+        }
+        return retValue;
+    }
+}
@@ -7,6 +7,7 @@ import core.actions.AbstractAction;
 import core.interfaces.IStateHeuristic;
 import utilities.Pair;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -21,11 +22,22 @@ public class RHEAIndividual implements Comparable<RHEAIndividual> {
     double discountFactor;            // Discount factor for calculating rewards
     IStateHeuristic heuristic;
     AbstractPlayer rolloutPolicy;
+    ActionTrie trie;                  // States shared with the rest of the population, or null to keep them in gameStates only
     private Random gen;               // Random generator
 
     RHEAIndividual(int L, double discountFactor, AbstractForwardModel fm, AbstractGameState gs,
                    int playerID, Random gen, IStateHeuristic heuristic,
                    AbstractPlayer rolloutPolicy) {
+        this(L, discountFactor, gs.copy(), gen, heuristic, rolloutPolicy);
+        // Rollout with random actions and assign fitness value
+        rollout(fm, 0, playerID, true);
+    }
+
+    /**
+     * An individual with no actions yet, for rollout() to fill in. The state gs is kept as it is, not copied.
+     */
+    RHEAIndividual(int L, double discountFactor, AbstractGameState gs, Random gen, IStateHeuristic heuristic,
+                   AbstractPlayer rolloutPolicy) {
         // Initialize
         this.gen = gen;
         this.discountFactor = discountFactor;
@@ -33,10 +45,7 @@ public class RHEAIndividual implements Comparable<RHEAIndividual> {
         gameStates = new AbstractGameState[L + 1];
         this.heuristic = heuristic;
         this.rolloutPolicy = rolloutPolicy;
-
-        // Rollout with random actions and assign fitness value
-        gameStates[0] = gs.copy();
-        rollout(fm, 0, playerID, true);
+        gameStates[0] = gs;
     }
 
     // Copy constructor
@@ -55,6 +64,16 @@ public class RHEAIndividual implements Comparable<RHEAIndividual> {
 
         value = I.value;
         gen = I.gen;
+        trie = I.trie;
+    }
+
+    /**
+     * Gives this individual its own random generator and rollout policy, so that it can be evaluated on a thread of
+     * its own without sharing either with other individuals
+     */
+    void reseed(Random gen, AbstractPlayer rolloutPolicy) {
+        this.gen = gen;
+        this.rolloutPolicy = rolloutPolicy;
     }
 
     /**
@@ -99,6 +118,8 @@ public class RHEAIndividual implements Comparable<RHEAIndividual> {
      * @return - number of calls to the FM.next() function
      */
     public Pair<Integer, Integer> rollout(AbstractForwardModel fm, int startIndex, int playerID, boolean repair) {
+        if (trie != null)
+            return rollout(fm, playerID, repair);
         length = 0;
         double delta = 0;
         double previousScore = 0;
@@ -169,6 +190,62 @@ public class RHEAIndividual implements Comparable<RHEAIndividual> {
         return new Pair<>(fmCalls, copyCalls);
     }
 
+    /**
+     * As rollout() above, but from the root of the trie. The states of the longest prefix of the actions that is
+     * already in the trie are used as they are, and only the rest of the actions are simulated (and added to the trie).
+     * The actions are repaired as they are reached, whether or not they need to be simulated.
+     *
+     * @return - number of calls to the FM.next() function, and to copy a state
+     */
+    private Pair<Integer, Integer> rollout(AbstractForwardModel fm, int playerID, boolean repair) {
+        length = 0;
+        double delta = 0;
+        int fmCalls = 0, copyCalls = 0;
+        ActionTrie.Node node = trie.root();
+        gameStates[0] = node.state;
+
+        for (int i = 0; i < actions.length && node.state.isNotTerminal(); i++) {
+            List<AbstractAction> currentActions = node.available;
+            AbstractAction action;
+            boolean illegalAction = !currentActions.contains(actions[i]);
+            if (illegalAction || actions[i] == null) {
+                action = rolloutPolicy.getAction(node.state, currentActions);
+                if (repair || actions[i] == null)
+                    actions[i] = action;
+                if (repair && illegalAction)
+                    repairCount++;
+            } else {
+                action = actions[i];
+                nonRepairCount++;
+            }
+
+            ActionTrie.Node child = node.child(action);
+            if (child == null) {
+                AbstractGameState gsCopy = node.state.copy();
+                copyCalls++;
+                fm.computeAvailableActions(gsCopy);
+                fm.next(gsCopy, action.copy());
+                fmCalls++;
+                while (gsCopy.isNotTerminal() && !(gsCopy.getCurrentPlayer() == playerID)) {
+                    List<AbstractAction> moves = fm.computeAvailableActions(gsCopy);
+                    if (moves.isEmpty()) {
+                        throw new AssertionError("No moves found in state " + gsCopy);
+                    }
+                    fm.next(gsCopy, moves.get(gen.nextInt(moves.size())));
+                    fmCalls++;
+                }
+                child = node.addChild(action, gsCopy, heuristic.evaluateState(gsCopy, playerID),
+                        gsCopy.isNotTerminal() ? fm.computeAvailableActions(gsCopy) : Collections.emptyList());
+            }
+            delta += Math.pow(discountFactor, i) * (child.score - node.score);
+            node = child;
+            gameStates[i + 1] = node.state;
+            length++;
+        }
+        this.value = delta;
+        return new Pair<>(fmCalls, copyCalls);
+    }
+
     @Override
     public int compareTo(RHEAIndividual b) {
         RHEAIndividual a = this;
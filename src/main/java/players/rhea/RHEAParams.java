@@ -23,6 +23,10 @@ public class RHEAParams extends PlayerParameters
     public boolean shiftLeft;
     protected IStateHeuristic heuristic = AbstractGameState::getGameScore;
     public boolean useMAST;
+    // share the states of common action prefixes across the population, and only simulate the rest (off by default:
+    // each prefix then has the one opponent reply and stochastic outcome first sampled for it, for the whole decision)
+    public boolean prefixCache = false;
+    public int threads = 1; // threads (including the calling one) that mutate and evaluate the individuals of a generation
 
 
     public RHEAParams() {
@@ -43,6 +47,8 @@ public class RHEAParams extends PlayerParameters
         addTunableParameter("mutationCount", 1, Arrays.asList(1, 3, 10));
         addTunableParameter("heuristic", (IStateHeuristic) AbstractGameState::getGameScore);
         addTunableParameter("useMAST", false, Arrays.asList(false, true));
+        addTunableParameter("prefixCache", false, Arrays.asList(false, true));
+        addTunableParameter("threads", 1, Arrays.asList(1, 2, 4, 8));
     }
 
     @Override
@@ -59,6 +65,8 @@ public class RHEAParams extends PlayerParameters
         shiftLeft = (boolean) getParameterValue("shiftLeft");
         mutationCount = (int) getParameterValue("mutationCount");
         useMAST = (boolean) getParameterValue("useMAST");
+        prefixCache = (boolean) getParameterValue("prefixCache");
+        threads = (int) getParameterValue("threads");
         heuristic = (IStateHeuristic) getParameterValue("heuristic");
         if (heuristic instanceof TunableParameters) {
             TunableParameters tunableHeuristic = (TunableParameters) heuristic;
@@ -83,6 +91,8 @@ public class RHEAParams extends PlayerParameters
          retValue.mutationCount = mutationCount;
          retValue.heuristic = heuristic;
          retValue.useMAST = useMAST;
+         retValue.prefixCache = prefixCache;
+         retValue.threads = threads;
          return retValue;
     }
 
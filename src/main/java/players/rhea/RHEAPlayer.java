@@ -1,23 +1,26 @@
 package players.rhea;
 
+import core.AbstractForwardModel;
 import core.AbstractGameState;
 import core.AbstractPlayer;
 import core.actions.AbstractAction;
 import players.PlayerConstants;
+import players.TimeManager;
 import players.mcts.MASTPlayer;
+import players.mcts.MASTTable;
 import players.simple.RandomPlayer;
 import utilities.ElapsedCpuTimer;
 import utilities.Pair;
-import utilities.Utils;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
 
 public class RHEAPlayer extends AbstractPlayer {
-    private static final AbstractPlayer randomPlayer = new RandomPlayer();
+    private final AbstractPlayer randomPlayer;
     private final Random randomGenerator;
     RHEAParams params;
-    List<Map<AbstractAction, Pair<Integer, Double>>> MASTStatistics; // a list of one Map per player. Action -> (visits, totValue)
+    MASTTable MASTStatistics; // the visits and total value of each action, for each player
     private List<RHEAIndividual> population = new ArrayList<>();
     // Budgets
     private double timePerIteration = 0, timeTaken = 0, initTime = 0;
@@ -26,6 +29,14 @@ public class RHEAPlayer extends AbstractPlayer {
     private int copyCalls = 0;
     private int repairCount, nonRepairCount;
     private MASTPlayer mastPlayer;
+    // The states reached by the population in the current decision (if params.prefixCache)
+    private ActionTrie trie;
+    // Allocates the time of each decision, if params.timeManager
+    private TimeManager timeManager;
+    // For parallel evaluation (params.threads > 1): the threads that evaluate individuals alongside the calling
+    // thread, and the forward model for each thread (the calling thread's is at index 0)
+    private ExecutorService evaluationExecutor;
+    private AbstractForwardModel[] forwardModels;
 
     public RHEAPlayer() {
         this(System.currentTimeMillis());
@@ -33,6 +44,8 @@ public class RHEAPlayer extends AbstractPlayer {
 
     public RHEAPlayer(RHEAParams params) {
         randomGenerator = new Random(params.getRandomSeed());
+        // seeded as the MAST policy is, so that a given seed always gives the same rollouts
+        randomPlayer = new RandomPlayer(new Random(params.getRandomSeed()));
         this.params = params;
         setName("rhea");
     }
@@ -43,14 +56,31 @@ public class RHEAPlayer extends AbstractPlayer {
 
     @Override
     public void initializePlayer(AbstractGameState state) {
-        MASTStatistics = new ArrayList<>();
-        for (int i = 0; i < state.getNPlayers(); i++)
-            MASTStatistics.add(new HashMap<>());
+        MASTStatistics = new MASTTable(state.getNPlayers());
         population = new ArrayList<>();
+        forwardModels = null;
+    }
+
+    @Override
+    public void finalizePlayer(AbstractGameState state) {
+        if (evaluationExecutor != null)
+            evaluationExecutor.shutdownNow();
+        evaluationExecutor = null;
+        forwardModels = null;
     }
 
     @Override
     public AbstractAction getAction(AbstractGameState stateObs, List<AbstractAction> actions) {
+        boolean managesTime = params.timeManager && params.budgetType == PlayerConstants.BUDGET_TIME;
+        if (managesTime && actions.size() == 1)
+            return actions.get(0);
+        if (managesTime) {
+            if (timeManager == null)
+                timeManager = new TimeManager(params);
+            timeManager.startDecision(stateObs, getPlayerID(), actions.size());
+        } else {
+            timeManager = null;
+        }
         ElapsedCpuTimer timer = new ElapsedCpuTimer();  // New timer for this game tick
         timer.setMaxTimeMillis(params.budget);
         numIters = 0;
@@ -60,38 +90,74 @@ public class RHEAPlayer extends AbstractPlayer {
         nonRepairCount = 0;
 
         if (params.useMAST) {
-            if (MASTStatistics == null) {
-                MASTStatistics = new ArrayList<>();
-                for (int i = 0; i < stateObs.getNPlayers(); i++)
-                    MASTStatistics.add(new HashMap<>());
-            } else {
-                MASTStatistics = MASTStatistics.stream()
-                        .map(m -> Utils.decay(m, params.discountFactor))
-                        .collect(Collectors.toList());
-            }
+            if (MASTStatistics == null)
+                MASTStatistics = new MASTTable(stateObs.getNPlayers());
+            else
+                MASTStatistics.decay(params.discountFactor);
             mastPlayer = new MASTPlayer(new Random(params.getRandomSeed()));
             mastPlayer.setStats(MASTStatistics);
         }
+        if (params.prefixCache) {
+            AbstractGameState root = stateObs.copy();
+            trie = new ActionTrie(root, getForwardModel().computeAvailableActions(root));
+            copyCalls++;
+        } else {
+            trie = null;
+        }
         // Initialise individuals
         if (params.shiftLeft && !population.isEmpty()) {
             population.forEach(i -> i.value = Double.NEGATIVE_INFINITY);  // so that any we don't have time to shift are ignored when picking an action
-            for (RHEAIndividual genome : population) {
-                if (!budgetLeft(timer)) break;
-                System.arraycopy(genome.actions, 1, genome.actions, 0, genome.actions.length - 1);
-                // we shift all actions along, and then rollout with repair
-                genome.gameStates[0] = stateObs.copy();
-                Pair<Integer, Integer> calls = genome.rollout(getForwardModel(), 0, getPlayerID(), true);
-                fmCalls += calls.a;
-                copyCalls += calls.b;
+            if (params.threads > 1) {
+                // the genomes are all repaired together, so there is either budget for all of them or for none
+                if (budgetLeft(timer)) {
+                    for (RHEAIndividual genome : population) {
+                        System.arraycopy(genome.actions, 1, genome.actions, 0, genome.actions.length - 1);
+                        startFrom(genome, stateObs);
+                    }
+                    List<Pair<Integer, Integer>> calls = inParallel(population, (genome, fm) -> genome.rollout(fm, 0, getPlayerID(), true));
+                    for (Pair<Integer, Integer> c : calls) {
+                        fmCalls += c.a;
+                        copyCalls += c.b;
+                    }
+                }
+            } else {
+                for (RHEAIndividual genome : population) {
+                    if (!budgetLeft(timer)) break;
+                    System.arraycopy(genome.actions, 1, genome.actions, 0, genome.actions.length - 1);
+                    // we shift all actions along, and then rollout with repair
+                    startFrom(genome, stateObs);
+                    Pair<Integer, Integer> calls = genome.rollout(getForwardModel(), 0, getPlayerID(), true);
+                    fmCalls += calls.a;
+                    copyCalls += calls.b;
+                }
+            }
+        } else if (params.threads > 1) {
+            population = new ArrayList<>();
+            if (budgetLeft(timer)) {
+                for (int i = 0; i < params.populationSize; ++i)
+                    population.add(newIndividual(stateObs));
+                List<Pair<Integer, Integer>> calls = inParallel(population, (individual, fm) -> individual.rollout(fm, 0, getPlayerID(), true));
+                for (Pair<Integer, Integer> c : calls) {
+                    fmCalls += c.a;
+                    copyCalls += c.b;
+                }
             }
         } else {
             population = new ArrayList<>();
             for (int i = 0; i < params.populationSize; ++i) {
                 if (!budgetLeft(timer)) break;
-                population.add(new RHEAIndividual(params.horizon, params.discountFactor, getForwardModel(), stateObs,
-                        getPlayerID(), randomGenerator, params.heuristic, params.useMAST ? mastPlayer : randomPlayer));
-                fmCalls += population.get(i).length;
-                copyCalls += population.get(i).length;
+                if (trie == null) {
+                    population.add(new RHEAIndividual(params.horizon, params.discountFactor, getForwardModel(), stateObs,
+                            getPlayerID(), randomGenerator, params.heuristic, params.useMAST ? mastPlayer : randomPlayer));
+                    fmCalls += population.get(i).length;
+                    copyCalls += population.get(i).length;
+                } else {
+                    RHEAIndividual individual = newIndividual(stateObs);
+                    Pair<Integer, Integer> calls = individual.rollout(getForwardModel(), 0, getPlayerID(), true);
+                    population.add(individual);
+                    fmCalls += calls.a;
+                    copyCalls += calls.b;
+                }
             }
         }
 
@@ -104,17 +170,44 @@ public class RHEAPlayer extends AbstractPlayer {
 
         timeTaken = timer.elapsedMillis();
         timePerIteration = numIters == 0 ? 0.0 : (timeTaken - initTime) / numIters;
+        // Return first action of best individual (if there was time to create one, else there are no statistics)
+        if (population.isEmpty())
+            return actions.get(randomGenerator.nextInt(actions.size()));
         if (statsLogger != null)
             logStatistics(stateObs);
-        // Return first action of best individual
         AbstractAction retValue = population.get(0).actions[0];
         if (!actions.contains(retValue))
             throw new AssertionError("Action chosen is not legitimate " + numIters + ", " + params.shiftLeft);
         return retValue;
     }
 
+    /**
+     * @return A new individual, with no actions yet, to be evaluated from stateObs
+     */
+    private RHEAIndividual newIndividual(AbstractGameState stateObs) {
+        RHEAIndividual retValue = new RHEAIndividual(params.horizon, params.discountFactor,
+                trie == null ? stateObs.copy() : trie.root().state,
+                randomGenerator, params.heuristic, params.useMAST ? mastPlayer : randomPlayer);
+        retValue.trie = trie;
+        return retValue;
+    }
+
+    /**
+     * Sets the individual (from the last decision) to be evaluated from stateObs: from the root of the trie if there
+     * is one, otherwise from its own copy
+     */
+    private void startFrom(RHEAIndividual individual, AbstractGameState stateObs) {
+        individual.trie = trie;
+        if (trie == null)
+            individual.gameStates[0] = stateObs.copy();
+    }
+
     private boolean budgetLeft(ElapsedCpuTimer timer) {
-        if (params.budgetType == PlayerConstants.BUDGET_TIME) {
+        if (params.budgetType == PlayerConstants.BUDGET_TIME && timeManager != null) {
+            double msPerIteration = numIters == 0 ? 0.0 : (timer.elapsedMillis() - initTime) / numIters;
+            return !timeManager.stop(timer.elapsedMillis(), msPerIteration,
+                    population.isEmpty() ? null : population.get(0).actions[0], -1);
+        } else if (params.budgetType == PlayerConstants.BUDGET_TIME) {
             long remaining = timer.remainingTimeMillis();
             return remaining > params.breakMS;
         } else if (params.budgetType == PlayerConstants.BUDGET_FM_CALLS) {
@@ -251,14 +344,15 @@ public class RHEAPlayer extends AbstractPlayer {
             population.add(child);
         }
 
-        for (RHEAIndividual individual : population) {
-            Pair<Integer, Integer> calls = individual.mutate(getForwardModel(), getPlayerID(), params.mutationCount);
-            fmCalls += calls.a;
-            copyCalls += calls.b;
-            repairCount += individual.repairCount;
-            nonRepairCount += individual.nonRepairCount;
-            if (params.useMAST)
-                MASTBackup(individual.actions, individual.value, getPlayerID());
+        if (params.threads > 1) {
+            // MAST statistics are only updated once the whole generation has been evaluated, as they are read by
+            // the rollout policies on all threads
+            List<Pair<Integer, Integer>> calls = inParallel(population, (individual, fm) -> individual.mutate(fm, getPlayerID(), params.mutationCount));
+            for (int i = 0; i < population.size(); i++)
+                recordEvaluation(population.get(i), calls.get(i));
+        } else {
+            for (RHEAIndividual individual : population)
+                recordEvaluation(individual, individual.mutate(getForwardModel(), getPlayerID(), params.mutationCount));
         }
 
         //sort
@@ -270,6 +364,8 @@ public class RHEAPlayer extends AbstractPlayer {
         }
 
         population = newPopulation;
+        if (trie != null)
+            trie.retain(population);
 
         population.sort(Comparator.naturalOrder());
         // Update budgets
@@ -277,15 +373,86 @@ public class RHEAPlayer extends AbstractPlayer {
     }
 
 
+    private void recordEvaluation(RHEAIndividual individual, Pair<Integer, Integer> calls) {
+        fmCalls += calls.a;
+        copyCalls += calls.b;
+        repairCount += individual.repairCount;
+        nonRepairCount += individual.nonRepairCount;
+        if (params.useMAST)
+            MASTBackup(individual.actions, individual.value, getPlayerID());
+    }
+
+    /**
+     * Evaluates the individuals on params.threads threads: the calling thread and the evaluation workers.
+     * <p>
+     * Before any evaluation starts each individual is given its own random generator and rollout policy, seeded in
+     * turn from randomGenerator, and individual i is always evaluated by thread (i % params.threads), with that
+     * thread's own copy of the forward model. So for a given seed (and number of threads) the results do not depend
+     * on how the threads happen to be scheduled. Selection and crossover stay on the calling thread.
+     *
+     * @return The result of the evaluation of each individual, in the same order
+     */
+    private <T> List<T> inParallel(List<RHEAIndividual> individuals, BiFunction<RHEAIndividual, AbstractForwardModel, T> evaluation) {
+        if (forwardModels == null) {
+            forwardModels = new AbstractForwardModel[params.threads];
+            forwardModels[0] = getForwardModel();
+            for (int i = 1; i < forwardModels.length; i++)
+                forwardModels[i] = getForwardModel().copy();
+        }
+        for (RHEAIndividual individual : individuals) {
+            long seed = randomGenerator.nextLong();
+            individual.reseed(new Random(seed), rolloutPolicy(seed));
+        }
+        List<T> results = new ArrayList<>(Collections.nCopies(individuals.size(), null));
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 1; t < params.threads; t++) {
+            int thread = t;
+            workers.add(getEvaluationExecutor().submit(() -> evaluate(individuals, evaluation, thread, results)));
+        }
+        evaluate(individuals, evaluation, 0, results);
+        try {
+            for (Future<?> worker : workers)
+                worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted during parallel evaluation", e);
+        } catch (ExecutionException e) {
+            throw new AssertionError("Error in parallel evaluation", e.getCause());
+        }
+        return results;
+    }
+
+    private <T> void evaluate(List<RHEAIndividual> individuals, BiFunction<RHEAIndividual, AbstractForwardModel, T> evaluation,
+                              int thread, List<T> results) {
+        for (int i = thread; i < individuals.size(); i += params.threads)
+            results.set(i, evaluation.apply(individuals.get(i), forwardModels[thread]));
+    }
+
+    private AbstractPlayer rolloutPolicy(long seed) {
+        if (params.useMAST) {
+            MASTPlayer retValue = new MASTPlayer(new Random(seed));
+            retValue.setStats(MASTStatistics);
+            return retValue;
+        }
+        return new RandomPlayer(new Random(seed));
+    }
+
+    private ExecutorService getEvaluationExecutor() {
+        if (evaluationExecutor == null)
+            evaluationExecutor = Executors.newFixedThreadPool(params.threads - 1, r -> {
+                Thread thread = new Thread(r, "RHEA evaluation worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return evaluationExecutor;
+    }
+
     protected void MASTBackup(AbstractAction[] rolloutActions, double delta, int player) {
         for (int i = 0; i < rolloutActions.length; i++) {
             AbstractAction action = rolloutActions[i];
             if (action == null)
                 break;
-            Pair<Integer, Double> stats = MASTStatistics.get(player).getOrDefault(action, new Pair<>(0, 0.0));
-            stats.a++;  // visits
-            stats.b += delta;   // value
-            MASTStatistics.get(player).put(action.copy(), stats);
+            MASTStatistics.update(player, action, delta);
         }
     }
 
@@ -299,7 +466,10 @@ public class RHEAPlayer extends AbstractPlayer {
         stats.put("copyCalls", copyCalls);
         stats.put("time", timeTaken);
         stats.put("timePerIteration", timePerIteration);
+        stats.put("iterationsPerSecond", timePerIteration == 0.0 ? 0.0 : 1000.0 / timePerIteration);
         stats.put("initTime", initTime);
+        if (timeManager != null)
+            stats.put("timeAllocated", timeManager.allocated());
         stats.put("hiReward", population.get(0).value);
         stats.put("loReward", population.get(population.size() - 1).value);
         stats.put("medianReward", population.size() == 1 ? population.get(0).value : population.get(population.size() / 2 - 1).value);
@@ -37,6 +37,7 @@ public class Individual implements Comparable {
         gameStates = new AbstractGameState[I.gameStates.length];
         length = I.length;
         discountFactor = I.discountFactor;
+        heuristic = I.heuristic;
 
         for (int i = 0; i < length; i++){
             actions[i] = I.actions[i].copy();
@@ -47,6 +48,14 @@ public class Individual implements Comparable {
         gen = I.gen;
     }
 
+    /**
+     * A copy with its own random generator, so that it can be mutated on a thread of its own
+     */
+    Individual(Individual I, Random gen) {
+        this(I);
+        this.gen = gen;
+    }
+
     /**
      * Mutates this individual, by picking an index and changing all genes from that point on.
      * Updates the length of the individual in case the rollout hits game end.
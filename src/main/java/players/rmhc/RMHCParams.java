@@ -8,6 +8,7 @@ import java.util.*;
 public class RMHCParams extends PlayerParameters {
     public int horizon = 10;
     public double discountFactor = 0.9;
+    public int threads = 1; // neighbours evaluated at once, each iteration, on the shared fork-join pool
 
     public RMHCParams() {
         this(System.currentTimeMillis());
@@ -17,6 +18,7 @@ public class RMHCParams extends PlayerParameters {
         super(seed);
         addTunableParameter("horizon", 10, Arrays.asList(1, 3, 5, 10, 20, 30));
         addTunableParameter("discountFactor", 0.9, Arrays.asList(0.5, 0.8, 0.9, 0.95, 0.99, 0.999, 1.0));
+        addTunableParameter("threads", 1, Arrays.asList(1, 2, 4, 8));
     }
 
     @Override
@@ -24,6 +26,7 @@ public class RMHCParams extends PlayerParameters {
         super._reset();
         horizon = (int) getParameterValue("horizon");
         discountFactor = (double) getParameterValue("discountFactor");
+        threads = (int) getParameterValue("threads");
     }
 
     @Override
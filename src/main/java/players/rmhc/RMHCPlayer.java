@@ -8,6 +8,7 @@ import players.PlayerConstants;
 import utilities.ElapsedCpuTimer;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 
 public class RMHCPlayer extends AbstractPlayer {
@@ -105,6 +106,19 @@ public class RMHCPlayer extends AbstractPlayer {
     private void runIteration(AbstractGameState stateObs) {
         ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
 
+        if (params.threads > 1) {
+            runParallelIteration();
+        } else {
+            runSerialIteration();
+        }
+
+        // Update budgets
+        numIters++;
+        acumTimeTaken += (elapsedTimerIteration.elapsedMillis());
+        avgTimeTaken = acumTimeTaken / numIters;
+    }
+
+    private void runSerialIteration() {
         // Create new individual through mutation
         Individual newIndividual = new Individual(bestIndividual);
         copyCalls += newIndividual.length;
@@ -115,11 +129,30 @@ public class RMHCPlayer extends AbstractPlayer {
         // Keep new individual if better than current
         if (newIndividual.value > bestIndividual.value)
             bestIndividual = newIndividual;
+    }
 
-        // Update budgets
-        numIters++;
-        acumTimeTaken += (elapsedTimerIteration.elapsedMillis());
-        avgTimeTaken = acumTimeTaken / numIters;
+    /**
+     * Mutates params.threads copies of the best individual at once, on the shared fork-join pool, and keeps the best
+     * of them if it is better than the current one. Each neighbour has its own random generator, seeded in turn
+     * before any of them is mutated, and its own copy of the forward model. Ties go to the earliest neighbour, so the
+     * result for a given seed does not depend on how the tasks are scheduled.
+     */
+    private void runParallelIteration() {
+        Individual[] neighbours = new Individual[params.threads];
+        for (int i = 0; i < neighbours.length; i++) {
+            neighbours[i] = new Individual(bestIndividual, new Random(randomGenerator.nextLong()));
+            copyCalls += neighbours[i].length;
+        }
+        int[] statesUpdated = new int[neighbours.length];
+        IntStream.range(0, neighbours.length).parallel()
+                .forEach(i -> statesUpdated[i] = neighbours[i].mutate(getForwardModel().copy(), getPlayerID()));
+
+        for (int i = 0; i < neighbours.length; i++) {
+            fmCalls += statesUpdated[i];
+            copyCalls += statesUpdated[i];
+            if (neighbours[i].value > bestIndividual.value)
+                bestIndividual = neighbours[i];
+        }
     }
 
 //    public static void main(String[] args){
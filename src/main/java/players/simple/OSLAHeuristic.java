@@ -5,6 +5,8 @@ import core.interfaces.*;
 import evaluation.TunableParameters;
 import org.json.simple.JSONObject;
 
+import java.util.Arrays;
+
 
 /**
  * This is a wrapper to use any parameterisable heuristic with the OSLA player
@@ -12,10 +14,12 @@ import org.json.simple.JSONObject;
 public class OSLAHeuristic extends TunableParameters {
 
     int plyDepth = 1;
+    int threads = 1;
     private IStateHeuristic heuristic = AbstractGameState::getHeuristicScore;
 
     public OSLAHeuristic() {
         addTunableParameter("heuristic", (IStateHeuristic) AbstractGameState::getHeuristicScore);
+        addTunableParameter("threads", 1, Arrays.asList(1, 2, 4, 8));
         _reset();
     }
 
@@ -24,6 +28,7 @@ public class OSLAHeuristic extends TunableParameters {
         OSLAHeuristic retValue = new OSLAHeuristic();
         retValue.plyDepth = plyDepth;
         retValue.heuristic = heuristic;
+        retValue.threads = threads;
         return retValue;
     }
 
@@ -46,6 +51,7 @@ public class OSLAHeuristic extends TunableParameters {
 
     @Override
     public void _reset() {
+        threads = (int) getParameterValue("threads");
         if (heuristic instanceof TunableParameters) {
             TunableParameters tunableHeuristic = (TunableParameters) heuristic;
             for (String name : tunableHeuristic.getParameterNames()) {
@@ -58,14 +64,16 @@ public class OSLAHeuristic extends TunableParameters {
     protected boolean _equals(Object o) {
         if (o instanceof OSLAHeuristic) {
            OSLAHeuristic other = (OSLAHeuristic) o;
-           return other.plyDepth == plyDepth && other.heuristic.equals(heuristic);
+           return other.plyDepth == plyDepth && other.threads == threads && other.heuristic.equals(heuristic);
         }
         return false;
     }
 
     @Override
     public Object instantiate() {
-        return new OSLAPlayer(heuristic);
+        OSLAPlayer retValue = new OSLAPlayer(heuristic);
+        retValue.threads = threads;
+        return retValue;
     }
 
 }
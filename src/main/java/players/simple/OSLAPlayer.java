@@ -9,6 +9,7 @@ import core.turnorders.StandardTurnOrder;
 
 import java.util.List;
 import java.util.Random;
+import java.util.stream.IntStream;
 
 import static utilities.Utils.noise;
 
@@ -16,6 +17,7 @@ public class OSLAPlayer extends AbstractPlayer {
 
     private Random random; // random generator for noise
     public double epsilon = 1e-6;
+    public int threads = 1; // tasks the actions are evaluated in, on the shared fork-join pool
     // Heuristics used for the agent
     IStateHeuristic heuristic;
 
@@ -46,21 +48,24 @@ public class OSLAPlayer extends AbstractPlayer {
         int playerID = gs.getCurrentPlayer();
 
         double[] valState = new double[actions.size()];
-        for (int actionIndex = 0; actionIndex < actions.size(); actionIndex++) {
-            AbstractAction action = actions.get(actionIndex);
-            AbstractGameState gsCopy = gs.copy();
-
-            getForwardModel().next(gsCopy, action);
-
-            if (gsCopy.getTurnOrder() instanceof StandardTurnOrder) {
-                advanceToEndOfRoundWithRandomActions(gsCopy, playerID);
+        if (threads > 1) {
+            double[] noise = new double[actions.size()];
+            for (int actionIndex = 0; actionIndex < noise.length; actionIndex++)
+                noise[actionIndex] = this.random.nextDouble();
+            evaluateInParallel(gs, actions, playerID, valState);
+            for (int actionIndex = 0; actionIndex < actions.size(); actionIndex++) {
+                double Q = noise(valState[actionIndex], this.epsilon, noise[actionIndex]);
+                if (Q > maxQ) {
+                    maxQ = Q;
+                    bestAction = actions.get(actionIndex);
+                }
             }
+            return bestAction;
+        }
 
-            if (heuristic != null) {
-                valState[actionIndex] = heuristic.evaluateState(gsCopy, playerID);
-            } else {
-                valState[actionIndex] = gsCopy.getHeuristicScore(playerID);
-            }
+        for (int actionIndex = 0; actionIndex < actions.size(); actionIndex++) {
+            AbstractAction action = actions.get(actionIndex);
+            valState[actionIndex] = evaluate(gs, action, playerID, getForwardModel(), random);
 
             double Q = noise(valState[actionIndex], this.epsilon, this.random.nextDouble());
             //     System.out.println(Arrays.stream(valState).mapToObj(v -> String.format("%1.3f", v)).collect(Collectors.joining("\t")));
@@ -74,15 +79,55 @@ public class OSLAPlayer extends AbstractPlayer {
         return bestAction;
     }
 
+    /**
+     * Evaluates the actions on the shared fork-join pool, split into (at most) threads tasks of interleaved actions.
+     * Each task has its own copy of the forward model, and each action its own random generator (for the moves to the
+     * end of the round), seeded in turn before any task starts, so the choice for a given seed does not depend on
+     * how the tasks are scheduled. The noise that breaks ties is drawn (in action order) before the seeds, so when
+     * there are no random moves to make (the turn order is not a StandardTurnOrder) the generator gives the same
+     * noise as it does in a serial evaluation, and the same action is chosen.
+     */
+    private void evaluateInParallel(AbstractGameState gs, List<AbstractAction> actions, int playerID, double[] valState) {
+        long[] seeds = new long[actions.size()];
+        for (int actionIndex = 0; actionIndex < seeds.length; actionIndex++)
+            seeds[actionIndex] = random.nextLong();
+        int tasks = Math.min(threads, actions.size());
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            AbstractForwardModel fm = getForwardModel().copy();
+            for (int actionIndex = task; actionIndex < actions.size(); actionIndex += tasks)
+                valState[actionIndex] = evaluate(gs, actions.get(actionIndex), playerID, fm, new Random(seeds[actionIndex]));
+        });
+    }
+
+    /**
+     * @return The value of the state after the action (and the rest of the round, if it has a standard turn order)
+     */
+    private double evaluate(AbstractGameState gs, AbstractAction action, int playerID, AbstractForwardModel fm, Random rnd) {
+        AbstractGameState gsCopy = gs.copy();
+
+        fm.next(gsCopy, action);
+
+        if (gsCopy.getTurnOrder() instanceof StandardTurnOrder) {
+            advanceToEndOfRoundWithRandomActions(gsCopy, playerID, fm, rnd);
+        }
+
+        if (heuristic != null) {
+            return heuristic.evaluateState(gsCopy, playerID);
+        } else {
+            return gsCopy.getHeuristicScore(playerID);
+        }
+    }
+
     @Override
     public OSLAPlayer copy() {
-        return new OSLAPlayer(heuristic, new Random(random.nextInt()));
+        OSLAPlayer retValue = new OSLAPlayer(heuristic, new Random(random.nextInt()));
+        retValue.threads = threads;
+        return retValue;
     }
 
-    private void advanceToEndOfRoundWithRandomActions(AbstractGameState gsCopy, int startingPlayer) {
+    private void advanceToEndOfRoundWithRandomActions(AbstractGameState gsCopy, int startingPlayer, AbstractForwardModel fm, Random random) {
         // we assume that every other player now has to make a decision
         RandomPlayer rnd = new RandomPlayer(random);
-        AbstractForwardModel fm = getForwardModel();
         if (gsCopy.getCurrentPlayer() == startingPlayer) {
             // first get to the end of our actions
             while (gsCopy.getCurrentPlayer() == startingPlayer && gsCopy.isNotTerminal()) {
@@ -5,18 +5,106 @@ import core.AbstractPlayer;
 import core.actions.AbstractAction;
 import core.actions.DrawCard;
 import core.components.*;
+import core.interfaces.IActionHeuristic;
 import games.terraformingmars.*;
 import games.terraformingmars.actions.*;
 import games.terraformingmars.components.*;
 import games.terraformingmars.rules.requirements.Requirement;
 import games.terraformingmars.TMTypes;
+import utilities.DecisionTrace;
 import utilities.Vector2D;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hand-written rule-based player for Terraforming Mars.
+ * <p>
+ * Decisions are made for whichever player is to move in the state given, so one instance can also be used as the
+ * opponent model of a search agent (for example MCTSParams oppModelType CLASS with oppModelClass
+ * players.simple.TMRuleBasedPlayer), covering every non-decision player both in the tree and in rollouts.
+ * Unless tracing is switched on the instance is read-only once constructed: the random fallback and the research
+ * plans are held per thread, so it is thread-safe, and a search shares the one instance between its threads (copy()
+ * still makes a new player, with the same seed and settings).
+ * <p>
+ * Each thread's random fallback is seeded from the seed given to the constructor (and the order in which threads
+ * first use the player), so a seeded player used from a single thread always plays the same game. From JSON, e.g.
+ * oppModelClass {"class":"players.simple.TMRuleBasedPlayer","args":[42]}.
+ */
+public class TMRuleBasedPlayer extends AbstractPlayer implements IActionHeuristic {
+
+    // Raw rule scores go up to ~1e8 (claiming a milestone), so this is the log-scale used to squash them to [-1, 1]
+    private static final double MAX_LOG_SCORE = Math.log1p(1e8);
+    // Score components recorded for each candidate when tracing decisions
+    private static final int TRACE_RANK = 1, TRACE_BUDGET = 2;
+    private static final int MAX_TRACED_CANDIDATES = 128;
+
+    // Only used as a fallback when no rule applies; the n-th thread to need one seeds it from seed and n
+    final long seed;
+    final AtomicLong threadsSeeded = new AtomicLong();
+    final ThreadLocal<Random> random;
+    // Decide keep/discard for the whole research hand at once, rather than re-ranking it for every card (off by
+    // default, as the budget is then fixed at the start of the phase, which changes which cards are kept)
+    boolean draftPlan = false;
+    // The number of research plans made (by all threads), for checking that each is made once per phase
+    final AtomicLong plansMade = new AtomicLong();
+    // The current research plan for each player this instance has been asked to play as
+    final ThreadLocal<DraftPlan[]> draftPlans = ThreadLocal.withInitial(() -> new DraftPlan[0]);
+    // Opt-in record of recent decisions; null when tracing is off
+    DecisionTrace trace;
+    String traceFile;
 
-public class TMRuleBasedPlayer extends AbstractPlayer {
+    /**
+     * The keep/discard decisions for one player's research hand, made once at the start of the research phase.
+     * Arrays are indexed by the card's position in the hand when the plan was made.
+     */
+    private static final class DraftPlan {
+        final int gameID, generation, megaCredits, cost;
+        final int[] cardIDs;
+        final double[] scores;
+        final int[] ranks;
+        final boolean[] keep;
+        final double budget;
+
+        DraftPlan(int gameID, int generation, int megaCredits, int cost, int nCards, double budget) {
+            this.gameID = gameID;
+            this.generation = generation;
+            this.megaCredits = megaCredits;
+            this.cost = cost;
+            this.cardIDs = new int[nCards];
+            this.scores = new double[nCards];
+            this.ranks = new int[nCards];
+            this.keep = new boolean[nCards];
+            this.budget = budget;
+        }
+
+        int indexOf(int cardID) {
+            for (int i = 0; i < cardIDs.length; i++) {
+                if (cardIDs[i] == cardID) return i;
+            }
+            return -1;
+        }
 
-    Random random;
+        /**
+         * A plan is only reused while every card left in the hand was part of it, and the player's MegaCredits are
+         * what following the plan so far would leave. So a new research phase, a different game with the same card
+         * IDs, or a different line of play in a search tree, all trigger a new plan.
+         */
+        boolean covers(TMGameState gameState, Deck<TMCard> hand, int playerID) {
+            if (gameState.getGameID() != gameID || gameState.getGeneration() != generation) return false;
+            boolean[] inHand = new boolean[cardIDs.length];
+            for (TMCard card : hand.getComponents()) {
+                int index = indexOf(card.getComponentID());
+                if (index < 0) return false;
+                inHand[index] = true;
+            }
+            int bought = 0;
+            for (int i = 0; i < cardIDs.length; i++) {
+                if (keep[i] && !inHand[i]) bought++;
+            }
+            return gameState.getPlayerResources()[playerID].get(TMTypes.Resource.MegaCredit).getValue() == megaCredits - bought * cost;
+        }
+    }
 
     private enum GameStage {
         EARLY_GAME,
@@ -25,24 +113,93 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
     }
 
     public TMRuleBasedPlayer() {
-        random = new Random();
+        this(new Random().nextLong());
+    }
+
+    /**
+     * @param seed - the seed for the random fallback, used when no rule applies
+     */
+    public TMRuleBasedPlayer(long seed) {
+        this.seed = seed;
+        this.random = ThreadLocal.withInitial(() -> new Random(seed + 0x9E3779B97F4A7C15L * threadsSeeded.getAndIncrement()));
+    }
+
+    /**
+     * Creates a player that keeps a trace of its last traceCapacity decisions, which is appended to traceFile
+     * at the end of each game.
+     */
+    public TMRuleBasedPlayer(int traceCapacity, String traceFile) {
+        this();
+        enableTrace(traceCapacity, traceFile);
+    }
+
+    /**
+     * As TMRuleBasedPlayer(traceCapacity, traceFile), with the seed for the random fallback.
+     */
+    public TMRuleBasedPlayer(long seed, int traceCapacity, String traceFile) {
+        this(seed);
+        enableTrace(traceCapacity, traceFile);
+    }
+
+    /**
+     * Switches on decision tracing: the candidate actions, their scores and the chosen action for the last
+     * capacity decisions are kept in a ring buffer.
+     *
+     * @param capacity  - the number of decisions to keep
+     * @param traceFile - the file the trace is appended to at the end of each game; null to only dump on demand
+     */
+    public void enableTrace(int capacity, String traceFile) {
+        trace = new DecisionTrace(capacity, MAX_TRACED_CANDIDATES, "score", "rank", "budget");
+        this.traceFile = traceFile;
+    }
+
+    public DecisionTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param draftPlan - true to plan the research phase once for the whole hand; false (the default) to re-rank
+     *                  the remaining cards at every BuyCard/DiscardCard decision
+     */
+    public void setDraftPlan(boolean draftPlan) {
+        this.draftPlan = draftPlan;
+    }
+
+    /**
+     * @return the number of research plans made so far (if draftPlan is on)
+     */
+    public long getPlansMade() {
+        return plansMade.get();
     }
 
     @Override
     public AbstractAction getAction(AbstractGameState gameState, List<AbstractAction> possibleActions) {
         TMGameState gs = (TMGameState) gameState;
         TMGameState.TMPhase gamePhase = (TMGameState.TMPhase) gameState.getGamePhase();
+        // the player to move, which is not our own ID when we are modelling an opponent in search
+        int playerID = gs.getCurrentPlayer();
+
+        if (trace != null)
+            trace.startDecision(gs.getGeneration(), gamePhase);
 
+        AbstractAction chosen;
         switch (gamePhase) {
             case CorporationSelect:
-                return corporationSelect(gs, possibleActions);
+                chosen = corporationSelect(gs, possibleActions);
+                break;
             case Research:
-                return research(gs, possibleActions);
+                chosen = research(gs, possibleActions, playerID);
+                break;
             case Actions:
-                return actions(gs, possibleActions);
+                chosen = actions(gs, possibleActions, playerID);
+                break;
             default:
-                return possibleActions.get(random.nextInt(possibleActions.size()));
+                chosen = possibleActions.get(random.get().nextInt(possibleActions.size()));
         }
+
+        if (trace != null)
+            trace.setChosen(chosen);
+        return chosen;
     }
 
     private AbstractAction corporationSelect(TMGameState gameState, List<AbstractAction> possibleActions) {
@@ -64,6 +221,8 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
                 TMCard card = (TMCard) gameState.getComponentById(buyCard.getCardID());
                 String corporationName = card.getComponentName().toLowerCase();
                 int priority = corporationPriority.indexOf(corporationName);
+                if (trace != null)
+                    trace.setScore(trace.addCandidate(action, Double.NaN), TRACE_RANK, priority);
 
                 if (priority < highestPriority) {
                     highestPriority = priority;
@@ -77,12 +236,14 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         }
 
         // If no valid action was selected, resort to selecting a random possible action
-        return possibleActions.get(random.nextInt(possibleActions.size()));
+        return possibleActions.get(random.get().nextInt(possibleActions.size()));
     }
 
-    private AbstractAction research(TMGameState gameState, List<AbstractAction> possibleActions) {
+    private AbstractAction research(TMGameState gameState, List<AbstractAction> possibleActions, int playerID) {
+        if (draftPlan) {
+            return researchFromPlan(gameState, possibleActions, playerID);
+        }
         double budgetRatio = 0.5;
-        int playerID = getPlayerID();
         HashMap<TMTypes.Resource, Counter> resources = gameState.getPlayerResources()[playerID];
         int megaCredits = resources.get(TMTypes.Resource.MegaCredit).getValue();
         double budget = megaCredits * budgetRatio;
@@ -92,7 +253,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         // Calculate scores for each card in the research phase
         Map<TMCard, Double> cardScores = new HashMap<>();
         for (TMCard card : cardChoices) {
-            double score = evaluateCard(card, gameState);
+            double score = evaluateCard(card, gameState, playerID);
             cardScores.put(card, score);
         }
 
@@ -127,6 +288,14 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
                 }
             }
 
+            if (trace != null) {
+                int candidate = trace.addCandidate(buyCard, score);
+                trace.setScore(candidate, TRACE_RANK, cardPriority);
+                trace.setScore(candidate, TRACE_BUDGET, remainingBudget);
+                if (discardCard != null)
+                    trace.addCandidate(discardCard, Double.NaN);
+            }
+
             if (score > 0 && canBuyHigherPriorityCards) {
                 return buyCard;
             } else {
@@ -135,26 +304,137 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         }
 
         // If no valid action was selected, resort to selecting a random possible action
-        return possibleActions.get(random.nextInt(possibleActions.size()));
+        return possibleActions.get(random.get().nextInt(possibleActions.size()));
     }
 
-    private AbstractAction actions(TMGameState gameState, List<AbstractAction> possibleActions) {
+    /**
+     * Answers a research decision from the player's plan for the hand, making the plan first if this is the first
+     * card of the research phase.
+     *
+     * @param gameState       - the current state of the Terraforming Mars game state
+     * @param possibleActions - BuyCard (if affordable, possibly wrapped in PayForAction) and DiscardCard for the
+     *                        first card left in the hand
+     * @param playerID        - ID of the player to move
+     * @return                - the BuyCard action if the card is in the plan, the DiscardCard action otherwise
+     */
+    private AbstractAction researchFromPlan(TMGameState gameState, List<AbstractAction> possibleActions, int playerID) {
+        AbstractAction buyCard = null;
+        DiscardCard discardCard = null;
+        for (AbstractAction action : possibleActions) {
+            // the purchase is offered wrapped in a PayForAction, as it has a cost
+            if (action instanceof BuyCard || action instanceof PayForAction && ((PayForAction) action).action instanceof BuyCard) {
+                buyCard = action;
+            } else if (action instanceof DiscardCard) {
+                discardCard = (DiscardCard) action;
+            }
+        }
+        if (discardCard == null) {
+            // If no valid action was selected, resort to selecting a random possible action
+            return possibleActions.get(random.get().nextInt(possibleActions.size()));
+        }
+
+        Deck<TMCard> hand = gameState.getPlayerCardChoice()[playerID];
+        DraftPlan[] plans = draftPlans.get();
+        if (playerID >= plans.length) {
+            plans = Arrays.copyOf(plans, gameState.getNPlayers());
+            draftPlans.set(plans);
+        }
+        DraftPlan plan = plans[playerID];
+        if (plan == null || !plan.covers(gameState, hand, playerID)) {
+            plan = planResearch(gameState, hand, playerID);
+            plans[playerID] = plan;
+            plansMade.incrementAndGet();
+        }
+
+        int index = plan.indexOf(discardCard.getCardID());
+        boolean keep = index >= 0 && plan.keep[index] && buyCard != null;
+        if (trace != null && index >= 0) {
+            int candidate = trace.addCandidate(buyCard != null ? buyCard : discardCard, plan.scores[index]);
+            trace.setScore(candidate, TRACE_RANK, plan.ranks[index]);
+            trace.setScore(candidate, TRACE_BUDGET, plan.budget - plan.cost * (plan.ranks[index] + 1));
+            if (buyCard != null)
+                trace.addCandidate(discardCard, Double.NaN);
+        }
+        return keep ? buyCard : discardCard;
+    }
+
+    /**
+     * Decides which cards of the research hand to keep. Every card has the same purchase cost, so the 0/1 knapsack
+     * of maximising the total score of kept cards within the budget is solved exactly by keeping the best-scoring
+     * cards (with a positive score), as many as the budget allows.
+     * <p>
+     * The budget is fixed from the player's MegaCredits at the start of the phase, rather than recomputed from the
+     * (dwindling) MegaCredits as each card is bought.
+     *
+     * @param gameState - the current state of the Terraforming Mars game state
+     * @param hand      - the cards on offer
+     * @param playerID  - ID of the player the plan is for
+     * @return          - the plan for the whole hand
+     */
+    private DraftPlan planResearch(TMGameState gameState, Deck<TMCard> hand, int playerID) {
+        double budgetRatio = 0.5;
+        int megaCredits = gameState.getPlayerResources()[playerID].get(TMTypes.Resource.MegaCredit).getValue();
+        int cost = ((TMGameParameters) gameState.getGameParameters()).getProjectPurchaseCost();
+        int nCards = hand.getSize();
+        DraftPlan plan = new DraftPlan(gameState.getGameID(), gameState.getGeneration(), megaCredits, cost, nCards, megaCredits * budgetRatio);
+
+        Integer[] order = new Integer[nCards];
+        for (int i = 0; i < nCards; i++) {
+            TMCard card = hand.get(i);
+            plan.cardIDs[i] = card.getComponentID();
+            plan.scores[i] = evaluateCard(card, gameState, playerID);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(plan.scores[b], plan.scores[a]));
+
+        // As in the per-card rule, the best card is always kept if it scores positively (and can be paid for)
+        int capacity = Math.max(1, cost > 0 ? (int) (plan.budget / cost) : nCards);
+        for (int rank = 0; rank < nCards; rank++) {
+            int i = order[rank];
+            plan.ranks[i] = rank;
+            plan.keep[i] = rank < capacity && plan.scores[i] > 0;
+        }
+        return plan;
+    }
+
+    private AbstractAction actions(TMGameState gameState, List<AbstractAction> possibleActions, int playerID) {
         AbstractAction bestAction = null;
         double bestScore = Double.NEGATIVE_INFINITY;
 
         for (AbstractAction action : possibleActions) {
-            double score = evaluateAction(action, gameState);
+            double score = evaluateAction(action, gameState, playerID);
+            if (trace != null)
+                trace.addCandidate(action, score);
             if (score > bestScore) {
                 bestScore = score;
                 bestAction = action;
             }
         }
 
-        //System.out.println("Actions action: " + possibleActions + " Best Action: " + bestAction);
-        //System.out.println("Best action: " + bestAction);
-
         // If no valid action was selected, resort to selecting a random possible action
-        return bestAction != null ? bestAction : possibleActions.get(random.nextInt(possibleActions.size()));
+        return bestAction != null ? bestAction : possibleActions.get(random.get().nextInt(possibleActions.size()));
+    }
+
+    /**
+     * Scores an action for the player currently to move, using the same rules as getAction().
+     * This lets the rule-based evaluation be used as an advantage function by search agents, for example to order
+     * expansion and prune with progressive widening in MCTS.
+     * <p>
+     * The raw rule scores span many orders of magnitude (and vetoed actions score negative infinity), so they are
+     * log-compressed into [-1, 1]. This keeps the ordering intact, while being on a scale that can be blended with
+     * node values by progressive bias.
+     *
+     * @param action - action to evaluate
+     * @param state  - the current state of the Terraforming Mars game state
+     * @return       - score in [-1, 1], higher is better
+     */
+    @Override
+    public double evaluateAction(AbstractAction action, AbstractGameState state) {
+        double raw = evaluateAction(action, (TMGameState) state, state.getCurrentPlayer());
+        if (Double.isNaN(raw))
+            return 0.0;
+        double squashed = Math.signum(raw) * Math.log1p(Math.abs(raw)) / MAX_LOG_SCORE;
+        return Math.max(-1.0, Math.min(1.0, squashed));
     }
 
     /**
@@ -163,12 +443,12 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
      *
      * @param card      - the action to evaluate
      * @param gameState - the current state of the Terraforming Mars game state
+     * @param playerID  - ID of the player the evaluation is for
      * @return          - a score for the given card
      */
-    private double evaluateCard(TMCard card, TMGameState gameState) {
+    private double evaluateCard(TMCard card, TMGameState gameState, int playerID) {
         double score = 0;
         double milestone;
-        int playerID = getPlayerID();
         HashMap<TMTypes.Resource, Counter> resources = gameState.getPlayerResources()[playerID];
         int megaCredits = resources.get(TMTypes.Resource.MegaCredit).getValue();
         HashMap<TMTypes.Resource, Counter> playerProduction = gameState.getPlayerProduction()[playerID];
@@ -207,7 +487,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
 
         if (card.getImmediateEffects() != null) {
             for (TMAction action : card.getImmediateEffects()) {
-                score += evaluateAction(action, gameState) * economyWeight;
+                score += evaluateAction(action, gameState, playerID) * economyWeight;
             }
         }
 
@@ -228,7 +508,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         for (TMTypes.Tag tag : tags) {
             switch (tag) {
                 case Plant:
-                    boolean isCloseToGardener = isCloseToMilestone(gameState, "gardner", 66);
+                    boolean isCloseToGardener = isCloseToMilestone(gameState, "gardner", 66, playerID);
                     milestone = currentGameStage == GameStage.MID_GAME ? (isCloseToGardener ? 100 : 0) : 0;
                     score += plantWeight + milestone;
                     break;
@@ -239,7 +519,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
                     score += scienceWeight;
                     break;
                 case Building:
-                    boolean isCloseToBuilder = isCloseToMilestone(gameState, "builder", 75);
+                    boolean isCloseToBuilder = isCloseToMilestone(gameState, "builder", 75, playerID);
                     milestone = currentGameStage == GameStage.MID_GAME ? (isCloseToBuilder ? 1000 : 0) : 0;
                     score += buildingWeight + milestone;
                     break;
@@ -247,7 +527,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
                     score += powerWeight;
                     break;
                 case City:
-                    boolean isCloseToMayor = isCloseToMilestone(gameState, "mayor", 66);
+                    boolean isCloseToMayor = isCloseToMilestone(gameState, "mayor", 66, playerID);
                     milestone = currentGameStage == GameStage.MID_GAME ? (isCloseToMayor ? 1000 : 0) : 0;
                     score += cityWeight + milestone;
                     break;
@@ -294,11 +574,11 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
      *
      * @param action    - the action to evaluate
      * @param gameState - the current state of the Terraforming Mars game state
+     * @param playerID  - ID of the player the evaluation is for
      * @return          - a score for the given action
      */
-    private double evaluateAction(AbstractAction action, TMGameState gameState) {
+    private double evaluateAction(AbstractAction action, TMGameState gameState, int playerID) {
         double score = 0;
-        int playerID = getPlayerID();
         int nPlayers = gameState.getNPlayers();
         boolean isWinning = isPlayerWinning(playerID, gameState);
         GameStage currentGameStage = setGameStage(gameState);
@@ -314,7 +594,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
             ChoiceAction choiceAction = (ChoiceAction) action;
             double totalScore = 0;
             for (TMAction singleAction : choiceAction.actions) {
-                totalScore += evaluateAction(singleAction, gameState);
+                totalScore += evaluateAction(singleAction, gameState, playerID);
             }
             return totalScore;
         }
@@ -324,7 +604,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
             CompoundAction compoundAction = (CompoundAction) action;
             double totalScore = 0;
             for (TMAction singleAction : compoundAction.actions) {
-                totalScore += evaluateAction(singleAction, gameState);
+                totalScore += evaluateAction(singleAction, gameState, playerID);
             }
             return totalScore;
         }
@@ -332,14 +612,14 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         // Calculate total score for all inner actions wrapped in PayForAction
         else if (action instanceof PayForAction) {
             PayForAction payForAction = (PayForAction) action;
-            return score + evaluateAction(payForAction.action, gameState);
+            return score + evaluateAction(payForAction.action, gameState, playerID);
         }
 
         // Evaluate the card being played using evaluateCard and additional weighting
         else if (action instanceof PlayCard) {
             PlayCard playCardAction = (PlayCard) action;
             TMCard card = (TMCard) gameState.getComponentById(playCardAction.getPlayCardID());
-            double cardScore = evaluateCard(card, gameState);
+            double cardScore = evaluateCard(card, gameState, playerID);
 
             if (cardScore > 0) {
                 return cardScore + 1000;
@@ -352,7 +632,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         else if (action instanceof ModifyGlobalParameter) {
             ModifyGlobalParameter modifyGlobalParameterAction = (ModifyGlobalParameter) action;
             TMTypes.GlobalParameter globalParameter = modifyGlobalParameterAction.param;
-            boolean isCloseToTerraformer = isCloseToMilestone(gameState, "terraformer", 75);
+            boolean isCloseToTerraformer = isCloseToMilestone(gameState, "terraformer", 75, playerID);
             double milestone = currentGameStage == GameStage.MID_GAME ? (isCloseToTerraformer ? 100 : 0) : 0;
 
             if (globalParameter == TMTypes.GlobalParameter.Temperature) {
@@ -399,7 +679,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
                     }
                     break;
                 case Plant:
-                    boolean isCloseToGardener = isCloseToMilestone(gameState, "gardner", 66);
+                    boolean isCloseToGardener = isCloseToMilestone(gameState, "gardner", 66, playerID);
                     double milestone = currentGameStage == GameStage.MID_GAME ? (isCloseToGardener ? 100 : 0) : 0;
                     resourceScore = (isProduction ? (resourceChange > 0 ? 200 : 0) : (resourceChange > 0 ? 150 : 300)) + milestone + resourceChange;
                     break;
@@ -436,30 +716,30 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
             TMTypes.Tile tileType = placeTileAction.tile;
             if (tileType == TMTypes.Tile.Greenery) {
                 double threshold = nPlayers > 3 ? 0 : 66;
-                boolean isCloseToGardener = isCloseToMilestone(gameState, "gardner", threshold);
+                boolean isCloseToGardener = isCloseToMilestone(gameState, "gardner", threshold, playerID);
                 double milestone = currentGameStage != GameStage.EARLY_GAME ? (isCloseToGardener ? 10000 : 0) : 0;
                 double weight = nPlayers > 3 ? (currentGameStage != GameStage.EARLY_GAME ? 200 : 0) :
                         (currentGameStage != GameStage.EARLY_GAME ? 500 : 0);
                 if (tileToPlace == null) {
                     return score + weight + milestone;
                 }
-                return score + 80 + weight + milestone + evaluatePlaceGreeneryAction(placeTileAction, gameState);
+                return score + 80 + weight + milestone + evaluatePlaceGreeneryAction(placeTileAction, gameState, playerID);
             } else if (tileType == TMTypes.Tile.Ocean) {
                 double weight = currentGameStage != GameStage.EARLY_GAME ? 150 : 50;
                 if (tileToPlace == null) {
                     return score + weight;
                 }
-                return score + 80 + weight + evaluatePlaceOceanAction(placeTileAction, gameState);
+                return score + 80 + weight + evaluatePlaceOceanAction(placeTileAction, gameState, playerID);
             } else if (tileType == TMTypes.Tile.City) {
                 double weight = nPlayers > 3 ? (currentGameStage != GameStage.EARLY_GAME ? 100 : 0) :
                         (currentGameStage != GameStage.EARLY_GAME ? 200 : 0);
                 double threshold = nPlayers > 3 ? 0 : 66;
-                boolean isCloseToMayor = isCloseToMilestone(gameState, "mayor", threshold);
+                boolean isCloseToMayor = isCloseToMilestone(gameState, "mayor", threshold, playerID);
                 double milestone = currentGameStage != GameStage.EARLY_GAME ? (isCloseToMayor ? 10000 : 0) : 0;
                 if (tileToPlace == null) {
                     return score + weight + milestone;
                 }
-                return score + 20 + milestone + evaluatePlaceCityAction(placeTileAction, gameState);
+                return score + 20 + milestone + evaluatePlaceCityAction(placeTileAction, gameState, playerID);
             }
         }
 
@@ -472,7 +752,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
             } else if (actionType == TMTypes.ActionType.FundAward) {
                 int toClaimID = claimAwardMilestoneAction.getToClaimID();
                 Award award = (Award) gameState.getComponentById(toClaimID);
-                Award closestAward = getWinningAward(gameState);
+                Award closestAward = getWinningAward(gameState, playerID);
                 if (award != null && award.equals(closestAward) && currentGameStage == GameStage.LATE_GAME) {
                     return score + 1500;
                 }
@@ -482,7 +762,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         // Calculate the score for passing
         else if (action.getClass().equals(TMAction.class)) {
             for (Milestone m : gameState.getMilestones()) {
-                if (m.canClaim(gameState, getPlayerID()) && megaCredits < 8) {
+                if (m.canClaim(gameState, playerID) && megaCredits < 8) {
                     return score + 1000000;
                 }
             }
@@ -499,7 +779,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
             BuyCard buyCard = (BuyCard) action;
             TMCard card = (TMCard) gameState.getComponentById(buyCard.getCardID());
             if (card.getCost() <= megaCredits) {
-                double tempScore = evaluateCard(card, gameState);
+                double tempScore = evaluateCard(card, gameState, playerID);
                 if (tempScore > 0) {
                     return score + 50;
                 }
@@ -514,7 +794,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
             DiscardCard discardCard = (DiscardCard) action;
             TMCard card = (TMCard) gameState.getComponentById(discardCard.getCardID());
             if (card.getCost() <= megaCredits) {
-                double tempScore = evaluateCard(card, gameState);
+                double tempScore = evaluateCard(card, gameState, playerID);
                 if (tempScore > 0) {
                     return score - 50;
                 }
@@ -562,9 +842,10 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
      *
      * @param placeTileAction      - the player's PlaceTile action that they are evaluating
      * @param gameState            - the current state of the Terraforming Mars game state
+     * @param playerID             - ID of the player the evaluation is for
      * @return                     - a score for PlaceTile action for a potential map tile
      */
-    private double evaluatePlaceGreeneryAction(PlaceTile placeTileAction, TMGameState gameState) {
+    private double evaluatePlaceGreeneryAction(PlaceTile placeTileAction, TMGameState gameState, int playerID) {
         int mapTileID = placeTileAction.mapTileID;
         TMMapTile tileToPlace = (TMMapTile) gameState.getComponentById(mapTileID);
         double score = 0;
@@ -580,7 +861,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
                 TMTypes.Tile neighbourTileType = neighbourTile.getTilePlaced();
                 if (neighbourTileType == TMTypes.Tile.City) {
                     int owner = neighbourTile.getOwnerId();
-                    if (owner == getPlayerID()) {
+                    if (owner == playerID) {
                         score += 800;
                     } else if (owner >= 0){
                         score -= 500;
@@ -608,9 +889,10 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
      *
      * @param placeTileAction      - the player's PlaceTile action that they are evaluating
      * @param gameState            - the current state of the Terraforming Mars game state
+     * @param playerID             - ID of the player the evaluation is for
      * @return                     - a score for PlaceTile action for a potential map tile
      */
-    private double evaluatePlaceCityAction(PlaceTile placeTileAction, TMGameState gameState) {
+    private double evaluatePlaceCityAction(PlaceTile placeTileAction, TMGameState gameState, int playerID) {
         int cityCount = 0;
         double score = 0;
         int mapTileID = placeTileAction.mapTileID;
@@ -658,7 +940,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
 
         // Count the number of cities placed by the player
         for (TMMapTile mapTile : gameState.getBoard().getComponents()) {
-            if (mapTile != null && mapTile.getTilePlaced() == TMTypes.Tile.City && mapTile.getOwnerId() == gameState.getCurrentPlayer()) {
+            if (mapTile != null && mapTile.getTilePlaced() == TMTypes.Tile.City && mapTile.getOwnerId() == playerID) {
                 cityCount++;
             }
         }
@@ -679,9 +961,10 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
      *
      * @param placeTileAction      - the player's PlaceTile action that they are evaluating
      * @param gameState            - the current state of the Terraforming Mars game state
+     * @param playerID             - ID of the player the evaluation is for
      * @return                     - score for PlaceTile action for a potential map tile
      */
-    private double evaluatePlaceOceanAction(PlaceTile placeTileAction, TMGameState gameState) {
+    private double evaluatePlaceOceanAction(PlaceTile placeTileAction, TMGameState gameState, int playerID) {
         int mapTileID = placeTileAction.mapTileID;
         TMMapTile tileToPlace = (TMMapTile) gameState.getComponentById(mapTileID);
         double score = 0;
@@ -696,7 +979,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         for (Vector2D neighbourPosition : neighbourPositions) {
             TMMapTile adjacentTile = gameState.getBoard().getElement(neighbourPosition.getX(), neighbourPosition.getY());
             if (adjacentTile != null && adjacentTile.getTilePlaced() != null) {
-                if (adjacentTile.getOwnerId() == getPlayerID()) {
+                if (adjacentTile.getOwnerId() == playerID) {
                     adjacentPlayerTiles += 1;
                 } else {
                     adjacentOpponentTiles += 1;
@@ -735,9 +1018,10 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
      * @param gameState           - the current state of the Terraforming Mars game state
      * @param milestoneName       - the String name of targeted Milestone
      * @param thresholdPercentage - the threshold value to check player progress against
+     * @param playerID            - ID of the player the evaluation is for
      * @return                    - boolean value for if player can claim Milestone
      */
-    private boolean isCloseToMilestone(TMGameState gameState, String milestoneName, double thresholdPercentage) {
+    private boolean isCloseToMilestone(TMGameState gameState, String milestoneName, double thresholdPercentage, int playerID) {
         int claimedMilestones = 0;
         Milestone milestone = null;
 
@@ -762,7 +1046,7 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
             return false;
         }
 
-        int count = milestone.checkProgress(gameState, getPlayerID());
+        int count = milestone.checkProgress(gameState, playerID);
         double progressPercentage = (double) count / milestone.min * 100;
 
         return progressPercentage >= thresholdPercentage;
@@ -774,21 +1058,22 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
      * the least contested award
      *
      * @param gameState - the current state of the Terraforming Mars game state
+     * @param playerID  - ID of the player the evaluation is for
      * @return          - Award if player is leader by a minimum difference otherwise null
      */
-    private Award getWinningAward(TMGameState gameState) {
+    private Award getWinningAward(TMGameState gameState, int playerID) {
         Award winningAward = null;
         int maxDifference = Integer.MIN_VALUE;
         int threshold = 5;
 
         for (Award award : gameState.getAwards()) {
-            if (!award.isClaimed() && award.canClaim(gameState, getPlayerID())) {
-                int currentPlayerProgress = award.checkProgress(gameState, getPlayerID());
+            if (!award.isClaimed() && award.canClaim(gameState, playerID)) {
+                int currentPlayerProgress = award.checkProgress(gameState, playerID);
                 int maxOpponentProgress = 0;
                 boolean playerIsWinning = true;
 
                 for (int i = 0; i < gameState.getNPlayers(); i++) {
-                    if (i == getPlayerID()) continue;
+                    if (i == playerID) continue;
                     int opponentProgress = award.checkProgress(gameState, i);
                     maxOpponentProgress = Math.max(maxOpponentProgress, opponentProgress);
 
@@ -838,6 +1123,29 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
         return isWinning;
     }
 
+    /**
+     * Each game starts with an empty trace, so that the dump at the end of it only holds that game's decisions
+     */
+    @Override
+    public void initializePlayer(AbstractGameState gameState) {
+        if (trace != null)
+            trace.clear();
+    }
+
+    @Override
+    public void finalizePlayer(AbstractGameState gameState) {
+        if (trace != null && traceFile != null)
+            trace.dump(traceFile, String.format("Game %d, P%d, Generation %d", gameState.getGameID(), getPlayerID(),
+                    ((TMGameState) gameState).getGeneration()));
+    }
+
+    @Override
+    public Map<AbstractAction, Map<String, Object>> getDecisionStats() {
+        if (trace == null)
+            return super.getDecisionStats();
+        return trace.lastDecisionStats();
+    }
+
     /** Return the class name as a string */
     public String toString() {
         return "TMRuleBasedPlayer";
@@ -845,6 +1153,19 @@ public class TMRuleBasedPlayer extends AbstractPlayer {
 
     /** Copy the player object */
     @Override
-    public AbstractPlayer copy() { return this; }
+    public AbstractPlayer copy() {
+        TMRuleBasedPlayer retValue = trace == null ? new TMRuleBasedPlayer(seed)
+                : new TMRuleBasedPlayer(seed, trace.capacity, traceFile);
+        retValue.draftPlan = draftPlan;
+        return retValue;
+    }
+
+    /**
+     * The trace, if there is one, records the decisions of a single game
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return trace == null;
+    }
 
 }
\ No newline at end of file
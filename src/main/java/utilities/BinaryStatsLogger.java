@@ -0,0 +1,266 @@
+package utilities;
+
+import core.interfaces.IStatisticLogger;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Logs each record as a row of doubles to a binary file, for numeric data (such as the training data written by a
+ * FeatureListener) that would otherwise be written as text by FileStatsLogger, and then parsed back again.
+ * <p>
+ * The file starts with an int (MAGIC), the number of columns, and the name of each column (as modified UTF-8);
+ * each row is then one double per column, with NaN for any value missing from a record. Files with the same columns
+ * (for example the shards written by several threads) can be put together with merge(), or with mergeGames() to put
+ * the rows of the games in them in order.
+ */
+public class BinaryStatsLogger implements IStatisticLogger {
+
+    static final int MAGIC = 0x54414731; // "TAG1"
+
+    private final String fileName;
+    private final DataOutputStream writer;
+    private List<String> allKeys = new ArrayList<>();
+    private long rowsRecorded;
+
+    /**
+     * @param fileName The full location of the file to write results to
+     * @param append   If true, and the file already exists, rows are added to it (and must have the same columns)
+     */
+    public BinaryStatsLogger(String fileName, boolean append) {
+        this.fileName = fileName;
+        try {
+            File file = new File(fileName);
+            if (append && file.length() > 0)
+                allKeys = Arrays.asList(readHeader(fileName));
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append), 1 << 16));
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem opening file " + fileName + " : " + e.getMessage());
+        }
+    }
+
+    public BinaryStatsLogger(String fileName) {
+        this(fileName, true);
+    }
+
+    /**
+     * The keys of the first record are the columns of the file (unless it is being appended to, when they are
+     * those already in the file). Data for any other keys in later records is ignored (and logged to console).
+     *
+     * @param data A map of name -> value pairs, all of which must be numbers (or null)
+     */
+    @Override
+    public void record(Map<String, ?> data) {
+        try {
+            if (allKeys.isEmpty()) {
+                allKeys = new ArrayList<>(data.keySet());
+                writer.writeInt(MAGIC);
+                writer.writeInt(allKeys.size());
+                for (String key : allKeys)
+                    writer.writeUTF(key);
+            } else if (data.size() != allKeys.size() || !allKeys.containsAll(data.keySet())) {
+                data.keySet().forEach(s -> {
+                    if (!allKeys.contains(s))
+                        System.out.println("Unknown key in BinaryStatsLogger : " + s);
+                });
+            }
+            for (String key : allKeys) {
+                Object datum = data.get(key);
+                if (datum != null && !(datum instanceof Number))
+                    throw new AssertionError("BinaryStatsLogger only records numbers, not " + key + " : " + datum);
+                writer.writeDouble(datum == null ? Double.NaN : ((Number) datum).doubleValue());
+            }
+            rowsRecorded++;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem writing to file " + fileName + " : " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void record(String key, Object datum) {
+        System.out.println("Datum ignored - BinaryStatsLogger only to be used with other record()");
+    }
+
+    /**
+     * This just closes the file
+     */
+    @Override
+    public void processDataAndFinish() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem closing file " + fileName + " : " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void processDataAndNotFinish() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem flushing file " + fileName + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The number of rows recorded by this logger (not including any already in a file it appends to)
+     */
+    public long rowsRecorded() {
+        return rowsRecorded;
+    }
+
+    /**
+     * This always returns an empty Map
+     *
+     * @return A summary of the data
+     */
+    @Override
+    public Map<String, TAGStatSummary> summary() {
+        return new HashMap<>();
+    }
+
+    /**
+     * @return The names of the columns in the file
+     */
+    public static String[] readHeader(String fileName) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+            return readHeader(input, fileName);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem reading file " + fileName + " : " + e.getMessage());
+        }
+    }
+
+    private static String[] readHeader(DataInputStream input, String fileName) throws IOException {
+        if (input.readInt() != MAGIC)
+            throw new AssertionError(fileName + " was not written by a BinaryStatsLogger");
+        String[] header = new String[input.readInt()];
+        for (int i = 0; i < header.length; i++)
+            header[i] = input.readUTF();
+        return header;
+    }
+
+    /**
+     * @return The rows of the file, each with one value per column
+     */
+    public static List<double[]> readRows(String fileName) {
+        List<double[]> retValue = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16))) {
+            int nColumns = readHeader(input, fileName).length;
+            while (input.available() > 0) {
+                double[] row = new double[nColumns];
+                for (int i = 0; i < nColumns; i++)
+                    row[i] = input.readDouble();
+                retValue.add(row);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem reading file " + fileName + " : " + e.getMessage());
+        }
+        return retValue;
+    }
+
+    /**
+     * Writes the rows of all the files given to one file, with a single header. The files must all have the same
+     * columns; any that are empty (from a writer that never recorded anything) are skipped.
+     *
+     * @param fileNames The files to merge
+     * @param target    The file to write (which is replaced if it exists)
+     * @return The number of rows written
+     */
+    public static long merge(List<String> fileNames, String target) {
+        String[] header = null;
+        long rows = 0;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16))) {
+            byte[] buffer = new byte[1 << 16];
+            for (String fileName : fileNames) {
+                if (new File(fileName).length() == 0)
+                    continue;
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+                    String[] columns = readHeader(input, fileName);
+                    if (header == null) {
+                        header = columns;
+                        output.writeInt(MAGIC);
+                        output.writeInt(header.length);
+                        for (String column : header)
+                            output.writeUTF(column);
+                    } else if (!Arrays.equals(header, columns)) {
+                        throw new AssertionError("The columns of " + fileName + " do not match those of " + fileNames.get(0));
+                    }
+                    // the rows are copied as they are
+                    long bytes = 0;
+                    int read;
+                    while ((read = input.read(buffer)) > 0) {
+                        output.write(buffer, 0, read);
+                        bytes += read;
+                    }
+                    rows += bytes / (8L * header.length);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem merging files into " + target + " : " + e.getMessage());
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the rows of a set of games to one file, in the order of the games (rather than file by file, as merge()
+     * does). Each of the files holds the rows of some of the games, one game after another, in the order of the games.
+     *
+     * @param fileNames The files to merge, which must all have the same columns (any that are empty are skipped)
+     * @param gameFiles The index (in fileNames) of the file that holds the rows of each game
+     * @param gameRows  The number of rows of each game
+     * @param idColumn  A column to set to the number of each game (from 0) in place of the value recorded; or null
+     * @param target    The file to write (which is replaced if it exists)
+     * @return The number of rows written
+     */
+    public static long mergeGames(List<String> fileNames, int[] gameFiles, long[] gameRows, String idColumn, String target) {
+        DataInputStream[] inputs = new DataInputStream[fileNames.size()];
+        String[] header = null;
+        long rows = 0;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16))) {
+            try {
+                for (int f = 0; f < inputs.length; f++) {
+                    String fileName = fileNames.get(f);
+                    if (new File(fileName).length() == 0)
+                        continue;
+                    inputs[f] = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+                    String[] columns = readHeader(inputs[f], fileName);
+                    if (header == null) {
+                        header = columns;
+                        output.writeInt(MAGIC);
+                        output.writeInt(header.length);
+                        for (String column : header)
+                            output.writeUTF(column);
+                    } else if (!Arrays.equals(header, columns)) {
+                        throw new AssertionError("The columns of " + fileName + " do not match those of the other files");
+                    }
+                }
+                int id = header == null || idColumn == null ? -1 : Arrays.asList(header).indexOf(idColumn);
+                for (int g = 0; g < gameFiles.length; g++) {
+                    DataInputStream input = inputs[gameFiles[g]];
+                    for (long r = 0; r < gameRows[g]; r++) {
+                        for (int c = 0; c < header.length; c++) {
+                            double value = input.readDouble();
+                            output.writeDouble(c == id ? g : value);
+                        }
+                        rows++;
+                    }
+                }
+            } finally {
+                for (DataInputStream input : inputs)
+                    if (input != null)
+                        input.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AssertionError("Problem merging files into " + target + " : " + e.getMessage());
+        }
+        return rows;
+    }
+}
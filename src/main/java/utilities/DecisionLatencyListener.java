@@ -0,0 +1,62 @@
+package utilities;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.CoreConstants;
+import core.Game;
+import core.actions.AbstractAction;
+import core.interfaces.IGameListener;
+import core.interfaces.IStatisticLogger;
+
+import java.util.*;
+
+import static core.CoreConstants.GameEvents.GAME_OVER;
+
+/**
+ * Collects the decision latency histograms from each Game, and reports percentiles (p50, p95, p99, max) once
+ * all games are finished. Histograms are merged across games by player name (so the same agent in different
+ * seats of a tournament is aggregated), and then broken down by game phase and by class of action chosen.
+ * This is the place to look for tail latency, which the mean TimeAgent from GameStatisticsListener hides.
+ */
+public class DecisionLatencyListener implements IGameListener {
+
+    Map<String, DecisionLatencyStats> latencyByPlayer = new LinkedHashMap<>();
+    IStatisticLogger logger;
+
+    public DecisionLatencyListener(IStatisticLogger logger) {
+        this.logger = logger;
+    }
+
+    public DecisionLatencyListener() {
+        this(new SummaryLogger());
+    }
+
+    @Override
+    public void onGameEvent(CoreConstants.GameEvents type, Game game) {
+        if (type == GAME_OVER) {
+            List<AbstractPlayer> players = game.getPlayers();
+            for (int p = 0; p < players.size(); p++) {
+                latencyByPlayer.computeIfAbsent(players.get(p).toString(), n -> new DecisionLatencyStats())
+                        .merge(game.getDecisionLatency(p));
+            }
+        }
+    }
+
+    @Override
+    public void onEvent(CoreConstants.GameEvents type, AbstractGameState state, AbstractAction action) {
+        // do nothing
+    }
+
+    public DecisionLatencyStats getLatency(String playerName) {
+        return latencyByPlayer.get(playerName);
+    }
+
+    @Override
+    public void allGamesFinished() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (Map.Entry<String, DecisionLatencyStats> entry : latencyByPlayer.entrySet())
+            data.putAll(entry.getValue().summary(entry.getKey()));
+        logger.record(data);
+        logger.processDataAndFinish();
+    }
+}
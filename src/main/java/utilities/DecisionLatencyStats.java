@@ -0,0 +1,73 @@
+package utilities;
+
+import core.actions.AbstractAction;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decision latencies for one player, overall and broken down by game phase and by the class of the action chosen.
+ * Game keeps one of these per player, and records into it every time a player is asked for a decision.
+ */
+public class DecisionLatencyStats {
+
+    private final LatencyHistogram all = new LatencyHistogram();
+    // keyed on the phase and Class objects themselves, so that recording does not build any Strings
+    private final Map<Object, LatencyHistogram> byPhase = new LinkedHashMap<>();
+    private final Map<Class<?>, LatencyHistogram> byActionClass = new LinkedHashMap<>();
+
+    public void record(Object phase, AbstractAction action, long nanos) {
+        all.record(nanos);
+        if (phase != null)
+            byPhase.computeIfAbsent(phase, p -> new LatencyHistogram()).record(nanos);
+        if (action != null)
+            byActionClass.computeIfAbsent(action.getClass(), c -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void merge(DecisionLatencyStats other) {
+        all.merge(other.all);
+        for (Map.Entry<Object, LatencyHistogram> entry : other.byPhase.entrySet())
+            byPhase.computeIfAbsent(entry.getKey(), p -> new LatencyHistogram()).merge(entry.getValue());
+        for (Map.Entry<Class<?>, LatencyHistogram> entry : other.byActionClass.entrySet())
+            byActionClass.computeIfAbsent(entry.getKey(), c -> new LatencyHistogram()).merge(entry.getValue());
+    }
+
+    public LatencyHistogram getAll() {
+        return all;
+    }
+
+    public LatencyHistogram getPhase(Object phase) {
+        return byPhase.get(phase);
+    }
+
+    public LatencyHistogram getActionClass(Class<?> actionClass) {
+        return byActionClass.get(actionClass);
+    }
+
+    /**
+     * Summarises the histograms as name -> value pairs, suitable for an IStatisticLogger.
+     * Keys are of the form prefix.All.p95, prefix.Phase.Actions.p99 or prefix.Action.PlaceTile.max,
+     * with latencies in milliseconds.
+     *
+     * @param prefix Typically the name of the player
+     * @return The summary data
+     */
+    public Map<String, Object> summary(String prefix) {
+        Map<String, Object> retValue = new LinkedHashMap<>();
+        addSummary(retValue, prefix + ".All", all);
+        for (Map.Entry<Object, LatencyHistogram> entry : byPhase.entrySet())
+            addSummary(retValue, prefix + ".Phase." + entry.getKey(), entry.getValue());
+        for (Map.Entry<Class<?>, LatencyHistogram> entry : byActionClass.entrySet())
+            addSummary(retValue, prefix + ".Action." + entry.getKey().getSimpleName(), entry.getValue());
+        return retValue;
+    }
+
+    private static void addSummary(Map<String, Object> data, String key, LatencyHistogram histogram) {
+        data.put(key + ".n", histogram.count());
+        data.put(key + ".mean", histogram.mean() / 1e6);
+        data.put(key + ".p50", histogram.percentile(50) / 1e6);
+        data.put(key + ".p95", histogram.percentile(95) / 1e6);
+        data.put(key + ".p99", histogram.percentile(99) / 1e6);
+        data.put(key + ".max", histogram.max() / 1e6);
+    }
+}
@@ -0,0 +1,174 @@
+package utilities;
+
+import core.actions.AbstractAction;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A fixed-size ring buffer of the most recent decisions made by an agent: the candidate actions considered,
+ * one or more named component scores for each, and the action chosen.
+ * <p>
+ * All storage is allocated up front in flat arrays, and recording only writes primitives and action references, so
+ * it is cheap enough to leave switched on in long tournaments. Nothing is formatted until dump() is called, which
+ * writes out the retained decisions, oldest first. Once full, each new decision overwrites the oldest one.
+ * <p>
+ * Usage is startDecision(), then addCandidate() (and setScore() for further components) for each candidate,
+ * then setChosen().
+ */
+public class DecisionTrace {
+
+    public final int capacity;
+    public final int maxCandidates;
+    private final String[] componentNames;
+    private final int nComponents;
+
+    private final int[] rounds;
+    private final Object[] phases;
+    private final int[] nCandidates;        // may exceed maxCandidates, in which case the extra are not stored
+    private final AbstractAction[] candidates;
+    private final double[] scores;
+    private final AbstractAction[] chosen;
+    private long decisions;
+    private int current = -1;
+
+    /**
+     * @param capacity       The number of decisions to retain
+     * @param maxCandidates  The maximum number of candidate actions to retain per decision
+     * @param componentNames The names of the score components recorded for each candidate (at least one)
+     */
+    public DecisionTrace(int capacity, int maxCandidates, String... componentNames) {
+        if (capacity < 1 || maxCandidates < 1 || componentNames.length == 0)
+            throw new IllegalArgumentException("DecisionTrace needs a positive capacity and at least one score component");
+        this.capacity = capacity;
+        this.maxCandidates = maxCandidates;
+        this.componentNames = componentNames.clone();
+        this.nComponents = componentNames.length;
+        rounds = new int[capacity];
+        phases = new Object[capacity];
+        nCandidates = new int[capacity];
+        candidates = new AbstractAction[capacity * maxCandidates];
+        scores = new double[capacity * maxCandidates * nComponents];
+        chosen = new AbstractAction[capacity];
+    }
+
+    public void startDecision(int round, Object phase) {
+        current = (int) (decisions % capacity);
+        decisions++;
+        // release references from the decision we are overwriting
+        int base = current * maxCandidates;
+        Arrays.fill(candidates, base, base + Math.min(nCandidates[current], maxCandidates), null);
+        rounds[current] = round;
+        phases[current] = phase;
+        nCandidates[current] = 0;
+        chosen[current] = null;
+    }
+
+    /**
+     * Adds a candidate to the current decision, with the value of the first score component.
+     * Any other components are NaN until set.
+     *
+     * @return The index of the candidate, for use with setScore(); or -1 if maxCandidates has been reached
+     */
+    public int addCandidate(AbstractAction action, double score) {
+        int n = nCandidates[current]++;
+        if (n >= maxCandidates)
+            return -1;
+        candidates[current * maxCandidates + n] = action;
+        int scoreBase = (current * maxCandidates + n) * nComponents;
+        scores[scoreBase] = score;
+        for (int c = 1; c < nComponents; c++)
+            scores[scoreBase + c] = Double.NaN;
+        return n;
+    }
+
+    public void setScore(int candidate, int component, double value) {
+        if (candidate < 0 || candidate >= maxCandidates)
+            return;
+        scores[(current * maxCandidates + candidate) * nComponents + component] = value;
+    }
+
+    public void setChosen(AbstractAction action) {
+        chosen[current] = action;
+    }
+
+    /**
+     * Forgets all the decisions recorded (for example at the start of a new game)
+     */
+    public void clear() {
+        Arrays.fill(candidates, null);
+        Arrays.fill(phases, null);
+        Arrays.fill(chosen, null);
+        Arrays.fill(nCandidates, 0);
+        decisions = 0;
+        current = -1;
+    }
+
+    /**
+     * @return The total number of decisions recorded (including those since overwritten)
+     */
+    public long decisions() {
+        return decisions;
+    }
+
+    /**
+     * The most recent decision in the format used by AbstractPlayer.getDecisionStats(): the component scores for
+     * each stored candidate, plus whether it was chosen.
+     */
+    public Map<AbstractAction, Map<String, Object>> lastDecisionStats() {
+        Map<AbstractAction, Map<String, Object>> retValue = new LinkedHashMap<>();
+        if (current < 0)
+            return retValue;
+        int stored = Math.min(nCandidates[current], maxCandidates);
+        for (int n = 0; n < stored; n++) {
+            AbstractAction action = candidates[current * maxCandidates + n];
+            Map<String, Object> actionValues = new HashMap<>();
+            for (int c = 0; c < nComponents; c++)
+                actionValues.put(componentNames[c], scores[(current * maxCandidates + n) * nComponents + c]);
+            actionValues.put("chosen", action != null && action.equals(chosen[current]));
+            retValue.put(action, actionValues);
+        }
+        return retValue;
+    }
+
+    /**
+     * Writes the retained decisions, oldest first
+     */
+    public void dump(Writer writer) throws IOException {
+        long first = Math.max(0, decisions - capacity);
+        for (long d = first; d < decisions; d++) {
+            int slot = (int) (d % capacity);
+            int stored = Math.min(nCandidates[slot], maxCandidates);
+            writer.write(String.format("Decision %d\tRound %d\tPhase %s\tCandidates %d%s%n", d, rounds[slot], phases[slot],
+                    nCandidates[slot], stored < nCandidates[slot] ? " (" + stored + " stored)" : ""));
+            for (int n = 0; n < stored; n++) {
+                AbstractAction action = candidates[slot * maxCandidates + n];
+                StringBuilder line = new StringBuilder();
+                line.append(action != null && action.equals(chosen[slot]) ? "  * " : "    ");
+                for (int c = 0; c < nComponents; c++)
+                    line.append(String.format("%s=%.4g\t", componentNames[c], scores[(slot * maxCandidates + n) * nComponents + c]));
+                line.append(action);
+                writer.write(line.append(System.lineSeparator()).toString());
+            }
+            writer.write(String.format("  Chosen: %s%n", chosen[slot]));
+        }
+    }
+
+    /**
+     * Appends the retained decisions to a file
+     */
+    public void dump(String fileName, String header) {
+        try (FileWriter writer = new FileWriter(fileName, true)) {
+            if (header != null)
+                writer.write(header + System.lineSeparator());
+            dump(writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
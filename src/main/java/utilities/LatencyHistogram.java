@@ -0,0 +1,103 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of latencies (in nanoseconds), in the style of an HDR histogram.
+ * <p>
+ * Values are stored in log-linear buckets: each power of two is split into 64 equal sub-buckets, so any
+ * recorded value is reproduced to within ~1.6%. Recording is a couple of bit operations and an array increment,
+ * with no allocation, so it is cheap enough to call on every decision.
+ * Unlike TAGStatSummary it does not keep the raw values, so percentiles can be taken over millions of samples
+ * and histograms from different games can be merged.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values above 2^40 ns (about 18 minutes) are clamped into the top bucket (max is still tracked exactly)
+    private static final int MAX_VALUE_BITS = 40;
+    private static final int N_BUCKETS = bucketIndex((1L << MAX_VALUE_BITS) - 1) + 1;
+
+    private final long[] counts = new long[N_BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+     * @param nanos The latency to record; negative values are treated as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        int index = bucketIndex(Math.min(value, (1L << MAX_VALUE_BITS) - 1));
+        counts[index]++;
+        total++;
+        sum += value;
+        if (value > max)
+            max = value;
+    }
+
+    /**
+     * Adds all the data from another histogram into this one
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < N_BUCKETS; i++)
+            counts[i] += other.counts[i];
+        total += other.total;
+        sum += other.sum;
+        if (other.max > max)
+            max = other.max;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0L);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return total == 0 ? 0.0 : sum / (double) total;
+    }
+
+    /**
+     * @param percentile In the range [0, 100]
+     * @return The highest value in the bucket that contains the percentile (never more than the max recorded),
+     * or zero if nothing has been recorded
+     */
+    public long percentile(double percentile) {
+        if (total == 0)
+            return 0;
+        long target = (long) Math.ceil(Math.max(0.0, Math.min(100.0, percentile)) / 100.0 * total);
+        if (target < 1)
+            target = 1;
+        long cumulative = 0;
+        for (int i = 0; i < N_BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target)
+                return Math.min(highestValueInBucket(i), max);
+        }
+        return max;
+    }
+
+    private static int bucketIndex(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return index;
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,135 @@
+package test.players;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.interfaces.IStatisticLogger;
+import games.GameType;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import games.terraformingmars.TMGameState;
+import org.junit.*;
+import players.PlayerConstants;
+import players.TimeManager;
+import players.mcts.MCTSParams;
+import players.mcts.MCTSPlayer;
+import players.simple.RandomPlayer;
+import utilities.SummaryLogger;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TimeManagerTests {
+
+    MCTSParams params;
+    Game dominion;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.budgetType = PlayerConstants.BUDGET_TIME;
+        params.budget = 40;
+        params.breakMS = 0;
+        params.timeManager = true;
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        dominion = new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void allocationScalesWithActionSpace() {
+        TimeManager manager = new TimeManager(params);
+        AbstractGameState state = dominion.getGameState();
+        assertEquals(20, manager.startDecision(state, 0, 2));
+        assertEquals(40, manager.startDecision(state, 0, 10));
+        assertEquals(80, manager.startDecision(state, 0, 100));
+        assertEquals(80, manager.startDecision(state, 0, 10000));
+    }
+
+    @Test
+    public void allocationWeightedByPhase() {
+        Game tm = GameType.TerraformingMars.createGameInstance(2, 4932);
+        tm.reset(Arrays.asList(new RandomPlayer(new Random(3023)), new RandomPlayer(new Random(244))));
+        AbstractGameState state = tm.getGameState();
+        assertEquals(TMGameState.TMPhase.CorporationSelect, state.getGamePhase());
+        assertEquals(80, new TimeManager(params).startDecision(state, 0, 10));
+    }
+
+    @Test
+    public void allocationCappedByGameClock() {
+        params.budget = 10000000;
+        long remaining = dominion.getGameState().getPlayerTimer()[0].remainingTimeMillis();
+        long allocated = new TimeManager(params).startDecision(dominion.getGameState(), 0, 10);
+        assertEquals(remaining / params.movesToGo, allocated, 1);
+    }
+
+    @Test
+    public void stopsOnceLeaderCannotBeOvertaken() {
+        TimeManager manager = new TimeManager(params);
+        manager.startDecision(dominion.getGameState(), 0, 10);
+        // 30ms, so 30 iterations left at 1ms each
+        assertFalse(manager.stop(0, 1.0, 3, 0));
+        assertFalse(manager.stop(10, 1.0, 3, 20));
+        assertTrue(manager.stop(10, 1.0, 3, 31));
+        // with no lead (the move is not chosen by visits) it runs to the allocation
+        assertFalse(manager.stop(30, 1.0, 3, -1));
+        assertTrue(manager.stop(39, 1.0, 3, -1));
+    }
+
+    @Test
+    public void runsOnWhileLeaderChanges() {
+        TimeManager manager = new TimeManager(params);
+        manager.startDecision(dominion.getGameState(), 0, 10);
+        assertFalse(manager.stop(5, 1.0, 1, -1));
+        // a new leader late on: up to twice the allocation
+        assertFalse(manager.stop(38, 1.0, 2, -1));
+        assertFalse(manager.stop(70, 1.0, 2, -1));
+        assertTrue(manager.stop(79, 1.0, 2, -1));
+    }
+
+    @Test
+    public void mctsUsesTimeManager() {
+        MCTSPlayer mctsPlayer = new MCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        Game game = new DominionGame(players, DominionParameters.firstGame(330245));
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        int decisions = 0;
+        do {
+            IStatisticLogger logger = new SummaryLogger();
+            mctsPlayer.setStatsLogger(logger);
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+            if (state.getCurrentPlayer() == 0) {
+                if (actions.size() == 1) {
+                    assertTrue(logger.summary().isEmpty());
+                } else {
+                    assertTrue(logger.summary().get("timeAllocated").mean() > 0.0);
+                    decisions++;
+                }
+            }
+            forwardModel.next(state, actionChosen);
+        } while (decisions < 5);
+    }
+
+    @Test
+    public void singleActionIsNotSearchedWithRootThreads() {
+        params.rootThreads = 2;
+        MCTSPlayer mctsPlayer = new MCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        Game game = new DominionGame(players, DominionParameters.firstGame(330245));
+        AbstractGameState state = game.getGameState();
+        List<AbstractAction> actions = game.getForwardModel().computeAvailableActions(state).subList(0, 1);
+        IStatisticLogger logger = new SummaryLogger();
+        mctsPlayer.setStatsLogger(logger);
+        assertEquals(actions.get(0), mctsPlayer.getAction(state, actions));
+        assertTrue(logger.summary().isEmpty());
+        mctsPlayer.finalizePlayer(state);
+    }
+}
@@ -0,0 +1,155 @@
+package test.players.heuristics;
+
+import core.*;
+import core.interfaces.IStateFeatureVector;
+import core.interfaces.IStateHeuristic;
+import games.dominion.DomStateFeatures;
+import games.dominion.DomStateFeaturesReduced;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.heuristics.*;
+import players.simple.RandomPlayer;
+import utilities.Utils;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LinearHeuristicEvaluationTests {
+
+    static Map<IStateFeatureVector, String> coefficientFiles = new HashMap<>();
+    static List<AbstractGameState> states = new ArrayList<>();
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        for (IStateFeatureVector phi : new IStateFeatureVector[]{new DomStateFeaturesReduced(), new DomStateFeatures()}) {
+            // arbitrary coefficients for the features (with the bias first)
+            String[] names = phi.names();
+            File file = File.createTempFile("LinearHeuristicEvaluationTests", ".txt");
+            file.deleteOnExit();
+            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+                writer.println("BIAS\t" + String.join("\t", names));
+                StringJoiner values = new StringJoiner("\t");
+                for (int i = 0; i <= names.length; i++)
+                    values.add(String.valueOf(0.1 * (i % 5) - 0.15));
+                writer.println(values);
+            }
+            coefficientFiles.put(phi, file.getPath());
+        }
+
+        List<AbstractPlayer> players = new ArrayList<>();
+        for (int p = 0; p < 3; p++)
+            players.add(new RandomPlayer(new Random(p)));
+        Game game = new DominionGame(players, DominionParameters.firstGame(330245));
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        for (int i = 0; i < 40; i++) {
+            forwardModel.next(state, random.getAction(state, forwardModel.computeAvailableActions(state)));
+            states.add(state.copy());
+        }
+    }
+
+    private List<IStateHeuristic> heuristics() {
+        List<IStateHeuristic> retValue = new ArrayList<>();
+        for (Map.Entry<IStateFeatureVector, String> entry : coefficientFiles.entrySet()) {
+            retValue.add(new LinearStateHeuristic(entry.getKey(), entry.getValue(), new LeaderHeuristic()));
+            retValue.add(new LogisticStateHeuristic(entry.getKey(), entry.getValue(), new LeaderHeuristic()));
+            retValue.add(new LinearStateWinHeuristic(entry.getKey(), entry.getValue(), new LeaderHeuristic()));
+            retValue.add(new LogisticStateWinHeuristic(entry.getKey(), entry.getValue(), new LeaderHeuristic()));
+            retValue.add(new LinearStateBonusHeuristic(entry.getKey(), entry.getValue(), new LeaderHeuristic()));
+        }
+        return retValue;
+    }
+
+    @Test
+    public void featuresWrittenIntoABufferMatchTheFeatureVector() {
+        IStateFeatureVector phi = new DomStateFeatures();
+        int width = phi.names().length;
+        double[] buffer = new double[3 + 3 * width];
+        for (AbstractGameState state : states) {
+            for (int p = 0; p < 3; p++) {
+                phi.featureVector(state, p, buffer, 3);
+                assertArrayEquals(phi.featureVector(state, p), Arrays.copyOfRange(buffer, 3, 3 + width), 0.0);
+            }
+            phi.featureVectorsForAllPlayers(state, buffer);
+            for (int p = 0; p < 3; p++)
+                assertArrayEquals(phi.featureVector(state, p), Arrays.copyOfRange(buffer, p * width, (p + 1) * width), 0.0);
+        }
+    }
+
+    @Test
+    public void evaluationMatchesTheDotProductWithTheCoefficients() {
+        for (Map.Entry<IStateFeatureVector, String> entry : coefficientFiles.entrySet()) {
+            IStateFeatureVector phi = entry.getKey();
+            IStateHeuristic heuristic = new LogisticStateHeuristic(phi, entry.getValue(), new LeaderHeuristic());
+            double[] coefficients = new double[phi.names().length + 1];
+            for (int i = 0; i < coefficients.length; i++)
+                coefficients[i] = 0.1 * (i % 5) - 0.15;
+            for (AbstractGameState state : states) {
+                double[] features = phi.featureVector(state, 1);
+                double expected = coefficients[0];
+                for (int i = 0; i < features.length; i++)
+                    expected += features[i] * coefficients[i + 1];
+                assertEquals(1.0 / (1.0 + Math.exp(-expected)), heuristic.evaluateState(state, 1), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void allPlayersMatchEachPlayerInTurn() {
+        for (IStateHeuristic heuristic : heuristics()) {
+            double[] results = new double[5];
+            for (AbstractGameState state : states) {
+                heuristic.evaluateAllPlayers(state, results);
+                for (int p = 0; p < 3; p++)
+                    assertEquals(heuristic.evaluateState(state, p), results[p], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void statesOverForThePlayerAreScoredByTheirResultInBatches() {
+        AbstractGameState over = states.get(states.size() - 1).copy();
+        over.setPlayerResult(Utils.GameResult.WIN, 0);
+        over.setPlayerResult(Utils.GameResult.LOSE, 1);
+        over.setPlayerResult(Utils.GameResult.DRAW, 2);
+        AbstractGameState[] batch = new AbstractGameState[6];
+        int[] playerIds = new int[6];
+        for (int i = 0; i < 6; i++) {
+            batch[i] = i % 2 == 0 ? over : states.get(states.size() - 1);
+            playerIds[i] = i / 2;
+        }
+        for (Map.Entry<IStateFeatureVector, String> entry : coefficientFiles.entrySet()) {
+            IStateHeuristic win = new LinearStateWinHeuristic(entry.getKey(), entry.getValue(), new LeaderHeuristic());
+            double[] results = new double[6];
+            win.evaluateStates(batch, playerIds, 6, results);
+            assertEquals(1.0, results[0], 0.0);
+            assertEquals(0.0, results[2], 0.0);
+            assertEquals(0.5, results[4], 0.0);
+        }
+        for (IStateHeuristic heuristic : heuristics()) {
+            double[] results = new double[6];
+            heuristic.evaluateStates(batch, playerIds, 6, results);
+            for (int i = 0; i < 6; i++)
+                assertEquals(heuristic.evaluateState(batch[i], playerIds[i]), results[i], 1e-12);
+            heuristic.evaluateAllPlayers(over, results);
+            for (int p = 0; p < 3; p++)
+                assertEquals(heuristic.evaluateState(over, p), results[p], 1e-12);
+        }
+    }
+
+    @Test
+    public void defaultHeuristicUsedWithoutCoefficients() {
+        IStateHeuristic heuristic = new LinearStateHeuristic(new DomStateFeatures(), "", new LeaderHeuristic());
+        IStateHeuristic leader = new LeaderHeuristic();
+        double[] results = new double[3];
+        for (AbstractGameState state : states) {
+            heuristic.evaluateAllPlayers(state, results);
+            for (int p = 0; p < 3; p++)
+                assertEquals(leader.evaluateState(state, p), results[p], 0.0);
+        }
+    }
+}
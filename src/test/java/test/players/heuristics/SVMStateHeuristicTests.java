@@ -0,0 +1,151 @@
+package test.players.heuristics;
+
+import core.AbstractGameState;
+import core.interfaces.IStateFeatureVector;
+import libsvm.*;
+import org.junit.*;
+import players.heuristics.LeaderHeuristic;
+import players.heuristics.SVMStateHeuristic;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class SVMStateHeuristicTests {
+
+    static final int WIDTH = 11;
+    static double[][] rows;
+
+    /**
+     * Ignores the state, and gives the row for the player
+     */
+    static IStateFeatureVector features = new IStateFeatureVector() {
+        @Override
+        public double[] featureVector(AbstractGameState state, int playerID) {
+            return rows[playerID].clone();
+        }
+
+        @Override
+        public String[] names() {
+            String[] retValue = new String[WIDTH];
+            for (int i = 0; i < WIDTH; i++)
+                retValue[i] = "F" + i;
+            return retValue;
+        }
+    };
+
+    @BeforeClass
+    public static void setup() {
+        svm.svm_set_print_string_function(s -> {
+        });
+        Random rnd = new Random(9332);
+        rows = new double[200][WIDTH];
+        for (double[] row : rows)
+            for (int i = 0; i < WIDTH; i++)
+                row[i] = rnd.nextGaussian();
+    }
+
+    /**
+     * A model trained on the rows, with the same bias and indices SVMStateHeuristic uses
+     */
+    static svm_model train(int type, int kernel) {
+        svm_problem problem = new svm_problem();
+        problem.l = rows.length;
+        problem.y = new double[rows.length];
+        problem.x = new svm_node[rows.length][];
+        for (int r = 0; r < rows.length; r++) {
+            problem.x[r] = nodes(rows[r]);
+            problem.y[r] = type == svm_parameter.C_SVC ? Math.signum(rows[r][0]) : rows[r][0] - 0.5 * rows[r][1] * rows[r][2];
+        }
+        svm_parameter params = new svm_parameter();
+        params.svm_type = type;
+        params.kernel_type = kernel;
+        params.gamma = 0.2;
+        params.coef0 = 0.5;
+        params.degree = 3;
+        params.C = 1.0;
+        params.nu = 0.5;
+        params.p = 0.1;
+        params.eps = 0.001;
+        params.cache_size = 20;
+        params.shrinking = 1;
+        return svm.svm_train(problem, params);
+    }
+
+    static svm_node[] nodes(double[] row) {
+        svm_node[] retValue = new svm_node[row.length + 1];
+        for (int i = 0; i <= row.length; i++) {
+            retValue[i] = new svm_node();
+            retValue[i].index = i;
+            retValue[i].value = i == 0 ? 1.0 : row[i - 1];
+        }
+        return retValue;
+    }
+
+    @Test
+    public void predictionsMatchLibsvm() {
+        int[][] models = {
+                {svm_parameter.EPSILON_SVR, svm_parameter.RBF},
+                {svm_parameter.EPSILON_SVR, svm_parameter.LINEAR},
+                {svm_parameter.NU_SVR, svm_parameter.POLY},
+                {svm_parameter.NU_SVR, svm_parameter.SIGMOID},
+                {svm_parameter.ONE_CLASS, svm_parameter.RBF},
+                {svm_parameter.C_SVC, svm_parameter.RBF}
+        };
+        for (int[] m : models) {
+            svm_model model = train(m[0], m[1]);
+            SVMStateHeuristic heuristic = new SVMStateHeuristic(features, model, new LeaderHeuristic());
+            for (int r = 0; r < rows.length; r++) {
+                double expected = svm.svm_predict(model, nodes(rows[r]));
+                assertEquals("Model " + Arrays.toString(m), expected, heuristic.evaluateState(null, r), 1e-9 * Math.max(1.0, Math.abs(expected)));
+            }
+        }
+    }
+
+    @Test
+    public void batchMatchesSingleEvaluation() {
+        SVMStateHeuristic heuristic = new SVMStateHeuristic(features, train(svm_parameter.EPSILON_SVR, svm_parameter.RBF), new LeaderHeuristic());
+        int n = rows.length;
+        AbstractGameState[] states = new AbstractGameState[n];
+        int[] players = new int[n];
+        for (int i = 0; i < n; i++)
+            players[i] = n - 1 - i;
+        double[] results = new double[n];
+        heuristic.evaluateStates(states, players, n, results);
+        for (int i = 0; i < n; i++)
+            assertEquals(heuristic.evaluateState(null, players[i]), results[i], 0.0);
+    }
+
+    @Test
+    public void concurrentEvaluationMatchesSerial() throws Exception {
+        for (int kernel : new int[]{svm_parameter.RBF, svm_parameter.LINEAR}) {
+            for (int type : new int[]{svm_parameter.EPSILON_SVR, svm_parameter.C_SVC}) {
+                SVMStateHeuristic heuristic = new SVMStateHeuristic(features, train(type, kernel), new LeaderHeuristic());
+                double[] expected = new double[rows.length];
+                for (int r = 0; r < rows.length; r++)
+                    expected[r] = heuristic.evaluateState(null, r);
+                ExecutorService executor = Executors.newFixedThreadPool(4);
+                try {
+                    List<Future<Boolean>> futures = new ArrayList<>();
+                    for (int t = 0; t < 4; t++) {
+                        int start = t;
+                        futures.add(executor.submit(() -> {
+                            for (int repeat = 0; repeat < 20; repeat++)
+                                for (int r = 0; r < rows.length; r++) {
+                                    int row = (r + start * 37) % rows.length;
+                                    if (heuristic.evaluateState(null, row) != expected[row])
+                                        return false;
+                                }
+                            return true;
+                        }));
+                    }
+                    for (Future<Boolean> future : futures)
+                        assertTrue(future.get());
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package test.players.heuristics;
+
+import core.*;
+import evaluation.SelfPlayGenerator;
+import games.GameType;
+import games.terraformingmars.TMGameState;
+import games.terraformingmars.TMHeuristic;
+import games.terraformingmars.TMStateFeatures;
+import games.terraformingmars.TMTypes;
+import games.terraformingmars.components.Award;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import players.heuristics.LinearStateHeuristic;
+import players.learners.SimpleRegressionLearner;
+import players.simple.TMRuleBasedPlayer;
+import utilities.Utils;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TMStateFeaturesTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static List<TMGameState> states = new ArrayList<>();
+    TMStateFeatures phi = new TMStateFeatures();
+
+    @BeforeClass
+    public static void setup() {
+        Game game = GameType.TerraformingMars.createGameInstance(3, 2317);
+        List<AbstractPlayer> players = new ArrayList<>();
+        for (int p = 0; p < 3; p++)
+            players.add(new TMRuleBasedPlayer());
+        game.reset(players, 2317);
+        for (int i = 0; i < 1500 && game.getGameState().isNotTerminal(); i++) {
+            game.oneAction();
+            if (i % 25 == 0)
+                states.add((TMGameState) game.getGameState().copy());
+        }
+        assertTrue(states.size() > 20);
+    }
+
+    @Test
+    public void featuresWrittenIntoABufferMatchTheFeatureVector() {
+        int width = phi.names().length;
+        double[] buffer = new double[5 + 3 * width];
+        for (TMGameState state : states) {
+            for (int p = 0; p < 3; p++) {
+                phi.featureVector(state, p, buffer, 5);
+                assertArrayEquals(phi.featureVector(state, p), Arrays.copyOfRange(buffer, 5, 5 + width), 0.0);
+            }
+            phi.featureVectorsForAllPlayers(state, buffer);
+            for (int p = 0; p < 3; p++)
+                assertArrayEquals(phi.featureVector(state, p), Arrays.copyOfRange(buffer, p * width, (p + 1) * width), 0.0);
+        }
+    }
+
+    @Test
+    public void featuresAreReadFromTheCounters() {
+        List<String> names = Arrays.asList(phi.names());
+        for (TMGameState state : states) {
+            for (int p = 0; p < 3; p++) {
+                double[] features = phi.featureVector(state, p);
+                assertEquals(state.getPlayerResources()[p].get(TMTypes.Resource.TR).getValue() / 60.0,
+                        features[names.indexOf("SCORE")], 1e-9);
+                assertEquals(state.getPlayerProduction()[p].get(TMTypes.Resource.MegaCredit).getValue() / 10.0,
+                        features[names.indexOf("PROD_MEGACREDIT")], 1e-9);
+                assertEquals(state.getPlayerCardsPlayedTags()[p].get(TMTypes.Tag.Science).getValue() / 10.0,
+                        features[names.indexOf("TAG_SCIENCE")], 1e-9);
+                assertEquals(state.getPlayerHands()[p].getSize() / 10.0, features[names.indexOf("HAND_SIZE")], 1e-9);
+                for (double feature : features)
+                    assertFalse(Double.isNaN(feature));
+            }
+        }
+        // and the game has moved on by the last state
+        double[] features = phi.featureVector(states.get(states.size() - 1), 0);
+        assertTrue(features[names.indexOf("GP_OXYGEN")] + features[names.indexOf("GP_TEMPERATURE")] > 0.0);
+    }
+
+    @Test
+    public void awardProgressMatchesItsCounters() {
+        for (TMGameState state : states) {
+            List<Award> all = new ArrayList<>(state.getAwards());
+            all.addAll(state.getMilestones());
+            for (Award award : all)
+                for (int p = 0; p < 3; p++)
+                    assertEquals(award.counterID, progress(state, award.counterID, p), award.checkProgress(state, p));
+        }
+    }
+
+    /**
+     * Progress as Award.checkProgress() finds it from the counterID each time
+     */
+    private static int progress(TMGameState gs, String counterID, int player) {
+        int sum = 0;
+        for (String s : counterID.split("-")) {
+            TMTypes.Tile t = Utils.searchEnum(TMTypes.Tile.class, s);
+            TMTypes.Resource r = Utils.searchEnum(TMTypes.Resource.class, s.replace("prod", ""));
+            TMTypes.Tag tag = Utils.searchEnum(TMTypes.Tag.class, s);
+            if (t != null)
+                sum += gs.getPlayerTilesPlaced()[player].get(t).getValue();
+            else if (r == TMTypes.Resource.Card)
+                sum += gs.getPlayerHands()[player].getSize();
+            else if (r != null)
+                sum += (s.contains("prod") ? gs.getPlayerProduction() : gs.getPlayerResources())[player].get(r).getValue();
+            else if (tag != null)
+                sum += gs.getPlayerCardsPlayedTags()[player].get(tag).getValue();
+        }
+        return sum;
+    }
+
+    @Test
+    public void valueFunctionLearnedFromRuleBasedSelfPlay() {
+        String data = new File(folder.getRoot(), "data.bin").getPath();
+        SelfPlayGenerator generator = new SelfPlayGenerator(GameType.TerraformingMars, null,
+                Collections.singletonList(TMRuleBasedPlayer::new), 2, TMStateFeatures::new,
+                CoreConstants.GameEvents.ROUND_OVER, false);
+        generator.seed = 683;
+        generator.workers = 2;
+        assertTrue(generator.run(2, data) > 0);
+
+        SimpleRegressionLearner learner = new SimpleRegressionLearner();
+        learner.learnFrom(data);
+        String coefficients = new File(folder.getRoot(), "learned.txt").getPath();
+        assertTrue(learner.writeToFile(coefficients));
+
+        LinearStateHeuristic heuristic = new LinearStateHeuristic(new TMStateFeatures(), coefficients, new TMHeuristic());
+        double[] all = new double[3];
+        for (TMGameState state : states) {
+            heuristic.evaluateAllPlayers(state, all);
+            for (int p = 0; p < 3; p++) {
+                assertFalse(Double.isNaN(all[p]));
+                assertEquals(heuristic.evaluateState(state, p), all[p], 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package test.players.learners;
+
+import core.AbstractPlayer;
+import core.CoreConstants;
+import evaluation.SelfPlayGenerator;
+import games.GameType;
+import games.terraformingmars.TMStateFeatures;
+import games.tictactoe.TicTacToeStateVector;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import players.learners.ShardInstances;
+import players.learners.SimpleRegressionLearner;
+import players.simple.OSLAPlayer;
+import players.simple.RandomPlayer;
+import players.simple.TMRuleBasedPlayer;
+import utilities.BinaryStatsLogger;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.LongFunction;
+
+import static org.junit.Assert.*;
+
+public class SelfPlayGeneratorTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    SelfPlayGenerator generator;
+    String fileName;
+
+    @Before
+    public void setup() {
+        List<LongFunction<AbstractPlayer>> agents = Arrays.asList(seed -> new RandomPlayer(new Random(seed)),
+                seed -> new OSLAPlayer(new Random(seed)));
+        generator = new SelfPlayGenerator(GameType.TicTacToe, null, agents, 2, TicTacToeStateVector::new,
+                CoreConstants.GameEvents.ACTION_TAKEN, false);
+        generator.seed = 9332;
+        fileName = new File(folder.getRoot(), "data.bin").getPath();
+    }
+
+    @Test
+    public void shardsFromEachWorkerAreMerged() {
+        generator.workers = 3;
+        long rows = generator.run(20, fileName);
+
+        String[] header = BinaryStatsLogger.readHeader(fileName);
+        assertEquals("GameID", header[0]);
+        assertEquals(5 + 9 + 5, header.length);
+        List<double[]> data = BinaryStatsLogger.readRows(fileName);
+        assertEquals(rows, data.size());
+        // each game records both players after every action, and at the end
+        assertEquals(20, data.stream().mapToDouble(row -> row[0]).distinct().count());
+        assertTrue(rows >= 20 * 2 * 6);
+        assertEquals(1, Objects.requireNonNull(folder.getRoot().list()).length);
+    }
+
+    @Test
+    public void shardsCanBeReadAsInstances() {
+        generator.workers = 2;
+        long rows = generator.run(10, fileName);
+
+        Instances instances = ShardInstances.readWithClass("Win", fileName);
+        assertEquals(rows, instances.size());
+        assertEquals("Win", instances.classAttribute().name());
+        List<double[]> data = BinaryStatsLogger.readRows(fileName);
+        for (int i = 0; i < data.size(); i++)
+            assertArrayEquals(data.get(i), instances.get(i).toDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void sameSeedWritesTheSameFileWithAnyNumberOfWorkers() throws IOException {
+        generator.workers = 1;
+        generator.run(12, fileName);
+        byte[] serial = Files.readAllBytes(Paths.get(fileName));
+
+        setup();
+        generator.workers = 4;
+        generator.run(12, fileName);
+        assertArrayEquals(serial, Files.readAllBytes(Paths.get(fileName)));
+
+        // with the games in order, each numbered from 0
+        double last = 0.0;
+        for (double[] row : BinaryStatsLogger.readRows(fileName)) {
+            assertTrue(row[0] == last || row[0] == last + 1);
+            last = row[0];
+        }
+        assertEquals(11.0, last, 0.0);
+    }
+
+    @Test
+    public void sameSeedWritesTheSameFileForRuleBasedTerraformingMars() throws IOException {
+        List<LongFunction<AbstractPlayer>> agents = Collections.singletonList(TMRuleBasedPlayer::new);
+        byte[][] files = new byte[2][];
+        for (int run = 0; run < 2; run++) {
+            SelfPlayGenerator tm = new SelfPlayGenerator(GameType.TerraformingMars, null, agents, 2,
+                    TMStateFeatures::new, CoreConstants.GameEvents.ROUND_OVER, false);
+            tm.seed = 5120;
+            tm.workers = 3;
+            String file = new File(folder.getRoot(), "tm" + run + ".bin").getPath();
+            assertTrue(tm.run(4, file) > 0);
+            files[run] = Files.readAllBytes(Paths.get(file));
+        }
+        assertArrayEquals(files[0], files[1]);
+    }
+
+    @Test
+    public void learnersReadShards() {
+        generator.workers = 2;
+        generator.run(20, fileName);
+
+        SimpleRegressionLearner learner = new SimpleRegressionLearner();
+        learner.learnFrom(fileName);
+        String output = new File(folder.getRoot(), "learned.txt").getPath();
+        assertTrue(learner.writeToFile(output));
+    }
+
+    @Test
+    public void appendedRowsKeepTheSameColumns() {
+        BinaryStatsLogger logger = new BinaryStatsLogger(fileName, false);
+        Map<String, Double> data = new LinkedHashMap<>();
+        data.put("A", 1.0);
+        data.put("B", 2.0);
+        logger.record(data);
+        logger.processDataAndFinish();
+
+        logger = new BinaryStatsLogger(fileName, true);
+        data.remove("A");
+        logger.record(data);
+        logger.processDataAndFinish();
+
+        assertArrayEquals(new String[]{"A", "B"}, BinaryStatsLogger.readHeader(fileName));
+        List<double[]> rows = BinaryStatsLogger.readRows(fileName);
+        assertEquals(2, rows.size());
+        assertArrayEquals(new double[]{1.0, 2.0}, rows.get(0), 0.0);
+        assertTrue(Double.isNaN(rows.get(1)[0]));
+        assertEquals(2.0, rows.get(1)[1], 0.0);
+    }
+}
@@ -0,0 +1,244 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.actions.SetGridValueAction;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import games.loveletter.LoveLetterGame;
+import games.loveletter.LoveLetterParameters;
+import games.tictactoe.TicTacToeGame;
+import games.tictactoe.TicTacToeGameParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ActionSlotMCTSTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.K = 1.0;
+    }
+
+    public Game createGame(MCTSParams params) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void slotStatisticsAreThoseOfTheChildrenSelfOnly() {
+        Game game = createGame(params);
+        playMoves(game, 10, () -> checkSlotStatistics(mctsPlayer.getRoot(0)));
+    }
+
+    @Test
+    public void slotStatisticsAreThoseOfTheChildrenMaxN() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.information = MCTSEnums.Information.Open_Loop;
+        Game game = createGame(params);
+        playMoves(game, 10, () -> checkSlotStatistics(mctsPlayer.getRoot(0)));
+    }
+
+    @Test
+    public void reusedRootKeepsOnlyTheSlotsOfAvailableActions() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.reuseTree = true;
+        // each iteration draws different cards for us, so a node for our next turn has children for actions that we
+        // may not have when we get there
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        Game game = new LoveLetterGame(players, new LoveLetterParameters(3812));
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        int nPlayers = state.getNPlayers();
+        int pruned = 0;
+        int kept = 0;
+        Map<SingleTreeNode, Map<AbstractAction, double[]>> statsBefore = new IdentityHashMap<>();
+        Map<SingleTreeNode, Map<AbstractAction, SingleTreeNode[]>> childrenBefore = new IdentityHashMap<>();
+        int counter = 0;
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen;
+            if (state.getCurrentPlayer() == 0) {
+                SingleTreeNode root = mctsPlayer.newRoot(state);
+                // (a node of the last tree may instead have been recycled as a new root)
+                Map<AbstractAction, double[]> before = root.getReusedVisits() > 0 ? statsBefore.get(root) : null;
+                if (before != null) {
+                    // a node of the last tree is re-rooted, and this has dropped the actions no longer available
+                    for (AbstractAction action : before.keySet()) {
+                        double[] stats = before.get(action);
+                        if (actions.contains(action)) {
+                            assertEquals(stats[0], root.actionVisits(action), 0.0);
+                            assertEquals(stats[1], root.actionValidVisits(action), 0.0);
+                            for (int p = 0; p < nPlayers; p++)
+                                assertEquals(stats[2 + p], root.actionTotValue(action, p), 0.0);
+                            assertSame(childrenBefore.get(root).get(action), root.getChildren().get(action));
+                            for (SingleTreeNode child : children(childrenBefore.get(root).get(action)))
+                                assertSame(root, child.getParent());
+                            kept++;
+                        } else {
+                            assertEquals(0, root.actionVisits(action));
+                            assertEquals(0, root.actionValidVisits(action));
+                            for (int p = 0; p < nPlayers; p++)
+                                assertEquals(0.0, root.actionTotValue(action, p), 0.0);
+                            assertFalse(root.getChildren().containsKey(action));
+                            // and the subtrees below them have gone back to the node pool
+                            for (SingleTreeNode child : children(childrenBefore.get(root).get(action)))
+                                assertNull(child.getParent());
+                            pruned++;
+                        }
+                    }
+                }
+                root.mctsSearch(null);
+                actionChosen = root.bestAction();
+
+                statsBefore.clear();
+                childrenBefore.clear();
+                for (SingleTreeNode node : root.allNodesInTree()) {
+                    Map<AbstractAction, double[]> stats = new HashMap<>();
+                    for (AbstractAction action : node.getChildren().keySet()) {
+                        double[] actionStats = new double[2 + nPlayers];
+                        actionStats[0] = node.actionVisits(action);
+                        actionStats[1] = node.actionValidVisits(action);
+                        for (int p = 0; p < nPlayers; p++)
+                            actionStats[2 + p] = node.actionTotValue(action, p);
+                        stats.put(action, actionStats);
+                    }
+                    statsBefore.put(node, stats);
+                    childrenBefore.put(node, new HashMap<>(node.getChildren()));
+                }
+                counter++;
+            } else {
+                actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < 20 && state.isNotTerminal());
+        assertTrue(pruned > 0);
+        assertTrue(kept > 0);
+    }
+
+    @Test
+    public void wideningToAllActionsChoosesTheSameChildren() {
+        // with progressive widening the actions considered are a subset, and their slots are looked up by action;
+        // if the subset is always all of them the search must be the same as one using the slots directly
+        List<List<Integer>> withSlots = rootVisits(params);
+        params.progressiveWideningConstant = 1000.0;
+        List<List<Integer>> byAction = rootVisits(params);
+        assertEquals(withSlots, byAction);
+    }
+
+    /**
+     * @return The visits to each action at the root (in the order they are available), at each of the first few
+     * decisions
+     */
+    private List<List<Integer>> rootVisits(MCTSParams params) {
+        // a game that is the same each time it is played, with a seeded opponent model, and an advantage function that
+        // ranks the cells in the order they are offered (so that sorting by it leaves them in that order, and the
+        // action to expand does not depend on the order they are shuffled into)
+        params.opponentModel = new RandomPlayer(new Random(4071));
+        params.advantageFunction = (action, state) -> {
+            SetGridValueAction<?> cell = (SetGridValueAction<?>) action;
+            return -(cell.getX() * 100 + cell.getY());
+        };
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        TicTacToeGameParameters gameParams = new TicTacToeGameParameters(3812);
+        gameParams.gridSize = 5;
+        Game game = new TicTacToeGame(players, gameParams);
+        List<List<Integer>> retValue = new ArrayList<>();
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        // the moves played do not depend on the searches (whose choice between equally visited actions may)
+        Random moves = new Random(2871);
+        while (retValue.size() < 5) {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            if (state.getCurrentPlayer() == 0) {
+                mctsPlayer.getAction(state, actions);
+                SingleTreeNode root = mctsPlayer.getRoot(0);
+                List<Integer> visits = new ArrayList<>();
+                for (AbstractAction action : actions)
+                    visits.add(root.actionVisits(action));
+                retValue.add(visits);
+            }
+            forwardModel.next(state, actions.get(moves.nextInt(actions.size())));
+        }
+        return retValue;
+    }
+
+    private static List<SingleTreeNode> children(SingleTreeNode[] nodeArray) {
+        List<SingleTreeNode> retValue = new ArrayList<>();
+        if (nodeArray != null)
+            for (SingleTreeNode child : nodeArray)
+                if (child != null)
+                    retValue.add(child);
+        return retValue;
+    }
+
+    /**
+     * At every node the statistics of each action are the sums of those of the children reached by it, as each
+     * back up adds the same result to the child and to the parent's slot for that child
+     */
+    private void checkSlotStatistics(SingleTreeNode root) {
+        int nPlayers = root.getTotValue().length;
+        for (SingleTreeNode node : root.allNodesInTree()) {
+            int childVisits = 0;
+            for (Map.Entry<AbstractAction, SingleTreeNode[]> entry : node.getChildren().entrySet()) {
+                AbstractAction action = entry.getKey();
+                int visits = 0;
+                double[] value = new double[nPlayers];
+                for (SingleTreeNode child : children(entry.getValue())) {
+                    assertEquals(action, child.getActionToReach());
+                    visits += child.getVisits();
+                    for (int p = 0; p < nPlayers; p++)
+                        value[p] += child.getTotValue()[p];
+                }
+                assertEquals(visits, node.actionVisits(action));
+                for (int p = 0; p < nPlayers; p++)
+                    assertEquals(value[p], node.actionTotValue(action, p), 1e-6);
+                assertTrue(node.actionValidVisits(action) >= node.actionVisits(action));
+                assertTrue(node.actionValidVisits(action) <= node.getVisits());
+                childVisits += visits;
+            }
+            assertTrue(childVisits <= node.getVisits());
+        }
+    }
+
+    private void playMoves(Game game, int moves, Runnable afterDecision) {
+        int counter = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            if (state.getCurrentPlayer() == 0) {
+                afterDecision.run();
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+    }
+}
@@ -0,0 +1,151 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.interfaces.IStateHeuristic;
+import games.dominion.DomStateFeaturesReduced;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.heuristics.*;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BatchedLeafMCTSTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+    static String coefficientsFile;
+
+    @BeforeClass
+    public static void writeCoefficients() throws IOException {
+        // arbitrary coefficients for the Dominion features (with the bias first)
+        String[] names = new DomStateFeaturesReduced().names();
+        File file = File.createTempFile("BatchedLeafMCTSTests", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("BIAS\t" + String.join("\t", names));
+            StringJoiner values = new StringJoiner("\t");
+            for (int i = 0; i <= names.length; i++)
+                values.add(String.valueOf(0.1 * (i % 5) - 0.15));
+            writer.println(values);
+        }
+        coefficientsFile = file.getPath();
+    }
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        setFields();
+    }
+
+    private void setFields() {
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.K = 1.0;
+        params.leafBatchSize = 8;
+    }
+
+    public Game createGame(MCTSParams params) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void batchEvaluationMatchesSingleEvaluation() {
+        Game game = createGame(params);
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        List<AbstractGameState> states = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            forwardModel.next(state, random.getAction(state, forwardModel.computeAvailableActions(state)));
+            states.add(state.copy());
+        }
+        IStateHeuristic[] heuristics = new IStateHeuristic[]{
+                new LinearStateHeuristic(new DomStateFeaturesReduced(), coefficientsFile, new LeaderHeuristic()),
+                new LogisticStateHeuristic(new DomStateFeaturesReduced(), coefficientsFile, new LeaderHeuristic()),
+                new LinearStateWinHeuristic(new DomStateFeaturesReduced(), coefficientsFile, new LeaderHeuristic()),
+                new LinearStateHeuristic(new DomStateFeaturesReduced(), "", new LeaderHeuristic())
+        };
+        int n = states.size() * 3;
+        AbstractGameState[] batch = new AbstractGameState[n + 5];
+        int[] players = new int[n + 5];
+        for (int i = 0; i < n; i++) {
+            batch[i] = states.get(i / 3);
+            players[i] = i % 3;
+        }
+        for (IStateHeuristic heuristic : heuristics) {
+            double[] results = new double[n + 5];
+            heuristic.evaluateStates(batch, players, n, results);
+            for (int i = 0; i < n; i++)
+                assertEquals(heuristic.evaluateState(batch[i], players[i]), results[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void maxN() {
+        runGame(createGame(params), 10);
+    }
+
+    @Test
+    public void selfOnlyWithLinearHeuristic() {
+        // (setting a parameter value resets all the fields from the stored values)
+        params.setParameterValue("heuristic", new LinearStateHeuristic(new DomStateFeaturesReduced(), coefficientsFile, new LeaderHeuristic()));
+        setFields();
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        runGame(createGame(params), 10);
+    }
+
+    @Test
+    public void batchLargerThanBudget() {
+        params.leafBatchSize = 500;
+        runGame(createGame(params), 3);
+    }
+
+    @Test(expected = AssertionError.class)
+    public void treeParallelNotSupported() {
+        params.treeThreads = 2;
+        runGame(createGame(params), 1);
+    }
+
+    private void runGame(Game game, int moves) {
+        int counter = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+
+            if (state.getCurrentPlayer() == 0) {
+                // every iteration is backed up by the end of the search, including those of a final part-batch
+                SingleTreeNode root = mctsPlayer.getRoot(0);
+                assertEquals(200, root.getVisits());
+                int childVisits = root.getChildren().values().stream()
+                        .filter(Objects::nonNull)
+                        .flatMap(Arrays::stream)
+                        .filter(Objects::nonNull)
+                        .mapToInt(SingleTreeNode::getVisits).sum();
+                assertTrue(childVisits <= 200);
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+    }
+}
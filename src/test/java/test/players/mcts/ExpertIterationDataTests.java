@@ -0,0 +1,127 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.interfaces.IActionFeatureVector;
+import games.dominion.DomStateFeaturesReduced;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import players.PlayerConstants;
+import players.learners.ShardInstances;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+import utilities.BinaryStatsLogger;
+import weka.core.Instances;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ExpertIterationDataTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+
+    IActionFeatureVector actionFeatures = new IActionFeatureVector() {
+        @Override
+        public double[] featureVector(AbstractAction action, AbstractGameState state, int playerID) {
+            return new double[]{action.hashCode() % 1000};
+        }
+
+        @Override
+        public String[] names() {
+            return new String[]{"HashMod"};
+        }
+    };
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.information = MCTSEnums.Information.Closed_Loop;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.Paranoid;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.gatherExpertIterationData = true;
+        params.expertIterationFileStem = new File(folder.getRoot(), "EI").getPath();
+        params.EIStateFeatureVector = new DomStateFeaturesReduced();
+        params.EIActionFeatureVector = actionFeatures;
+    }
+
+    private int runGame(int moves) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        Game game = new DominionGame(players, DominionParameters.firstGame(330245));
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        int decisions = 0;
+        while (decisions < moves) {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            if (state.getCurrentPlayer() == 0)
+                decisions++;
+            forwardModel.next(state, actionChosen);
+        }
+        mctsPlayer.finalizePlayer(state);
+        return decisions;
+    }
+
+    @Test
+    public void rowsAreWrittenForEachDecision() {
+        int decisions = runGame(5);
+        int nFeatures = params.EIStateFeatureVector.names().length;
+
+        String fileV = new File(folder.getRoot(), "EI_V.bin").getPath();
+        List<String> columns = Arrays.asList(BinaryStatsLogger.readHeader(fileV));
+        assertEquals(3 + nFeatures, columns.size());
+        assertEquals(Arrays.asList("Value", "Depth", "Visits"), columns.subList(0, 3));
+        List<double[]> v = BinaryStatsLogger.readRows(fileV);
+        // one row for the root of each search, and more for the nodes below it
+        assertEquals(decisions, v.stream().filter(row -> row[1] == 0.0).count());
+        assertTrue(v.size() > decisions);
+        for (double[] row : v)
+            assertTrue(row[1] == 0.0 || row[2] >= 50);
+
+        String fileQ = new File(folder.getRoot(), "EI_Q.bin").getPath();
+        columns = Arrays.asList(BinaryStatsLogger.readHeader(fileQ));
+        assertEquals(5 + nFeatures + 1, columns.size());
+        assertEquals("HashMod", columns.get(columns.size() - 1));
+        List<double[]> q = BinaryStatsLogger.readRows(fileQ);
+        assertFalse(q.isEmpty());
+        for (double[] row : q) {
+            assertEquals(row[0] % 1000, row[row.length - 1], 0.0);
+            assertTrue(row[3] <= row[4]);
+        }
+    }
+
+    @Test
+    public void rowsCanBeReadAsInstances() {
+        runGame(3);
+        String fileQ = new File(folder.getRoot(), "EI_Q.bin").getPath();
+        Instances instances = ShardInstances.readWithClass("Value", fileQ);
+        List<double[]> q = BinaryStatsLogger.readRows(fileQ);
+        assertEquals(q.size(), instances.size());
+        for (int i = 0; i < q.size(); i++)
+            assertArrayEquals(q.get(i), instances.get(i).toDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void laterGamesAppendToTheSameFiles() {
+        runGame(3);
+        String fileV = new File(folder.getRoot(), "EI_V.bin").getPath();
+        int rows = BinaryStatsLogger.readRows(fileV).size();
+        runGame(3);
+        assertTrue(BinaryStatsLogger.readRows(fileV).size() > rows);
+        assertEquals(3 + params.EIStateFeatureVector.names().length, BinaryStatsLogger.readHeader(fileV).length);
+    }
+}
@@ -0,0 +1,169 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+import utilities.Pair;
+import utilities.Utils;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MASTTableTests {
+
+    /**
+     * A minimal action, equal to others with the same number
+     */
+    static class NumberedAction extends AbstractAction {
+        final int number;
+        int copies;
+
+        NumberedAction(int number) {
+            this.number = number;
+        }
+
+        @Override
+        public boolean execute(AbstractGameState gs) {
+            return true;
+        }
+
+        @Override
+        public AbstractAction copy() {
+            copies++;
+            return new NumberedAction(number);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof NumberedAction && ((NumberedAction) obj).number == number;
+        }
+
+        @Override
+        public int hashCode() {
+            return number;
+        }
+
+        @Override
+        public String getString(AbstractGameState gameState) {
+            return toString();
+        }
+
+        @Override
+        public String toString() {
+            return "Action " + number;
+        }
+    }
+
+    @Test
+    public void statisticsAreKeptByPlayerAndAction() {
+        MASTTable table = new MASTTable(3);
+        NumberedAction action = new NumberedAction(7);
+        table.update(1, action, 0.5);
+        table.update(1, new NumberedAction(7), 0.25);
+        table.update(2, action, -1.0);
+
+        int id = table.idOf(new NumberedAction(7));
+        assertEquals(1, table.size());
+        assertEquals(1, action.copies);  // only copied when first seen
+        assertFalse(table.seen(0, id));
+        assertEquals(2, table.visits(1, id));
+        assertEquals(0.75, table.totalValue(1, id), 1e-9);
+        assertEquals(1, table.visits(2, id));
+        assertEquals(-1.0, table.totalValue(2, id), 1e-9);
+
+        assertEquals(-1, table.idOf(new NumberedAction(8)));
+        assertFalse(table.seen(1, -1));
+        assertEquals(0, table.visits(1, -1));
+    }
+
+    @Test
+    public void manyActions() {
+        MASTTable table = new MASTTable(2);
+        for (int i = 0; i < 1000; i++)
+            for (int j = 0; j <= i % 5; j++)
+                table.update(i % 2, new NumberedAction(i), i);
+        assertEquals(1000, table.size());
+        for (int i = 0; i < 1000; i++) {
+            int id = table.idOf(new NumberedAction(i));
+            assertTrue(table.seen(i % 2, id));
+            assertFalse(table.seen(1 - i % 2, id));
+            assertEquals(i % 5 + 1, table.visits(i % 2, id));
+            assertEquals(i * (i % 5 + 1), table.totalValue(i % 2, id), 1e-9);
+        }
+    }
+
+    @Test
+    public void decayInPlaceMatchesUtilsDecay() {
+        for (double gamma : new double[]{0.0, 0.5, 0.9, 1.0}) {
+            MASTTable table = new MASTTable(1);
+            Map<AbstractAction, Pair<Integer, Double>> map = new HashMap<>();
+            for (int i = 0; i < 20; i++) {
+                for (int j = 0; j < i; j++)
+                    table.update(0, new NumberedAction(i), 0.1 * j);
+                map.put(new NumberedAction(i), new Pair<>(i, 0.1 * i * (i - 1) / 2));
+            }
+            table.decay(gamma);
+            map = Utils.decay(map, gamma);
+            for (int i = 0; i < 20; i++) {
+                int id = table.idOf(new NumberedAction(i));
+                Pair<Integer, Double> expected = map.get(new NumberedAction(i));
+                assertEquals((int) expected.a, table.visits(0, id));
+                assertEquals(expected.b, table.totalValue(0, id), 1e-9);
+                // an action seen stays seen, even once its visits decay to zero
+                assertTrue(table.seen(0, id) || i == 0);
+            }
+        }
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        MASTTable table = new MASTTable(2);
+        table.update(0, new NumberedAction(1), 1.0);
+        MASTTable copy = table.copy();
+        copy.update(0, new NumberedAction(1), 1.0);
+        copy.update(1, new NumberedAction(2), 1.0);
+        copy.decay(0.5);
+        assertEquals(1, table.visits(0, table.idOf(new NumberedAction(1))));
+        assertEquals(-1, table.idOf(new NumberedAction(2)));
+        assertEquals(1, copy.visits(0, copy.idOf(new NumberedAction(1))));
+        assertEquals(1, table.size());
+        assertEquals(2, copy.size());
+    }
+
+    @Test
+    public void mctsWithMASTRollouts() {
+        MCTSParams params = new MCTSParams(9332);
+        params.information = MCTSEnums.Information.Information_Set;
+        params.rolloutLength = 10;
+        params.rolloutType = MCTSEnums.Strategies.MAST;
+        params.useMAST = true;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        TestMCTSPlayer mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        Game game = new DominionGame(players, DominionParameters.firstGame(330245));
+
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        int decisions = 0;
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+            if (state.getCurrentPlayer() == 0) {
+                assertEquals(200, mctsPlayer.getRoot(0).getVisits());
+                decisions++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (decisions < 10);
+    }
+}
@@ -0,0 +1,177 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.interfaces.IStatisticLogger;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import games.tictactoe.TicTacToeGame;
+import games.tictactoe.TicTacToeGameParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+import utilities.SummaryLogger;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class NodePoolMCTSTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.K = 1.0;
+    }
+
+    public Game createGame(MCTSParams params) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void recycledNodesStartAfresh() {
+        // every tree after the first is built from the nodes of the one before
+        runGame(createGame(params), 10, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void recycledNodesWithTreeReuse() {
+        params.reuseTree = true;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.information = MCTSEnums.Information.Open_Loop;
+        runGame(createGame(params), 10, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void recycledNodesKeepNoSlotsFromAnotherActor() {
+        // in a SelfOnly tree a node for a state that is terminal for the player is that player's node, although it
+        // is another player's turn - so it never sets its available actions, and must not use those of its last life
+        params.budget = 500;
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        for (int g = 0; g < 5; g++) {
+            Game game = new TicTacToeGame(players, new TicTacToeGameParameters(3812 + g));
+            AbstractGameState state = game.getGameState();
+            AbstractForwardModel forwardModel = game.getForwardModel();
+            while (state.isNotTerminal()) {
+                List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+                AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+                if (state.getCurrentPlayer() == 0) {
+                    for (SingleTreeNode node : mctsPlayer.getRoot(0).allNodesInTree())
+                        for (AbstractAction action : node.getChildren().keySet())
+                            assertTrue(node.actionValidVisits(action) <= node.getVisits());
+                }
+                forwardModel.next(state, actionChosen);
+            }
+        }
+    }
+
+    @Test
+    public void treeSizeIsCapped() {
+        params.maxTreeNodes = 25;
+        runGame(createGame(params), 10, 25);
+    }
+
+    @Test
+    public void multiTreeSizeIsCapped() {
+        params.maxTreeNodes = 25;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MultiTree;
+        // the trees of the two opponents still get their roots once the cap is reached
+        runGame(createGame(params), 10, 25 + 2);
+    }
+
+    @Test
+    public void treeSizeIsCappedWithTreeParallelSearch() {
+        params.maxTreeNodes = 25;
+        params.treeThreads = 2;
+        // each thread checks the cap before it expands, so they may overshoot it by a node each
+        runGame(createGame(params), 10, 25 + params.treeThreads - 1);
+    }
+
+    @Test
+    public void nodesAreEvictedToStayWithinBudget() {
+        params.maxTreeNodes = 50;
+        params.evictNodes = true;
+        assertTrue(runGame(createGame(params), 10, 50) > 0);
+    }
+
+    @Test
+    public void nodesAreEvictedWithTreeReuse() {
+        params.maxTreeNodes = 50;
+        params.evictNodes = true;
+        params.reuseTree = true;
+        assertTrue(runGame(createGame(params), 10, 50) > 0);
+    }
+
+    @Test
+    public void noEvictionUnderBudget() {
+        params.maxTreeNodes = 1000;
+        params.evictNodes = true;
+        assertEquals(0, runGame(createGame(params), 5, 1000));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void evictionNeedsANodeBudget() {
+        params.evictNodes = true;
+        runGame(createGame(params), 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The number of nodes evicted, over all decisions
+     */
+    private int runGame(Game game, int moves, int maxNodes) {
+        int counter = 0;
+        int evicted = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            IStatisticLogger logger = new SummaryLogger();
+            mctsPlayer.setStatsLogger(logger);
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+
+            if (state.getCurrentPlayer() == 0) {
+                SingleTreeNode root = mctsPlayer.getRoot(0);
+                assertEquals(200 + root.getReusedVisits(), root.getVisits());
+                assertEquals(0, root.getDepth());
+                int childVisits = root.getChildren().values().stream()
+                        .filter(Objects::nonNull)
+                        .flatMap(Arrays::stream)
+                        .filter(Objects::nonNull)
+                        .mapToInt(SingleTreeNode::getVisits).sum();
+                assertTrue(childVisits <= root.getVisits());
+
+                TreeStatistics stats = new TreeStatistics(root);
+                assertTrue(stats.totalNodes <= maxNodes);
+                assertTrue(stats.peakNodes >= stats.totalNodes);
+                assertTrue(stats.peakNodes <= maxNodes);
+                assertTrue(stats.bytesPerNode > 0);
+                assertEquals(stats.bytesPerNode * stats.totalNodes, stats.estimatedBytes, stats.totalNodes);
+                if (params.opponentTreePolicy != MCTSEnums.OpponentTreePolicy.MultiTree)
+                    evicted += (int) logger.summary().get("evictedNodes").mean();
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+        return evicted;
+    }
+}
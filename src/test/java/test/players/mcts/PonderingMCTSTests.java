@@ -0,0 +1,143 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PonderingMCTSTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.information = MCTSEnums.Information.Open_Loop;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.K = 1.0;
+        params.ponder = true;
+        params.ponderShare = 1.0;
+        params.maxTreeNodes = 20000;
+    }
+
+    /**
+     * A random player that takes a little while over each decision, so that there is time to ponder
+     */
+    static class SlowRandomPlayer extends RandomPlayer {
+        SlowRandomPlayer(long seed) {
+            super(new Random(seed));
+        }
+
+        @Override
+        public AbstractAction getAction(AbstractGameState gameState, List<AbstractAction> possibleActions) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getAction(gameState, possibleActions);
+        }
+    }
+
+    public Game createGame(MCTSParams params) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new SlowRandomPlayer(3023));
+        players.add(new SlowRandomPlayer(244));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void ponderedTreeIsUsed() {
+        // the opponents' moves are in a MaxN tree, so the tree from their turn usually has a node for our decision
+        assertTrue(runGame(createGame(params), 10) > 0);
+    }
+
+    @Test
+    public void ponderedTreeIsUsedInMultiTree() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MultiTree;
+        assertTrue(runGame(createGame(params), 10) > 0);
+    }
+
+    @Test
+    public void ponderingWithCappedTreeAndLowShare() {
+        params.maxTreeNodes = 500;
+        params.ponderShare = 0.1;
+        runGame(createGame(params), 5);
+    }
+
+    @Test
+    public void ponderingStopsWhenTheTreeIsFull() throws InterruptedException {
+        params.maxTreeNodes = 300;
+        Game game = createGame(params);
+        AbstractGameState state = game.getGameState();
+        // our first decision, and then the next player's turn, which we ponder
+        while (state.getCurrentPlayer() == 0)
+            game.oneAction();
+        mctsPlayer.opponentToAct(state.copy(0));
+        long deadline = System.currentTimeMillis() + 30000;
+        while (mctsPlayer.isPondering() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertFalse(mctsPlayer.isPondering());
+        assertTrue(new TreeStatistics(mctsPlayer.getRoot(0)).totalNodes <= 300);
+        mctsPlayer.finalizePlayer(state);
+    }
+
+    @Test(expected = AssertionError.class)
+    public void ponderingNeedsMaxTreeNodes() {
+        params.maxTreeNodes = 0;
+        runGame(createGame(params), 2);
+    }
+
+    @Test
+    public void noPonderingInSelfOnlyTree() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        assertFalse(new MCTSPlayer(params).ponders());
+        assertEquals(0, runGame(createGame(params), 5));
+    }
+
+    @Test
+    public void noPonderingWhenSwitchedOff() {
+        params.ponder = false;
+        assertFalse(new MCTSPlayer(params).ponders());
+        assertEquals(0, runGame(createGame(params), 5));
+    }
+
+    /**
+     * @return The visits carried over from pondering, over all our decisions
+     */
+    private int runGame(Game game, int moves) {
+        int counter = 0;
+        int reusedVisits = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            boolean ourDecision = state.getCurrentPlayer() == 0 && forwardModel.computeAvailableActions(state).size() > 1;
+            game.oneAction();
+            if (ourDecision) {
+                SingleTreeNode root = mctsPlayer.getRoot(0);
+                assertEquals(0, root.getDepth());
+                assertEquals(200 + root.getReusedVisits(), root.getVisits());
+                reusedVisits += root.getReusedVisits();
+                counter++;
+            }
+        } while (counter < moves);
+        mctsPlayer.finalizePlayer(state);
+        return reusedVisits;
+    }
+}
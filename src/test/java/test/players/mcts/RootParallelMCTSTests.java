@@ -0,0 +1,192 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.interfaces.IActionHeuristic;
+import core.interfaces.IGameListener;
+import core.interfaces.IStateHeuristic;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RootParallelMCTSTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.K = 1.0;
+        params.rootThreads = 4;
+    }
+
+    public Game createGame(MCTSParams params) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void selfOnly() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        runGame(createGame(params), 6);
+    }
+
+    @Test
+    public void maxNRobust() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.selectionPolicy = MCTSEnums.SelectionPolicy.ROBUST;
+        runGame(createGame(params), 6);
+    }
+
+    @Test
+    public void multiTree() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MultiTree;
+        runGame(createGame(params), 6);
+    }
+
+    @Test
+    public void wholeGame() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.budget = 50;
+        Game game = createGame(params);
+        game.run();
+        assertFalse(game.getGameState().isNotTerminal());
+    }
+
+    /**
+     * An advantage function that counts the GAME_OVER events it is sent; its copies are new instances unless shared
+     */
+    static class ListeningAdvantage extends AbstractPlayer implements IActionHeuristic, IGameListener {
+        final List<ListeningAdvantage> instances;
+        final boolean shared;
+        int gameOvers;
+
+        ListeningAdvantage(List<ListeningAdvantage> instances, boolean shared) {
+            this.instances = instances;
+            this.shared = shared;
+            instances.add(this);
+        }
+
+        @Override
+        public AbstractAction getAction(AbstractGameState gameState, List<AbstractAction> possibleActions) {
+            return possibleActions.get(0);
+        }
+
+        @Override
+        public AbstractPlayer copy() {
+            return shared ? this : new ListeningAdvantage(instances, false);
+        }
+
+        @Override
+        public double evaluateAction(AbstractAction action, AbstractGameState state) {
+            return 0.0;
+        }
+
+        @Override
+        public void onGameEvent(CoreConstants.GameEvents type, Game game) {
+        }
+
+        @Override
+        public void onEvent(CoreConstants.GameEvents type, AbstractGameState state, AbstractAction action) {
+            if (type == CoreConstants.GameEvents.GAME_OVER)
+                gameOvers++;
+        }
+    }
+
+    static class ListeningHeuristic implements IStateHeuristic, IGameListener {
+        @Override
+        public double evaluateState(AbstractGameState gs, int playerId) {
+            return 0.0;
+        }
+
+        @Override
+        public void onGameEvent(CoreConstants.GameEvents type, Game game) {
+        }
+
+        @Override
+        public void onEvent(CoreConstants.GameEvents type, AbstractGameState state, AbstractAction action) {
+        }
+    }
+
+    private void runWholeGame(IActionHeuristic advantageFunction) {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.budget = 20;
+        params.advantageFunction = advantageFunction;
+        Game game = createGame(params);
+        game.run();
+        assertFalse(game.getGameState().isNotTerminal());
+    }
+
+    @Test
+    public void eachWorkerHasItsOwnCopyOfAPlayerAdvantageFunction() {
+        List<ListeningAdvantage> instances = new ArrayList<>();
+        runWholeGame(new ListeningAdvantage(instances, false));
+        // the player's, and one for each of the three workers, each told once that the game is over
+        assertEquals(4, instances.size());
+        for (ListeningAdvantage instance : instances)
+            assertEquals(1, instance.gameOvers);
+    }
+
+    @Test
+    public void advantageFunctionSharedWithWorkersHearsGameOverOnce() {
+        List<ListeningAdvantage> instances = new ArrayList<>();
+        runWholeGame(new ListeningAdvantage(instances, true));
+        assertEquals(1, instances.size());
+        assertEquals(1, instances.get(0).gameOvers);
+    }
+
+    @Test
+    public void listeningHeuristicIsRefused() {
+        Game game = createGame(params);
+        mctsPlayer.setStateHeuristic(new ListeningHeuristic());
+        AbstractGameState state = game.getGameState();
+        List<AbstractAction> actions = game.getForwardModel().computeAvailableActions(state);
+        try {
+            mctsPlayer.getAction(state, actions);
+            fail("A heuristic that listens for game events cannot be shared by root workers");
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("rootThreads"));
+        }
+        params.rootThreads = 1;
+        Game serial = createGame(params);
+        mctsPlayer.setStateHeuristic(new ListeningHeuristic());
+        state = serial.getGameState();
+        assertNotNull(mctsPlayer.getAction(state, serial.getForwardModel().computeAvailableActions(state)));
+    }
+
+    private void runGame(Game game, int moves) {
+        int counter = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+
+            if (state.getCurrentPlayer() == 0) {
+                // the tree kept is the one searched on this thread, with the full budget
+                assertEquals(200, mctsPlayer.getRoot(0).getVisits());
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+    }
+}
@@ -0,0 +1,87 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StreamingTreeStatisticsTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.information = MCTSEnums.Information.Closed_Loop;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.Paranoid;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.K = 1.0;
+    }
+
+    public Game createGame(MCTSParams params) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void countsKeptDuringSearchMatchAWalkOfTheTree() {
+        runGame(createGame(params), 10);
+    }
+
+    @Test
+    public void countsKeptDuringSelfOnlySearchMatchAWalkOfTheTree() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        runGame(createGame(params), 10);
+    }
+
+    @Test
+    public void countsKeptDuringMaxNSearchMatchAWalkOfTheTree() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        runGame(createGame(params), 10);
+    }
+
+    private void runGame(Game game, int moves) {
+        int counter = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+
+            if (state.getCurrentPlayer() == 0) {
+                SingleTreeNode root = mctsPlayer.getRoot(0);
+                TreeStatistics streamed = new TreeStatistics(root);
+                TreeStatistics walked = TreeStatistics.fromWalk(root);
+                assertTrue(walked.totalNodes > 1);
+                assertEquals(walked.totalNodes, streamed.totalNodes);
+                assertArrayEquals(walked.nodesAtDepth, streamed.nodesAtDepth);
+                assertArrayEquals(walked.leavesAtDepth, streamed.leavesAtDepth);
+                assertArrayEquals(walked.gameTerminalNodesAtDepth, streamed.gameTerminalNodesAtDepth);
+                assertEquals(walked.depthReached, streamed.depthReached);
+                assertEquals(walked.maxActionsAtNode, streamed.maxActionsAtNode);
+                assertEquals(walked.meanActionsAtNode, streamed.meanActionsAtNode, 1e-9);
+                // the size of each node is taken when it is added, before any of its arrays grow
+                assertEquals(walked.estimatedBytes, streamed.estimatedBytes, walked.estimatedBytes * 0.25);
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+    }
+}
@@ -0,0 +1,96 @@
+package test.players.mcts;
+
+import core.AbstractForwardModel;
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import core.interfaces.IStatisticLogger;
+import games.GameType;
+import org.junit.Before;
+import org.junit.Test;
+import players.PlayerConstants;
+import players.mcts.MCTSEnums;
+import players.mcts.MCTSParams;
+import players.simple.RandomPlayer;
+import utilities.SummaryLogger;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TMDeterminisationPoolTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+    Game game;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.maxTreeDepth = 10;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.determinisationThreads = 2;
+        params.determinisationQueue = 8;
+    }
+
+    private void createGame() {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        game = GameType.TerraformingMars.createGameInstance(2, 4932);
+        game.reset(players);
+    }
+
+    @Test
+    public void determinisationsAreTakenFromThePool() {
+        createGame();
+        assertTrue(runGame(5) > 0.0);
+    }
+
+    @Test
+    public void poolSharedByTreeParallelSearch() {
+        params.treeThreads = 2;
+        createGame();
+        assertTrue(runGame(5) > 0.0);
+    }
+
+    @Test
+    public void noPoolInOpenLoop() {
+        params.information = MCTSEnums.Information.Open_Loop;
+        createGame();
+        assertEquals(0.0, runGame(3), 0.0);
+    }
+
+    /**
+     * @return The mean proportion of determinisations that came from the pool, over all decisions
+     */
+    private double runGame(int moves) {
+        int counter = 0;
+        double pooled = 0.0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            IStatisticLogger logger = new SummaryLogger();
+            mctsPlayer.setStatsLogger(logger);
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+
+            if (state.getCurrentPlayer() == 0) {
+                assertEquals(200, mctsPlayer.getRoot(0).getVisits());
+                pooled += logger.summary().get("pooledDeterminisations").mean();
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+        mctsPlayer.finalizePlayer(state);
+        return pooled / moves;
+    }
+}
@@ -0,0 +1,98 @@
+package test.players.mcts;
+
+import core.AbstractForwardModel;
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import games.GameType;
+import games.terraformingmars.TMGameState;
+import org.junit.Before;
+import org.junit.Test;
+import players.PlayerConstants;
+import players.mcts.MCTSEnums;
+import players.mcts.MCTSParams;
+import players.mcts.SingleTreeNode;
+import players.simple.RandomPlayer;
+import players.simple.TMRuleBasedPlayer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TMProgressiveWideningTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+    TMRuleBasedPlayer ruleHeuristic = new TMRuleBasedPlayer();
+    Game game;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.information = MCTSEnums.Information.Open_Loop;
+        params.maxTreeDepth = 10;
+        params.rolloutLength = 0;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.selectionPolicy = MCTSEnums.SelectionPolicy.SIMPLE;
+        params.progressiveWideningConstant = 2.0;
+        params.progressiveWideningExponent = 0.3;
+        params.advantageFunction = ruleHeuristic;
+        params.cacheAdvantages = true;
+
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        game = GameType.TerraformingMars.createGameInstance(2, 4932);
+        game.reset(players);
+    }
+
+    private List<AbstractAction> advanceToActionPhase() {
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        List<AbstractAction> actions = fm.computeAvailableActions(state);
+        while (state.getGamePhase() != TMGameState.TMPhase.Actions || state.getCurrentPlayer() != 0 || actions.size() < 10) {
+            fm.next(state, random.getAction(state, actions));
+            actions = fm.computeAvailableActions(state);
+        }
+        return actions;
+    }
+
+    @Test
+    public void rootWidthIsLimitedByVisits() {
+        List<AbstractAction> actions = advanceToActionPhase();
+        mctsPlayer.getAction(game.getGameState(), actions);
+
+        SingleTreeNode root = mctsPlayer.getRoot(0);
+        assertEquals(200, root.getVisits());
+        long expanded = root.getChildren().values().stream().filter(Objects::nonNull).count();
+        int width = (int) Math.floor(params.progressiveWideningConstant * Math.pow(root.getVisits() + 1, params.progressiveWideningExponent));
+        assertTrue(width < actions.size());
+        assertTrue(expanded > 1);
+        assertTrue(expanded <= width);
+    }
+
+    @Test
+    public void expandedActionsAreTopRanked() {
+        List<AbstractAction> actions = advanceToActionPhase();
+        mctsPlayer.getAction(game.getGameState(), actions);
+
+        SingleTreeNode root = mctsPlayer.getRoot(0);
+        double worstExpanded = Double.POSITIVE_INFINITY;
+        double bestUnexpanded = Double.NEGATIVE_INFINITY;
+        for (Map.Entry<AbstractAction, SingleTreeNode[]> entry : root.getChildren().entrySet()) {
+            double value = ruleHeuristic.evaluateAction(entry.getKey(), root.getState());
+            assertTrue(value >= -1.0 && value <= 1.0);
+            if (entry.getValue() != null)
+                worstExpanded = Math.min(worstExpanded, value);
+            else
+                bestUnexpanded = Math.max(bestUnexpanded, value);
+        }
+        assertTrue(worstExpanded >= bestUnexpanded);
+    }
+}
@@ -0,0 +1,184 @@
+package test.players.mcts;
+
+import core.AbstractForwardModel;
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import games.GameType;
+import core.components.Deck;
+import games.terraformingmars.TMGameState;
+import games.terraformingmars.TMTypes;
+import games.terraformingmars.components.TMCard;
+import org.junit.Before;
+import org.junit.Test;
+import players.PlayerConstants;
+import players.mcts.MCTSEnums;
+import players.mcts.MCTSParams;
+import players.mcts.SingleTreeNode;
+import players.mcts.TreeStatistics;
+import players.simple.RandomPlayer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TMTranspositionTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+    Game game;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.maxTreeDepth = 10;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.transpositions = true;
+    }
+
+    private void createGame() {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        game = GameType.TerraformingMars.createGameInstance(2, 4932);
+        game.reset(players);
+    }
+
+    private void advanceToActionPhase() {
+        // transpositions are mostly in the action phase, where players take several actions in a turn
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        while (state.getGamePhase() != TMGameState.TMPhase.Actions || state.getCurrentPlayer() != 0)
+            fm.next(state, random.getAction(state, fm.computeAvailableActions(state)));
+    }
+
+    @Test
+    public void hashIsKeptByCopiesAndChangedByActions() {
+        createGame();
+        TMGameState state = (TMGameState) game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        for (int i = 0; i < 50; i++) {
+            long hash = state.getStateHash();
+            assertEquals(hash, ((TMGameState) state.copy()).getStateHash());
+            List<AbstractAction> actions = fm.computeAvailableActions(state);
+            fm.next(state, random.getAction(state, actions));
+            assertNotEquals(hash, state.getStateHash());
+        }
+    }
+
+    @Test
+    public void orderOfTheResearchHandIsHashed() {
+        createGame();
+        TMGameState state = (TMGameState) game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        while (state.getPlayerCardChoice()[state.getCurrentPlayer()].getSize() < 2)
+            fm.next(state, random.getAction(state, fm.computeAvailableActions(state)));
+        TMGameState reordered = (TMGameState) state.copy();
+        Deck<TMCard> choice = reordered.getPlayerCardChoice()[reordered.getCurrentPlayer()];
+        List<TMCard> cards = new ArrayList<>(choice.getComponents());
+        Collections.reverse(cards);
+        choice.clear();
+        choice.add(cards);
+        assertNotEquals(state.getStateHash(), reordered.getStateHash());
+    }
+
+    @Test
+    public void setEntriesWithTheSameHashCodeDoNotCancel() {
+        createGame();
+        TMGameState state = (TMGameState) game.getGameState();
+        TMGameState mapped = (TMGameState) state.copy();
+        // two different mappings with the same hash code, which would cancel out if their keys were XORed
+        HashSet<TMGameState.ResourceMapping> mappings = mapped.getPlayerResourceMap()[0];
+        int before = mappings.size();
+        mappings.add(new CollidingMapping(TMTypes.Resource.Steel));
+        mappings.add(new CollidingMapping(TMTypes.Resource.Titanium));
+        assertEquals(before + 2, mappings.size());
+        assertNotEquals(state.getStateHash(), mapped.getStateHash());
+    }
+
+    static class CollidingMapping extends TMGameState.ResourceMapping {
+        CollidingMapping(TMTypes.Resource from) {
+            super(from, TMTypes.Resource.MegaCredit, 2, null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 17;
+        }
+    }
+
+    @Test
+    public void transpositionsAreShared() {
+        createGame();
+        advanceToActionPhase();
+        assertTrue(runGame(8) > 0);
+    }
+
+    @Test
+    public void transpositionsAreSharedInMaxN() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.information = MCTSEnums.Information.Open_Loop;
+        createGame();
+        advanceToActionPhase();
+        assertTrue(runGame(8) > 0);
+    }
+
+    @Test(expected = AssertionError.class)
+    public void treeParallelSearchNotSupported() {
+        params.treeThreads = 2;
+        createGame();
+        runGame(1);
+    }
+
+    /**
+     * @return The number of nodes reached from more than one parent, over all decisions
+     */
+    private int runGame(int moves) {
+        int counter = 0;
+        int shared = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+
+            if (state.getCurrentPlayer() == 0) {
+                SingleTreeNode root = mctsPlayer.getRoot(0);
+                assertEquals(200, root.getVisits());
+                // each node is counted once, however many parents it has
+                List<SingleTreeNode> nodes = root.allNodesInTree();
+                assertEquals(new HashSet<>(nodes).size(), nodes.size());
+                assertEquals(nodes.size(), new TreeStatistics(root).totalNodes);
+                for (SingleTreeNode node : nodes) {
+                    int parents = 0;
+                    int parentVisits = 0;
+                    for (SingleTreeNode other : nodes)
+                        for (SingleTreeNode[] children : other.getChildren().values())
+                            if (children != null && Arrays.asList(children).contains(node)) {
+                                parents++;
+                                parentVisits += other.getVisits();
+                            }
+                    if (parents > 1)
+                        shared++;
+                    // every visit is backed up along the path taken, so came through one of the parents
+                    if (node != root)
+                        assertTrue(node.getVisits() <= parentVisits);
+                }
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+        return shared;
+    }
+}
@@ -27,4 +27,13 @@ public class TestMCTSPlayer extends MCTSPlayer {
         return root;
     }
 
+    /**
+     * Sets up the root for a decision in the given state (re-rooting the last tree, or from the node pool), without
+     * searching from it
+     */
+    public SingleTreeNode newRoot(AbstractGameState state) {
+        root = createRoot(state);
+        return root;
+    }
+
 }
@@ -0,0 +1,108 @@
+package test.players.mcts;
+
+import core.*;
+import core.actions.AbstractAction;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.*;
+import players.simple.RandomPlayer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TreeReuseMCTSTests {
+
+    TestMCTSPlayer mctsPlayer;
+    MCTSParams params;
+
+    @Before
+    public void setup() {
+        params = new MCTSParams(9332);
+        params.treePolicy = MCTSEnums.TreePolicy.UCB;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.maxTreeDepth = 20;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 200;
+        params.K = 1.0;
+        params.reuseTree = true;
+    }
+
+    public Game createGame(MCTSParams params) {
+        mctsPlayer = new TestMCTSPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(mctsPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void selfOnly() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        assertTrue(runGame(createGame(params), 20) > 0);
+    }
+
+    @Test
+    public void maxN() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MaxN;
+        params.information = MCTSEnums.Information.Open_Loop;
+        assertTrue(runGame(createGame(params), 20) > 0);
+    }
+
+    @Test
+    public void multiTree() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.MultiTree;
+        assertTrue(runGame(createGame(params), 20) > 0);
+    }
+
+    @Test
+    public void closedLoopStartsAfresh() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.information = MCTSEnums.Information.Closed_Loop;
+        assertEquals(0, runGame(createGame(params), 10));
+    }
+
+    @Test
+    public void wholeGameWithTreeParallelSearch() {
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.treeThreads = 2;
+        params.budget = 50;
+        Game game = createGame(params);
+        game.run();
+        assertFalse(game.getGameState().isNotTerminal());
+    }
+
+    /**
+     * @return The number of decisions that started from a reused tree
+     */
+    private int runGame(Game game, int moves) {
+        int counter = 0;
+        int reused = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+
+            if (state.getCurrentPlayer() == 0) {
+                SingleTreeNode root = mctsPlayer.getRoot(0);
+                // the budget is for new iterations, on top of any visits made in earlier searches
+                assertEquals(200 + root.getReusedVisits(), root.getVisits());
+                assertNull(root.getParent());
+                assertEquals(0, root.getDepth());
+                for (AbstractAction action : root.getChildren().keySet())
+                    assertTrue(actions.contains(action));
+                if (root.getReusedVisits() > 0)
+                    reused++;
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+        return reused;
+    }
+}
@@ -0,0 +1,148 @@
+package test.players.rhea;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.actions.SetGridValueAction;
+import core.interfaces.IStatisticLogger;
+import games.GameType;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.rhea.RHEAParams;
+import players.rhea.RHEAPlayer;
+import players.simple.RandomPlayer;
+import utilities.SummaryLogger;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelRHEATests {
+
+    RHEAParams params;
+    RHEAPlayer rheaPlayer;
+
+    @Before
+    public void setup() {
+        params = new RHEAParams(9332);
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 20;
+        params.threads = 4;
+    }
+
+    private Game createGame() {
+        rheaPlayer = new RHEAPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(rheaPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        players.add(new RandomPlayer(new Random(244)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void parallelEvaluation() {
+        runGame(createGame(), 10);
+    }
+
+    @Test
+    public void parallelEvaluationWithShiftLeftAndMAST() {
+        params.shiftLeft = true;
+        params.useMAST = true;
+        runGame(createGame(), 10);
+    }
+
+    @Test
+    public void moreThreadsThanIndividuals() {
+        params.threads = 8;
+        params.populationSize = 3;
+        params.childCount = 2;
+        runGame(createGame(), 5);
+    }
+
+    @Test
+    public void serialEvaluation() {
+        params.threads = 1;
+        params.shiftLeft = true;
+        runGame(createGame(), 5);
+    }
+
+    @Test
+    public void sameSeedChoosesTheSameActions() {
+        assertEquals(chosenMoves(), chosenMoves());
+    }
+
+    @Test
+    public void sameSeedChoosesTheSameActionsWithShiftLeftAndMAST() {
+        params.shiftLeft = true;
+        params.useMAST = true;
+        assertEquals(chosenMoves(), chosenMoves());
+    }
+
+    /**
+     * The moves a new player makes in a game of Connect4 against a seeded random player. (Connect4 as its forward
+     * model makes no random draws, while copies of a Dominion state are given a new seed each time.)
+     */
+    private List<String> chosenMoves() {
+        RHEAPlayer player = new RHEAPlayer(params);
+        Game game = GameType.Connect4.createGameInstance(2, 77);
+        game.reset(Arrays.asList(player, new RandomPlayer(new Random(3023))));
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        List<String> moves = new ArrayList<>();
+        while (state.isNotTerminal()) {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction action;
+            if (state.getCurrentPlayer() == 0) {
+                action = player.getAction(state.copy(), actions);
+                SetGridValueAction<?> move = (SetGridValueAction<?>) action;
+                moves.add(move.getX() + "," + move.getY());
+            } else {
+                action = random.getAction(state, actions);
+            }
+            forwardModel.next(state, action);
+        }
+        player.finalizePlayer(state);
+        assertTrue(moves.size() > 3);
+        return moves;
+    }
+
+    @Test
+    public void noBudgetForAnyIndividual() {
+        params.budgetType = PlayerConstants.BUDGET_FM_CALLS;
+        params.budget = 0;
+        for (int threads : new int[]{1, 4}) {
+            params.threads = threads;
+            Game game = createGame();
+            AbstractGameState state = game.getGameState();
+            List<AbstractAction> actions = game.getForwardModel().computeAvailableActions(state);
+            IStatisticLogger logger = new SummaryLogger();
+            rheaPlayer.setStatsLogger(logger);
+            // a random action, and no statistics as there is no population to report on
+            assertTrue(actions.contains(rheaPlayer.getAction(state, actions)));
+            assertTrue(logger.summary().isEmpty());
+            rheaPlayer.finalizePlayer(state);
+        }
+    }
+
+    private void runGame(Game game, int moves) {
+        int counter = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            IStatisticLogger logger = new SummaryLogger();
+            rheaPlayer.setStatsLogger(logger);
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+            if (state.getCurrentPlayer() == 0) {
+                assertEquals(20, logger.summary().get("iterations").mean(), 0.0);
+                assertTrue(logger.summary().get("iterationsPerSecond").mean() >= 0.0);
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+        rheaPlayer.finalizePlayer(state);
+    }
+}
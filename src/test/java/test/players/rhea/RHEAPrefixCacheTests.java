@@ -0,0 +1,88 @@
+package test.players.rhea;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.interfaces.IStatisticLogger;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.rhea.RHEAParams;
+import players.rhea.RHEAPlayer;
+import players.simple.RandomPlayer;
+import utilities.SummaryLogger;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RHEAPrefixCacheTests {
+
+    RHEAParams params;
+    RHEAPlayer rheaPlayer;
+
+    @Before
+    public void setup() {
+        params = new RHEAParams(9332);
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 20;
+        params.horizon = 20;
+        params.shiftLeft = true;
+        params.prefixCache = true;
+    }
+
+    private Game createGame() {
+        rheaPlayer = new RHEAPlayer(params);
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(rheaPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        return new DominionGame(players, DominionParameters.firstGame(330245));
+    }
+
+    @Test
+    public void fewerForwardModelCallsWithCache() {
+        params.prefixCache = false;
+        double withoutCache = runGame(createGame(), 10);
+        params.prefixCache = true;
+        double withCache = runGame(createGame(), 10);
+        assertTrue(withCache + " versus " + withoutCache, withCache < withoutCache * 0.75);
+    }
+
+    @Test
+    public void cacheWithParallelEvaluation() {
+        params.threads = 4;
+        params.useMAST = true;
+        assertTrue(runGame(createGame(), 10) > 0.0);
+    }
+
+    @Test
+    public void cacheWithoutShiftLeft() {
+        params.shiftLeft = false;
+        assertTrue(runGame(createGame(), 10) > 0.0);
+    }
+
+    /**
+     * @return The mean number of forward model calls per decision
+     */
+    private double runGame(Game game, int moves) {
+        int counter = 0;
+        double fmCalls = 0.0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            IStatisticLogger logger = new SummaryLogger();
+            rheaPlayer.setStatsLogger(logger);
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+            if (state.getCurrentPlayer() == 0) {
+                assertEquals(20, logger.summary().get("iterations").mean(), 0.0);
+                fmCalls += logger.summary().get("fmCalls").mean();
+                counter++;
+            }
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+        rheaPlayer.finalizePlayer(state);
+        return fmCalls / moves;
+    }
+}
@@ -0,0 +1,87 @@
+package test.players.rmhc;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.actions.SetGridValueAction;
+import games.GameType;
+import games.dominion.DominionGame;
+import games.dominion.DominionParameters;
+import org.junit.*;
+import players.PlayerConstants;
+import players.rmhc.RMHCParams;
+import players.rmhc.RMHCPlayer;
+import players.simple.RandomPlayer;
+import utilities.Pair;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelRMHCTests {
+
+    RMHCParams params;
+
+    @Before
+    public void setup() {
+        params = new RMHCParams(9332);
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 20;
+    }
+
+    @Test
+    public void parallelNeighbours() {
+        params.threads = 4;
+        runGame(10);
+    }
+
+    @Test
+    public void serialNeighbours() {
+        runGame(10);
+    }
+
+    @Test
+    public void sameSeedRepeatsChoicesInParallel() {
+        params.threads = 4;
+        assertEquals(connect4Moves(), connect4Moves());
+    }
+
+    @Test
+    public void sameSeedRepeatsChoicesSerially() {
+        assertEquals(connect4Moves(), connect4Moves());
+    }
+
+    /**
+     * The moves a new player makes in a game of Connect4 against a seeded random player. (Connect4 as its forward
+     * model makes no random draws, while copies of a Dominion state are given a new seed each time.)
+     */
+    private List<String> connect4Moves() {
+        Game connect4 = GameType.Connect4.createGameInstance(2, 77);
+        connect4.reset(Arrays.asList(new RMHCPlayer(params), new RandomPlayer(new Random(3023))));
+        connect4.run();
+        List<String> moves = new ArrayList<>();
+        for (Pair<Integer, AbstractAction> move : connect4.getGameState().getHistory(0)) {
+            SetGridValueAction<?> action = (SetGridValueAction<?>) move.b;
+            moves.add(move.a + ":" + action.getX() + "," + action.getY());
+        }
+        assertTrue(moves.size() > 6);
+        return moves;
+    }
+
+    private void runGame(int moves) {
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(new RMHCPlayer(params));
+        players.add(new RandomPlayer(new Random(3023)));
+        Game game = new DominionGame(players, DominionParameters.firstGame(330245));
+        int counter = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+            if (state.getCurrentPlayer() == 0)
+                counter++;
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves);
+    }
+}
@@ -0,0 +1,149 @@
+package test.players.simple;
+
+import core.*;
+import core.actions.AbstractAction;
+import core.actions.SetGridValueAction;
+import games.GameType;
+import org.junit.*;
+import players.simple.OSLAHeuristic;
+import players.simple.OSLAPlayer;
+import players.simple.RandomPlayer;
+import utilities.Pair;
+import utilities.Utils;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelOSLATests {
+
+    OSLAPlayer oslaPlayer;
+    Game game;
+
+    private void createGame(int threads) {
+        oslaPlayer = new OSLAPlayer(new Random(9332));
+        oslaPlayer.threads = threads;
+        List<AbstractPlayer> players = new ArrayList<>();
+        players.add(oslaPlayer);
+        players.add(new RandomPlayer(new Random(3023)));
+        game = GameType.TerraformingMars.createGameInstance(2, 4932);
+        game.reset(players);
+    }
+
+    @Test
+    public void parallelEvaluation() {
+        createGame(4);
+        runGame(10);
+    }
+
+    @Test
+    public void moreThreadsThanActions() {
+        createGame(64);
+        runGame(5);
+    }
+
+    @Test
+    public void threadsFromParameters() {
+        OSLAHeuristic params = new OSLAHeuristic();
+        params.setParameterValue("threads", 4);
+        OSLAPlayer player = (OSLAPlayer) params.instantiate();
+        assertEquals(4, player.threads);
+        assertEquals(4, player.copy().threads);
+    }
+
+    /**
+     * States from a game of Connect4 between random players. OSLA makes no random moves of its own in Connect4 (the
+     * turn order is not a StandardTurnOrder), and the forward model makes no random draws.
+     */
+    private static List<AbstractGameState> connect4States(AbstractForwardModel[] forwardModel) {
+        Game connect4 = GameType.Connect4.createGameInstance(2, 77);
+        connect4.reset(Arrays.asList(new RandomPlayer(new Random(1)), new RandomPlayer(new Random(2))));
+        forwardModel[0] = connect4.getForwardModel();
+        AbstractGameState state = connect4.getGameState();
+        RandomPlayer random = new RandomPlayer(new Random(42));
+        List<AbstractGameState> states = new ArrayList<>();
+        while (state.isNotTerminal()) {
+            states.add(state.copy());
+            forwardModel[0].next(state, random.getAction(state, forwardModel[0].computeAvailableActions(state)));
+        }
+        return states;
+    }
+
+    @Test
+    public void serialAndParallelChooseTheSameAction() {
+        AbstractForwardModel[] forwardModel = new AbstractForwardModel[1];
+        List<AbstractGameState> states = connect4States(forwardModel);
+        for (int i = 0; i < states.size(); i++) {
+            AbstractGameState state = states.get(i);
+            List<AbstractAction> actions = forwardModel[0].computeAvailableActions(state);
+            OSLAPlayer serial = new OSLAPlayer(new Random(500 + i));
+            OSLAPlayer parallel = new OSLAPlayer(new Random(500 + i));
+            parallel.threads = 4;
+            serial.setForwardModel(forwardModel[0]);
+            parallel.setForwardModel(forwardModel[0]);
+            assertSame(serial.getAction(state, actions), parallel.getAction(state, actions));
+        }
+    }
+
+    @Test
+    public void serialDrawsAsBefore() {
+        // one draw from the generator for each action, for the noise that breaks ties, as there are no random moves
+        AbstractForwardModel[] forwardModel = new AbstractForwardModel[1];
+        for (AbstractGameState state : connect4States(forwardModel)) {
+            List<AbstractAction> actions = forwardModel[0].computeAvailableActions(state);
+            Random reference = new Random(77);
+            AbstractAction expected = null;
+            double maxQ = Double.NEGATIVE_INFINITY;
+            for (AbstractAction action : actions) {
+                AbstractGameState next = state.copy();
+                forwardModel[0].next(next, action);
+                double Q = Utils.noise(next.getHeuristicScore(state.getCurrentPlayer()), 1e-6, reference.nextDouble());
+                if (Q > maxQ) {
+                    maxQ = Q;
+                    expected = action;
+                }
+            }
+            Random random = new Random(77);
+            OSLAPlayer serial = new OSLAPlayer(random);
+            serial.setForwardModel(forwardModel[0]);
+            assertSame(expected, serial.getAction(state, actions));
+            assertEquals(reference.nextLong(), random.nextLong());
+        }
+    }
+
+    @Test
+    public void sameSeedRepeatsChoicesInParallel() {
+        assertEquals(connect4Moves(4), connect4Moves(4));
+    }
+
+    /**
+     * The moves a new OSLA player (with a fixed seed) makes in a game of Connect4 against a seeded random player
+     */
+    private static List<String> connect4Moves(int threads) {
+        OSLAPlayer player = new OSLAPlayer(new Random(9332));
+        player.threads = threads;
+        Game connect4 = GameType.Connect4.createGameInstance(2, 77);
+        connect4.reset(Arrays.asList(player, new RandomPlayer(new Random(3023))));
+        connect4.run();
+        List<String> moves = new ArrayList<>();
+        for (Pair<Integer, AbstractAction> move : connect4.getGameState().getHistory(0)) {
+            SetGridValueAction<?> action = (SetGridValueAction<?>) move.b;
+            moves.add(move.a + ":" + action.getX() + "," + action.getY());
+        }
+        return moves;
+    }
+
+    private void runGame(int moves) {
+        int counter = 0;
+        AbstractGameState state = game.getGameState();
+        AbstractForwardModel forwardModel = game.getForwardModel();
+        do {
+            List<AbstractAction> actions = forwardModel.computeAvailableActions(state);
+            AbstractAction actionChosen = game.getPlayers().get(state.getCurrentPlayer()).getAction(state, actions);
+            assertTrue(actions.contains(actionChosen));
+            if (state.getCurrentPlayer() == 0)
+                counter++;
+            forwardModel.next(state, actionChosen);
+        } while (counter < moves && state.isNotTerminal());
+    }
+}
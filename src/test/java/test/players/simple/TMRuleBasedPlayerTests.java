@@ -0,0 +1,346 @@
+package test.players.simple;
+
+import core.*;
+import core.actions.AbstractAction;
+import games.GameType;
+import games.terraformingmars.TMGameState;
+import games.terraformingmars.TMTypes;
+import games.terraformingmars.actions.DiscardCard;
+import org.junit.*;
+import players.PlayerConstants;
+import players.mcts.MCTSEnums;
+import players.mcts.MCTSParams;
+import players.mcts.MCTSPlayer;
+import players.simple.TMRuleBasedPlayer;
+import utilities.Pair;
+import utilities.Utils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class TMRuleBasedPlayerTests {
+
+    /**
+     * Records the generation of every research decision it is asked for
+     */
+    static class RecordingPlayer extends TMRuleBasedPlayer {
+        final Set<Integer> researchGenerations = new HashSet<>();
+
+        @Override
+        public AbstractAction getAction(AbstractGameState gameState, List<AbstractAction> possibleActions) {
+            if (gameState.getGamePhase() == TMGameState.TMPhase.Research && possibleActions.stream().anyMatch(a -> a instanceof DiscardCard))
+                researchGenerations.add(((TMGameState) gameState).getGeneration());
+            return super.getAction(gameState, possibleActions);
+        }
+    }
+
+    /**
+     * Records the threads it is asked to decide on
+     */
+    static class ThreadRecordingPlayer extends TMRuleBasedPlayer {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public AbstractAction getAction(AbstractGameState gameState, List<AbstractAction> possibleActions) {
+            threads.add(Thread.currentThread());
+            return super.getAction(gameState, possibleActions);
+        }
+    }
+
+    /**
+     * Plays a game to the first research decision (after the corporations are chosen) of the player to move
+     */
+    private static Game gameAtResearch(long seed) {
+        Game game = GameType.TerraformingMars.createGameInstance(2, seed);
+        game.reset(Arrays.asList(new TMRuleBasedPlayer(), new TMRuleBasedPlayer()), seed);
+        while (!isResearchDecision(game))
+            game.oneAction();
+        return game;
+    }
+
+    private static boolean isResearchDecision(Game game) {
+        AbstractGameState state = game.getGameState();
+        return state.getGamePhase() == TMGameState.TMPhase.Research
+                && game.getForwardModel().computeAvailableActions(state).stream().anyMatch(a -> a instanceof DiscardCard);
+    }
+
+    private static List<AbstractAction> actions(Game game, AbstractGameState state) {
+        return game.getForwardModel().computeAvailableActions(state);
+    }
+
+    @Test
+    public void draftPlanIsOffByDefault() {
+        TMRuleBasedPlayer player = new TMRuleBasedPlayer();
+        Game game = gameAtResearch(4410);
+        AbstractGameState state = game.getGameState().copy();
+        player.getAction(state, actions(game, state));
+        assertEquals(0, player.getPlansMade());
+    }
+
+    @Test
+    public void onePlanIsMadeForEachResearchPhase() {
+        Game game = GameType.TerraformingMars.createGameInstance(2, 771);
+        RecordingPlayer first = new RecordingPlayer(), second = new RecordingPlayer();
+        first.setDraftPlan(true);
+        second.setDraftPlan(true);
+        game.reset(Arrays.asList(first, second), 771);
+        game.run();
+        assertTrue(first.researchGenerations.size() > 2);
+        assertEquals(first.researchGenerations.size(), first.getPlansMade());
+        assertEquals(second.researchGenerations.size(), second.getPlansMade());
+    }
+
+    @Test
+    public void planIsReusedForTheSameHand() {
+        TMRuleBasedPlayer player = new TMRuleBasedPlayer();
+        player.setDraftPlan(true);
+        Game game = gameAtResearch(4410);
+        AbstractGameState state = game.getGameState().copy();
+        AbstractAction decision = player.getAction(state, actions(game, state));
+        assertEquals(1, player.getPlansMade());
+        AbstractGameState again = game.getGameState().copy();
+        assertEquals(decision, player.getAction(again, actions(game, again)));
+        assertEquals(1, player.getPlansMade());
+    }
+
+    @Test
+    public void planIsRemadeWhenMegaCreditsDoNotMatch() {
+        TMRuleBasedPlayer player = new TMRuleBasedPlayer();
+        player.setDraftPlan(true);
+        Game game = gameAtResearch(4410);
+        TMGameState state = (TMGameState) game.getGameState().copy();
+        player.getAction(state, actions(game, state));
+        // a different line of play, in which the player has more money than following the plan would leave
+        TMGameState richer = (TMGameState) game.getGameState().copy();
+        richer.getPlayerResources()[richer.getCurrentPlayer()].get(TMTypes.Resource.MegaCredit).increment(1);
+        player.getAction(richer, actions(game, richer));
+        assertEquals(2, player.getPlansMade());
+    }
+
+    @Test
+    public void planIsRemadeForADifferentGame() {
+        TMRuleBasedPlayer player = new TMRuleBasedPlayer();
+        player.setDraftPlan(true);
+        // the same seed deals the same cards (with the same IDs), but it is a different game
+        Game game = gameAtResearch(4410);
+        Game other = gameAtResearch(4410);
+        assertNotEquals(game.getGameState().getGameID(), other.getGameState().getGameID());
+        AbstractGameState state = game.getGameState().copy();
+        player.getAction(state, actions(game, state));
+        AbstractGameState otherState = other.getGameState().copy();
+        player.getAction(otherState, actions(other, otherState));
+        assertEquals(2, player.getPlansMade());
+    }
+
+    @Test
+    public void planIsRemadeForTheNextResearchPhase() {
+        TMRuleBasedPlayer player = new TMRuleBasedPlayer();
+        player.setDraftPlan(true);
+        Game game = gameAtResearch(4410);
+        AbstractGameState state = game.getGameState().copy();
+        player.getAction(state, actions(game, state));
+        int generation = ((TMGameState) game.getGameState()).getGeneration();
+        while (((TMGameState) game.getGameState()).getGeneration() == generation || !isResearchDecision(game))
+            game.oneAction();
+        state = game.getGameState().copy();
+        player.getAction(state, actions(game, state));
+        assertEquals(2, player.getPlansMade());
+    }
+
+    /**
+     * States from a game, with the actions available in each, at every few decisions of either player
+     */
+    private static List<Pair<AbstractGameState, List<AbstractAction>>> sampleStates(long seed, int every) {
+        Game game = GameType.TerraformingMars.createGameInstance(2, seed);
+        game.reset(Arrays.asList(new TMRuleBasedPlayer(seed), new TMRuleBasedPlayer(seed + 1)), seed);
+        List<Pair<AbstractGameState, List<AbstractAction>>> states = new ArrayList<>();
+        for (int i = 0; game.getGameState().isNotTerminal(); i++) {
+            if (i % every == 0) {
+                AbstractGameState state = game.getGameState().copy();
+                states.add(new Pair<>(state, actions(game, state)));
+            }
+            game.oneAction();
+        }
+        return states;
+    }
+
+    /**
+     * The action the rules choose in a state, or null if the random fallback makes the choice (as players with a
+     * spread of seeds then disagree) or the choice depends on the copy of the state (the order of the awards in it)
+     */
+    private static AbstractAction ruledAction(Pair<AbstractGameState, List<AbstractAction>> sample) {
+        AbstractAction action = new TMRuleBasedPlayer(0).getAction(sample.a.copy(), sample.b);
+        for (int i = 1; i < 20; i++) {
+            if (!action.equals(new TMRuleBasedPlayer(i * 0x9E3779B97F4A7C15L).getAction(sample.a.copy(), sample.b)))
+                return null;
+        }
+        return action;
+    }
+
+    @Test
+    public void sameSeedMakesTheSameFallbackChoices() {
+        TMRuleBasedPlayer one = new TMRuleBasedPlayer(17), two = new TMRuleBasedPlayer(17);
+        int fallbacks = 0;
+        for (Pair<AbstractGameState, List<AbstractAction>> sample : sampleStates(5518, 3)) {
+            if (ruledAction(sample) != null) continue;
+            AbstractGameState state = sample.a.copy();
+            assertEquals(one.getAction(state, sample.b), two.getAction(state, sample.b));
+            fallbacks++;
+        }
+        assertTrue(fallbacks > 10);
+    }
+
+    @Test
+    public void seedCanBeGivenInJSON() {
+        TMRuleBasedPlayer player = Utils.loadClassFromString("{\"class\":\"players.simple.TMRuleBasedPlayer\",\"args\":[42]}");
+        Game game = GameType.TerraformingMars.createGameInstance(2, 4410);
+        game.reset(Arrays.asList(new TMRuleBasedPlayer(), new TMRuleBasedPlayer()), 4410);
+        AbstractGameState state = game.getGameState();
+        List<AbstractAction> actions = actions(game, state);
+        TMRuleBasedPlayer seeded = new TMRuleBasedPlayer(42);
+        for (int i = 0; i < 10; i++)
+            assertEquals(seeded.getAction(state, actions), player.getAction(state, actions));
+    }
+
+    @Test
+    public void decidesForThePlayerToMove() {
+        // as an opponent model the player is never seated as the player it decides for
+        TMRuleBasedPlayer model = new TMRuleBasedPlayer(23), seated = new TMRuleBasedPlayer(23);
+        GameType.TerraformingMars.createGameInstance(2, 1).reset(Arrays.asList(model, seated), 1);
+        assertEquals(0, model.getPlayerID());
+        assertEquals(1, seated.getPlayerID());
+        int checked = 0;
+        for (Pair<AbstractGameState, List<AbstractAction>> sample : sampleStates(5518, 7)) {
+            if (sample.a.getCurrentPlayer() != 1) continue;
+            AbstractGameState state = sample.a.copy();
+            assertEquals(seated.getAction(state, sample.b), model.getAction(state, sample.b));
+            checked++;
+        }
+        assertTrue(checked > 20);
+    }
+
+    @Test
+    public void sharedByConcurrentSearchThreads() throws Exception {
+        List<Pair<AbstractGameState, List<AbstractAction>>> samples = sampleStates(8213, 5);
+        // only the decisions made by the rules, as the random fallback of each thread depends on which thread it is
+        List<Pair<AbstractGameState, List<AbstractAction>>> states = new ArrayList<>();
+        List<AbstractAction> expected = new ArrayList<>();
+        for (Pair<AbstractGameState, List<AbstractAction>> sample : samples) {
+            AbstractAction action = ruledAction(sample);
+            if (action != null) {
+                states.add(sample);
+                expected.add(action);
+            }
+        }
+        assertTrue(states.size() > 50);
+
+        TMRuleBasedPlayer shared = new TMRuleBasedPlayer(3);
+        assertTrue(shared.isThreadSafe());
+        int nThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<AbstractAction[]>> futures = new ArrayList<>();
+            for (int t = 0; t < nThreads; t++) {
+                int start = t * states.size() / nThreads;
+                futures.add(executor.submit(() -> {
+                    // each thread works through all the states, from a different starting point
+                    AbstractAction[] chosen = new AbstractAction[states.size()];
+                    for (int i = 0; i < states.size(); i++) {
+                        int index = (start + i) % states.size();
+                        Pair<AbstractGameState, List<AbstractAction>> sample = states.get(index);
+                        chosen[index] = shared.getAction(sample.a.copy(), sample.b);
+                    }
+                    return chosen;
+                }));
+            }
+            for (Future<AbstractAction[]> future : futures)
+                assertEquals(expected, Arrays.asList(future.get()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void copyIsANewPlayerWithTheSameSettings() {
+        TMRuleBasedPlayer player = new TMRuleBasedPlayer(17);
+        player.setDraftPlan(true);
+        TMRuleBasedPlayer copy = (TMRuleBasedPlayer) player.copy();
+        assertNotSame(player, copy);
+
+        // the same seed, so the same fallback choices as another player with it
+        TMRuleBasedPlayer other = new TMRuleBasedPlayer(17);
+        other.setDraftPlan(true);
+        int fallbacks = 0;
+        for (Pair<AbstractGameState, List<AbstractAction>> sample : sampleStates(5518, 3)) {
+            if (ruledAction(sample) != null) continue;
+            AbstractGameState state = sample.a.copy();
+            assertEquals(other.getAction(state, sample.b), copy.getAction(state, sample.b));
+            fallbacks++;
+        }
+        assertTrue(fallbacks > 10);
+
+        // and it plans its research, with its own plans
+        Game game = gameAtResearch(4410);
+        AbstractGameState state = game.getGameState().copy();
+        long plans = player.getPlansMade();
+        copy.getAction(state, actions(game, state));
+        assertEquals(plans, player.getPlansMade());
+        assertTrue(copy.getPlansMade() > 0);
+    }
+
+    @Test
+    public void tracedPlayerIsCopiedWithItsTrace() {
+        TMRuleBasedPlayer player = new TMRuleBasedPlayer(17, 8, null);
+        assertFalse(player.isThreadSafe());
+        TMRuleBasedPlayer copy = (TMRuleBasedPlayer) player.copy();
+        assertNotSame(player, copy);
+        assertFalse(copy.isThreadSafe());
+        // (not every decision is traced, only those made by the rules)
+        for (Pair<AbstractGameState, List<AbstractAction>> sample : sampleStates(5518, 7)) {
+            copy.getAction(sample.a.copy(), sample.b);
+            if (!copy.getDecisionStats().isEmpty())
+                break;
+        }
+        assertFalse(copy.getDecisionStats().isEmpty());
+        assertTrue(player.getDecisionStats().isEmpty());
+    }
+
+    /**
+     * The threads on which the opponent model of an MCTS player with these params is asked for decisions, during
+     * the player's first few decisions in a game
+     */
+    private static Set<Thread> threadsUsingTheOpponentModel(MCTSParams params) {
+        ThreadRecordingPlayer model = new ThreadRecordingPlayer();
+        params.opponentModel = model;
+        params.opponentTreePolicy = MCTSEnums.OpponentTreePolicy.SelfOnly;
+        params.information = MCTSEnums.Information.Information_Set;
+        params.maxTreeDepth = 10;
+        params.rolloutLength = 10;
+        params.budgetType = PlayerConstants.BUDGET_ITERATIONS;
+        params.budget = 100;
+        MCTSPlayer mcts = new MCTSPlayer(params);
+        Game game = GameType.TerraformingMars.createGameInstance(2, 3310);
+        game.reset(Arrays.asList(mcts, new TMRuleBasedPlayer(5)), 3310);
+        for (int i = 0; i < 20 && model.threads.size() < 2; i++)
+            game.oneAction();
+        mcts.finalizePlayer(game.getGameState());
+        return model.threads;
+    }
+
+    @Test
+    public void oneInstanceIsSharedByTheThreadsOfATree() {
+        MCTSParams params = new MCTSParams(4417);
+        params.treeThreads = 2;
+        // (a copy for the second thread would be a plain TMRuleBasedPlayer, which records nothing)
+        assertEquals(2, threadsUsingTheOpponentModel(params).size());
+    }
+
+    @Test
+    public void oneInstanceIsSharedByTheRootWorkers() {
+        MCTSParams params = new MCTSParams(4417);
+        params.rootThreads = 2;
+        assertEquals(2, threadsUsingTheOpponentModel(params).size());
+    }
+}
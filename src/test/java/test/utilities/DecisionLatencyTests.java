@@ -0,0 +1,97 @@
+package test.utilities;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import games.GameType;
+import org.junit.*;
+import players.simple.RandomPlayer;
+import utilities.DecisionLatencyListener;
+import utilities.DecisionLatencyStats;
+import utilities.LatencyHistogram;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DecisionLatencyTests {
+
+    /**
+     * Takes at least 2ms over each decision
+     */
+    static class SlowPlayer extends AbstractPlayer {
+        final Random rnd = new Random(7);
+
+        @Override
+        public AbstractAction getAction(AbstractGameState gameState, List<AbstractAction> possibleActions) {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return possibleActions.get(rnd.nextInt(possibleActions.size()));
+        }
+
+        @Override
+        public SlowPlayer copy() {
+            return new SlowPlayer();
+        }
+    }
+
+    Game game;
+    DecisionLatencyListener listener = new DecisionLatencyListener();
+
+    @Before
+    public void setup() {
+        game = GameType.TicTacToe.createGameInstance(2, 1234);
+        AbstractPlayer slow = new SlowPlayer();
+        slow.setName("Slow");
+        // (which is always known by its toString(), "Random")
+        AbstractPlayer fast = new RandomPlayer(new Random(3));
+        game.reset(Arrays.asList(slow, fast), 1234);
+        game.addListener(listener);
+    }
+
+    @Test
+    public void everyDecisionIsRecordedForItsPlayer() {
+        game.run();
+        long recorded = game.getDecisionLatency(0).getAll().count() + game.getDecisionLatency(1).getAll().count();
+        assertEquals(game.getNDecisions(), recorded);
+        assertTrue(game.getDecisionLatency(0).getAll().count() > 0);
+        assertTrue(game.getDecisionLatency(1).getAll().count() > 0);
+    }
+
+    @Test
+    public void playersAreRecordedSeparately() {
+        game.run();
+        LatencyHistogram slow = game.getDecisionLatency(0).getAll();
+        LatencyHistogram fast = game.getDecisionLatency(1).getAll();
+        assertTrue(slow.percentile(0) >= 2_000_000);
+        assertTrue(fast.percentile(50) < 2_000_000);
+    }
+
+    @Test
+    public void decisionsAreBrokenDownByPhaseAndAction() {
+        game.run();
+        DecisionLatencyStats stats = game.getDecisionLatency(0);
+        LatencyHistogram phase = stats.getPhase(game.getGameState().getGamePhase());
+        assertNotNull(phase);
+        assertEquals(stats.getAll().count(), phase.count());
+        Map<String, Object> summary = stats.summary("Slow");
+        assertEquals(stats.getAll().count(), summary.get("Slow.All.n"));
+        assertTrue(summary.keySet().stream().anyMatch(k -> k.startsWith("Slow.Action.")));
+        assertTrue((Double) summary.get("Slow.All.p50") >= 2.0);
+    }
+
+    @Test
+    public void listenerMergesGamesByPlayerName() {
+        game.run();
+        long first = game.getDecisionLatency(0).getAll().count();
+        game.reset(game.getPlayers(), 99);
+        game.run();
+        long second = game.getDecisionLatency(0).getAll().count();
+        assertEquals(first + second, listener.getLatency("Slow").getAll().count());
+        assertTrue(listener.getLatency("Random").getAll().percentile(50) < 2_000_000);
+    }
+}
@@ -0,0 +1,138 @@
+package test.utilities;
+
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import core.actions.LogEvent;
+import games.GameType;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import players.simple.TMRuleBasedPlayer;
+import utilities.DecisionTrace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DecisionTraceTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    DecisionTrace trace = new DecisionTrace(3, 2, "score", "rank");
+
+    private void decide(int round, String... candidates) {
+        trace.startDecision(round, "Phase" + round);
+        for (int i = 0; i < candidates.length; i++) {
+            int candidate = trace.addCandidate(new LogEvent(candidates[i]), i);
+            trace.setScore(candidate, 1, 10 + i);
+        }
+        trace.setChosen(new LogEvent(candidates[0]));
+    }
+
+    private List<String> dump() throws IOException {
+        StringWriter writer = new StringWriter();
+        trace.dump(writer);
+        return Arrays.asList(writer.toString().split(System.lineSeparator()));
+    }
+
+    @Test
+    public void dumpFormat() throws IOException {
+        decide(4, "a", "b");
+        List<String> lines = dump();
+        assertEquals(4, lines.size());
+        assertEquals("Decision 0\tRound 4\tPhase Phase4\tCandidates 2", lines.get(0));
+        assertEquals("  * score=0.000\trank=10.00\ta", lines.get(1));
+        assertEquals("    score=1.000\trank=11.00\tb", lines.get(2));
+        assertEquals("  Chosen: a", lines.get(3));
+    }
+
+    @Test
+    public void candidatesBeyondTheMaximumAreCountedButNotStored() throws IOException {
+        decide(1, "a", "b", "c");
+        List<String> lines = dump();
+        assertEquals("Decision 0\tRound 1\tPhase Phase1\tCandidates 3 (2 stored)", lines.get(0));
+        assertEquals(4, lines.size());
+        assertEquals(2, trace.lastDecisionStats().size());
+    }
+
+    @Test
+    public void unsetScoresAreNaN() {
+        trace.startDecision(1, null);
+        trace.addCandidate(new LogEvent("a"), 0.5);
+        Map<AbstractAction, Map<String, Object>> stats = trace.lastDecisionStats();
+        assertEquals(0.5, (Double) stats.get(new LogEvent("a")).get("score"), 0.0);
+        assertTrue(Double.isNaN((Double) stats.get(new LogEvent("a")).get("rank")));
+        assertEquals(false, stats.get(new LogEvent("a")).get("chosen"));
+    }
+
+    @Test
+    public void onlyTheLastCapacityDecisionsAreKept() throws IOException {
+        for (int round = 0; round < 5; round++)
+            decide(round, "x" + round);
+        assertEquals(5, trace.decisions());
+        List<String> headers = new ArrayList<>();
+        for (String line : dump())
+            if (line.startsWith("Decision"))
+                headers.add(line.split("\t")[0] + " " + line.split("\t")[1]);
+        assertEquals(Arrays.asList("Decision 2 Round 2", "Decision 3 Round 3", "Decision 4 Round 4"), headers);
+        Map<AbstractAction, Map<String, Object>> last = trace.lastDecisionStats();
+        assertEquals(Collections.singleton(new LogEvent("x4")), last.keySet());
+        assertEquals(true, last.get(new LogEvent("x4")).get("chosen"));
+    }
+
+    @Test
+    public void overwrittenDecisionsLoseTheirOldCandidates() throws IOException {
+        decide(0, "a", "b");
+        decide(1, "c");
+        decide(2, "d");
+        decide(3, "e");
+        List<String> lines = dump();
+        assertFalse(lines.stream().anyMatch(l -> l.endsWith("\tb")));
+        assertEquals(3 * 3, lines.size());
+    }
+
+    @Test
+    public void clearForgetsEverything() throws IOException {
+        decide(0, "a");
+        trace.clear();
+        assertEquals(0, trace.decisions());
+        assertTrue(trace.lastDecisionStats().isEmpty());
+        assertTrue(writerIsEmpty());
+        decide(1, "b");
+        assertEquals("Decision 0\tRound 1\tPhase Phase1\tCandidates 1", dump().get(0));
+    }
+
+    private boolean writerIsEmpty() throws IOException {
+        StringWriter writer = new StringWriter();
+        trace.dump(writer);
+        return writer.toString().isEmpty();
+    }
+
+    @Test
+    public void eachGameDumpsOnlyItsOwnDecisions() throws IOException {
+        File file = new File(folder.getRoot(), "trace.txt");
+        Game game = GameType.TerraformingMars.createGameInstance(2, 513);
+        List<AbstractPlayer> players = Arrays.asList(new TMRuleBasedPlayer(100000, file.getPath()), new TMRuleBasedPlayer());
+        for (int g = 0; g < 2; g++) {
+            game.reset(players, 513 + g);
+            game.run();
+        }
+        List<String> lines = Files.readAllLines(file.toPath());
+        long games = lines.stream().filter(l -> l.startsWith("Game ")).count();
+        long firstDecisions = lines.stream().filter(l -> l.startsWith("Decision 0\t")).count();
+        assertEquals(2, games);
+        assertEquals(2, firstDecisions);
+        // the second game's dump holds the decisions made in that game only
+        int secondGame = 0;
+        for (int i = 0; i < lines.size(); i++)
+            if (lines.get(i).startsWith("Game "))
+                secondGame = i;
+        long secondDecisions = lines.subList(secondGame, lines.size()).stream().filter(l -> l.startsWith("Decision")).count();
+        assertEquals(((TMRuleBasedPlayer) players.get(0)).getTrace().decisions(), secondDecisions);
+    }
+}
@@ -0,0 +1,93 @@
+package test.utilities;
+
+import org.junit.*;
+import utilities.LatencyHistogram;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTests {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.max());
+        assertEquals(0.0, histogram.mean(), 0.0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        // below 128 every value has a bucket of its own
+        for (long v = 1; v <= 100; v++)
+            histogram.record(v);
+        assertEquals(100, histogram.count());
+        assertEquals(50, histogram.percentile(50));
+        assertEquals(95, histogram.percentile(95));
+        assertEquals(99, histogram.percentile(99));
+        assertEquals(100, histogram.percentile(100));
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(50.5, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        // 127 is the last exact value; 128 and 129 share the first bucket two wide
+        histogram.record(127);
+        histogram.record(128);
+        histogram.record(129);
+        histogram.record(130);
+        assertEquals(127, histogram.percentile(25));
+        assertEquals(129, histogram.percentile(50));
+        assertEquals(129, histogram.percentile(75));
+        assertEquals(130, histogram.percentile(100));
+    }
+
+    @Test
+    public void percentileNeverExceedsTheMaximum() {
+        histogram.record(1000);
+        // the bucket holding 1000 extends above it
+        assertEquals(1000, histogram.percentile(100));
+        assertEquals(1000, histogram.max());
+    }
+
+    @Test
+    public void largeValuesAreWithinThePrecision() {
+        for (long v = 1; v <= 10000; v++)
+            histogram.record(v * 1_000_003L);
+        for (double p : new double[]{10, 50, 90, 95, 99}) {
+            double expected = p * 100 * 1_000_003L;
+            assertEquals(expected, histogram.percentile(p), expected / 64.0);
+            assertTrue(histogram.percentile(p) >= expected);
+        }
+        assertEquals(10000 * 1_000_003L, histogram.max());
+    }
+
+    @Test
+    public void negativeAndHugeValuesAreClamped() {
+        histogram.record(-5);
+        histogram.record(1L << 50);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(1L << 50, histogram.max());
+        // the top bucket ends at 2^40 ns
+        assertEquals((1L << 40) - 1, histogram.percentile(100));
+    }
+
+    @Test
+    public void mergeAddsCounts() {
+        LatencyHistogram other = new LatencyHistogram();
+        for (long v = 1; v <= 50; v++)
+            histogram.record(v);
+        for (long v = 51; v <= 100; v++)
+            other.record(v);
+        histogram.merge(other);
+        assertEquals(100, histogram.count());
+        assertEquals(50, histogram.percentile(50));
+        assertEquals(100, histogram.max());
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+}